@@ -0,0 +1,149 @@
+package org.bigraphs.model.provider.benchmark;
+
+import org.bigraphs.model.provider.spatial.bigrid.BiGridLabelFormatter;
+import org.bigraphs.model.provider.spatial.bigrid.BiGridLabelParser;
+import org.bigraphs.model.provider.spatial.bigrid.BiGridSupport;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting and parsing of the coordinate labels of 500x500 locales, compared with the former format string and
+ * split/replace implementations (whose results are the same, see {@code BiGridLabelTest}).
+ * <p>
+ * Run by {@code mvn -P jmh test-compile exec:exec -Djmh.args="LabelBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LabelBenchmark {
+
+    private static final int SIZE = 500;
+
+    private List<Point2D.Float> coordinates;
+    private List<String> labels;
+    private List<String> labels3D;
+    private BiGridLabelParser cache;
+
+    @Setup
+    public void setUp() {
+        coordinates = new ArrayList<>(SIZE * SIZE);
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                coordinates.add(new Point2D.Float(x * 0.25f - 3, y * 0.1f));
+            }
+        }
+        Random random = new Random(42);
+        labels = new ArrayList<>(SIZE * SIZE);
+        labels3D = new ArrayList<>(SIZE * SIZE);
+        for (int i = 0; i < SIZE * SIZE; i++) {
+            float x = (random.nextFloat() - 0.5f) * 2000;
+            float y = random.nextInt(500) * 0.25f;
+            labels.add(BiGridSupport.formatParamControl(new Point2D.Float(x, y)));
+            labels3D.add(BiGridSupport.formatParamControl3D(x, y, random.nextInt(10)));
+        }
+        cache = new BiGridLabelParser();
+        labels.forEach(cache::lookup);
+    }
+
+    @Benchmark
+    public void formatWithFormatStrings(Blackhole blackhole) {
+        for (Point2D.Float each : coordinates) {
+            blackhole.consume(formatParamControlLegacy(each.x, each.y));
+        }
+    }
+
+    @Benchmark
+    public void formatParamControl(Blackhole blackhole) {
+        for (Point2D.Float each : coordinates) {
+            blackhole.consume(BiGridSupport.formatParamControl(each));
+        }
+    }
+
+    /**
+     * A builder requests the label of each locale several times, e.g., for the routes of its neighbours.
+     */
+    @Benchmark
+    public void formatWithFormatter(Blackhole blackhole) {
+        BiGridLabelFormatter formatter = new BiGridLabelFormatter();
+        for (int i = 0; i < 4; i++) {
+            for (Point2D.Float each : coordinates) {
+                blackhole.consume(formatter.label(each));
+            }
+        }
+    }
+
+    @Benchmark
+    public void parseWithSplitAndReplace(Blackhole blackhole) {
+        for (String each : labels) {
+            blackhole.consume(parseLegacy(each, false));
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        for (String each : labels) {
+            blackhole.consume(BiGridLabelParser.parse(each));
+        }
+    }
+
+    @Benchmark
+    public void parse3DWithSplitAndReplace(Blackhole blackhole) {
+        for (String each : labels3D) {
+            blackhole.consume(parseLegacy(each, true));
+        }
+    }
+
+    @Benchmark
+    public void parse3D(Blackhole blackhole) {
+        for (String each : labels3D) {
+            blackhole.consume(BiGridLabelParser.parse3D(each));
+        }
+    }
+
+    @Benchmark
+    public void lookup(Blackhole blackhole) {
+        for (String each : labels) {
+            blackhole.consume(cache.lookup(each));
+        }
+    }
+
+    // The implementation of BiGridSupport.formatParamControl() before BiGridLabelFormatter
+    private static String formatParamControlLegacy(float x, float y) {
+        return String.format("C_%s__%s", formatCoordinateLegacy(x), formatCoordinateLegacy(y));
+    }
+
+    private static String formatCoordinateLegacy(float value) {
+        boolean isNegative = value < 0;
+        value = Math.abs(value);
+        int integerPart = (int) value;
+        int fractionalPart = Math.round((value - integerPart) * 100);
+        String prefix = isNegative ? "N" : "";
+        return String.format("%s%d_%02d", prefix, integerPart, fractionalPart);
+    }
+
+    // The implementation of BiGridSupport.parseParamControl()/parseParamControl3D() before BiGridLabelParser
+    private static float[] parseLegacy(String label, boolean is3D) {
+        if (!label.startsWith("C_") || (is3D ? label.split("__").length != 3 : !label.contains("__"))) {
+            return null;
+        }
+        try {
+            String[] parts = label.substring(2).split("__");
+            float[] result = new float[is3D ? 3 : 2];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = Float.parseFloat(parts[i].replace("N", "-").replace("_", "."));
+            }
+            return result;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
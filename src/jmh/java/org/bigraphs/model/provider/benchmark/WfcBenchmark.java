@@ -0,0 +1,104 @@
+package org.bigraphs.model.provider.benchmark;
+
+import org.bigraphs.model.provider.spatial.bigrid.TileSet;
+import org.bigraphs.model.provider.spatial.bigrid.WfcMetrics;
+import org.bigraphs.model.provider.spatial.bigrid.World;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generation time of {@link World#waveFunctionCollapse()} across world sizes, tile sets and seeds.
+ * <p>
+ * Run by {@code mvn -P jmh test-compile exec:exec}, with options of the runner in {@code jmh.args}, e.g.,
+ * {@code -Djmh.args="WfcBenchmark -p tileSet=diagonal"}. Three-dimensional worlds have 4 layers of the given size.
+ * The size of 512 covers worlds of 500x500 locales; it takes the longest, so runs of other sizes are selected by, e.g.,
+ * {@code -p size=64,128}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WfcBenchmark {
+
+    @Param({"64", "128", "256", "512"})
+    int size;
+
+    @Param({"default", "corners", "diagonal", "3d"})
+    String tileSet;
+
+    @Param({"1", "2", "3"})
+    long seed;
+
+    private TileSet tiles;
+    private int sizeZ;
+
+    @Setup
+    public void setUp() {
+        tiles = switch (tileSet) {
+            case "default" -> TileSet.getDefault();
+            case "corners" -> TileSet.getDefaultWithCorners();
+            case "diagonal" -> TileSet.getDiagonal();
+            case "3d" -> TileSet.getThreeDimensional();
+            default -> throw new IllegalArgumentException("Unknown tile set: " + tileSet);
+        };
+        sizeZ = tiles.getTopology() == TileSet.Topology.GRID_3D ? 4 : 1;
+    }
+
+    @Benchmark
+    public World generate() {
+        return collapse(new World(size, size, sizeZ, tiles, seed));
+    }
+
+    @Benchmark
+    public World generateConnected() {
+        World world = new World(size, size, sizeZ, tiles, seed);
+        world.setRecoveryPolicy(World.RecoveryPolicy.RESTART_REGION);
+        world.setConnectivityRequired(true);
+        return collapse(world);
+    }
+
+    /**
+     * Generates with {@link WfcMetrics} to report the work done per generated world next to its time.
+     */
+    @Benchmark
+    public World generateWithMetrics(Counters counters) {
+        World world = new World(size, size, sizeZ, tiles, seed);
+        WfcMetrics metrics = new WfcMetrics();
+        world.setMetrics(metrics);
+        collapse(world);
+        counters.collapses += metrics.getCollapses();
+        counters.propagationSteps += metrics.getPropagationSteps();
+        counters.contradictions += metrics.getContradictions();
+        counters.restarts += metrics.getRestarts();
+        return world;
+    }
+
+    private static World collapse(World world) {
+        while (world.waveFunctionCollapse() != 0) {
+        }
+        return world;
+    }
+
+    /**
+     * Counters of {@link WfcMetrics}, reported by JMH per operation.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long collapses;
+        public long propagationSteps;
+        public long contradictions;
+        public long restarts;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            collapses = 0;
+            propagationSteps = 0;
+            contradictions = 0;
+            restarts = 0;
+        }
+    }
+}
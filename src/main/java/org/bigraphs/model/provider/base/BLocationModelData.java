@@ -1,17 +1,14 @@
 package org.bigraphs.model.provider.base;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
-import lombok.Builder;
-import lombok.Data;
+import lombok.*;
 import org.bigraphs.framework.core.impl.signature.DynamicControl;
 import org.bigraphs.model.provider.BBigraphProvider;
 
 import java.awt.geom.Point2D;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 
 /**
@@ -58,23 +55,96 @@ public class BLocationModelData {
         return "target_" + agent.getName();
     }
 
+    /**
+     * Sorts locales or routes by the numeric part of their names (see {@link Indexed#getIndex()}).
+     * <p>
+     * If the indices form a permutation of {@code 0..n-1}, as it is the case for generated grids,
+     * each element is placed directly at its index in linear time.
+     * Otherwise, a comparison sort over the cached indices is performed.
+     *
+     * @param elements the locales or routes to sort
+     * @param <T>      {@link Locale} or {@link Route}
+     * @return a new list sorted by index
+     */
+    public static <T extends Indexed> ArrayList<T> sortByIndex(Collection<? extends T> elements) {
+        int n = elements.size();
+        Object[] slots = new Object[n];
+        boolean isPermutation = true;
+        for (T each : elements) {
+            int ix = each.getIndex();
+            if (ix < 0 || ix >= n || slots[ix] != null) {
+                isPermutation = false;
+                break;
+            }
+            slots[ix] = each;
+        }
+        ArrayList<T> sorted;
+        if (isPermutation) {
+            sorted = new ArrayList<>(n);
+            for (Object each : slots) {
+                sorted.add((T) each);
+            }
+        } else {
+            sorted = new ArrayList<>(elements);
+            sorted.sort(Comparator.comparingInt(Indexed::getIndex));
+        }
+        return sorted;
+    }
+
+    /**
+     * Elements that are identified by a prefix letter followed by a number, e.g., "v12" or "l3".
+     */
+    public interface Indexed {
+        /**
+         * Returns the numeric part of the name.
+         * It is parsed once and cached until the name changes.
+         *
+         * @return the index of the element
+         * @throws NumberFormatException if the name does not follow the format
+         */
+        int getIndex();
+    }
+
     @Data
-    @Builder
-    public static class Route implements Comparable<Route> {
+    @NoArgsConstructor
+    public static class Route implements Comparable<Route>, Indexed {
         public String name;
         public Point2D.Float startingPoint;
         public Point2D.Float endingPoint;
 
+        @Getter(AccessLevel.NONE)
+        @Setter(AccessLevel.NONE)
+        @EqualsAndHashCode.Exclude
+        @ToString.Exclude
+        private transient int index;
+        // The name the cached index was parsed from; written after the index, so it can be read by concurrent builds
+        @Getter(AccessLevel.NONE)
+        @Setter(AccessLevel.NONE)
+        @EqualsAndHashCode.Exclude
+        @ToString.Exclude
+        private transient volatile String indexSource;
+
+        @Builder
+        public Route(String name, Point2D.Float startingPoint, Point2D.Float endingPoint) {
+            this.name = name;
+            this.startingPoint = startingPoint;
+            this.endingPoint = endingPoint;
+        }
+
         @Override
         public int compareTo(Route otherRoute) {
-            int thisIndex = extractIndex(this.name);
-            int otherIndex = extractIndex(otherRoute.name);
-            return Integer.compare(thisIndex, otherIndex);
+            return Integer.compare(getIndex(), otherRoute.getIndex());
         }
 
         // We assume the format is always like "l<NUMBER>"
-        private int extractIndex(String name) {
-            return Integer.parseInt(name.substring(1));
+        @Override
+        @JsonIgnore
+        public int getIndex() {
+            if (indexSource != name) {
+                index = Integer.parseInt(name.substring(1));
+                indexSource = name;
+            }
+            return index;
         }
     }
 
@@ -92,8 +162,8 @@ public class BLocationModelData {
     }
 
     @Data
-    @Builder
-    public static class Locale implements Comparable<Locale> {
+    @NoArgsConstructor
+    public static class Locale implements Comparable<Locale>, Indexed {
         public String name;
 
         // origin of the area
@@ -105,17 +175,41 @@ public class BLocationModelData {
         // depth of the area
         public float depth; // can also be zero
 
+        @Getter(AccessLevel.NONE)
+        @Setter(AccessLevel.NONE)
+        @EqualsAndHashCode.Exclude
+        @ToString.Exclude
+        private transient int index;
+        // The name the cached index was parsed from; written after the index, so it can be read by concurrent builds
+        @Getter(AccessLevel.NONE)
+        @Setter(AccessLevel.NONE)
+        @EqualsAndHashCode.Exclude
+        @ToString.Exclude
+        private transient volatile String indexSource;
+
+        @Builder
+        public Locale(String name, Point2D.Float center, float width, float depth) {
+            this.name = name;
+            this.center = center;
+            this.width = width;
+            this.depth = depth;
+        }
+
         // Compares only the numeric parts of the name identifier of a locale
         @Override
         public int compareTo(Locale otherLocale) {
-            int thisIndex = extractIndex(this.name);
-            int otherIndex = extractIndex(otherLocale.name);
-            return Integer.compare(thisIndex, otherIndex);
+            return Integer.compare(getIndex(), otherLocale.getIndex());
         }
 
         // We assume the format is always like "v<NUMBER>"
-        private int extractIndex(String name) {
-            return Integer.parseInt(name.substring(1));
+        @Override
+        @JsonIgnore
+        public int getIndex() {
+            if (indexSource != name) {
+                index = Integer.parseInt(name.substring(1));
+                indexSource = name;
+            }
+            return index;
         }
     }
 
@@ -0,0 +1,83 @@
+package org.bigraphs.model.provider.spatial.bigrid;
+
+import com.google.common.collect.HashBiMap;
+import com.google.common.collect.ImmutableBiMap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import lombok.Getter;
+import org.bigraphs.framework.core.impl.pure.PureBigraph;
+import org.bigraphs.model.provider.base.BLocationModelData;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The output of a bigrid provider: the bigrid together with the index maps that relate the locales of the
+ * {@link BLocationModelData} to the entities of the bigrid.
+ * <p>
+ * A build result is immutable, and is created without modifying the input {@link BLocationModelData}.
+ * Thus, one location model can be used by many concurrent provider invocations.
+ * The coordinates are copied, so moving a locale of the location model afterwards does not change the result
+ * (nor a result held by a {@link BiGridCache}); the points returned by {@link #getLocaleNameToCoordinates()} must not
+ * be modified.
+ * The maps can be written back to a location model by {@link #applyTo(BLocationModelData)}, which is what the
+ * {@code getBigraph()} methods of the providers do.
+ */
+@Getter
+public final class BiGridBuildResult {
+    private final PureBigraph bigraph;
+    private final int numOfLocModelSites;
+    // map: locale name -> coordinates of the locale (by default, the center)
+    private final ImmutableMap<String, ImmutableList<Point2D.Float>> localeNameToCoordinates;
+    // map: node id of the bigrid -> locale name
+    private final ImmutableMap<String, String> bNodeIdToExternalLocaleName;
+    // map: locale name -> root/site index of the location model bigraph
+    private final ImmutableBiMap<String, Integer> localeNameToRootOrSiteIndex;
+
+    public BiGridBuildResult(PureBigraph bigraph,
+                             int numOfLocModelSites,
+                             Map<String, ? extends List<Point2D.Float>> localeNameToCoordinates,
+                             Map<String, String> bNodeIdToExternalLocaleName,
+                             Map<String, Integer> localeNameToRootOrSiteIndex) {
+        this.bigraph = bigraph;
+        this.numOfLocModelSites = numOfLocModelSites;
+        ImmutableMap.Builder<String, ImmutableList<Point2D.Float>> coordinates = ImmutableMap.builderWithExpectedSize(localeNameToCoordinates.size());
+        localeNameToCoordinates.forEach((name, points) -> coordinates.put(name, ImmutableList.copyOf(copyOf(points))));
+        this.localeNameToCoordinates = coordinates.build();
+        this.bNodeIdToExternalLocaleName = ImmutableMap.copyOf(bNodeIdToExternalLocaleName);
+        this.localeNameToRootOrSiteIndex = ImmutableBiMap.copyOf(localeNameToRootOrSiteIndex);
+    }
+
+    /**
+     * @return a result with the same index maps for the given bigraph, e.g., a copy of this bigraph
+     */
+    BiGridBuildResult withBigraph(PureBigraph bigraph) {
+        return new BiGridBuildResult(bigraph, numOfLocModelSites, localeNameToCoordinates, bNodeIdToExternalLocaleName,
+                localeNameToRootOrSiteIndex);
+    }
+
+    /**
+     * Writes the index maps of this result into the given location model, replacing its previous content.
+     * The location model receives mutable copies of the maps.
+     *
+     * @param lmpd the location model to update
+     */
+    public void applyTo(BLocationModelData lmpd) {
+        lmpd.setNumOfLocModelSites(numOfLocModelSites);
+        lmpd.getLocaleNameToCoordinates().clear();
+        localeNameToCoordinates.forEach((name, points) -> lmpd.getLocaleNameToCoordinates().put(name, copyOf(points)));
+        lmpd.getBNodeIdToExternalLocaleName().clear();
+        lmpd.getBNodeIdToExternalLocaleName().putAll(bNodeIdToExternalLocaleName);
+        lmpd.setLocaleNameToRootOrSiteIndex(HashBiMap.create(localeNameToRootOrSiteIndex));
+    }
+
+    private static List<Point2D.Float> copyOf(List<Point2D.Float> points) {
+        List<Point2D.Float> copy = new ArrayList<>(points.size());
+        for (Point2D.Float point : points) {
+            copy.add(new Point2D.Float(point.x, point.y));
+        }
+        return copy;
+    }
+}
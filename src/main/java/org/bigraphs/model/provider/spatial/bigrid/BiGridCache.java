@@ -0,0 +1,106 @@
+package org.bigraphs.model.provider.spatial.bigrid;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.bigraphs.framework.core.impl.pure.PureBigraph;
+import org.bigraphs.model.provider.base.BLocationModelData;
+
+import java.awt.geom.Point2D;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A size-bounded cache for bigrids that is shared by provider instances.
+ * <p>
+ * Entries are keyed by a 128-bit content hash of the {@link BLocationModelData} (locales and routes) together with
+ * the construction options of the provider (route direction, ground flag, construction mode).
+ * Least recently used entries are evicted when the maximum size is exceeded.
+ * <p>
+ * The cached {@link PureBigraph} is never handed out: the provider returns a copy of it for every call (including
+ * the one that built it), so callers may modify or rewrite their bigrid without affecting later hits.
+ * A hit thus saves the construction of the bigrid, but not the copy of its model.
+ *
+ * @see BiGridProvider#setCache(BiGridCache)
+ */
+public class BiGridCache {
+
+    private final Cache<HashCode, BiGridBuildResult> cache;
+
+    private BiGridCache(int maximumSize) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maximumSize the maximum number of bigrids kept in the cache
+     * @return a new cache instance
+     */
+    public static BiGridCache create(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be at least 1");
+        }
+        return new BiGridCache(maximumSize);
+    }
+
+    /**
+     * Computes the content hash of a location model together with the options affecting the bigrid construction.
+     *
+     * @param lmpd    the location model
+     * @param options further options the bigrid depends on, e.g., route direction and ground flag
+     * @return the content hash
+     */
+    public static HashCode contentHash(BLocationModelData lmpd, Object... options) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (Object each : options) {
+            hasher.putString(String.valueOf(each), StandardCharsets.UTF_8);
+        }
+        hasher.putInt(lmpd.getLocales().size());
+        for (BLocationModelData.Locale each : lmpd.getLocales()) {
+            hasher.putString(String.valueOf(each.getName()), StandardCharsets.UTF_8);
+            putPoint(hasher, each.getCenter());
+            hasher.putFloat(each.getWidth()).putFloat(each.getDepth());
+        }
+        hasher.putInt(lmpd.getRoutes().size());
+        for (BLocationModelData.Route each : lmpd.getRoutes()) {
+            hasher.putString(String.valueOf(each.getName()), StandardCharsets.UTF_8);
+            putPoint(hasher, each.getStartingPoint());
+            putPoint(hasher, each.getEndingPoint());
+        }
+        return hasher.hash();
+    }
+
+    private static void putPoint(Hasher hasher, Point2D.Float point) {
+        if (point == null) {
+            hasher.putBoolean(false);
+        } else {
+            hasher.putBoolean(true).putFloat(point.x).putFloat(point.y);
+        }
+    }
+
+    BiGridBuildResult getIfPresent(HashCode key) {
+        return cache.getIfPresent(key);
+    }
+
+    void put(HashCode key, BiGridBuildResult result) {
+        cache.put(key, result);
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
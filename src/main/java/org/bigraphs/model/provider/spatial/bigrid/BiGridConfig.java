@@ -1,15 +1,49 @@
 package org.bigraphs.model.provider.spatial.bigrid;
 
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class BiGridConfig {
 
-    // Directions
+    // Directions, with the offset (x, y, z) of the neighbour in that direction.
+    // The tile rules of a TileSet list the faces in the order of the directions of its topology.
     public enum Direction {
-        NORTH, EAST, SOUTH, WEST;
+        NORTH(-1, 0, 0), EAST(0, 1, 0), SOUTH(1, 0, 0), WEST(0, -1, 0),
+        UP(0, 0, 1), DOWN(0, 0, -1),
+        NORTH_EAST(-1, 1, 0), SOUTH_EAST(1, 1, 0), SOUTH_WEST(1, -1, 0), NORTH_WEST(-1, -1, 0);
+
+        private final int dx;
+        private final int dy;
+        private final int dz;
+
+        Direction(int dx, int dy, int dz) {
+            this.dx = dx;
+            this.dy = dy;
+            this.dz = dz;
+        }
+
+        public int getDx() {
+            return dx;
+        }
+
+        public int getDy() {
+            return dy;
+        }
+
+        public int getDz() {
+            return dz;
+        }
+
+        public Direction opposite() {
+            for (Direction direction : values()) {
+                if (direction.dx == -dx && direction.dy == -dy && direction.dz == -dz) {
+                    return direction;
+                }
+            }
+            throw new IllegalStateException("No opposite direction of " + this);
+        }
     }
 
     // Tile Types
@@ -27,6 +61,11 @@ public class BiGridConfig {
     public static final int TILE_LOCALE_SW = 8;
     public static final int TILE_LOCALE_NW = 9;
     public static final int TILE_LOCALE_1_ROUTE_UNDIRECTED = 10;
+    // Tile types of the diagonal (see TileSet.getDiagonal()) and three-dimensional (see TileSet.getThreeDimensional()) rules
+    public static final int TILE_LOCALE_DIAGONAL = 11;
+    public static final int TILE_LOCALE_OCTAGONAL = 12;
+    public static final int TILE_LOCALE_NESW_UP_DOWN = 13;
+    public static final int TILE_LOCALE_UP_DOWN = 14;
 
     // Tile Interfaces, or "faces" (i.e., "edges" of the tiles)
     public interface Faces {
@@ -46,40 +85,115 @@ public class BiGridConfig {
     // Map to store tile rules
     // for all tile types along with the tile interfaces
     // on the directions (North, East, South, West)
-    public static final Map<Integer, List<Integer>> tileRules = new HashMap<>();
+    public static final Map<Integer, List<Integer>> tileRules;
 
     static {
+        Map<Integer, List<Integer>> rules = new HashMap<>();
         // Initialize the map [North, East, South, West]
         // Blocking Tile
-        tileRules.put(TILE_BLANK, Arrays.asList(ROUTE_BLANK, ROUTE_BLANK, ROUTE_BLANK, ROUTE_BLANK));
+        rules.put(TILE_BLANK, List.of(ROUTE_BLANK, ROUTE_BLANK, ROUTE_BLANK, ROUTE_BLANK));
         // 4-Way Tile
-        tileRules.put(TILE_LOCALE_NESW, Arrays.asList(ROUTE_NESW, ROUTE_NESW, ROUTE_NESW, ROUTE_NESW));
+        rules.put(TILE_LOCALE_NESW, List.of(ROUTE_NESW, ROUTE_NESW, ROUTE_NESW, ROUTE_NESW));
         // Single-Route Tiles
-        tileRules.put(TILE_LOCALE_N, Arrays.asList(ROUTE_NESW, ROUTE_SINGLE_N, ROUTE_BLANK, ROUTE_SINGLE_N));
-        tileRules.put(TILE_LOCALE_E, Arrays.asList(ROUTE_SINGLE_E, ROUTE_NESW, ROUTE_SINGLE_E, ROUTE_BLANK));
-        tileRules.put(TILE_LOCALE_S, Arrays.asList(ROUTE_BLANK, ROUTE_SINGLE_S, ROUTE_NESW, ROUTE_SINGLE_S));
-        tileRules.put(TILE_LOCALE_W, Arrays.asList(ROUTE_SINGLE_W, ROUTE_BLANK, ROUTE_SINGLE_W, ROUTE_NESW));
-        // L-Tiles v1
-//        tileRules.put(TILE_LOCALE_NE, Arrays.asList(ROUTE_NESW, ROUTE_NESW, ROUTE_SINGLE_E, ROUTE_SINGLE_N));
-//        tileRules.put(TILE_LOCALE_SE, Arrays.asList(ROUTE_SINGLE_E, ROUTE_NESW, ROUTE_NESW, ROUTE_SINGLE_S));
-//        tileRules.put(TILE_LOCALE_SW, Arrays.asList(ROUTE_SINGLE_W, ROUTE_SINGLE_S, ROUTE_NESW, ROUTE_NESW));
-//        tileRules.put(TILE_LOCALE_NW, Arrays.asList(ROUTE_NESW, ROUTE_SINGLE_N, ROUTE_SINGLE_W, ROUTE_NESW));
+        rules.put(TILE_LOCALE_N, List.of(ROUTE_NESW, ROUTE_SINGLE_N, ROUTE_BLANK, ROUTE_SINGLE_N));
+        rules.put(TILE_LOCALE_E, List.of(ROUTE_SINGLE_E, ROUTE_NESW, ROUTE_SINGLE_E, ROUTE_BLANK));
+        rules.put(TILE_LOCALE_S, List.of(ROUTE_BLANK, ROUTE_SINGLE_S, ROUTE_NESW, ROUTE_SINGLE_S));
+        rules.put(TILE_LOCALE_W, List.of(ROUTE_SINGLE_W, ROUTE_BLANK, ROUTE_SINGLE_W, ROUTE_NESW));
+        // L-Tiles v1: see cornerTileRules
+        tileRules = Collections.unmodifiableMap(rules);
+    }
+
+    // L-Tiles v1: corners where two single-route borders meet, see TileSet.getDefaultWithCorners()
+    public static final Map<Integer, List<Integer>> cornerTileRules;
+
+    static {
+        Map<Integer, List<Integer>> rules = new HashMap<>();
+        rules.put(TILE_LOCALE_NE, List.of(ROUTE_NESW, ROUTE_NESW, ROUTE_SINGLE_E, ROUTE_SINGLE_N));
+        rules.put(TILE_LOCALE_SE, List.of(ROUTE_SINGLE_E, ROUTE_NESW, ROUTE_NESW, ROUTE_SINGLE_S));
+        rules.put(TILE_LOCALE_SW, List.of(ROUTE_SINGLE_W, ROUTE_SINGLE_S, ROUTE_NESW, ROUTE_NESW));
+        rules.put(TILE_LOCALE_NW, List.of(ROUTE_NESW, ROUTE_SINGLE_N, ROUTE_SINGLE_W, ROUTE_NESW));
+        cornerTileRules = Collections.unmodifiableMap(rules);
+    }
+
+    // Diagonal routes, see TileSet.getDiagonal(): the faces [North, East, South, West, North-East, South-East,
+    // South-West, North-West] are ROUTE_NESW where the tile has a route, so that each route has one back
+    public static final Map<Integer, List<Integer>> diagonalTileRules;
+
+    static {
+        Map<Integer, List<Integer>> rules = new HashMap<>();
+        rules.put(TILE_BLANK, List.of(ROUTE_BLANK, ROUTE_BLANK, ROUTE_BLANK, ROUTE_BLANK,
+                ROUTE_BLANK, ROUTE_BLANK, ROUTE_BLANK, ROUTE_BLANK));
+        rules.put(TILE_LOCALE_NESW, List.of(ROUTE_NESW, ROUTE_NESW, ROUTE_NESW, ROUTE_NESW,
+                ROUTE_BLANK, ROUTE_BLANK, ROUTE_BLANK, ROUTE_BLANK));
+        rules.put(TILE_LOCALE_DIAGONAL, List.of(ROUTE_BLANK, ROUTE_BLANK, ROUTE_BLANK, ROUTE_BLANK,
+                ROUTE_NESW, ROUTE_NESW, ROUTE_NESW, ROUTE_NESW));
+        rules.put(TILE_LOCALE_OCTAGONAL, List.of(ROUTE_NESW, ROUTE_NESW, ROUTE_NESW, ROUTE_NESW,
+                ROUTE_NESW, ROUTE_NESW, ROUTE_NESW, ROUTE_NESW));
+        diagonalTileRules = Collections.unmodifiableMap(rules);
+    }
+
+    // Layers connected by vertical routes, see TileSet.getThreeDimensional(): the faces
+    // [North, East, South, West, Up, Down] are ROUTE_NESW where the tile has a route
+    public static final Map<Integer, List<Integer>> threeDimensionalTileRules;
+
+    static {
+        Map<Integer, List<Integer>> rules = new HashMap<>();
+        rules.put(TILE_BLANK, List.of(ROUTE_BLANK, ROUTE_BLANK, ROUTE_BLANK, ROUTE_BLANK,
+                ROUTE_BLANK, ROUTE_BLANK));
+        rules.put(TILE_LOCALE_NESW, List.of(ROUTE_NESW, ROUTE_NESW, ROUTE_NESW, ROUTE_NESW,
+                ROUTE_BLANK, ROUTE_BLANK));
+        rules.put(TILE_LOCALE_NESW_UP_DOWN, List.of(ROUTE_NESW, ROUTE_NESW, ROUTE_NESW, ROUTE_NESW,
+                ROUTE_NESW, ROUTE_NESW));
+        rules.put(TILE_LOCALE_UP_DOWN, List.of(ROUTE_BLANK, ROUTE_BLANK, ROUTE_BLANK, ROUTE_BLANK,
+                ROUTE_NESW, ROUTE_NESW));
+        threeDimensionalTileRules = Collections.unmodifiableMap(rules);
+    }
+
+    // Directions of the routes of each tile type (as created by BiGridElementFactory), see TileSet.getRoutes()
+    public static final Map<Integer, List<Direction>> tileRoutes;
+
+    static {
+        Map<Integer, List<Direction>> routes = new HashMap<>();
+        routes.put(TILE_BLANK, List.of());
+        routes.put(TILE_LOCALE_NESW, List.of(Direction.NORTH, Direction.EAST, Direction.SOUTH, Direction.WEST));
+        routes.put(TILE_LOCALE_N, List.of(Direction.NORTH));
+        routes.put(TILE_LOCALE_E, List.of(Direction.EAST));
+        routes.put(TILE_LOCALE_S, List.of(Direction.SOUTH));
+        routes.put(TILE_LOCALE_W, List.of(Direction.WEST));
+        routes.put(TILE_LOCALE_NE, List.of(Direction.NORTH, Direction.EAST));
+        routes.put(TILE_LOCALE_SE, List.of(Direction.SOUTH, Direction.EAST));
+        routes.put(TILE_LOCALE_SW, List.of(Direction.SOUTH, Direction.WEST));
+        routes.put(TILE_LOCALE_NW, List.of(Direction.NORTH, Direction.WEST));
+        routes.put(TILE_LOCALE_DIAGONAL, List.of(Direction.NORTH_EAST, Direction.SOUTH_EAST, Direction.SOUTH_WEST,
+                Direction.NORTH_WEST));
+        routes.put(TILE_LOCALE_OCTAGONAL, List.of(Direction.NORTH, Direction.EAST, Direction.SOUTH, Direction.WEST,
+                Direction.NORTH_EAST, Direction.SOUTH_EAST, Direction.SOUTH_WEST, Direction.NORTH_WEST));
+        routes.put(TILE_LOCALE_NESW_UP_DOWN, List.of(Direction.NORTH, Direction.EAST, Direction.SOUTH, Direction.WEST,
+                Direction.UP, Direction.DOWN));
+        routes.put(TILE_LOCALE_UP_DOWN, List.of(Direction.UP, Direction.DOWN));
+        tileRoutes = Collections.unmodifiableMap(routes);
     }
 
     // Map to store tile weights
-    public static final Map<Integer, Integer> tileWeights = new HashMap<>();
+    public static final Map<Integer, Integer> tileWeights;
 
     static {
         // Initialize the map
-        tileWeights.put(TILE_LOCALE_NESW, 16);
-        tileWeights.put(TILE_BLANK, 4);
-        tileWeights.put(TILE_LOCALE_N, 5);
-        tileWeights.put(TILE_LOCALE_E, 5);
-        tileWeights.put(TILE_LOCALE_S, 5);
-        tileWeights.put(TILE_LOCALE_W, 5);
-        tileWeights.put(TILE_LOCALE_NE, 5);
-        tileWeights.put(TILE_LOCALE_SE, 5);
-        tileWeights.put(TILE_LOCALE_SW, 5);
-        tileWeights.put(TILE_LOCALE_NW, 5);
+        Map<Integer, Integer> weights = new HashMap<>();
+        weights.put(TILE_LOCALE_NESW, 16);
+        weights.put(TILE_BLANK, 4);
+        weights.put(TILE_LOCALE_N, 5);
+        weights.put(TILE_LOCALE_E, 5);
+        weights.put(TILE_LOCALE_S, 5);
+        weights.put(TILE_LOCALE_W, 5);
+        weights.put(TILE_LOCALE_NE, 5);
+        weights.put(TILE_LOCALE_SE, 5);
+        weights.put(TILE_LOCALE_SW, 5);
+        weights.put(TILE_LOCALE_NW, 5);
+        weights.put(TILE_LOCALE_DIAGONAL, 8);
+        weights.put(TILE_LOCALE_OCTAGONAL, 4);
+        weights.put(TILE_LOCALE_NESW_UP_DOWN, 4);
+        weights.put(TILE_LOCALE_UP_DOWN, 2);
+        tileWeights = Collections.unmodifiableMap(weights);
     }
 }
\ No newline at end of file
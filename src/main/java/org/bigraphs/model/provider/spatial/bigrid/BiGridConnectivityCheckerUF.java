@@ -0,0 +1,114 @@
+package org.bigraphs.model.provider.spatial.bigrid;
+
+import org.bigraphs.framework.core.impl.BigraphEntity;
+import org.bigraphs.framework.core.impl.pure.PureBigraph;
+import org.bigraphs.framework.core.impl.signature.DynamicControl;
+import org.bigraphs.model.provider.util.IntUnionFind;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Utility class to check connectivity properties of bigrid structures.
+ * A bigrid is considered fully connected if all Locale nodes can reach each other
+ * through Route nodes connected via outer names.
+ * <p>
+ * The checks run on the {@link BiGridGraph} of the bigrid, i.e., over primitive integer ids, and take
+ * time linear in the size of the bigraph.
+ * Reachability is computed by breadth-first search along the direction of the routes, and weak connectivity
+ * (ignoring the direction of routes) by union-find.
+ * Nothing is printed; unreachable locales can be retrieved by {@link #getUnreachableLocales(BiGridGraph)}.
+ *
+ * @see BiGridConnectivityChecker
+ * @see BiGridConnectivityCheckerDFS
+ */
+public class BiGridConnectivityCheckerUF {
+
+    /**
+     * Checks if all locales are reachable from the first locale along the routes,
+     * like {@link BiGridConnectivityChecker#isFullyConnected(PureBigraph)}.
+     *
+     * @param bigrid The bigrid structure to check
+     * @return {@code true} if all Locale nodes are reachable, {@code false} otherwise
+     */
+    public static boolean isFullyConnected(PureBigraph bigrid) {
+        return isFullyConnected(BiGridGraph.of(bigrid));
+    }
+
+    public static boolean isFullyConnected(BiGridGraph graph) {
+        return graph.size() == 0 || reachableFrom(graph, 0).cardinality() == graph.size();
+    }
+
+    /**
+     * Checks if all locales are connected when the direction of routes is ignored.
+     *
+     * @param bigrid The bigrid structure to check
+     * @return {@code true} if the bigrid consists of a single (weakly) connected component
+     */
+    public static boolean isWeaklyConnected(PureBigraph bigrid) {
+        return isWeaklyConnected(BiGridGraph.of(bigrid));
+    }
+
+    public static boolean isWeaklyConnected(BiGridGraph graph) {
+        return countComponents(graph) <= 1;
+    }
+
+    /**
+     * @return the number of weakly connected components of the locale graph
+     */
+    public static int countComponents(BiGridGraph graph) {
+        return unionFind(graph).count();
+    }
+
+    /**
+     * @return the locales that are not reachable from the first locale along the routes
+     */
+    public static List<BigraphEntity.NodeEntity<DynamicControl>> getUnreachableLocales(BiGridGraph graph) {
+        List<BigraphEntity.NodeEntity<DynamicControl>> unreachable = new ArrayList<>();
+        if (graph.size() == 0) {
+            return unreachable;
+        }
+        BitSet visited = reachableFrom(graph, 0);
+        for (int v = visited.nextClearBit(0); v < graph.size(); v = visited.nextClearBit(v + 1)) {
+            unreachable.add(graph.getLocale(v));
+        }
+        return unreachable;
+    }
+
+    /**
+     * @return the set of locale ids reachable from {@code source} along the routes (including {@code source})
+     */
+    public static BitSet reachableFrom(BiGridGraph graph, int source) {
+        BitSet visited = new BitSet(graph.size());
+        int[] queue = new int[graph.size()];
+        int head = 0;
+        int tail = 0;
+        visited.set(source);
+        queue[tail++] = source;
+        while (head < tail) {
+            int v = queue[head++];
+            for (int e = graph.getFirstEdge(v); e < graph.getFirstEdge(v + 1); e++) {
+                int w = graph.getTarget(e);
+                if (!visited.get(w)) {
+                    visited.set(w);
+                    queue[tail++] = w;
+                }
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * @return the weakly connected components of the locale graph
+     */
+    public static IntUnionFind unionFind(BiGridGraph graph) {
+        IntUnionFind components = new IntUnionFind(graph.size());
+        for (int v = 0; v < graph.size(); v++) {
+            for (int e = graph.getFirstEdge(v); e < graph.getFirstEdge(v + 1); e++) {
+                components.union(v, graph.getTarget(e));
+            }
+        }
+        return components;
+    }
+}
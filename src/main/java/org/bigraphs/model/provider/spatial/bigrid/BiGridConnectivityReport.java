@@ -0,0 +1,382 @@
+package org.bigraphs.model.provider.spatial.bigrid;
+
+import org.bigraphs.framework.core.impl.BigraphEntity;
+import org.bigraphs.framework.core.impl.pure.PureBigraph;
+import org.bigraphs.framework.core.impl.signature.DynamicControl;
+import org.bigraphs.model.provider.util.IntUnionFind;
+
+import java.util.*;
+
+/**
+ * Connectivity analysis of a bigrid for map validation.
+ * <p>
+ * The report is computed on the {@link BiGridGraph} of a bigrid by algorithms linear in the size of the graph,
+ * and contains:
+ * <ul>
+ *     <li>the (weakly) connected components with their sizes and member locales, ignoring the direction of routes</li>
+ *     <li>the articulation points (locales whose removal disconnects their component) and
+ *     bridges (pairs of neighbouring locales whose corridor disconnects their component), ignoring the direction of routes</li>
+ *     <li>the strongly connected components and the reachability along the direction of routes,
+ *     which differ from the above for grids built with {@link BiGridProvider.RouteDirection#UNIDIRECTIONAL_FORWARD}
+ *     or {@link BiGridProvider.RouteDirection#UNIDIRECTIONAL_BACKWARD}</li>
+ * </ul>
+ * Locales are referred to by their ids in the {@link BiGridGraph}. Nothing is printed to the console.
+ *
+ * @see BiGridConnectivityCheckerUF
+ */
+public final class BiGridConnectivityReport {
+
+    private final BiGridGraph graph;
+    // weakly connected components: locale -> component, and members of each component (CSR)
+    private final int[] componentOf;
+    private final int[] componentOffsets;
+    private final int[] componentMembers;
+    private final int[] articulationPoints;
+    private final List<int[]> bridges;
+    private final int[] strongComponentOf;
+    private final int numOfStrongComponents;
+    private final BitSet reachableFromFirst;
+
+    private BiGridConnectivityReport(BiGridGraph graph) {
+        this.graph = graph;
+        int n = graph.size();
+
+        // Weakly connected components, numbered by their first locale
+        IntUnionFind unionFind = BiGridConnectivityCheckerUF.unionFind(graph);
+        componentOf = new int[n];
+        int[] rootToComponent = new int[n];
+        Arrays.fill(rootToComponent, -1);
+        int numOfComponents = 0;
+        for (int v = 0; v < n; v++) {
+            int root = unionFind.find(v);
+            if (rootToComponent[root] < 0) {
+                rootToComponent[root] = numOfComponents++;
+            }
+            componentOf[v] = rootToComponent[root];
+        }
+        componentOffsets = new int[numOfComponents + 1];
+        for (int v = 0; v < n; v++) {
+            componentOffsets[componentOf[v] + 1]++;
+        }
+        for (int c = 0; c < numOfComponents; c++) {
+            componentOffsets[c + 1] += componentOffsets[c];
+        }
+        componentMembers = new int[n];
+        int[] fill = Arrays.copyOf(componentOffsets, numOfComponents);
+        for (int v = 0; v < n; v++) {
+            componentMembers[fill[componentOf[v]]++] = v;
+        }
+
+        // Articulation points and bridges of the undirected graph
+        int[][] undirected = undirectedGraph(graph);
+        List<int[]> foundBridges = new ArrayList<>();
+        boolean[] isArticulationPoint = new boolean[n];
+        findArticulationPointsAndBridges(n, undirected[0], undirected[1], undirected[2], isArticulationPoint, foundBridges);
+        int numOfArticulationPoints = 0;
+        for (boolean each : isArticulationPoint) {
+            if (each) numOfArticulationPoints++;
+        }
+        articulationPoints = new int[numOfArticulationPoints];
+        for (int v = 0, i = 0; v < n; v++) {
+            if (isArticulationPoint[v]) articulationPoints[i++] = v;
+        }
+        bridges = Collections.unmodifiableList(foundBridges);
+
+        // Directional reachability
+        strongComponentOf = new int[n];
+        numOfStrongComponents = findStronglyConnectedComponents(graph, strongComponentOf);
+        reachableFromFirst = n == 0 ? new BitSet() : BiGridConnectivityCheckerUF.reachableFrom(graph, 0);
+    }
+
+    public static BiGridConnectivityReport of(PureBigraph bigrid) {
+        return of(BiGridGraph.of(bigrid));
+    }
+
+    public static BiGridConnectivityReport of(BiGridGraph graph) {
+        return new BiGridConnectivityReport(graph);
+    }
+
+    public BiGridGraph getGraph() {
+        return graph;
+    }
+
+    // ---------- (weakly) connected components ----------
+
+    /**
+     * @return {@code true} if the bigrid consists of at most one component, ignoring the direction of routes
+     */
+    public boolean isConnected() {
+        return getNumOfComponents() <= 1;
+    }
+
+    public int getNumOfComponents() {
+        return componentOffsets.length - 1;
+    }
+
+    public int getComponentOf(int locale) {
+        return componentOf[locale];
+    }
+
+    public int getComponentSize(int component) {
+        return componentOffsets[component + 1] - componentOffsets[component];
+    }
+
+    /**
+     * @return the component with the most locales, or -1 for an empty bigrid
+     */
+    public int getLargestComponent() {
+        int largest = -1;
+        for (int c = 0; c < getNumOfComponents(); c++) {
+            if (largest < 0 || getComponentSize(c) > getComponentSize(largest)) {
+                largest = c;
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * @return the ids of the locales of a component in ascending order
+     */
+    public int[] getComponentMembers(int component) {
+        return Arrays.copyOfRange(componentMembers, componentOffsets[component], componentOffsets[component + 1]);
+    }
+
+    public List<BigraphEntity.NodeEntity<DynamicControl>> getComponentLocales(int component) {
+        List<BigraphEntity.NodeEntity<DynamicControl>> locales = new ArrayList<>(getComponentSize(component));
+        for (int i = componentOffsets[component]; i < componentOffsets[component + 1]; i++) {
+            locales.add(graph.getLocale(componentMembers[i]));
+        }
+        return locales;
+    }
+
+    public List<String> getComponentLabels(int component) {
+        List<String> labels = new ArrayList<>(getComponentSize(component));
+        for (int i = componentOffsets[component]; i < componentOffsets[component + 1]; i++) {
+            labels.add(graph.getLabel(componentMembers[i]));
+        }
+        return labels;
+    }
+
+    // ---------- articulation points and bridges ----------
+
+    /**
+     * @return the ids of the locales whose removal increases the number of components, in ascending order
+     */
+    public int[] getArticulationPoints() {
+        return articulationPoints.clone();
+    }
+
+    /**
+     * @return the pairs {@code [a, b]} (with {@code a < b}) of locales whose connection is the only one
+     * between two parts of a component
+     */
+    public List<int[]> getBridges() {
+        return bridges;
+    }
+
+    // ---------- directional reachability ----------
+
+    /**
+     * Checks if all locales are reachable from the first locale along the routes,
+     * like {@link BiGridConnectivityChecker#isFullyConnected(PureBigraph)}.
+     */
+    public boolean isFullyConnected() {
+        return reachableFromFirst.cardinality() == graph.size();
+    }
+
+    /**
+     * @return {@code true} if every locale can reach every other locale along the routes
+     */
+    public boolean isStronglyConnected() {
+        return numOfStrongComponents <= 1;
+    }
+
+    public int getNumOfStronglyConnectedComponents() {
+        return numOfStrongComponents;
+    }
+
+    public int getStronglyConnectedComponentOf(int locale) {
+        return strongComponentOf[locale];
+    }
+
+    /**
+     * @return the locales that are not reachable from the first locale along the routes
+     */
+    public List<BigraphEntity.NodeEntity<DynamicControl>> getUnreachableLocales() {
+        List<BigraphEntity.NodeEntity<DynamicControl>> unreachable = new ArrayList<>();
+        for (int v = reachableFromFirst.nextClearBit(0); v < graph.size(); v = reachableFromFirst.nextClearBit(v + 1)) {
+            unreachable.add(graph.getLocale(v));
+        }
+        return unreachable;
+    }
+
+    /**
+     * Checks if locale {@code to} can be reached from locale {@code from} along the routes.
+     * Locales of the same strongly connected component are answered immediately, otherwise a search is performed.
+     */
+    public boolean isReachable(int from, int to) {
+        if (strongComponentOf[from] == strongComponentOf[to]) {
+            return true;
+        }
+        if (componentOf[from] != componentOf[to]) {
+            return false;
+        }
+        return BiGridConnectivityCheckerUF.reachableFrom(graph, from).get(to);
+    }
+
+    // ---------- algorithms ----------
+
+    /**
+     * Creates the undirected simple graph (without parallel edges and loops) of the locale graph.
+     *
+     * @return {@code [offsets, neighbours, edgeIds]} in CSR form
+     */
+    private static int[][] undirectedGraph(BiGridGraph graph) {
+        int n = graph.size();
+        long[] pairs = new long[graph.getNumOfEdges()];
+        int numOfPairs = 0;
+        for (int v = 0; v < n; v++) {
+            for (int e = graph.getFirstEdge(v); e < graph.getFirstEdge(v + 1); e++) {
+                int w = graph.getTarget(e);
+                if (w != v) {
+                    pairs[numOfPairs++] = ((long) Math.min(v, w) << 32) | Math.max(v, w);
+                }
+            }
+        }
+        Arrays.sort(pairs, 0, numOfPairs);
+        int numOfEdges = 0;
+        for (int i = 0; i < numOfPairs; i++) {
+            if (i == 0 || pairs[i] != pairs[i - 1]) {
+                pairs[numOfEdges++] = pairs[i];
+            }
+        }
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < numOfEdges; i++) {
+            offsets[(int) (pairs[i] >>> 32) + 1]++;
+            offsets[(int) pairs[i] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] neighbours = new int[2 * numOfEdges];
+        int[] edgeIds = new int[2 * numOfEdges];
+        int[] fill = Arrays.copyOf(offsets, n);
+        for (int i = 0; i < numOfEdges; i++) {
+            int a = (int) (pairs[i] >>> 32);
+            int b = (int) pairs[i];
+            neighbours[fill[a]] = b;
+            edgeIds[fill[a]++] = i;
+            neighbours[fill[b]] = a;
+            edgeIds[fill[b]++] = i;
+        }
+        return new int[][]{offsets, neighbours, edgeIds};
+    }
+
+    // Iterative variant of the lowpoint algorithm of Hopcroft and Tarjan
+    private static void findArticulationPointsAndBridges(int n, int[] offsets, int[] neighbours, int[] edgeIds,
+                                                         boolean[] isArticulationPoint, List<int[]> bridges) {
+        int[] discovery = new int[n];
+        int[] low = new int[n];
+        int[] parentEdge = new int[n];
+        int[] next = new int[n];
+        int[] stack = new int[n];
+        Arrays.fill(discovery, -1);
+        int time = 0;
+        for (int s = 0; s < n; s++) {
+            if (discovery[s] >= 0) continue;
+            int rootChildren = 0;
+            int sp = 0;
+            stack[sp++] = s;
+            discovery[s] = low[s] = time++;
+            parentEdge[s] = -1;
+            next[s] = offsets[s];
+            while (sp > 0) {
+                int v = stack[sp - 1];
+                if (next[v] < offsets[v + 1]) {
+                    int k = next[v]++;
+                    int w = neighbours[k];
+                    if (edgeIds[k] == parentEdge[v]) continue;
+                    if (discovery[w] < 0) {
+                        parentEdge[w] = edgeIds[k];
+                        discovery[w] = low[w] = time++;
+                        next[w] = offsets[w];
+                        stack[sp++] = w;
+                        if (v == s) rootChildren++;
+                    } else {
+                        low[v] = Math.min(low[v], discovery[w]);
+                    }
+                } else {
+                    sp--;
+                    if (sp > 0) {
+                        int p = stack[sp - 1];
+                        low[p] = Math.min(low[p], low[v]);
+                        if (low[v] > discovery[p]) {
+                            bridges.add(new int[]{Math.min(p, v), Math.max(p, v)});
+                        }
+                        if (p != s && low[v] >= discovery[p]) {
+                            isArticulationPoint[p] = true;
+                        }
+                    }
+                }
+            }
+            if (rootChildren > 1) {
+                isArticulationPoint[s] = true;
+            }
+        }
+    }
+
+    // Iterative variant of Tarjan's algorithm; returns the number of strongly connected components
+    private static int findStronglyConnectedComponents(BiGridGraph graph, int[] componentOf) {
+        int n = graph.size();
+        int[] index = new int[n];
+        int[] low = new int[n];
+        int[] next = new int[n];
+        int[] callStack = new int[n];
+        int[] sccStack = new int[n];
+        boolean[] onStack = new boolean[n];
+        Arrays.fill(index, -1);
+        int counter = 0;
+        int numOfComponents = 0;
+        for (int s = 0; s < n; s++) {
+            if (index[s] >= 0) continue;
+            int csp = 0;
+            int ssp = 0;
+            callStack[csp++] = s;
+            index[s] = low[s] = counter++;
+            sccStack[ssp++] = s;
+            onStack[s] = true;
+            next[s] = graph.getFirstEdge(s);
+            while (csp > 0) {
+                int v = callStack[csp - 1];
+                if (next[v] < graph.getFirstEdge(v + 1)) {
+                    int w = graph.getTarget(next[v]++);
+                    if (index[w] < 0) {
+                        index[w] = low[w] = counter++;
+                        sccStack[ssp++] = w;
+                        onStack[w] = true;
+                        next[w] = graph.getFirstEdge(w);
+                        callStack[csp++] = w;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                } else {
+                    csp--;
+                    if (csp > 0) {
+                        int p = callStack[csp - 1];
+                        low[p] = Math.min(low[p], low[v]);
+                    }
+                    if (low[v] == index[v]) {
+                        int w;
+                        do {
+                            w = sccStack[--ssp];
+                            onStack[w] = false;
+                            componentOf[w] = numOfComponents;
+                        } while (w != v);
+                        numOfComponents++;
+                    }
+                }
+            }
+        }
+        return numOfComponents;
+    }
+}
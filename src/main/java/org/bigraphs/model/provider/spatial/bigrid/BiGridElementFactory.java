@@ -10,19 +10,43 @@ import org.bigraphs.framework.core.impl.signature.DynamicSignature;
 import org.bigraphs.model.provider.spatial.signature.BiSpaceSignatureProvider;
 
 import java.awt.geom.Point2D;
-import java.lang.reflect.Method;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntBinaryOperator;
 
 import static org.bigraphs.framework.core.factory.BigraphFactory.pureBuilder;
 
 
+/**
+ * Creates the bigraphs of the tiles of a world generated by Wave Function Collapse (see {@link World}).
+ * <p>
+ * {@link #createElement(int, float, float, float)} creates the locale of a single tile as a separate bigraph, which
+ * has to be combined with the others by the parallel product.
+ * {@link #createBiGrid(World, float)} instead builds the locales of all tiles with a single builder in one pass over
+ * the tiles, using a template of route offsets per tile type that is derived from the routes of the tile set.
+ */
 public class BiGridElementFactory {
     DynamicSignature signature;
     @Setter
     @Getter
     boolean withSite = true;
 
-    private final Map<Integer, String> methodMap;
+    // Route targets of each tile type of createElement(), as offsets (x, y) in steps from the tile; null for unsupported tile types
+    private static final int[][][] ROUTE_TEMPLATES = new int[TileSet.MAX_TILE_TYPES][][];
+
+    static {
+        ROUTE_TEMPLATES[BiGridConfig.TILE_BLANK] = new int[0][];
+        ROUTE_TEMPLATES[BiGridConfig.TILE_LOCALE_N] = new int[][]{{-1, 0}};
+        ROUTE_TEMPLATES[BiGridConfig.TILE_LOCALE_E] = new int[][]{{0, 1}};
+        ROUTE_TEMPLATES[BiGridConfig.TILE_LOCALE_S] = new int[][]{{1, 0}};
+        ROUTE_TEMPLATES[BiGridConfig.TILE_LOCALE_W] = new int[][]{{0, -1}};
+        ROUTE_TEMPLATES[BiGridConfig.TILE_LOCALE_NE] = new int[][]{{-1, 0}, {0, 1}};
+        ROUTE_TEMPLATES[BiGridConfig.TILE_LOCALE_SE] = new int[][]{{1, 0}, {0, 1}};
+        ROUTE_TEMPLATES[BiGridConfig.TILE_LOCALE_SW] = new int[][]{{1, 0}, {0, -1}};
+        ROUTE_TEMPLATES[BiGridConfig.TILE_LOCALE_NW] = new int[][]{{-1, 0}, {0, -1}};
+        ROUTE_TEMPLATES[BiGridConfig.TILE_LOCALE_NESW] = new int[][]{{-1, 0}, {0, 1}, {1, 0}, {0, -1}};
+        ROUTE_TEMPLATES[BiGridConfig.TILE_LOCALE_1_ROUTE_UNDIRECTED] = new int[][]{{1, 1}};
+    }
 
     public static BiGridElementFactory create() {
         return new BiGridElementFactory(BiSpaceSignatureProvider.getInstance().getSignature());
@@ -34,32 +58,135 @@ public class BiGridElementFactory {
 
     private BiGridElementFactory(DynamicSignature signature) {
         this.signature = signature;
-        // Populate the map with TILE types and corresponding method names
-        this.methodMap = Map.of(
-                BiGridConfig.TILE_BLANK, "localeBlank",
-                BiGridConfig.TILE_LOCALE_N, "localeSingleRouteNorth",
-                BiGridConfig.TILE_LOCALE_E, "localeSingleRouteEast",
-                BiGridConfig.TILE_LOCALE_S, "localeSingleRouteSouth",
-                BiGridConfig.TILE_LOCALE_W, "localeSingleRouteWest",
-                BiGridConfig.TILE_LOCALE_NESW, "crossingFour",
-                BiGridConfig.TILE_LOCALE_1_ROUTE_UNDIRECTED, "localeSingleOneRoute"
-        );
-        // Validate method existence at initialization - throw exception otherwise
-        assertMethodsExist();
-    }
-
-    public PureBigraph createElement(int type, float x, float y, float stepSize) throws Exception {
-        String methodName = methodMap.get(type);
-
-        if (methodName == null) {
-            throw new IllegalArgumentException("Unknown tile type: " + type);
+    }
+
+    public PureBigraph createElement(int type, float x, float y, float stepSize) throws InvalidConnectionException {
+        switch (type) {
+            case BiGridConfig.TILE_BLANK:
+                return localeBlank(x, y, stepSize);
+            case BiGridConfig.TILE_LOCALE_N:
+                return localeSingleRouteNorth(x, y, stepSize);
+            case BiGridConfig.TILE_LOCALE_E:
+                return localeSingleRouteEast(x, y, stepSize);
+            case BiGridConfig.TILE_LOCALE_S:
+                return localeSingleRouteSouth(x, y, stepSize);
+            case BiGridConfig.TILE_LOCALE_W:
+                return localeSingleRouteWest(x, y, stepSize);
+            case BiGridConfig.TILE_LOCALE_NE:
+                return localeCornerNorthEast(x, y, stepSize);
+            case BiGridConfig.TILE_LOCALE_SE:
+                return localeCornerSouthEast(x, y, stepSize);
+            case BiGridConfig.TILE_LOCALE_SW:
+                return localeCornerSouthWest(x, y, stepSize);
+            case BiGridConfig.TILE_LOCALE_NW:
+                return localeCornerNorthWest(x, y, stepSize);
+            case BiGridConfig.TILE_LOCALE_NESW:
+                return crossingFour(x, y, stepSize);
+            case BiGridConfig.TILE_LOCALE_1_ROUTE_UNDIRECTED:
+                return localeSingleOneRoute(x, y, stepSize);
+            default:
+                throw new IllegalArgumentException("Unknown tile type: " + type);
+        }
+    }
+
+    /**
+     * Builds the bigrid of a collapsed world.
+     * <p>
+     * Tile {@code (x, y)} becomes the locale at {@code (x * stepSize, y * stepSize)} with the routes of its tile type,
+     * i.e., a route to the neighbour in each direction of {@link TileSet#getRoutes(BiGridConfig.Direction)} of the
+     * tile set of the world. All locales are placed under a single root, so for the tile sets of
+     * {@link BiGridConfig} on the {@link TileSet.Topology#GRID} the result equals the parallel product of the
+     * elements of {@link #createElement(int, float, float, float)} nested into a merge, except that each locale
+     * (including blank ones) contains its site if {@link #isWithSite()}. Routes of tiles at the border may point to
+     * locales outside the world.
+     *
+     * @throws IllegalStateException    if a tile of the world is contradicting
+     * @throws IllegalArgumentException if the world has more than one layer, or its tile set is three-dimensional
+     *                                  or has no routes
+     */
+    public PureBigraph createBiGrid(World world, float stepSize) throws InvalidConnectionException {
+        if (world.getSizeZ() > 1) {
+            throw new IllegalArgumentException("Bigrids are two-dimensional, but the world has " + world.getSizeZ() + " layers");
         }
+        return createBiGrid(world.getSizeX(), world.getSizeY(), world::getType, routeTemplates(world.getTileSet()), stepSize);
+    }
+
+    /**
+     * Builds the bigrid of the tile types with the routes of the tile set.
+     *
+     * @param types the tile types, indexed by x and y
+     * @throws IllegalArgumentException if the tile set is three-dimensional or has no routes, or a tile type is not
+     *                                  part of it
+     * @see #createBiGrid(World, float)
+     */
+    public PureBigraph createBiGrid(int[][] types, TileSet tileSet, float stepSize) throws InvalidConnectionException {
+        return createBiGrid(types.length, types.length == 0 ? 0 : types[0].length, (x, y) -> types[x][y],
+                routeTemplates(tileSet), stepSize);
+    }
+
+    /**
+     * Builds the bigrid of the tile types, e.g., as generated by {@link ChunkedWorldGenerator#generate()}, with the
+     * routes of the elements of {@link #createElement(int, float, float, float)}.
+     *
+     * @param types the tile types, indexed by x and y
+     * @throws IllegalArgumentException if a tile type is unknown
+     * @see #createBiGrid(World, float)
+     */
+    public PureBigraph createBiGrid(int[][] types, float stepSize) throws InvalidConnectionException {
+        return createBiGrid(types.length, types.length == 0 ? 0 : types[0].length, (x, y) -> types[x][y],
+                ROUTE_TEMPLATES, stepSize);
+    }
 
-        // Get the method by name, assuming it takes two int parameters
-        Method method = this.getClass().getMethod(methodName, float.class, float.class, float.class);
+    // Route targets of each tile type of the tile set, in the order of the directions of its topology
+    private static int[][][] routeTemplates(TileSet tileSet) {
+        if (tileSet.getTopology() == TileSet.Topology.GRID_3D) {
+            throw new IllegalArgumentException("Bigrids are two-dimensional, tile sets of the topology "
+                    + tileSet.getTopology() + " are not supported");
+        }
+        if (!tileSet.hasRoutes()) {
+            throw new IllegalArgumentException("The tile set has no routes");
+        }
+        int[][][] templates = new int[TileSet.MAX_TILE_TYPES][][];
+        for (long rest = tileSet.getAllTiles(); rest != 0; rest &= rest - 1) {
+            int type = Long.numberOfTrailingZeros(rest);
+            List<int[]> offsets = new ArrayList<>();
+            for (BiGridConfig.Direction direction : tileSet.getTopology().getDirections()) {
+                if ((tileSet.getRoutes(direction) & 1L << type) != 0) {
+                    offsets.add(new int[]{direction.getDx(), direction.getDy()});
+                }
+            }
+            templates[type] = offsets.toArray(new int[0][]);
+        }
+        return templates;
+    }
 
-        // Invoke the method dynamically
-        return (PureBigraph) method.invoke(this, x, y, stepSize);
+    private PureBigraph createBiGrid(int sizeX, int sizeY, IntBinaryOperator typeAt, int[][][] templates, float stepSize) throws InvalidConnectionException {
+        // Labels of all locales, including a border of one step around the world for the routes leaving it
+        BiGridLabelFormatter labelFormatter = new BiGridLabelFormatter();
+        int width = sizeY + 2;
+        String[] labels = new String[(sizeX + 2) * width];
+        for (int x = -1; x <= sizeX; x++) {
+            for (int y = -1; y <= sizeY; y++) {
+                labels[(x + 1) * width + (y + 1)] = labelFormatter.label(x * stepSize, y * stepSize);
+            }
+        }
+        PureBigraphBuilder<DynamicSignature> builder = pureBuilder(signature);
+        PureBigraphBuilder<DynamicSignature>.Hierarchy root = builder.root();
+        for (int x = 0; x < sizeX; x++) {
+            for (int y = 0; y < sizeY; y++) {
+                int type = typeAt.applyAsInt(x, y);
+                int[][] template = type >= 0 && type < templates.length ? templates[type] : null;
+                if (template == null) {
+                    throw new IllegalArgumentException("Unknown tile type: " + type);
+                }
+                PureBigraphBuilder<DynamicSignature>.Hierarchy locale = root.child("Locale", labels[(x + 1) * width + (y + 1)]).down();
+                for (int[] offset : template) {
+                    locale.child("Route", labels[(x + 1 + offset[0]) * width + (y + 1 + offset[1])]);
+                }
+                addSiteToLocale(locale);
+            }
+        }
+        return builder.create();
     }
 
     public PureBigraph localeSingleRouteNorth(float x, float y, float stepSize) throws InvalidConnectionException {
@@ -127,6 +254,35 @@ public class BiGridElementFactory {
         return builder.create();
     }
 
+    public PureBigraph localeCornerNorthEast(float x, float y, float stepSize) throws InvalidConnectionException {
+        return localeCorner(x, y, new Point2D.Float(x - stepSize, y), new Point2D.Float(x, y + stepSize));
+    }
+
+    public PureBigraph localeCornerSouthEast(float x, float y, float stepSize) throws InvalidConnectionException {
+        return localeCorner(x, y, new Point2D.Float(x + stepSize, y), new Point2D.Float(x, y + stepSize));
+    }
+
+    public PureBigraph localeCornerSouthWest(float x, float y, float stepSize) throws InvalidConnectionException {
+        return localeCorner(x, y, new Point2D.Float(x + stepSize, y), new Point2D.Float(x, y - stepSize));
+    }
+
+    public PureBigraph localeCornerNorthWest(float x, float y, float stepSize) throws InvalidConnectionException {
+        return localeCorner(x, y, new Point2D.Float(x - stepSize, y), new Point2D.Float(x, y - stepSize));
+    }
+
+    // L-tile: a locale with routes to two orthogonal neighbours
+    private PureBigraph localeCorner(float x, float y, Point2D.Float vertical, Point2D.Float horizontal) throws InvalidConnectionException {
+        PureBigraphBuilder<DynamicSignature> builder = pureBuilder(signature);
+        Point2D.Float self = new Point2D.Float(x, y);
+        String localeLinkName = BiGridSupport.formatParamControl(self);
+        PureBigraphBuilder<DynamicSignature>.Hierarchy locale = builder.root()
+                .child("Locale", localeLinkName).down();
+        locale.child("Route", BiGridSupport.formatParamControl(vertical))
+                .child("Route", BiGridSupport.formatParamControl(horizontal));
+        addSiteToLocale(locale);
+        return builder.create();
+    }
+
     public PureBigraph localeBlank(float x, float y, float stepSize) throws InvalidConnectionException {
         PureBigraphBuilder<DynamicSignature> builder = pureBuilder(signature);
         Point2D.Float self = new Point2D.Float(x, y);
@@ -170,19 +326,4 @@ public class BiGridElementFactory {
             localeHierarchy.site();
         }
     }
-
-    private void assertMethodsExist() {
-        Class<?> clazz = this.getClass();
-        for (Map.Entry<Integer, String> entry : methodMap.entrySet()) {
-            String methodName = entry.getValue();
-            try {
-                Method method = clazz.getMethod(methodName, float.class, float.class, float.class);
-                if (!method.getReturnType().equals(PureBigraph.class)) {
-                    throw new AssertionError("Method " + methodName + " must return PureBigraph");
-                }
-            } catch (NoSuchMethodException e) {
-                throw new AssertionError("Method " + methodName + " not found in " + clazz.getName(), e);
-            }
-        }
-    }
 }
@@ -0,0 +1,381 @@
+package org.bigraphs.model.provider.spatial.bigrid;
+
+import org.bigraphs.framework.core.BigraphEntityType;
+import org.bigraphs.framework.core.Control;
+import org.bigraphs.framework.core.impl.BigraphEntity;
+import org.bigraphs.framework.core.impl.pure.PureBigraph;
+import org.bigraphs.framework.core.impl.signature.DynamicControl;
+import org.bigraphs.model.provider.base.BLocationModelData;
+import org.bigraphs.model.provider.spatial.signature.BiSpaceSignatureProvider;
+import org.bigraphs.model.provider.util.LongIntHashMap;
+
+import java.awt.geom.Point2D;
+import java.util.*;
+
+/**
+ * The locale graph of a bigrid in compressed sparse row (CSR) form.
+ * <p>
+ * Each Locale node gets an integer id {@code 0..size()-1} (in the order of {@link PureBigraph#getNodes()}).
+ * There is a directed edge from locale {@code a} to locale {@code b} for each route node nested in {@code a}
+ * that is linked to the same link (usually the outer name carrying the coordinate label) as {@code b}.
+ * Route nodes are all nodes whose control ends with {@code Route}, so the directional variants
+ * (e.g., {@code ForwardRoute}, {@code UpRoute}) are included.
+ * <p>
+ * The graph is built in one pass over the locales and their routes using a link → locales index,
+ * so the construction is linear in the size of the bigraph.
+ * The outgoing edges of locale {@code v} are {@code getTarget(e)} for {@code e} in
+ * {@code getFirstEdge(v) .. getFirstEdge(v + 1) - 1}.
+ * <p>
+ * Each locale has a coordinate (parsed from its 2D or 3D label, or the center of the locale in a
+ * {@link BLocationModelData}), and each edge is weighted by the Euclidean distance of its locales.
+ * Edges also keep the control of their route node (e.g., {@code ForwardRoute}, {@code UpRoute}) as route type,
+ * so that direction-aware queries do not have to traverse the bigraph again.
+ * A graph can also be compiled directly from a {@link BLocationModelData}, see {@link #of(BLocationModelData, BiGridProvider.RouteDirection)}.
+ */
+public final class BiGridGraph {
+
+    private final List<BigraphEntity.NodeEntity<DynamicControl>> locales;
+    private final String[] labels;
+    private final int[] offsets;
+    private final int[] targets;
+    private final Map<BigraphEntity.NodeEntity<DynamicControl>, Integer> localeToId;
+    private volatile Map<String, Integer> labelToId; // created on demand
+    // x, y, z of each locale
+    private final float[] coordinates;
+    private final float[] weights;
+    // route type id of each edge
+    private final short[] edgeTypes;
+    private final List<String> routeTypes;
+
+    private BiGridGraph(List<BigraphEntity.NodeEntity<DynamicControl>> locales, String[] labels, int[] offsets, int[] targets,
+                        Map<BigraphEntity.NodeEntity<DynamicControl>, Integer> localeToId, float[] coordinates,
+                        short[] edgeTypes, List<String> routeTypes) {
+        this.locales = locales;
+        this.labels = labels;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.localeToId = localeToId;
+        this.coordinates = coordinates;
+        this.edgeTypes = edgeTypes;
+        this.routeTypes = Collections.unmodifiableList(routeTypes);
+        this.weights = new float[targets.length];
+        for (int v = 0; v < labels.length; v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                weights[e] = distance(v, targets[e]);
+            }
+        }
+    }
+
+    /**
+     * Creates the locale graph of the given bigrid.
+     *
+     * @param bigrid the bigrid
+     * @return the locale graph
+     */
+    public static BiGridGraph of(PureBigraph bigrid) {
+        if (bigrid == null) {
+            throw new IllegalArgumentException("Bigrid cannot be null");
+        }
+        List<BigraphEntity.NodeEntity<DynamicControl>> locales = new ArrayList<>();
+        Map<BigraphEntity.NodeEntity<DynamicControl>, Integer> localeToId = new IdentityHashMap<>();
+        for (BigraphEntity.NodeEntity<DynamicControl> node : bigrid.getNodes()) {
+            if (node.getControl().getNamedType().stringValue().equals(BiSpaceSignatureProvider.LOCALE_TYPE)) {
+                localeToId.put(node, locales.size());
+                locales.add(node);
+            }
+        }
+        int numOfLocales = locales.size();
+
+        // Index: link -> locales linked to it (CSR)
+        Map<BigraphEntity.Link, Integer> linkToId = new HashMap<>();
+        String[] labels = new String[numOfLocales];
+        int[] pairLink = new int[numOfLocales];
+        int[] pairLocale = new int[numOfLocales];
+        int numOfPairs = 0;
+        for (int v = 0; v < numOfLocales; v++) {
+            for (BigraphEntity.Link link : bigrid.getIncidentLinksOf(locales.get(v))) {
+                if (labels[v] == null && link instanceof BigraphEntity.OuterName outerName) {
+                    labels[v] = outerName.getName();
+                }
+                if (numOfPairs == pairLink.length) {
+                    pairLink = Arrays.copyOf(pairLink, numOfPairs * 2 + 1);
+                    pairLocale = Arrays.copyOf(pairLocale, numOfPairs * 2 + 1);
+                }
+                Integer linkId = linkToId.get(link);
+                if (linkId == null) {
+                    linkId = linkToId.size();
+                    linkToId.put(link, linkId);
+                }
+                pairLink[numOfPairs] = linkId;
+                pairLocale[numOfPairs++] = v;
+            }
+        }
+        int[] linkOffsets = new int[linkToId.size() + 1];
+        for (int p = 0; p < numOfPairs; p++) {
+            linkOffsets[pairLink[p] + 1]++;
+        }
+        for (int l = 0; l < linkToId.size(); l++) {
+            linkOffsets[l + 1] += linkOffsets[l];
+        }
+        int[] linkLocales = new int[numOfPairs];
+        int[] fill = Arrays.copyOf(linkOffsets, linkToId.size());
+        for (int p = 0; p < numOfPairs; p++) {
+            linkLocales[fill[pairLink[p]]++] = pairLocale[p];
+        }
+
+        // Edges: locale -> locales linked to the links of its routes; created in the order of the source
+        int[] offsets = new int[numOfLocales + 1];
+        int[] targets = new int[Math.max(4, numOfLocales * 4)];
+        short[] edgeTypes = new short[targets.length];
+        List<String> routeTypes = new ArrayList<>();
+        Map<String, Short> routeTypeToId = new HashMap<>();
+        int numOfEdges = 0;
+        for (int v = 0; v < numOfLocales; v++) {
+            for (BigraphEntity<?> child : bigrid.getChildrenOf(locales.get(v))) {
+                if (!isRoute(child)) continue;
+                short type = routeTypeToId.computeIfAbsent(child.getControl().getNamedType().stringValue(), routeType -> {
+                    routeTypes.add(routeType);
+                    return (short) (routeTypes.size() - 1);
+                });
+                for (BigraphEntity.Link link : bigrid.getIncidentLinksOf((BigraphEntity.NodeEntity<? extends Control<?, ?>>) child)) {
+                    Integer linkId = linkToId.get(link);
+                    if (linkId == null) continue;
+                    for (int p = linkOffsets[linkId]; p < linkOffsets[linkId + 1]; p++) {
+                        if (linkLocales[p] == v) continue;
+                        if (numOfEdges == targets.length) {
+                            targets = Arrays.copyOf(targets, numOfEdges * 2);
+                            edgeTypes = Arrays.copyOf(edgeTypes, numOfEdges * 2);
+                        }
+                        edgeTypes[numOfEdges] = type;
+                        targets[numOfEdges++] = linkLocales[p];
+                    }
+                }
+            }
+            offsets[v + 1] = numOfEdges;
+        }
+        float[] coordinates = new float[3 * numOfLocales];
+        for (int v = 0; v < numOfLocales; v++) {
+            parseCoordinate(labels[v], coordinates, 3 * v);
+        }
+        return new BiGridGraph(locales, labels, offsets, Arrays.copyOf(targets, numOfEdges), localeToId, coordinates,
+                Arrays.copyOf(edgeTypes, numOfEdges), routeTypes);
+    }
+
+    /**
+     * Compiles the locale graph of a location model without creating the bigrid.
+     * <p>
+     * Locales are sorted by their index, which is then their id. Routes connect the locales whose centers have the
+     * same {@link GridKey} as their endpoints, and are translated according to the route direction like
+     * {@link BiGridProvider} does. All edges have the route type {@link BiSpaceSignatureProvider#ROUTE_TYPE}.
+     * There are no locale nodes, i.e., {@link #getLocale(int)} returns {@code null}.
+     *
+     * @param lmpd           the location model
+     * @param routeDirection the route direction
+     * @return the locale graph
+     */
+    public static BiGridGraph of(BLocationModelData lmpd, BiGridProvider.RouteDirection routeDirection) {
+        List<BLocationModelData.Locale> sorted = BLocationModelData.sortByIndex(lmpd.getLocales());
+        List<BLocationModelData.Route> routes = BLocationModelData.sortByIndex(lmpd.getRoutes());
+        int numOfLocales = sorted.size();
+        String[] labels = new String[numOfLocales];
+        float[] coordinates = new float[3 * numOfLocales];
+        BiGridLabelFormatter labelFormatter = new BiGridLabelFormatter();
+        for (int v = 0; v < numOfLocales; v++) {
+            Point2D.Float center = sorted.get(v).getCenter();
+            labels[v] = labelFormatter.label(center);
+            coordinates[3 * v] = center.x;
+            coordinates[3 * v + 1] = center.y;
+        }
+
+        LongIntHashMap gridKeyIndex = BiGridSupport.createGridKeyIndex(sorted);
+        int[] routeStart = new int[routes.size()];
+        int[] routeEnd = new int[routes.size()];
+        int[] offsets = new int[numOfLocales + 1];
+        boolean forward = routeDirection != BiGridProvider.RouteDirection.UNIDIRECTIONAL_BACKWARD;
+        boolean backward = routeDirection != BiGridProvider.RouteDirection.UNIDIRECTIONAL_FORWARD;
+        for (int r = 0; r < routes.size(); r++) {
+            routeStart[r] = gridKeyIndex.get(GridKey.ofCoordinate(routes.get(r).getStartingPoint()));
+            routeEnd[r] = gridKeyIndex.get(GridKey.ofCoordinate(routes.get(r).getEndingPoint()));
+            if (routeStart[r] < 0 || routeEnd[r] < 0 || routeStart[r] == routeEnd[r]) {
+                routeStart[r] = -1;
+                continue;
+            }
+            if (forward) offsets[routeStart[r] + 1]++;
+            if (backward) offsets[routeEnd[r] + 1]++;
+        }
+        for (int v = 0; v < numOfLocales; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] targets = new int[offsets[numOfLocales]];
+        int[] fill = Arrays.copyOf(offsets, numOfLocales);
+        for (int r = 0; r < routes.size(); r++) {
+            if (routeStart[r] < 0) continue;
+            if (forward) targets[fill[routeStart[r]]++] = routeEnd[r];
+            if (backward) targets[fill[routeEnd[r]]++] = routeStart[r];
+        }
+        return new BiGridGraph(Collections.nCopies(numOfLocales, null), labels, offsets, targets, new IdentityHashMap<>(), coordinates,
+                new short[targets.length], List.of(BiSpaceSignatureProvider.ROUTE_TYPE));
+    }
+
+    // x, y (and z) of 2D and 3D labels; NaN if the label is missing or not a coordinate
+    private static void parseCoordinate(String label, float[] coordinates, int offset) {
+        try {
+            if (label != null && label.indexOf("__", label.indexOf("__") + 2) > 0) {
+                float[] xyz = BiGridLabelParser.parse3D(label);
+                System.arraycopy(xyz, 0, coordinates, offset, 3);
+                return;
+            }
+            if (label != null) {
+                Point2D.Float xy = BiGridLabelParser.parse(label);
+                coordinates[offset] = xy.x;
+                coordinates[offset + 1] = xy.y;
+                return;
+            }
+        } catch (IllegalArgumentException e) {
+            // no coordinate label
+        }
+        Arrays.fill(coordinates, offset, offset + 3, Float.NaN);
+    }
+
+    static boolean isRoute(BigraphEntity<?> entity) {
+        return BigraphEntityType.isNode(entity) && entity.getControl().getNamedType().stringValue().endsWith("Route");
+    }
+
+    /**
+     * @return the number of locales
+     */
+    public int size() {
+        return locales.size();
+    }
+
+    public int getNumOfEdges() {
+        return targets.length;
+    }
+
+    public int getFirstEdge(int locale) {
+        return offsets[locale];
+    }
+
+    public int getTarget(int edge) {
+        return targets[edge];
+    }
+
+    /**
+     * @return the Euclidean distance of the locales of the edge, or {@link Float#NaN} if a coordinate is unknown
+     */
+    public float getWeight(int edge) {
+        return weights[edge];
+    }
+
+    /**
+     * @return the control of the route node of the edge, e.g., {@code ForwardRoute}
+     */
+    public String getRouteType(int edge) {
+        return routeTypes.get(edgeTypes[edge]);
+    }
+
+    /**
+     * @return the index of the route type of the edge in {@link #getRouteTypes()}
+     */
+    public int getRouteTypeId(int edge) {
+        return edgeTypes[edge];
+    }
+
+    /**
+     * @return the distinct route types of the graph in the order of their first occurrence
+     */
+    public List<String> getRouteTypes() {
+        return routeTypes;
+    }
+
+    public float getX(int locale) {
+        return coordinates[3 * locale];
+    }
+
+    public float getY(int locale) {
+        return coordinates[3 * locale + 1];
+    }
+
+    public float getZ(int locale) {
+        return coordinates[3 * locale + 2];
+    }
+
+    /**
+     * @return the Euclidean distance between the coordinates of two locales
+     */
+    public float distance(int a, int b) {
+        float dx = coordinates[3 * a] - coordinates[3 * b];
+        float dy = coordinates[3 * a + 1] - coordinates[3 * b + 1];
+        float dz = coordinates[3 * a + 2] - coordinates[3 * b + 2];
+        return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Creates the graph with all edges reversed, e.g., to compute distances <em>to</em> a locale.
+     * Locale ids, coordinates and route types are the same as in this graph.
+     *
+     * @return the reverse graph
+     */
+    public BiGridGraph reverse() {
+        int numOfLocales = labels.length;
+        int[] reverseOffsets = new int[numOfLocales + 1];
+        for (int target : targets) {
+            reverseOffsets[target + 1]++;
+        }
+        for (int v = 0; v < numOfLocales; v++) {
+            reverseOffsets[v + 1] += reverseOffsets[v];
+        }
+        int[] reverseTargets = new int[targets.length];
+        short[] reverseEdgeTypes = new short[targets.length];
+        int[] fill = Arrays.copyOf(reverseOffsets, numOfLocales);
+        for (int v = 0; v < numOfLocales; v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                int r = fill[targets[e]]++;
+                reverseTargets[r] = v;
+                reverseEdgeTypes[r] = edgeTypes[e];
+            }
+        }
+        return new BiGridGraph(locales, labels, reverseOffsets, reverseTargets, localeToId, coordinates,
+                reverseEdgeTypes, routeTypes);
+    }
+
+    public int getOutDegree(int locale) {
+        return offsets[locale + 1] - offsets[locale];
+    }
+
+    public BigraphEntity.NodeEntity<DynamicControl> getLocale(int id) {
+        return locales.get(id);
+    }
+
+    /**
+     * @return the coordinate label (outer name) of the locale, or {@code null} if the locale is not linked to one
+     */
+    public String getLabel(int id) {
+        return labels[id];
+    }
+
+    /**
+     * @return the id of the locale node, or -1
+     */
+    public int indexOf(BigraphEntity.NodeEntity<DynamicControl> locale) {
+        Integer id = localeToId.get(locale);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @return the id of the locale with the given coordinate label, or -1
+     */
+    public int indexOf(String label) {
+        if (labelToId == null) {
+            Map<String, Integer> index = new HashMap<>();
+            for (int v = 0; v < labels.length; v++) {
+                if (labels[v] != null) {
+                    index.putIfAbsent(labels[v], v);
+                }
+            }
+            labelToId = index;
+        }
+        Integer id = labelToId.get(label);
+        return id == null ? -1 : id;
+    }
+}
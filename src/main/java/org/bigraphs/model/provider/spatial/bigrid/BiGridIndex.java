@@ -0,0 +1,144 @@
+package org.bigraphs.model.provider.spatial.bigrid;
+
+import org.bigraphs.framework.core.BigraphEntityType;
+import org.bigraphs.framework.core.impl.BigraphEntity;
+import org.bigraphs.framework.core.impl.pure.PureBigraph;
+import org.bigraphs.framework.core.impl.signature.DynamicControl;
+import org.bigraphs.model.provider.spatial.signature.BiSpaceSignatureProvider;
+
+import java.awt.geom.Point2D;
+import java.util.*;
+
+/**
+ * An index of the locales of a bigrid: coordinate label ↔ locale node ↔ site index.
+ * <p>
+ * The index is built by one pass over the nodes and sites of the bigrid, and answers all queries in constant time.
+ * Both label formats of bigrids are supported:
+ * <ul>
+ *     <li>Locale nodes linked to an outer name that is the coordinate label (as created by the providers)</li>
+ *     <li>Nodes whose control is the coordinate label (i.e., starts with {@code C_}); the locale is the grandparent
+ *     of such a node</li>
+ * </ul>
+ * An index is an immutable snapshot of the bigrid at the time of its creation and is owned by the caller, who
+ * creates it once by {@link #create(PureBigraph)} and keeps it as long as the bigrid is not modified. Nothing is
+ * cached globally; a modified bigrid needs a new index.
+ * <p>
+ * Unlike {@link BiGridSupport.Search#findLocaleSiteIndexByCoordinate(String, PureBigraph)}, which only finds the
+ * second label format, {@link #getSiteIndex(String)} finds locales of both formats. If a locale has several sites,
+ * the index returns the site that comes first in {@link PureBigraph#getSites()}.
+ *
+ * @see BiGridSupport.Search#findLocaleSiteIndexByCoordinate(String, PureBigraph)
+ */
+public final class BiGridIndex {
+
+    private final Map<String, BigraphEntity.NodeEntity<DynamicControl>> labelToLocale = new HashMap<>();
+    private final Map<BigraphEntity.NodeEntity<DynamicControl>, String> localeToLabel = new IdentityHashMap<>();
+    private final Map<BigraphEntity.NodeEntity<DynamicControl>, Integer> localeToSiteIndex = new IdentityHashMap<>();
+    private final List<BigraphEntity.NodeEntity<DynamicControl>> siteIndexToLocale = new ArrayList<>();
+
+    private BiGridIndex(PureBigraph bigrid) {
+        for (BigraphEntity.NodeEntity<DynamicControl> node : bigrid.getNodes()) {
+            String controlLbl = node.getControl().getNamedType().stringValue();
+            if (controlLbl.equals(BiSpaceSignatureProvider.LOCALE_TYPE)) {
+                for (BigraphEntity.Link link : bigrid.getIncidentLinksOf(node)) {
+                    if (link instanceof BigraphEntity.OuterName outerName) {
+                        register(outerName.getName(), node);
+                    }
+                }
+            } else if (controlLbl.startsWith("C_")) {
+                BigraphEntity<?> parent = bigrid.getParent(node);
+                BigraphEntity<?> locale = parent == null ? null : bigrid.getParent(parent);
+                if (locale != null && BigraphEntityType.isNode(locale)) {
+                    register(controlLbl, (BigraphEntity.NodeEntity<DynamicControl>) locale);
+                }
+            }
+        }
+        for (BigraphEntity.SiteEntity site : bigrid.getSites()) {
+            BigraphEntity<?> parent = bigrid.getParent(site);
+            if (parent != null && BigraphEntityType.isNode(parent) && localeToLabel.containsKey(parent)) {
+                BigraphEntity.NodeEntity<DynamicControl> locale = (BigraphEntity.NodeEntity<DynamicControl>) parent;
+                if (localeToSiteIndex.putIfAbsent(locale, site.getIndex()) == null) {
+                    while (siteIndexToLocale.size() <= site.getIndex()) {
+                        siteIndexToLocale.add(null);
+                    }
+                    siteIndexToLocale.set(site.getIndex(), locale);
+                }
+            }
+        }
+    }
+
+    private void register(String label, BigraphEntity.NodeEntity<DynamicControl> locale) {
+        labelToLocale.putIfAbsent(label, locale);
+        localeToLabel.putIfAbsent(locale, label);
+    }
+
+    /**
+     * Creates an index of the given bigrid. The index is not updated when the bigrid is modified.
+     *
+     * @param bigrid the bigrid
+     * @return a new index
+     */
+    public static BiGridIndex create(PureBigraph bigrid) {
+        BiGridSupport.Assertations.assertIsBiGrid(bigrid);
+        return new BiGridIndex(bigrid);
+    }
+
+    /**
+     * @param coordinateLabel the coordinate label of a locale, e.g., {@code C_1_00__2_00}
+     * @return the site index of the locale, or -1 if the locale does not exist or has no site
+     */
+    public int getSiteIndex(String coordinateLabel) {
+        BigraphEntity.NodeEntity<DynamicControl> locale = labelToLocale.get(coordinateLabel);
+        Integer siteIndex = locale == null ? null : localeToSiteIndex.get(locale);
+        return siteIndex == null ? -1 : siteIndex;
+    }
+
+    public int getSiteIndex(Point2D.Float coordinate) {
+        return getSiteIndex(BiGridSupport.formatParamControl(coordinate));
+    }
+
+    public int getSiteIndex(BigraphEntity.NodeEntity<DynamicControl> locale) {
+        Integer siteIndex = localeToSiteIndex.get(locale);
+        return siteIndex == null ? -1 : siteIndex;
+    }
+
+    /**
+     * @return the locale node with the given coordinate label, or {@code null}
+     */
+    public BigraphEntity.NodeEntity<DynamicControl> getLocale(String coordinateLabel) {
+        return labelToLocale.get(coordinateLabel);
+    }
+
+    /**
+     * @return the locale node containing the site with the given index, or {@code null}
+     */
+    public BigraphEntity.NodeEntity<DynamicControl> getLocaleOfSite(int siteIndex) {
+        return siteIndex >= 0 && siteIndex < siteIndexToLocale.size() ? siteIndexToLocale.get(siteIndex) : null;
+    }
+
+    /**
+     * @return the coordinate label of the given locale node, or {@code null}
+     */
+    public String getLabel(BigraphEntity.NodeEntity<DynamicControl> locale) {
+        return localeToLabel.get(locale);
+    }
+
+    /**
+     * @return the coordinate label of the locale containing the site with the given index, or {@code null}
+     */
+    public String getLabelOfSite(int siteIndex) {
+        BigraphEntity.NodeEntity<DynamicControl> locale = getLocaleOfSite(siteIndex);
+        return locale == null ? null : localeToLabel.get(locale);
+    }
+
+    public Set<String> getLabels() {
+        return Collections.unmodifiableSet(labelToLocale.keySet());
+    }
+
+    /**
+     * @return the number of indexed locales
+     */
+    public int size() {
+        return localeToLabel.size();
+    }
+}
@@ -0,0 +1,123 @@
+package org.bigraphs.model.provider.spatial.bigrid;
+
+import java.awt.geom.Point2D;
+
+/**
+ * Formats coordinate labels of bigrids (e.g., {@code C_1_50__N2_25}) without {@link String#format(String, Object...)}.
+ * <p>
+ * The static {@code append*} methods write a label into a given {@link StringBuilder} and produce exactly the same
+ * characters as {@link BiGridSupport#formatCoordinate(float)}, {@link BiGridSupport#formatParamControl(Point2D.Float)}
+ * and {@link BiGridSupport#formatParamControl3D(float, float, float)} did with format strings, i.e.,
+ * an optional {@code N} for negative values, the integer part, {@code _}, and the fractional part rounded to
+ * two digits (which is {@code 100} if the fraction rounds up).
+ * <p>
+ * An instance additionally reuses one buffer and interns the labels of 2D coordinates, so that every coordinate
+ * of a grid is formatted only once, no matter how many routes point to it.
+ * Instances are not thread-safe and are meant to be used for the construction of a single bigrid.
+ */
+public final class BiGridLabelFormatter {
+
+    private final StringBuilder buffer = new StringBuilder(32);
+    // Open addressing table: packed coordinate (float bits of x and y) -> label; a null label marks a free slot
+    private long[] keys = new long[64];
+    private String[] labels = new String[64];
+    private int size = 0;
+
+    /**
+     * Returns the 2D label of the given coordinate, formatting it only on the first request.
+     *
+     * @param coordinate the coordinate
+     * @return the label, e.g., {@code C_1_00__2_00}
+     */
+    public String label(Point2D.Float coordinate) {
+        return label(coordinate.x, coordinate.y);
+    }
+
+    public String label(float x, float y) {
+        // -0.0 and 0.0 have the same label
+        long key = ((long) Float.floatToIntBits(x + 0.0f) << 32) | (Float.floatToIntBits(y + 0.0f) & 0xFFFFFFFFL);
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (labels[slot] != null) {
+            if (keys[slot] == key) {
+                return labels[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        buffer.setLength(0);
+        String label = appendParamControl(buffer, x, y).toString();
+        keys[slot] = key;
+        labels[slot] = label;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+        return label;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        String[] oldLabels = labels;
+        keys = new long[oldKeys.length * 2];
+        labels = new String[oldLabels.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldLabels[i] != null) {
+                int slot = mix(oldKeys[i]) & mask;
+                while (labels[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                labels[slot] = oldLabels[i];
+            }
+        }
+    }
+
+    // Finalizer of MurmurHash3; grid coordinates differ in few bits only
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    /**
+     * Returns the 3D label of the given coordinate. 3D labels are not interned.
+     */
+    public String label3D(float x, float y, float z) {
+        buffer.setLength(0);
+        return appendParamControl3D(buffer, x, y, z).toString();
+    }
+
+    /**
+     * @return the number of interned labels
+     */
+    public int size() {
+        return size;
+    }
+
+    public static StringBuilder appendParamControl(StringBuilder sb, float x, float y) {
+        sb.append("C_");
+        appendCoordinate(sb, x).append("__");
+        return appendCoordinate(sb, y);
+    }
+
+    public static StringBuilder appendParamControl3D(StringBuilder sb, float x, float y, float z) {
+        appendParamControl(sb, x, y).append("__");
+        return appendCoordinate(sb, z);
+    }
+
+    // Locale-independent; same arithmetic (in float) as the former format string implementation
+    public static StringBuilder appendCoordinate(StringBuilder sb, float value) {
+        if (value < 0) {
+            sb.append('N');
+        }
+        value = Math.abs(value);
+        int integerPart = (int) value;
+        int fractionalPart = Math.round((value - integerPart) * 100); // 2 decimal places
+        sb.append(integerPart).append('_');
+        if (fractionalPart < 10) {
+            sb.append('0');
+        }
+        return sb.append(fractionalPart);
+    }
+}
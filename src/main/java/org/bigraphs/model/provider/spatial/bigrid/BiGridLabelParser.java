@@ -0,0 +1,192 @@
+package org.bigraphs.model.provider.spatial.bigrid;
+
+import java.awt.geom.Point2D;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parses coordinate labels of bigrids (e.g., {@code C_1_50__N2_25}) back to coordinates.
+ * <p>
+ * The static methods scan a label once, without regular expressions and intermediate strings, and return the same
+ * values as the former implementation of {@link BiGridSupport#parseParamControl(String)}, which replaced {@code N}
+ * by {@code -} and {@code _} by {@code .} before calling {@link Float#parseFloat(String)}.
+ * Labels whose components all have the canonical form {@code [N]<digits>[_<digits>]} with up to 7 significant digits
+ * are computed by a single float division per component, which is correctly rounded like
+ * {@link Float#parseFloat(String)}. All other labels, including valid but unusual ones such as 3D labels with a
+ * trailing {@code __}, are passed to the former implementation, so they are accepted or rejected as before.
+ * <p>
+ * An instance is a thread-safe label → coordinate cache for repeated lookups, e.g., by path planners.
+ * The cached objects are shared, thus, callers must not modify them.
+ */
+public final class BiGridLabelParser {
+
+    private static final String PREFIX = "C_";
+    private static final String SEPARATOR = "__";
+    // Powers of ten that are exactly representable as float
+    private static final float[] POW10 = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+
+    private final Map<String, Point2D.Float> cache2D = new ConcurrentHashMap<>();
+    private final Map<String, float[]> cache3D = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the 2D coordinate of a label, parsing it only on the first request.
+     *
+     * @param label output of {@link BiGridSupport#formatParamControl(Point2D.Float)}
+     * @return the shared coordinate of the label
+     * @throws IllegalArgumentException if the label is invalid
+     */
+    public Point2D.Float lookup(String label) {
+        Point2D.Float coordinate = cache2D.get(label);
+        if (coordinate == null) {
+            coordinate = parse(label);
+            cache2D.putIfAbsent(label, coordinate);
+        }
+        return coordinate;
+    }
+
+    /**
+     * Returns the 3D coordinate of a label, parsing it only on the first request.
+     *
+     * @param label output of {@link BiGridSupport#formatParamControl3D(float, float, float)}
+     * @return the shared coordinate of the label as array {@code [x, y, z]}
+     * @throws IllegalArgumentException if the label is invalid
+     */
+    public float[] lookup3D(String label) {
+        float[] coordinate = cache3D.get(label);
+        if (coordinate == null) {
+            coordinate = parse3D(label);
+            cache3D.putIfAbsent(label, coordinate);
+        }
+        return coordinate;
+    }
+
+    public int size() {
+        return cache2D.size() + cache3D.size();
+    }
+
+    public void clear() {
+        cache2D.clear();
+        cache3D.clear();
+    }
+
+    /**
+     * Parses a 2D label. Components following the y coordinate are ignored.
+     *
+     * @param label output of {@link BiGridSupport#formatParamControl(Point2D.Float)}
+     * @return the coordinate
+     * @throws IllegalArgumentException if the label is invalid
+     */
+    public static Point2D.Float parse(String label) throws IllegalArgumentException {
+        if (label != null && label.startsWith(PREFIX)) {
+            int sepX = label.indexOf(SEPARATOR, PREFIX.length());
+            if (sepX >= 0) {
+                int endY = label.indexOf(SEPARATOR, sepX + SEPARATOR.length());
+                float x = parseCanonical(label, PREFIX.length(), sepX);
+                float y = parseCanonical(label, sepX + SEPARATOR.length(), endY < 0 ? label.length() : endY);
+                if (!Float.isNaN(x) && !Float.isNaN(y)) {
+                    return new Point2D.Float(x, y);
+                }
+            }
+        }
+        return parseLegacy(label);
+    }
+
+    /**
+     * Parses a 3D label, which must consist of exactly three components.
+     *
+     * @param label output of {@link BiGridSupport#formatParamControl3D(float, float, float)}
+     * @return float array [x, y, z]
+     * @throws IllegalArgumentException if the label is invalid
+     */
+    public static float[] parse3D(String label) throws IllegalArgumentException {
+        if (label != null && label.startsWith(PREFIX)) {
+            int sepX = label.indexOf(SEPARATOR, PREFIX.length());
+            int sepY = sepX < 0 ? -1 : label.indexOf(SEPARATOR, sepX + SEPARATOR.length());
+            if (sepY >= 0) {
+                // a separator following z makes z non-canonical
+                float x = parseCanonical(label, PREFIX.length(), sepX);
+                float y = parseCanonical(label, sepX + SEPARATOR.length(), sepY);
+                float z = parseCanonical(label, sepY + SEPARATOR.length(), label.length());
+                if (!Float.isNaN(x) && !Float.isNaN(y) && !Float.isNaN(z)) {
+                    return new float[]{x, y, z};
+                }
+            }
+        }
+        return parse3DLegacy(label);
+    }
+
+    /**
+     * Parses a single coordinate component (e.g., "1_50" or "N2_25") of a label.
+     *
+     * @param label the label
+     * @param from  start index of the component (inclusive)
+     * @param to    end index of the component (exclusive)
+     * @return the float value
+     * @throws NumberFormatException if the component is not a number
+     */
+    public static float parseCoordinate(String label, int from, int to) {
+        float value = parseCanonical(label, from, to);
+        return Float.isNaN(value) ? parseCoordinateLegacy(label.substring(from, to)) : value;
+    }
+
+    // Parses a component of the form [N]<digits>[_<digits>] with up to 7 significant digits; returns NaN otherwise
+    private static float parseCanonical(String label, int from, int to) {
+        int i = from;
+        boolean negative = i < to && label.charAt(i) == 'N';
+        if (negative) i++;
+        int mantissa = 0;
+        int numOfDigits = 0;
+        int numOfSignificantDigits = 0;
+        int numOfFractionDigits = -1; // -1: no decimal separator yet
+        for (; i < to; i++) {
+            char c = label.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (mantissa != 0 || c != '0') numOfSignificantDigits++;
+                if (numOfSignificantDigits > 7) return Float.NaN;
+                mantissa = mantissa * 10 + (c - '0');
+                numOfDigits++;
+                if (numOfFractionDigits >= 0) numOfFractionDigits++;
+            } else if (c == '_' && numOfFractionDigits < 0 && numOfDigits > 0) {
+                numOfFractionDigits = 0;
+            } else {
+                return Float.NaN;
+            }
+        }
+        if (numOfDigits == 0 || numOfFractionDigits == 0 || numOfFractionDigits >= POW10.length) {
+            return Float.NaN;
+        }
+        // Both operands are exact floats (mantissa < 10^7 < 2^24): the quotient is rounded once, like Float.parseFloat()
+        float value = numOfFractionDigits < 0 ? mantissa : mantissa / POW10[numOfFractionDigits];
+        return negative ? -value : value;
+    }
+
+    // The former implementation of BiGridSupport.parseParamControl(), for all labels that are not canonical
+    private static Point2D.Float parseLegacy(String label) {
+        if (label == null || !label.startsWith(PREFIX) || !label.contains(SEPARATOR)) {
+            throw new IllegalArgumentException("Invalid format");
+        }
+        try {
+            String[] parts = label.substring(PREFIX.length()).split(SEPARATOR);
+            return new Point2D.Float(parseCoordinateLegacy(parts[0]), parseCoordinateLegacy(parts[1]));
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid format", e);
+        }
+    }
+
+    // The former implementation of BiGridSupport.parseParamControl3D(), for all labels that are not canonical
+    private static float[] parse3DLegacy(String label) {
+        if (label == null || !label.startsWith(PREFIX) || label.split(SEPARATOR).length != 3) {
+            throw new IllegalArgumentException("Invalid 3D format");
+        }
+        try {
+            String[] parts = label.substring(PREFIX.length()).split(SEPARATOR);
+            return new float[]{parseCoordinateLegacy(parts[0]), parseCoordinateLegacy(parts[1]), parseCoordinateLegacy(parts[2])};
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid 3D format", e);
+        }
+    }
+
+    private static float parseCoordinateLegacy(String part) {
+        return Float.parseFloat(part.replace("N", "-").replace("_", "."));
+    }
+}
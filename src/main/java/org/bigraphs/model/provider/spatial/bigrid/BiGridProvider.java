@@ -2,15 +2,30 @@ package org.bigraphs.model.provider.spatial.bigrid;
 
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import com.google.common.hash.HashCode;
+import org.bigraphs.framework.core.EcoreBigraph;
+import org.bigraphs.framework.core.exceptions.InvalidConnectionException;
+import org.bigraphs.framework.core.impl.BigraphEntity;
+import org.bigraphs.framework.core.impl.signature.DynamicControl;
 import org.bigraphs.model.provider.base.BAbstractBigraphProvider;
 import org.bigraphs.model.provider.base.BLocationModelData;
 import org.bigraphs.framework.core.impl.pure.PureBigraph;
 import org.bigraphs.framework.core.impl.pure.PureBigraphBuilder;
 import org.bigraphs.framework.core.impl.signature.DynamicSignature;
+import org.bigraphs.framework.core.utils.BigraphUtil;
 import org.bigraphs.model.provider.spatial.signature.BiSpaceSignatureProvider;
+import org.bigraphs.model.provider.util.LongIntHashMap;
 
+import java.awt.geom.Point2D;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
+import static org.bigraphs.framework.core.factory.BigraphFactory.ops;
 import static org.bigraphs.framework.core.factory.BigraphFactory.pureBuilder;
 import static org.bigraphs.model.provider.spatial.signature.BiSpaceSignatureProvider.LOCALE_TYPE;
 import static org.bigraphs.model.provider.spatial.signature.BiSpaceSignatureProvider.ROUTE_TYPE;
@@ -32,8 +47,11 @@ public class BiGridProvider extends BAbstractBigraphProvider<DynamicSignature, P
     protected BLocationModelData lmpd;
     protected RouteDirection routeDirection = RouteDirection.BIDIRECTIONAL;
     private boolean makeWorldModelGround = false;
-    // Construct maps needed for the bigraph creation later:
-    // map: locale name -> root/site index of loc model bigraph
+    private boolean streaming = false;
+    private int parallelism = 1;
+    private Executor executor = ForkJoinPool.commonPool();
+    private BiGridCache cache = null;
+    // map: locale name -> root/site index of loc model bigraph (of the last call to getBigraph())
     protected BiMap<String, Integer> mLocale2Index = HashBiMap.create();
 
     public BiGridProvider(BLocationModelData lmpd) {
@@ -54,42 +72,94 @@ public class BiGridProvider extends BAbstractBigraphProvider<DynamicSignature, P
         this.lmpd = lmpd;
     }
 
+    /**
+     * Returns the bigrid for the current location model.
+     * <p>
+     * The index maps of the {@link BLocationModelData} are updated with the ones of the build result,
+     * see {@link #build()}.
+     * In streaming mode, the location model is not updated.
+     */
     @Override
     public PureBigraph getBigraph() throws Exception {
-        // TODO: This block has to be done somewhere else
-        // Problem is that LMPD is input/output hybrid!
-        lmpd.getLocaleNameToCoordinates().clear(); // important when method called twice
-        lmpd.getBNodeIdToExternalLocaleName().clear(); // important when method called twice
-        lmpd.getLocaleNameToRootOrSiteIndex().clear();
+        BiGridBuildResult result = build();
+        if (!streaming) {
+            result.applyTo(lmpd);
+            mLocale2Index = lmpd.getLocaleNameToRootOrSiteIndex();
+        }
+        return result.getBigraph();
+    }
+
+    /**
+     * Builds the bigrid for the current location model together with its index maps.
+     * <p>
+     * The location model is only read, thus, several invocations may share the same {@link BLocationModelData}
+     * concurrently as long as it is not modified meanwhile.
+     * If a cache is set, a result that was already built for equal content and options is reused instead of
+     * rebuilding it, see {@link #setCache(BiGridCache)}. Each call then returns its own copy of the cached bigrid.
+     *
+     * @return the bigrid and its index maps
+     */
+    public BiGridBuildResult build() throws Exception {
+        if (cache == null) {
+            return createBuildResult();
+        }
+        HashCode key = BiGridCache.contentHash(lmpd, routeDirection, makeWorldModelGround, streaming);
+        BiGridBuildResult result = cache.getIfPresent(key);
+        if (result == null) {
+            result = createBuildResult();
+            cache.put(key, result);
+        }
+        // The cached bigrid is never handed out, so callers may modify their bigrid
+        return result.withBigraph(copyOf(result.getBigraph()));
+    }
+
+    private static PureBigraph copyOf(PureBigraph bigrid) throws CloneNotSupportedException {
+        EcoreBigraph.Stub<DynamicSignature> clone = new EcoreBigraph.Stub<>(bigrid).clone();
+        return BigraphUtil.toBigraph(clone.getMetaModel(), clone.getInstanceModel(), bigrid.getSignature());
+    }
+
+    private BiGridBuildResult createBuildResult() throws Exception {
+        if (streaming) {
+            PureBigraph bigrid = getBigraph(lmpd.getLocales(), lmpd.getRoutes().iterator());
+            return new BiGridBuildResult(bigrid, lmpd.getLocales().size(), Map.of(), Map.of(), Map.of());
+        }
+        // The location model is input only; all index maps are collected here
+        Map<String, List<Point2D.Float>> localeNameToCoordinates = new LinkedHashMap<>();
+        Map<String, String> bNodeIdToExternalLocaleName = new HashMap<>();
+        // map: locale name -> root/site index of loc model bigraph
+        BiMap<String, Integer> locale2Index = HashBiMap.create();
         for (BLocationModelData.Locale each : lmpd.getLocales()) {
             // Update the coordinate set of each locale: Fill default coordinates
             // Center of each locale is default coordinate
             // Will be used by CFMAPFWorldModelProvider
-            getLocationModelData().getLocaleNameToCoordinates().putIfAbsent(each.getName(), new ArrayList<>());
-            getLocationModelData().getLocaleNameToCoordinates().get(each.getName()).add(each.getCenter());
+            localeNameToCoordinates.computeIfAbsent(each.getName(), k -> new ArrayList<>()).add(each.getCenter());
         }
 
 
-        PureBigraphBuilder<DynamicSignature> builder = pureBuilder(getSignature());
-        Map<String, PureBigraphBuilder<DynamicSignature>.Hierarchy> localeNameToBigraphMap = new LinkedHashMap<>();
-        Map<String, String> localeNameToOuternameMap = new LinkedHashMap<>();
-
-
-        // Make a copy
-        LinkedList<BLocationModelData.Locale> locales = new LinkedList<>(lmpd.getLocales());
-        LinkedList<BLocationModelData.Route> routes = new LinkedList<>(lmpd.getRoutes());
-        lmpd.setNumOfLocModelSites(locales.size()); // update object with new information
-
-        Collections.sort(locales);
-        Collections.sort(routes);
+        // Make a sorted copy
+        List<BLocationModelData.Locale> locales = BLocationModelData.sortByIndex(lmpd.getLocales());
+        List<BLocationModelData.Route> routes = BLocationModelData.sortByIndex(lmpd.getRoutes());
 
         if (LOG_DEBUG) {
             System.out.format("Total Locales found: %d\n", locales.size());
             System.out.format("Total Roads found: %d\n", routes.size());
         }
 
+        if (parallelism > 1) {
+            for (int ix = 0; ix < locales.size(); ix++) {
+                locale2Index.put(locales.get(ix).getName(), ix);
+            }
+            PureBigraph bigrid = getBigraphInParallel(locales, routes, bNodeIdToExternalLocaleName);
+            return new BiGridBuildResult(bigrid, locales.size(), localeNameToCoordinates, bNodeIdToExternalLocaleName, locale2Index);
+        }
+
+        PureBigraphBuilder<DynamicSignature> builder = pureBuilder(getSignature());
+        Map<String, PureBigraphBuilder<DynamicSignature>.Hierarchy> localeNameToBigraphMap = new LinkedHashMap<>();
+        Map<String, String> localeNameToOuternameMap = new LinkedHashMap<>();
+
         //TODO assume specific/random order?
         // Currently we build the grid from top to bottom, from left to right
+        BiGridLabelFormatter labelFormatter = new BiGridLabelFormatter();
         int sIx = 0;
         for (BLocationModelData.Locale each : locales) {
             assert each.getName() != null;
@@ -100,33 +170,33 @@ public class BiGridProvider extends BAbstractBigraphProvider<DynamicSignature, P
             }
             String nodeId = localeNameToBigraphMap.get(each.getName()).getLastCreatedNode().getName();
             assert nodeId.equalsIgnoreCase(each.getName());
-            lmpd.getBNodeIdToExternalLocaleName().put(nodeId, each.getName());
+            bNodeIdToExternalLocaleName.put(nodeId, each.getName());
 
-            String coordLabel = BiGridSupport.formatParamControl(each.getCenter());
+            String coordLabel = labelFormatter.label(each.getCenter());
             localeNameToOuternameMap.put(nodeId, coordLabel);
 
             localeNameToBigraphMap.get(nodeId).top().linkOuter(localeNameToOuternameMap.get(nodeId));
 
             // Store original order of locales processed here
             // In this state the locale site index == root index
-            mLocale2Index.put(each.getName(), sIx);
+            locale2Index.put(each.getName(), sIx);
             sIx++;
         }
         // store original mapping for later use
         // Note that the site indexes are not necessarily present if agents occupy the space.
         // In that case the meaning gets lost. But the index still refers to the original root index
         // of the locale model layer.
-        lmpd.setLocaleNameToRootOrSiteIndex(mLocale2Index);
 
         // Iterate through all Roads and connect two Locales
         // For every road, check whether the starting/ending point touches a Locale -> get both locales and connect them
         // 3 Modes are considered: bidirectional / unidirectional forward & backward
+        LongIntHashMap gridKeyIndex = BiGridSupport.createGridKeyIndex(locales);
         for (BLocationModelData.Route each : routes) {
             if (LOG_DEBUG) {
                 System.out.println("Road: " + each.getName());
             }
-            BLocationModelData.Locale connectedLocaleStart = BiGridSupport.getConnectedLocale(each.getStartingPoint(), locales);
-            BLocationModelData.Locale connectedLocaleEnd = BiGridSupport.getConnectedLocale(each.getEndingPoint(), locales);
+            BLocationModelData.Locale connectedLocaleStart = BiGridSupport.getConnectedLocale(each.getStartingPoint(), locales, gridKeyIndex);
+            BLocationModelData.Locale connectedLocaleEnd = BiGridSupport.getConnectedLocale(each.getEndingPoint(), locales, gridKeyIndex);
             if (connectedLocaleStart != null && connectedLocaleEnd != null) {
 
                 String y = localeNameToOuternameMap.get(connectedLocaleStart.getName());
@@ -154,9 +224,269 @@ public class BiGridProvider extends BAbstractBigraphProvider<DynamicSignature, P
         }
 
         // Finalize the bigraph and return a bigraph object
+        return new BiGridBuildResult(builder.create(), locales.size(), localeNameToCoordinates, bNodeIdToExternalLocaleName, locale2Index);
+    }
+
+    /**
+     * Builds the locales in parallel.
+     * <p>
+     * The sorted locales are partitioned into contiguous blocks of indices, which are spatial tiles (i.e., bands of rows)
+     * for grids created in row-major order.
+     * The hierarchies of each tile are built by a separate task of the executor with its own builder.
+     * Since locales only interact through outer names, the tiles are finally combined by the merge product, which
+     * joins equally named outer names and places all locales under a single root.
+     * The merge product is binary, so neighbouring tiles are merged pairwise in rounds: each node is copied
+     * {@code log2(T)} times for {@code T} tiles, instead of up to {@code T} times when merging the tiles one by one.
+     * The site order of the locales is the same as in the sequential case.
+     */
+    private PureBigraph getBigraphInParallel(List<BLocationModelData.Locale> locales,
+                                             List<BLocationModelData.Route> routes,
+                                             Map<String, String> bNodeIdToExternalLocaleName) throws Exception {
+        int numOfLocales = locales.size();
+        String[] labels = new String[numOfLocales];
+        LongIntHashMap keyToIndex = BiGridSupport.createGridKeyIndex(locales);
+        Map<String, String> labelToLocaleName = new HashMap<>();
+        BiGridLabelFormatter labelFormatter = new BiGridLabelFormatter();
+        for (int ix = 0; ix < numOfLocales; ix++) {
+            BLocationModelData.Locale each = locales.get(ix);
+            labels[ix] = labelFormatter.label(each.getCenter());
+            labelToLocaleName.putIfAbsent(labels[ix], each.getName());
+        }
+
+        // Resolve the routes once: compressed lists of route targets (locale indices) per locale
+        int[] routeStart = new int[routes.size()];
+        int[] routeEnd = new int[routes.size()];
+        int[] offsets = new int[numOfLocales + 1];
+        for (int r = 0; r < routes.size(); r++) {
+            int start = keyToIndex.get(GridKey.ofCoordinate(routes.get(r).getStartingPoint()));
+            int end = keyToIndex.get(GridKey.ofCoordinate(routes.get(r).getEndingPoint()));
+            routeStart[r] = start < 0 || end < 0 ? -1 : start;
+            routeEnd[r] = start < 0 || end < 0 ? -1 : end;
+            if (routeStart[r] < 0) continue;
+            if (routeDirection != RouteDirection.UNIDIRECTIONAL_BACKWARD) offsets[routeStart[r] + 1]++;
+            if (routeDirection != RouteDirection.UNIDIRECTIONAL_FORWARD) offsets[routeEnd[r] + 1]++;
+        }
+        for (int ix = 0; ix < numOfLocales; ix++) {
+            offsets[ix + 1] += offsets[ix];
+        }
+        int[] targets = new int[offsets[numOfLocales]];
+        int[] fill = Arrays.copyOf(offsets, numOfLocales);
+        for (int r = 0; r < routes.size(); r++) {
+            if (routeStart[r] < 0) continue;
+            if (routeDirection != RouteDirection.UNIDIRECTIONAL_BACKWARD) targets[fill[routeStart[r]]++] = routeEnd[r];
+            if (routeDirection != RouteDirection.UNIDIRECTIONAL_FORWARD) targets[fill[routeEnd[r]]++] = routeStart[r];
+        }
+
+        // Builders are created upfront by the calling thread; only the hierarchies are built concurrently
+        int numOfTiles = Math.max(1, Math.min(parallelism, numOfLocales));
+        List<CompletableFuture<PureBigraph>> futures = new ArrayList<>(numOfTiles);
+        for (int t = 0; t < numOfTiles; t++) {
+            int from = (int) ((long) numOfLocales * t / numOfTiles);
+            int to = (int) ((long) numOfLocales * (t + 1) / numOfTiles);
+            PureBigraphBuilder<DynamicSignature> builder = pureBuilder(getSignature());
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                PureBigraphBuilder<DynamicSignature>.Hierarchy root = builder.root();
+                try {
+                    for (int ix = from; ix < to; ix++) {
+                        PureBigraphBuilder<DynamicSignature>.Hierarchy locale = root.child(LOCALE_TYPE, labels[ix]).down();
+                        if (!makeWorldModelGround) {
+                            locale.site();
+                        }
+                        for (int e = offsets[ix]; e < offsets[ix + 1]; e++) {
+                            locale.child(ROUTE_TYPE, labels[targets[e]]);
+                        }
+                    }
+                } catch (InvalidConnectionException e) {
+                    throw new CompletionException(e);
+                }
+                return builder.create();
+            }, executor));
+        }
+        List<PureBigraph> tiles = new ArrayList<>(numOfTiles);
+        try {
+            for (CompletableFuture<PureBigraph> each : futures) {
+                tiles.add(each.join());
+            }
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+
+        // The merge product is binary and copies both operands, so a left fold would copy the first tile T - 1 times.
+        // Merging neighbouring tiles pairwise instead halves the tiles per round and copies each node log2(T) times,
+        // while keeping the order of the tiles.
+        while (tiles.size() > 1) {
+            List<PureBigraph> merged = new ArrayList<>((tiles.size() + 1) / 2);
+            for (int t = 0; t < tiles.size(); t += 2) {
+                merged.add(t + 1 < tiles.size() ? ops(tiles.get(t)).merge(tiles.get(t + 1)).getOuterBigraph() : tiles.get(t));
+            }
+            tiles = merged;
+        }
+        PureBigraph bigrid = tiles.get(0);
+
+        // Node identifiers are assigned by the merge product; recover the locale of each node by its outer name
+        for (BigraphEntity.NodeEntity<DynamicControl> node : bigrid.getNodes()) {
+            if (node.getControl().getNamedType().stringValue().equals(LOCALE_TYPE)) {
+                for (BigraphEntity.Link link : bigrid.getIncidentLinksOf(node)) {
+                    String localeName = link instanceof BigraphEntity.OuterName outerName ? labelToLocaleName.get(outerName.getName()) : null;
+                    if (localeName != null) {
+                        bNodeIdToExternalLocaleName.put(node.getName(), localeName);
+                    }
+                }
+            }
+        }
+        return bigrid;
+    }
+
+    /**
+     * Builds the bigrid in streaming mode.
+     * <p>
+     * Locales are emitted into the builder in the order given by {@code locales} (i.e., the index order), and
+     * routes are consumed from {@code routes} while their starting locale is emitted.
+     * Thus, routes must be grouped by their starting locale in the same order as the locales
+     * (as created by {@link BLocationModelDataFactory#createGrid(int, int, float, float, float, float)}).
+     * A route that points back to an already emitted locale cannot be attached anymore and
+     * an {@link IllegalStateException} is thrown in this case.
+     * <p>
+     * Compared to {@link #getBigraph()}, no copies of the input lists are sorted and no builder hierarchies
+     * are kept until the end.
+     * The auxiliary memory is limited to one {@link GridKey} per locale (to resolve route endpoints) and the routes
+     * still waiting for their ending locale (for a grid, roughly one row).
+     * The index maps of the {@link BLocationModelData} are not updated in this mode: the site index of a locale
+     * is its position in {@code locales}.
+     *
+     * @param locales the locales in index order; iterated twice
+     * @param routes  the routes, grouped by their starting locale in index order
+     * @return the bigrid
+     */
+    public PureBigraph getBigraph(Iterable<BLocationModelData.Locale> locales,
+                                  Iterator<BLocationModelData.Route> routes) throws Exception {
+        // First pass: sorted coordinate keys of all locales to resolve route endpoints
+        long[] keys = new long[locales instanceof Collection<?> c ? c.size() : 1024];
+        int numOfLocales = 0;
+        for (BLocationModelData.Locale each : locales) {
+            if (numOfLocales == keys.length) {
+                keys = Arrays.copyOf(keys, keys.length * 2);
+            }
+            keys[numOfLocales++] = GridKey.ofCoordinate(each.getCenter());
+        }
+        keys = Arrays.copyOf(keys, numOfLocales);
+        Arrays.sort(keys);
+        BitSet emitted = new BitSet(numOfLocales);
+
+        if (LOG_DEBUG) {
+            System.out.format("Total Locales found: %d\n", numOfLocales);
+        }
+
+        PureBigraphBuilder<DynamicSignature> builder = pureBuilder(getSignature());
+        PureBigraphBuilder<DynamicSignature>.Hierarchy root = builder.root();
+        PeekingIterator<BLocationModelData.Route> routeIterator = Iterators.peekingIterator(routes);
+        // map: coordinate key of a not yet emitted locale -> outer names its routes link to
+        Map<Long, List<String>> pendingRoutes = new HashMap<>();
+
+        // Second pass: emit each locale together with its routes
+        for (BLocationModelData.Locale each : locales) {
+            long key = GridKey.ofCoordinate(each.getCenter());
+            String coordLabel = BiGridSupport.formatParamControl(each.getCenter());
+            PureBigraphBuilder<DynamicSignature>.Hierarchy locale = root.child(LOCALE_TYPE, coordLabel).down();
+            if (!makeWorldModelGround) {
+                locale.site();
+            }
+            List<String> pending = pendingRoutes.remove(key);
+            if (pending != null) {
+                for (String y : pending) {
+                    locale.child(ROUTE_TYPE, y);
+                }
+            }
+            emitted.set(Arrays.binarySearch(keys, key));
+
+            while (routeIterator.hasNext()) {
+                BLocationModelData.Route route = routeIterator.peek();
+                long startKey = GridKey.ofCoordinate(route.getStartingPoint());
+                int startIx = Arrays.binarySearch(keys, startKey);
+                if (startIx >= 0 && startKey != key) {
+                    if (emitted.get(startIx)) {
+                        throw new IllegalStateException("Route " + route.getName() + " is not grouped by its starting locale");
+                    }
+                    break; // belongs to a subsequent locale
+                }
+                routeIterator.next();
+                long endKey = GridKey.ofCoordinate(route.getEndingPoint());
+                int endIx = Arrays.binarySearch(keys, endKey);
+                if (startIx < 0 || endIx < 0) {
+                    continue; // route does not connect two locales
+                }
+                if (routeDirection == RouteDirection.BIDIRECTIONAL || routeDirection == RouteDirection.UNIDIRECTIONAL_FORWARD) {
+                    locale.child(ROUTE_TYPE, GridKey.toLabel(endKey)); // the label of the matched locale
+                }
+                if (routeDirection == RouteDirection.BIDIRECTIONAL || routeDirection == RouteDirection.UNIDIRECTIONAL_BACKWARD) {
+                    if (endKey == key) {
+                        locale.child(ROUTE_TYPE, coordLabel);
+                    } else if (emitted.get(endIx)) {
+                        throw new IllegalStateException("Route " + route.getName() + " points back to an already emitted locale");
+                    } else {
+                        pendingRoutes.computeIfAbsent(endKey, k -> new ArrayList<>(2)).add(coordLabel);
+                    }
+                }
+            }
+        }
+
+        while (routeIterator.hasNext()) {
+            BLocationModelData.Route route = routeIterator.next();
+            if (Arrays.binarySearch(keys, GridKey.ofCoordinate(route.getStartingPoint())) >= 0) {
+                throw new IllegalStateException("Route " + route.getName() + " is not grouped by its starting locale");
+            }
+        }
+
         return builder.create();
     }
 
+    /**
+     * Enables the streaming construction mode for {@link #getBigraph()}.
+     * The locales and routes of the {@link BLocationModelData} must then already be in index order,
+     * see {@link #getBigraph(Iterable, Iterator)}.
+     */
+    public <T extends BiGridProvider> T streaming(boolean streaming) {
+        this.streaming = streaming;
+        return (T) this;
+    }
+
+    /**
+     * Sets the number of workers used by {@link #getBigraph()}.
+     * A value greater than 1 enables the parallel construction, where the locales are partitioned into tiles that are
+     * built concurrently by the executor (see {@link #setExecutor(Executor)}) and merged afterwards.
+     *
+     * @param parallelism number of workers, default is 1 (sequential)
+     */
+    public <T extends BiGridProvider> T setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        return (T) this;
+    }
+
+    /**
+     * Sets the executor that runs the tiles of the parallel construction, see {@link #setParallelism(int)}.
+     * The executor is owned by the caller and is not shut down by the provider.
+     *
+     * @param executor the executor, default is the common {@link ForkJoinPool}
+     */
+    public <T extends BiGridProvider> T setExecutor(Executor executor) {
+        this.executor = Objects.requireNonNull(executor);
+        return (T) this;
+    }
+
+    /**
+     * Enables memoisation of the bigrids returned by {@link #getBigraph()} and {@link #build()}.
+     * The same cache can be shared by several provider instances.
+     *
+     * @param cache the cache to use, or {@code null} to disable caching
+     */
+    public <T extends BiGridProvider> T setCache(BiGridCache cache) {
+        this.cache = cache;
+        return (T) this;
+    }
+
     public <T extends BiGridProvider> T makeGround(boolean makeGround) {
         this.makeWorldModelGround = makeGround;
         return (T) this;
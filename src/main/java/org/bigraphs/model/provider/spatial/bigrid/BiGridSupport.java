@@ -10,6 +10,7 @@ import org.bigraphs.framework.core.impl.pure.PureBigraphBuilder;
 import org.bigraphs.framework.core.impl.signature.DynamicSignature;
 import org.bigraphs.model.provider.base.BLocationModelData;
 import org.bigraphs.model.provider.spatial.signature.BiSpaceSignatureProvider;
+import org.bigraphs.model.provider.util.LongIntHashMap;
 import org.bigraphs.model.provider.util.Point2DUtils;
 
 import java.awt.geom.Point2D;
@@ -58,22 +59,12 @@ public abstract class BiGridSupport {
 
     // Locale-independent
     public static String formatCoordinate(float value) {
-        boolean isNegative = value < 0;
-        value = Math.abs(value);
-
-        int integerPart = (int) value;
-        int fractionalPart = Math.round((value - integerPart) * 100); // 2 decimal places
-
-        String prefix = isNegative ? "N" : "";
-
-        return String.format("%s%d_%02d", prefix, integerPart, fractionalPart);
+        return BiGridLabelFormatter.appendCoordinate(new StringBuilder(12), value).toString();
     }
 
 
     public static String formatParamControl(Point2D.Float coordinate) {
-        String formattedX = formatCoordinate(coordinate.x);
-        String formattedY = formatCoordinate(coordinate.y);
-        return String.format("C_%s__%s", formattedX, formattedY);
+        return BiGridLabelFormatter.appendParamControl(new StringBuilder(24), coordinate.x, coordinate.y).toString();
     }
 
     /**
@@ -85,18 +76,7 @@ public abstract class BiGridSupport {
      * @return the original float value
      */
     public static Point2D.Float parseParamControl(String formattedString) throws IllegalArgumentException {
-        if (formattedString == null || !formattedString.startsWith("C_") || !formattedString.contains("__")) {
-            throw new IllegalArgumentException("Invalid format");
-        }
-
-        try {
-            String[] parts = formattedString.substring(2).split("__");
-            float x = parseCoordinate(parts[0]);
-            float y = parseCoordinate(parts[1]);
-            return new Point2D.Float(x, y);
-        } catch (Exception e) {
-            throw new IllegalArgumentException("Invalid format", e);
-        }
+        return BiGridLabelParser.parse(formattedString);
     }
 
     /**
@@ -121,10 +101,7 @@ public abstract class BiGridSupport {
      * @return formatted coordinate string
      */
     public static String formatParamControl3D(float x, float y, float z) {
-        String formattedX = formatCoordinate(x);
-        String formattedY = formatCoordinate(y);
-        String formattedZ = formatCoordinate(z);
-        return String.format("C_%s__%s__%s", formattedX, formattedY, formattedZ);
+        return BiGridLabelFormatter.appendParamControl3D(new StringBuilder(32), x, y, z).toString();
     }
 
     /**
@@ -136,32 +113,7 @@ public abstract class BiGridSupport {
      * @throws IllegalArgumentException if format is invalid
      */
     public static float[] parseParamControl3D(String formattedString) throws IllegalArgumentException {
-        if (formattedString == null || !formattedString.startsWith("C_") || formattedString.split("__").length != 3) {
-            throw new IllegalArgumentException("Invalid 3D format");
-        }
-
-        try {
-            String[] parts = formattedString.substring(2).split("__");
-            float x = parseCoordinate(parts[0]);
-            float y = parseCoordinate(parts[1]);
-            float z = parseCoordinate(parts[2]);
-            return new float[]{x, y, z};
-        } catch (Exception e) {
-            throw new IllegalArgumentException("Invalid 3D format", e);
-        }
-    }
-
-    /**
-     * Parses a single coordinate string back to float value.
-     * <p>
-     * Locale-independent
-     *
-     * @param part the coordinate string (e.g., "1_50" or "N2_25")
-     * @return the float value
-     */
-    private static float parseCoordinate(String part) {
-        part = part.replace("N", "-").replace("_", ".");
-        return Float.parseFloat(part);
+        return BiGridLabelParser.parse3D(formattedString);
     }
 
     public static PureBigraphBuilder<DynamicSignature>.Hierarchy connectToOuterName(String localeName,
@@ -194,6 +146,35 @@ public abstract class BiGridSupport {
         return null;
     }
 
+    /**
+     * Indexes locales by the {@link GridKey} of their center, i.e., by their coordinate label.
+     * If several locales have the same key, the first one is indexed.
+     *
+     * @param locales the locales
+     * @return map: grid key -> position of the locale in {@code locales}
+     */
+    public static LongIntHashMap createGridKeyIndex(List<BLocationModelData.Locale> locales) {
+        LongIntHashMap index = new LongIntHashMap(locales.size());
+        for (int ix = 0; ix < locales.size(); ix++) {
+            index.putIfAbsent(GridKey.ofCoordinate(locales.get(ix).getCenter()), ix);
+        }
+        return index;
+    }
+
+    /**
+     * Retrieves the locale whose center has the same {@link GridKey} as the given route position in constant time.
+     *
+     * @param roadPosition a starting or ending position of a route element
+     * @param locales      the locales
+     * @param gridKeyIndex the index of {@code locales} created by {@link #createGridKeyIndex(List)}
+     * @return the locale at the route position, or {@code null}
+     */
+    public static BLocationModelData.Locale getConnectedLocale(Point2D.Float roadPosition, List<BLocationModelData.Locale> locales,
+                                                               LongIntHashMap gridKeyIndex) {
+        int ix = gridKeyIndex.get(GridKey.ofCoordinate(roadPosition));
+        return ix == LongIntHashMap.NO_VALUE ? null : locales.get(ix);
+    }
+
     public static class Assertations {
         public static void assertIsBiGrid(PureBigraph bigraph) {
             Set<String> sourceTypeLabels = bigraph.getSignature().getControls().stream().map(c -> c.getNamedType().stringValue()).collect(Collectors.toSet());
@@ -212,6 +193,7 @@ public abstract class BiGridSupport {
          * @param coordControlLbl
          * @param bigrid
          * @return -1 if index could not be determined.
+         * @see BiGridIndex for repeated lookups in the same bigrid
          */
         public static int findLocaleSiteIndexByCoordinate(String coordControlLbl, PureBigraph bigrid) {
             Assertations.assertIsBiGrid(bigrid);
@@ -0,0 +1,293 @@
+package org.bigraphs.model.provider.spatial.bigrid;
+
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Generates large worlds by Wave Function Collapse in chunks, instead of running one {@link World} for all tiles.
+ * <p>
+ * The world is split into square chunks of {@link #setChunkSize(int) chunkSize} tiles, which are generated as a
+ * wavefront: chunk {@code (cx, cy)} is generated after the chunks above and to the left of it, i.e., the chunks of
+ * one anti-diagonal ({@code cx + cy}) after the other. Chunks of the same anti-diagonal do not touch each other, so
+ * they are generated concurrently by {@link #setParallelism(int) parallelism} workers.
+ * <p>
+ * Each chunk is generated by its own {@link World} that extends the chunk by {@link #setOverlap(int) overlap} tiles
+ * on each side. The boundaries between chunks are reconciled in the overlap:
+ * <ul>
+ *     <li>tiles of finished chunks are fixed to their tile types by {@link World#constrain(int, int, long)}, so the
+ *     chunk fits to its finished neighbours;</li>
+ *     <li>the other tiles of the overlap are generated as well but discarded, so the chunk does not end in a border
+ *     that its later neighbours cannot continue.</li>
+ * </ul>
+ * Finished tiles are only above or to the left of a chunk: constraints on opposite sides of a chunk may not be
+ * satisfiable together. If the world of a chunk ends with a contradiction, the chunk is generated again, at most
+ * {@link #setMaxAttempts(int) maxAttempts} times.
+ * Reconciliation is local, so tile rules that constrain tiles far apart (e.g., the default rules, where route borders
+ * cannot turn and continue through the whole world) may still contradict a finished chunk far away.
+ * <p>
+ * {@link #generate(Consumer)} emits the chunks of each anti-diagonal as soon as they are finished and only keeps the
+ * last two anti-diagonals, so the memory is bounded by the width of the world instead of its area.
+ * Each chunk draws its random choices from its own generator, seeded by the seed of the generator in a fixed order,
+ * so the result only depends on the seed and the settings, but not on the parallelism.
+ */
+public class ChunkedWorldGenerator {
+
+    private final int sizeX;
+    private final int sizeY;
+    private final long seed;
+    private int chunkSize = 64;
+    private int overlap = 4;
+    private int parallelism = 1;
+    private int maxAttempts = 8;
+    private World.RecoveryPolicy recoveryPolicy = World.RecoveryPolicy.BACKTRACK;
+    private TileSet tileSet = TileSet.getDefault();
+    private WfcMetrics metrics;
+
+    // Generator with a random seed
+    public ChunkedWorldGenerator(int sizeX, int sizeY) {
+        this(sizeX, sizeY, ThreadLocalRandom.current().nextLong());
+    }
+
+    // Generator for a reproducible world
+    public ChunkedWorldGenerator(int sizeX, int sizeY, long seed) {
+        if (sizeX < 1 || sizeY < 1) {
+            throw new IllegalArgumentException("World size must be positive: " + sizeX + "x" + sizeY);
+        }
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.seed = seed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @param chunkSize the number of tiles per side of a chunk, default is 64
+     */
+    public ChunkedWorldGenerator setChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        this.overlap = Math.min(overlap, chunkSize);
+        return this;
+    }
+
+    /**
+     * @param overlap the number of tiles by which the world of a chunk extends it on each side, default is 4
+     *                (at most the chunk size)
+     */
+    public ChunkedWorldGenerator setOverlap(int overlap) {
+        if (overlap < 1 || overlap > chunkSize) {
+            throw new IllegalArgumentException("Overlap must be in 1.." + chunkSize + ": " + overlap);
+        }
+        this.overlap = overlap;
+        return this;
+    }
+
+    /**
+     * @param parallelism number of workers, default is 1 (sequential)
+     */
+    public ChunkedWorldGenerator setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * @param maxAttempts the number of times a chunk is generated before giving up, default is 8
+     */
+    public ChunkedWorldGenerator setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Number of attempts must be positive: " + maxAttempts);
+        }
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * @param recoveryPolicy the recovery policy of the world of each chunk
+     */
+    public ChunkedWorldGenerator setRecoveryPolicy(World.RecoveryPolicy recoveryPolicy) {
+        this.recoveryPolicy = Objects.requireNonNull(recoveryPolicy);
+        return this;
+    }
+
+    /**
+     * Rules that constrain tiles far apart reconcile poorly: with {@link TileSet#getDefaultWithCorners()}, for example,
+     * blank areas are rectangles whose sides may be fixed by different chunks.
+     *
+     * @param tileSet the tile rules, default is {@link TileSet#getDefault()}; only {@link TileSet.Topology#GRID} is
+     *                supported, as the chunks of one anti-diagonal touch at their corners, whose tiles would be
+     *                neighbours in a {@link TileSet.Topology#DIAGONAL_GRID}
+     * @throws IllegalArgumentException if the topology of the tile set is not {@link TileSet.Topology#GRID}
+     */
+    public ChunkedWorldGenerator setTileSet(TileSet tileSet) {
+        if (Objects.requireNonNull(tileSet).getTopology() != TileSet.Topology.GRID) {
+            throw new IllegalArgumentException("Chunks only support the topology " + TileSet.Topology.GRID + ": " + tileSet.getTopology());
+        }
+        this.tileSet = tileSet;
+        return this;
+    }
+
+    /**
+     * @param metrics the metrics to which the worlds of all chunks (including failed attempts) are added, or null
+     */
+    public ChunkedWorldGenerator setMetrics(WfcMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Generates the whole world in memory.
+     *
+     * @return the tile types, indexed by x and y
+     * @throws IllegalStateException if a chunk cannot be generated
+     */
+    public int[][] generate() {
+        int[][] types = new int[sizeX][sizeY];
+        generate(chunk -> {
+            for (int x = 0; x < chunk.getSizeX(); x++) {
+                for (int y = 0; y < chunk.getSizeY(); y++) {
+                    types[chunk.getOriginX() + x][chunk.getOriginY() + y] = chunk.getType(x, y);
+                }
+            }
+        });
+        return types;
+    }
+
+    /**
+     * Generates the world and passes each chunk to the consumer once it is finished.
+     * The chunks are passed by the calling thread, anti-diagonal by anti-diagonal, and in the order of their rows.
+     *
+     * @throws IllegalStateException if a chunk cannot be generated
+     */
+    public void generate(Consumer<WorldChunk> consumer) {
+        int chunksX = (sizeX + chunkSize - 1) / chunkSize;
+        int chunksY = (sizeY + chunkSize - 1) / chunkSize;
+        SplittableRandom seeds = new SplittableRandom(seed);
+        ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        try {
+            // Finished chunks of the last two anti-diagonals, by row
+            WorldChunk[] previous = new WorldChunk[chunksX];
+            WorldChunk[] beforePrevious = new WorldChunk[chunksX];
+            for (int diagonal = 0; diagonal < chunksX + chunksY - 1; diagonal++) {
+                int d = diagonal;
+                int fromX = Math.max(0, d - chunksY + 1), toX = Math.min(d, chunksX - 1);
+                long[] chunkSeeds = new long[toX - fromX + 1];
+                for (int i = 0; i < chunkSeeds.length; i++) {
+                    chunkSeeds[i] = seeds.nextLong();
+                }
+                WorldChunk[] finished1 = previous, finished2 = beforePrevious;
+                WorldChunk[] current = new WorldChunk[chunksX];
+                IntConsumer task = cx -> current[cx] = generateChunk(cx, d - cx, finished1, finished2, chunkSeeds[cx - fromX]);
+                if (pool == null || fromX == toX) {
+                    IntStream.rangeClosed(fromX, toX).forEach(task);
+                } else {
+                    try {
+                        pool.submit(() -> IntStream.rangeClosed(fromX, toX).parallel().forEach(task)).get();
+                    } catch (ExecutionException e) {
+                        throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while generating the chunks", e);
+                    }
+                }
+                for (int cx = fromX; cx <= toX; cx++) {
+                    consumer.accept(current[cx]);
+                }
+                beforePrevious = previous;
+                previous = current;
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private WorldChunk generateChunk(int cx, int cy, WorldChunk[] previous, WorldChunk[] beforePrevious, long chunkSeed) {
+        int x0 = cx * chunkSize, x1 = Math.min(sizeX, x0 + chunkSize);
+        int y0 = cy * chunkSize, y1 = Math.min(sizeY, y0 + chunkSize);
+        int minX = Math.max(0, x0 - overlap), maxX = Math.min(sizeX, x1 + overlap);
+        int minY = Math.max(0, y0 - overlap), maxY = Math.min(sizeY, y1 + overlap);
+        // Bounds the number of steps if the world does not find a solution
+        long maxSteps = 8L * (maxX - minX) * (maxY - minY);
+        SplittableRandom random = new SplittableRandom(chunkSeed);
+        // Chunks are generated concurrently, so each one is measured separately
+        WfcMetrics chunkMetrics = metrics == null ? null : new WfcMetrics();
+        try {
+            for (int attempt = 0; attempt < maxAttempts; attempt++) {
+                World world = new World(maxX - minX, maxY - minY, tileSet, random);
+                world.setRecoveryPolicy(recoveryPolicy);
+                world.setMetrics(chunkMetrics);
+                for (int x = minX; x < maxX; x++) {
+                    for (int y = minY; y < maxY; y++) {
+                        WorldChunk finished = finishedChunk(x / chunkSize, y / chunkSize, cx + cy, previous, beforePrevious);
+                        if (finished != null) {
+                            int type = finished.getType(x - finished.getOriginX(), y - finished.getOriginY());
+                            if (!world.constrain(x - minX, y - minY, 1L << type)) {
+                                throw new IllegalStateException("Chunk (" + cx + ", " + cy + ") cannot fit to its finished neighbours");
+                            }
+                        }
+                    }
+                }
+                long steps = 0;
+                try {
+                    while (steps <= maxSteps && world.waveFunctionCollapse() != 0) {
+                        steps++;
+                    }
+                } catch (IllegalStateException e) {
+                    // The world gave up, see World.setMaxRestarts(int)
+                    continue;
+                }
+                if (steps > maxSteps) {
+                    continue;
+                }
+                int[] types = new int[(x1 - x0) * (y1 - y0)];
+                boolean consistent = true;
+                for (int x = x0; x < x1 && consistent; x++) {
+                    for (int y = y0; y < y1; y++) {
+                        if (world.isContradiction(x - minX, y - minY)) {
+                            consistent = false;
+                            break;
+                        }
+                        types[(x - x0) * (y1 - y0) + (y - y0)] = world.getType(x - minX, y - minY);
+                    }
+                }
+                if (consistent) {
+                    return new WorldChunk(cx, cy, x0, y0, x1 - x0, y1 - y0, types);
+                }
+            }
+            throw new IllegalStateException("Chunk (" + cx + ", " + cy + ") could not be generated in " + maxAttempts + " attempts");
+        } finally {
+            if (chunkMetrics != null) {
+                synchronized (metrics) {
+                    metrics.add(chunkMetrics);
+                }
+            }
+        }
+    }
+
+    // The finished chunk at the given chunk coordinates, or null if it is not generated yet.
+    // The overlap is at most the chunk size, so neighbouring chunks are at most two anti-diagonals before.
+    private static WorldChunk finishedChunk(int cx, int cy, int diagonal, WorldChunk[] previous, WorldChunk[] beforePrevious) {
+        int d = cx + cy;
+        if (d == diagonal - 1) {
+            return previous[cx];
+        }
+        if (d == diagonal - 2) {
+            return beforePrevious[cx];
+        }
+        return null;
+    }
+}
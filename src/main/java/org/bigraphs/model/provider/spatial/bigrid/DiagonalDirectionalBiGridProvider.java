@@ -9,6 +9,7 @@ import org.bigraphs.model.provider.base.BAbstractBigraphProvider;
 import org.bigraphs.model.provider.base.BLocationModelData;
 import org.bigraphs.model.provider.spatial.signature.DiagonalDirectionalBiSpaceSignatureProvider;
 
+import java.awt.geom.Point2D;
 import java.util.*;
 
 import static org.bigraphs.framework.core.factory.BigraphFactory.pureBuilder;
@@ -85,36 +86,45 @@ public class DiagonalDirectionalBiGridProvider extends BAbstractBigraphProvider<
         this.lmpd = lmpd;
     }
 
+    /**
+     * Returns the bigrid and updates the index maps of the {@link BLocationModelData}, see {@link #build()}.
+     */
     @Override
     public PureBigraph getBigraph() throws Exception {
-        // Clear previous data
-        lmpd.getLocaleNameToCoordinates().clear();
-        lmpd.getBNodeIdToExternalLocaleName().clear();
-        lmpd.getLocaleNameToRootOrSiteIndex().clear();
+        BiGridBuildResult result = build();
+        result.applyTo(lmpd);
+        mLocale2Index = lmpd.getLocaleNameToRootOrSiteIndex();
+        return result.getBigraph();
+    }
 
+    /**
+     * Builds the bigrid together with its index maps without modifying the {@link BLocationModelData}.
+     *
+     * @return the bigrid and its index maps
+     */
+    public BiGridBuildResult build() throws Exception {
+        Map<String, List<Point2D.Float>> localeNameToCoordinates = new LinkedHashMap<>();
+        Map<String, String> bNodeIdToExternalLocaleName = new HashMap<>();
+        BiMap<String, Integer> locale2Index = HashBiMap.create();
         for (BLocationModelData.Locale each : lmpd.getLocales()) {
-            getLocationModelData().getLocaleNameToCoordinates().putIfAbsent(each.getName(), new ArrayList<>());
-            getLocationModelData().getLocaleNameToCoordinates().get(each.getName()).add(each.getCenter());
+            localeNameToCoordinates.computeIfAbsent(each.getName(), k -> new ArrayList<>()).add(each.getCenter());
         }
 
         PureBigraphBuilder<DynamicSignature> builder = pureBuilder(getSignature());
         Map<String, PureBigraphBuilder<DynamicSignature>.Hierarchy> localeNameToBigraphMap = new LinkedHashMap<>();
         Map<String, String> localeNameToOuternameMap = new LinkedHashMap<>();
 
-        // Make copies
-        LinkedList<BLocationModelData.Locale> locales = new LinkedList<>(lmpd.getLocales());
-        lmpd.setNumOfLocModelSites(locales.size());
-
-        Collections.sort(locales);
+        // Make a sorted copy
+        List<BLocationModelData.Locale> locales = BLocationModelData.sortByIndex(lmpd.getLocales());
 
         if (LOG_DEBUG) {
             System.out.format("Total Locales found: %d\n", locales.size());
             System.out.format("Grid size: %d rows x %d cols\n", rows, cols);
         }
 
-        // Build locale map: index -> locale mapping
-        // Index = row * cols + col
-        Map<Integer, BLocationModelData.Locale> indexToLocaleMap = new LinkedHashMap<>();
+        // Locales and their labels by index: index = row * cols + col
+        List<PureBigraphBuilder<DynamicSignature>.Hierarchy> indexToHierarchy = new ArrayList<>(locales.size());
+        String[] labels = new String[locales.size()];
         int sIx = 0;
         for (BLocationModelData.Locale each : locales) {
             assert each.getName() != null;
@@ -128,17 +138,17 @@ public class DiagonalDirectionalBiGridProvider extends BAbstractBigraphProvider<
 
             String nodeId = localeNameToBigraphMap.get(each.getName()).getLastCreatedNode().getName();
             assert nodeId.equalsIgnoreCase(each.getName());
-            lmpd.getBNodeIdToExternalLocaleName().put(nodeId, each.getName());
+            bNodeIdToExternalLocaleName.put(nodeId, each.getName());
 
             String coordLabel = BiGridSupport.formatParamControl(each.getCenter());
             localeNameToOuternameMap.put(nodeId, coordLabel);
             localeNameToBigraphMap.get(nodeId).top().linkOuter(localeNameToOuternameMap.get(nodeId));
 
-            mLocale2Index.put(each.getName(), sIx);
-            indexToLocaleMap.put(sIx, each);
+            locale2Index.put(each.getName(), sIx);
+            indexToHierarchy.add(localeNameToBigraphMap.get(nodeId));
+            labels[sIx] = coordLabel;
             sIx++;
         }
-        lmpd.setLocaleNameToRootOrSiteIndex(mLocale2Index);
 
         // Now create 8-directional routes for each locale based on its grid position
         // Coordinate system: v0 at (0,0) bottom-right, Forward (x) and Left (y) are positive
@@ -147,37 +157,32 @@ public class DiagonalDirectionalBiGridProvider extends BAbstractBigraphProvider<
             int row = index / cols;
             int col = index % cols;
 
-            BLocationModelData.Locale currentLocale = indexToLocaleMap.get(index);
-            String currentLocaleName = currentLocale.getName();
+            PureBigraphBuilder<DynamicSignature>.Hierarchy current = indexToHierarchy.get(index);
 
             // ========== Cardinal Directions (4) ==========
 
             // ForwardRoute: connects to (row + 1, col) - upward
             if (row < rows - 1) {
                 int forwardIndex = (row + 1) * cols + col;
-                createRoute(indexToLocaleMap, localeNameToBigraphMap, localeNameToOuternameMap,
-                        currentLocaleName, forwardIndex, FORWARD_ROUTE_TYPE);
+                createRoute(current, labels, forwardIndex, FORWARD_ROUTE_TYPE);
             }
 
             // BackRoute: connects to (row - 1, col) - downward
             if (row > 0) {
                 int backIndex = (row - 1) * cols + col;
-                createRoute(indexToLocaleMap, localeNameToBigraphMap, localeNameToOuternameMap,
-                        currentLocaleName, backIndex, BACK_ROUTE_TYPE);
+                createRoute(current, labels, backIndex, BACK_ROUTE_TYPE);
             }
 
             // LeftRoute: connects to (row, col + 1) - leftward
             if (col < cols - 1) {
                 int leftIndex = row * cols + (col + 1);
-                createRoute(indexToLocaleMap, localeNameToBigraphMap, localeNameToOuternameMap,
-                        currentLocaleName, leftIndex, LEFT_ROUTE_TYPE);
+                createRoute(current, labels, leftIndex, LEFT_ROUTE_TYPE);
             }
 
             // RightRoute: connects to (row, col - 1) - rightward
             if (col > 0) {
                 int rightIndex = row * cols + (col - 1);
-                createRoute(indexToLocaleMap, localeNameToBigraphMap, localeNameToOuternameMap,
-                        currentLocaleName, rightIndex, RIGHT_ROUTE_TYPE);
+                createRoute(current, labels, rightIndex, RIGHT_ROUTE_TYPE);
             }
 
             // ========== Diagonal Directions (4) ==========
@@ -185,29 +190,25 @@ public class DiagonalDirectionalBiGridProvider extends BAbstractBigraphProvider<
             // ForwardLeftRoute: connects to (row + 1, col + 1) - upper left
             if (row < rows - 1 && col < cols - 1) {
                 int forwardLeftIndex = (row + 1) * cols + (col + 1);
-                createRoute(indexToLocaleMap, localeNameToBigraphMap, localeNameToOuternameMap,
-                        currentLocaleName, forwardLeftIndex, FORWARD_LEFT_ROUTE_TYPE);
+                createRoute(current, labels, forwardLeftIndex, FORWARD_LEFT_ROUTE_TYPE);
             }
 
             // ForwardRightRoute: connects to (row + 1, col - 1) - upper right
             if (row < rows - 1 && col > 0) {
                 int forwardRightIndex = (row + 1) * cols + (col - 1);
-                createRoute(indexToLocaleMap, localeNameToBigraphMap, localeNameToOuternameMap,
-                        currentLocaleName, forwardRightIndex, FORWARD_RIGHT_ROUTE_TYPE);
+                createRoute(current, labels, forwardRightIndex, FORWARD_RIGHT_ROUTE_TYPE);
             }
 
             // BackLeftRoute: connects to (row - 1, col + 1) - lower left
             if (row > 0 && col < cols - 1) {
                 int backLeftIndex = (row - 1) * cols + (col + 1);
-                createRoute(indexToLocaleMap, localeNameToBigraphMap, localeNameToOuternameMap,
-                        currentLocaleName, backLeftIndex, BACK_LEFT_ROUTE_TYPE);
+                createRoute(current, labels, backLeftIndex, BACK_LEFT_ROUTE_TYPE);
             }
 
             // BackRightRoute: connects to (row - 1, col - 1) - lower right
             if (row > 0 && col > 0) {
                 int backRightIndex = (row - 1) * cols + (col - 1);
-                createRoute(indexToLocaleMap, localeNameToBigraphMap, localeNameToOuternameMap,
-                        currentLocaleName, backRightIndex, BACK_RIGHT_ROUTE_TYPE);
+                createRoute(current, labels, backRightIndex, BACK_RIGHT_ROUTE_TYPE);
             }
         }
 
@@ -217,23 +218,19 @@ public class DiagonalDirectionalBiGridProvider extends BAbstractBigraphProvider<
             root.child(each);
         }
 
-        return builder.create();
+        return new BiGridBuildResult(builder.create(), locales.size(), localeNameToCoordinates, bNodeIdToExternalLocaleName, locale2Index);
     }
 
     /**
      * Helper method to create a route from current locale to target locale.
      */
     private void createRoute(
-            Map<Integer, BLocationModelData.Locale> indexToLocaleMap,
-            Map<String, PureBigraphBuilder<DynamicSignature>.Hierarchy> localeNameToBigraphMap,
-            Map<String, String> localeNameToOuternameMap,
-            String currentLocaleName,
+            PureBigraphBuilder<DynamicSignature>.Hierarchy current,
+            String[] labels,
             int targetIndex,
             String routeType) throws Exception {
-        BLocationModelData.Locale targetLocale = indexToLocaleMap.get(targetIndex);
-        if (targetLocale != null) {
-            String targetOuterName = localeNameToOuternameMap.get(targetLocale.getName());
-            localeNameToBigraphMap.get(currentLocaleName).child(routeType).linkOuter(targetOuterName).top();
+        if (targetIndex < labels.length) {
+            current.child(routeType).linkOuter(labels[targetIndex]).top();
         }
     }
 
@@ -9,6 +9,7 @@ import org.bigraphs.model.provider.base.BAbstractBigraphProvider;
 import org.bigraphs.model.provider.base.BLocationModelData;
 import org.bigraphs.model.provider.spatial.signature.DirectionalBiSpaceSignatureProvider;
 
+import java.awt.geom.Point2D;
 import java.util.*;
 
 import static org.bigraphs.framework.core.factory.BigraphFactory.pureBuilder;
@@ -73,36 +74,45 @@ public class DirectionalBiGridProvider extends BAbstractBigraphProvider<DynamicS
         this.lmpd = lmpd;
     }
 
+    /**
+     * Returns the bigrid and updates the index maps of the {@link BLocationModelData}, see {@link #build()}.
+     */
     @Override
     public PureBigraph getBigraph() throws Exception {
-        // Clear previous data
-        lmpd.getLocaleNameToCoordinates().clear();
-        lmpd.getBNodeIdToExternalLocaleName().clear();
-        lmpd.getLocaleNameToRootOrSiteIndex().clear();
+        BiGridBuildResult result = build();
+        result.applyTo(lmpd);
+        mLocale2Index = lmpd.getLocaleNameToRootOrSiteIndex();
+        return result.getBigraph();
+    }
 
+    /**
+     * Builds the bigrid together with its index maps without modifying the {@link BLocationModelData}.
+     *
+     * @return the bigrid and its index maps
+     */
+    public BiGridBuildResult build() throws Exception {
+        Map<String, List<Point2D.Float>> localeNameToCoordinates = new LinkedHashMap<>();
+        Map<String, String> bNodeIdToExternalLocaleName = new HashMap<>();
+        BiMap<String, Integer> locale2Index = HashBiMap.create();
         for (BLocationModelData.Locale each : lmpd.getLocales()) {
-            getLocationModelData().getLocaleNameToCoordinates().putIfAbsent(each.getName(), new ArrayList<>());
-            getLocationModelData().getLocaleNameToCoordinates().get(each.getName()).add(each.getCenter());
+            localeNameToCoordinates.computeIfAbsent(each.getName(), k -> new ArrayList<>()).add(each.getCenter());
         }
 
         PureBigraphBuilder<DynamicSignature> builder = pureBuilder(getSignature());
         Map<String, PureBigraphBuilder<DynamicSignature>.Hierarchy> localeNameToBigraphMap = new LinkedHashMap<>();
         Map<String, String> localeNameToOuternameMap = new LinkedHashMap<>();
 
-        // Make copies
-        LinkedList<BLocationModelData.Locale> locales = new LinkedList<>(lmpd.getLocales());
-        lmpd.setNumOfLocModelSites(locales.size());
-
-        Collections.sort(locales);
+        // Make a sorted copy
+        List<BLocationModelData.Locale> locales = BLocationModelData.sortByIndex(lmpd.getLocales());
 
         if (LOG_DEBUG) {
             System.out.format("Total Locales found: %d\n", locales.size());
             System.out.format("Grid size: %d rows x %d cols\n", rows, cols);
         }
 
-        // Build locale map: index -> locale mapping
-        // Index = row * cols + col
-        Map<Integer, BLocationModelData.Locale> indexToLocaleMap = new LinkedHashMap<>();
+        // Locales and their labels by index: index = row * cols + col
+        List<PureBigraphBuilder<DynamicSignature>.Hierarchy> indexToHierarchy = new ArrayList<>(locales.size());
+        String[] labels = new String[locales.size()];
         int sIx = 0;
         for (BLocationModelData.Locale each : locales) {
             assert each.getName() != null;
@@ -116,17 +126,17 @@ public class DirectionalBiGridProvider extends BAbstractBigraphProvider<DynamicS
 
             String nodeId = localeNameToBigraphMap.get(each.getName()).getLastCreatedNode().getName();
             assert nodeId.equalsIgnoreCase(each.getName());
-            lmpd.getBNodeIdToExternalLocaleName().put(nodeId, each.getName());
+            bNodeIdToExternalLocaleName.put(nodeId, each.getName());
 
             String coordLabel = BiGridSupport.formatParamControl(each.getCenter());
             localeNameToOuternameMap.put(nodeId, coordLabel);
             localeNameToBigraphMap.get(nodeId).top().linkOuter(localeNameToOuternameMap.get(nodeId));
 
-            mLocale2Index.put(each.getName(), sIx);
-            indexToLocaleMap.put(sIx, each);
+            locale2Index.put(each.getName(), sIx);
+            indexToHierarchy.add(localeNameToBigraphMap.get(nodeId));
+            labels[sIx] = coordLabel;
             sIx++;
         }
-        lmpd.setLocaleNameToRootOrSiteIndex(mLocale2Index);
 
         // Now create directional routes for each locale based on its grid position
         // Coordinate system: v0 at (0,0) bottom-right, Forward (x) and Left (y) are positive
@@ -138,17 +148,14 @@ public class DirectionalBiGridProvider extends BAbstractBigraphProvider<DynamicS
             int row = index / cols;
             int col = index % cols;
 
-            BLocationModelData.Locale currentLocale = indexToLocaleMap.get(index);
-            String currentLocaleName = currentLocale.getName();
+            PureBigraphBuilder<DynamicSignature>.Hierarchy current = indexToHierarchy.get(index);
 
             // ForwardRoute: connects to the locale in the next row (row + 1, higher x coordinate, upward)
             // Forward is positive direction (upward), so row + 1 means Forward
             if (row < rows - 1) {
                 int forwardIndex = (row + 1) * cols + col;
-                BLocationModelData.Locale forwardLocale = indexToLocaleMap.get(forwardIndex);
-                if (forwardLocale != null) {
-                    String targetOuterName = localeNameToOuternameMap.get(forwardLocale.getName());
-                    localeNameToBigraphMap.get(currentLocaleName).child(FORWARD_ROUTE_TYPE).linkOuter(targetOuterName).top();
+                if (forwardIndex < labels.length) {
+                    current.child(FORWARD_ROUTE_TYPE).linkOuter(labels[forwardIndex]).top();
                 }
             }
 
@@ -156,10 +163,8 @@ public class DirectionalBiGridProvider extends BAbstractBigraphProvider<DynamicS
             // Back is negative direction (downward), so row - 1 means Back
             if (row > 0) {
                 int backIndex = (row - 1) * cols + col;
-                BLocationModelData.Locale backLocale = indexToLocaleMap.get(backIndex);
-                if (backLocale != null) {
-                    String targetOuterName = localeNameToOuternameMap.get(backLocale.getName());
-                    localeNameToBigraphMap.get(currentLocaleName).child(BACK_ROUTE_TYPE).linkOuter(targetOuterName).top();
+                if (backIndex < labels.length) {
+                    current.child(BACK_ROUTE_TYPE).linkOuter(labels[backIndex]).top();
                 }
             }
 
@@ -167,10 +172,8 @@ public class DirectionalBiGridProvider extends BAbstractBigraphProvider<DynamicS
             // Left is positive direction (leftward), so col + 1 means Left
             if (col < cols - 1) {
                 int leftIndex = row * cols + (col + 1);
-                BLocationModelData.Locale leftLocale = indexToLocaleMap.get(leftIndex);
-                if (leftLocale != null) {
-                    String targetOuterName = localeNameToOuternameMap.get(leftLocale.getName());
-                    localeNameToBigraphMap.get(currentLocaleName).child(LEFT_ROUTE_TYPE).linkOuter(targetOuterName).top();
+                if (leftIndex < labels.length) {
+                    current.child(LEFT_ROUTE_TYPE).linkOuter(labels[leftIndex]).top();
                 }
             }
 
@@ -178,10 +181,8 @@ public class DirectionalBiGridProvider extends BAbstractBigraphProvider<DynamicS
             // Right is negative direction (rightward), so col - 1 means Right
             if (col > 0) {
                 int rightIndex = row * cols + (col - 1);
-                BLocationModelData.Locale rightLocale = indexToLocaleMap.get(rightIndex);
-                if (rightLocale != null) {
-                    String targetOuterName = localeNameToOuternameMap.get(rightLocale.getName());
-                    localeNameToBigraphMap.get(currentLocaleName).child(RIGHT_ROUTE_TYPE).linkOuter(targetOuterName).top();
+                if (rightIndex < labels.length) {
+                    current.child(RIGHT_ROUTE_TYPE).linkOuter(labels[rightIndex]).top();
                 }
             }
         }
@@ -192,7 +193,7 @@ public class DirectionalBiGridProvider extends BAbstractBigraphProvider<DynamicS
             root.child(each);
         }
 
-        return builder.create();
+        return new BiGridBuildResult(builder.create(), locales.size(), localeNameToCoordinates, bNodeIdToExternalLocaleName, locale2Index);
     }
 
     public <T extends DirectionalBiGridProvider> T makeGround(boolean makeGround) {
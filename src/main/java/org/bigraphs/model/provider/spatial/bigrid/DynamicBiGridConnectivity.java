@@ -0,0 +1,268 @@
+package org.bigraphs.model.provider.spatial.bigrid;
+
+import org.bigraphs.model.provider.util.LongIntHashMap;
+
+import java.util.Arrays;
+
+/**
+ * Maintains the connected components of a bigrid while routes are added and removed, e.g., for blocked corridors.
+ * <p>
+ * Locales are identified by their ids in the {@link BiGridGraph}. Two locales are neighbours as long as at least one
+ * route exists between them (in either direction), i.e., connectivity is maintained ignoring the direction of routes.
+ * For bidirectional bigrids this is the same as {@link BiGridConnectivityChecker#isFullyConnected(org.bigraphs.framework.core.impl.pure.PureBigraph)}.
+ * <p>
+ * Each locale stores the id of its component, so {@link #isFullyConnected()} and {@link #connected(int, int)}
+ * take constant time. Updates only touch a part of the grid:
+ * <ul>
+ *     <li>Adding a route between two components relabels the smaller component.</li>
+ *     <li>Removing the last route between two locales starts two breadth-first searches from both locales that are
+ *     advanced alternately. They stop as soon as they meet (still connected), or when one of them is exhausted,
+ *     whose visited locales then form a new component. Thus, the cost is bounded by the smaller side.</li>
+ * </ul>
+ * Instances are not thread-safe.
+ */
+public class DynamicBiGridConnectivity {
+
+    private final int numOfLocales;
+    // adjacency of the undirected graph; parallel routes are counted by the multiplicity map
+    private final int[][] neighbours;
+    private final int[] degree;
+    private final LongIntHashMap multiplicity = new LongIntHashMap();
+    private final int[] componentOf;
+    private final int[] componentSize;
+    // unused component ids
+    private final int[] freeIds;
+    private int numOfFreeIds = 0;
+    private int numOfComponents;
+    // search state, reused between updates
+    private final int[] visitedA;
+    private final int[] visitedB;
+    private final int[] queueA;
+    private final int[] queueB;
+    private int epoch = 0;
+
+    /**
+     * Creates the structure for the given number of locales without any routes.
+     */
+    public DynamicBiGridConnectivity(int numOfLocales) {
+        this.numOfLocales = numOfLocales;
+        neighbours = new int[numOfLocales][];
+        degree = new int[numOfLocales];
+        componentOf = new int[numOfLocales];
+        componentSize = new int[numOfLocales];
+        freeIds = new int[numOfLocales];
+        for (int v = 0; v < numOfLocales; v++) {
+            neighbours[v] = new int[4];
+            componentOf[v] = v;
+            componentSize[v] = 1;
+        }
+        numOfComponents = numOfLocales;
+        visitedA = new int[numOfLocales];
+        visitedB = new int[numOfLocales];
+        queueA = new int[numOfLocales];
+        queueB = new int[numOfLocales];
+    }
+
+    /**
+     * Creates the structure with all routes of the given locale graph.
+     */
+    public static DynamicBiGridConnectivity of(BiGridGraph graph) {
+        DynamicBiGridConnectivity connectivity = new DynamicBiGridConnectivity(graph.size());
+        for (int v = 0; v < graph.size(); v++) {
+            for (int e = graph.getFirstEdge(v); e < graph.getFirstEdge(v + 1); e++) {
+                connectivity.addRoute(v, graph.getTarget(e));
+            }
+        }
+        return connectivity;
+    }
+
+    /**
+     * Adds a route between two locales.
+     *
+     * @return {@code true} if two components were merged
+     */
+    public boolean addRoute(int a, int b) {
+        if (a == b) {
+            return false;
+        }
+        long key = pairKey(a, b);
+        int count = multiplicity.get(key);
+        multiplicity.put(key, count == LongIntHashMap.NO_VALUE ? 1 : count + 1);
+        if (count != LongIntHashMap.NO_VALUE) {
+            return false;
+        }
+        int ca = componentOf[a];
+        int cb = componentOf[b];
+        boolean merged = ca != cb;
+        if (merged) {
+            // Relabel the smaller component before the new edge joins both
+            int small = componentSize[ca] < componentSize[cb] ? a : b;
+            int target = small == a ? cb : ca;
+            int freed = componentOf[small];
+            componentSize[target] += componentSize[freed];
+            relabel(small, target);
+            componentSize[freed] = 0;
+            freeIds[numOfFreeIds++] = freed;
+            numOfComponents--;
+        }
+        link(a, b);
+        link(b, a);
+        return merged;
+    }
+
+    /**
+     * Removes a route between two locales. Parallel routes are removed one at a time.
+     *
+     * @return {@code true} if a component was split
+     * @throws IllegalArgumentException if there is no route between both locales
+     */
+    public boolean removeRoute(int a, int b) {
+        if (a == b) {
+            return false;
+        }
+        long key = pairKey(a, b);
+        int count = multiplicity.get(key);
+        if (count == LongIntHashMap.NO_VALUE) {
+            throw new IllegalArgumentException("No route between " + a + " and " + b);
+        }
+        if (count > 1) {
+            multiplicity.put(key, count - 1);
+            return false;
+        }
+        multiplicity.remove(key);
+        unlink(a, b);
+        unlink(b, a);
+        return splitIfDisconnected(a, b);
+    }
+
+    public boolean isFullyConnected() {
+        return numOfComponents <= 1;
+    }
+
+    public boolean connected(int a, int b) {
+        return componentOf[a] == componentOf[b];
+    }
+
+    public int getNumOfComponents() {
+        return numOfComponents;
+    }
+
+    /**
+     * @return the id of the component of the locale; ids are stable until the component is merged or split
+     */
+    public int getComponentOf(int locale) {
+        return componentOf[locale];
+    }
+
+    /**
+     * @return the number of locales in the component of the given locale
+     */
+    public int getComponentSize(int locale) {
+        return componentSize[componentOf[locale]];
+    }
+
+    /**
+     * @return the number of routes between both locales (in either direction)
+     */
+    public int getNumOfRoutes(int a, int b) {
+        int count = multiplicity.get(pairKey(a, b));
+        return count == LongIntHashMap.NO_VALUE ? 0 : count;
+    }
+
+    public int size() {
+        return numOfLocales;
+    }
+
+    // Alternating breadth-first searches from both endpoints of the removed edge
+    private boolean splitIfDisconnected(int a, int b) {
+        nextEpoch();
+        int headA = 0, tailA = 0, headB = 0, tailB = 0;
+        queueA[tailA++] = a;
+        visitedA[a] = epoch;
+        queueB[tailB++] = b;
+        visitedB[b] = epoch;
+        while (true) {
+            if (headA == tailA) {
+                split(queueA, tailA);
+                return true;
+            }
+            int v = queueA[headA++];
+            for (int i = 0; i < degree[v]; i++) {
+                int w = neighbours[v][i];
+                if (visitedB[w] == epoch) return false;
+                if (visitedA[w] != epoch) {
+                    visitedA[w] = epoch;
+                    queueA[tailA++] = w;
+                }
+            }
+            if (headB == tailB) {
+                split(queueB, tailB);
+                return true;
+            }
+            v = queueB[headB++];
+            for (int i = 0; i < degree[v]; i++) {
+                int w = neighbours[v][i];
+                if (visitedA[w] == epoch) return false;
+                if (visitedB[w] != epoch) {
+                    visitedB[w] = epoch;
+                    queueB[tailB++] = w;
+                }
+            }
+        }
+    }
+
+    private void split(int[] members, int numOfMembers) {
+        int oldId = componentOf[members[0]];
+        int newId = freeIds[--numOfFreeIds];
+        for (int i = 0; i < numOfMembers; i++) {
+            componentOf[members[i]] = newId;
+        }
+        componentSize[newId] = numOfMembers;
+        componentSize[oldId] -= numOfMembers;
+        numOfComponents++;
+    }
+
+    private void relabel(int start, int componentId) {
+        int head = 0, tail = 0;
+        queueA[tail++] = start;
+        componentOf[start] = componentId;
+        while (head < tail) {
+            int v = queueA[head++];
+            for (int i = 0; i < degree[v]; i++) {
+                int w = neighbours[v][i];
+                if (componentOf[w] != componentId) {
+                    componentOf[w] = componentId;
+                    queueA[tail++] = w;
+                }
+            }
+        }
+    }
+
+    private void nextEpoch() {
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(visitedA, 0);
+            Arrays.fill(visitedB, 0);
+            epoch = 1;
+        }
+    }
+
+    private void link(int v, int w) {
+        if (degree[v] == neighbours[v].length) {
+            neighbours[v] = Arrays.copyOf(neighbours[v], degree[v] * 2);
+        }
+        neighbours[v][degree[v]++] = w;
+    }
+
+    private void unlink(int v, int w) {
+        for (int i = 0; i < degree[v]; i++) {
+            if (neighbours[v][i] == w) {
+                neighbours[v][i] = neighbours[v][--degree[v]];
+                return;
+            }
+        }
+    }
+
+    private static long pairKey(int a, int b) {
+        return ((long) Math.min(a, b) << 32) | Math.max(a, b);
+    }
+}
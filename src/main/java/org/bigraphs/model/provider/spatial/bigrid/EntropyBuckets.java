@@ -0,0 +1,96 @@
+package org.bigraphs.model.provider.spatial.bigrid;
+
+import java.util.Arrays;
+
+/**
+ * Tiles of a {@link World} grouped by their entropy, to select the tiles with the lowest entropy without scanning
+ * the world.
+ * <p>
+ * There is one bucket per entropy {@code 1..maxEntropy} holding tile indices; tiles with entropy 0 (collapsed or
+ * contradicting) are in no bucket. Each tile knows its position in its bucket, so it is moved to another bucket in
+ * constant time by swapping it with the last tile of its bucket. The lowest non-empty bucket is tracked by a lower
+ * bound that only moves up while buckets are found empty, so the lookup is amortized constant.
+ */
+final class EntropyBuckets {
+
+    private final int[][] buckets;
+    private final int[] bucketSizes;
+    private final int[] entropyOf;
+    private final int[] positionOf;
+    private int lowest;
+    private int size = 0;
+
+    EntropyBuckets(int numOfTiles, int maxEntropy) {
+        buckets = new int[maxEntropy + 1][];
+        bucketSizes = new int[maxEntropy + 1];
+        for (int entropy = 1; entropy <= maxEntropy; entropy++) {
+            buckets[entropy] = new int[entropy == maxEntropy ? Math.max(1, numOfTiles) : 16];
+        }
+        entropyOf = new int[numOfTiles];
+        positionOf = new int[numOfTiles];
+        lowest = maxEntropy + 1;
+    }
+
+    /**
+     * Moves a tile into the bucket of its new entropy, or removes it if the entropy is 0.
+     */
+    void update(int tile, int entropy) {
+        int current = entropyOf[tile];
+        if (current == entropy) {
+            return;
+        }
+        if (current > 0) {
+            // Swap-remove from the current bucket
+            int[] bucket = buckets[current];
+            int last = bucket[--bucketSizes[current]];
+            bucket[positionOf[tile]] = last;
+            positionOf[last] = positionOf[tile];
+            size--;
+        }
+        entropyOf[tile] = entropy;
+        if (entropy > 0) {
+            int[] bucket = buckets[entropy];
+            if (bucketSizes[entropy] == bucket.length) {
+                bucket = buckets[entropy] = Arrays.copyOf(bucket, bucket.length * 2);
+            }
+            positionOf[tile] = bucketSizes[entropy];
+            bucket[bucketSizes[entropy]++] = tile;
+            size++;
+            if (entropy < lowest) {
+                lowest = entropy;
+            }
+        }
+    }
+
+    /**
+     * @return the lowest entropy of all tiles in the buckets, or 0 if there are none
+     */
+    int lowestEntropy() {
+        if (size == 0) {
+            return 0;
+        }
+        while (bucketSizes[lowest] == 0) {
+            lowest++;
+        }
+        return lowest;
+    }
+
+    int size(int entropy) {
+        return bucketSizes[entropy];
+    }
+
+    int get(int entropy, int index) {
+        return buckets[entropy][index];
+    }
+
+    /**
+     * @return the number of tiles in the buckets, i.e., of tiles that are not collapsed yet
+     */
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+}
@@ -0,0 +1,158 @@
+package org.bigraphs.model.provider.spatial.bigrid;
+
+import java.awt.geom.Point2D;
+
+/**
+ * Integer lattice keys for the locales of 2D bigrids, packed into a single {@code long}.
+ * <p>
+ * Keys are used internally to identify, hash and compare grid positions; the string labels
+ * (see {@link BiGridSupport#formatParamControl(Point2D.Float)}) are only produced when the links of a bigraph
+ * are created. A key holds the lattice value of the x coordinate in the upper and of the y coordinate in the lower
+ * 32 bits.
+ * <p>
+ * The lattice value of a coordinate encodes its label component (see {@link BiGridLabelFormatter}), i.e., the sign,
+ * the integer part and the rounded fractional part in {@code 0..100}, with the same float arithmetic. Thus, two
+ * coordinates have the same key if and only if they have the same label, and {@link #toLabel(long)} restores the
+ * label from the key. Coordinates must not exceed {@link #MAX_COORDINATE} in magnitude. The lattice is an encoding of
+ * the labels rather than of the grid, so the keys of neighbouring locales cannot be derived from a key; the adjacency
+ * of 2D locales is given by the routes of the {@link org.bigraphs.model.provider.base.BLocationModelData}.
+ * <p>
+ * Regular 3D grids (see {@link ThreeDimensionalBiGridProvider}) are keyed by the row, column and layer of a locale
+ * instead, as signed 21-bit fields (see {@link #of(int, int, int)}). Their neighbours are derived arithmetically by
+ * {@link #offset(long, int, int, int)}.
+ */
+public final class GridKey {
+
+    /**
+     * The largest magnitude of a coordinate that has a lattice value.
+     */
+    public static final float MAX_COORDINATE = 1e7f;
+
+    /**
+     * The largest magnitude of a row, column or layer of a 3D key.
+     */
+    public static final int MAX_3D = (1 << 20) - 1;
+
+    // Fractional parts are rounded to 0..100, so 101 lattice values per integer part keep the labels apart
+    private static final int FRACTIONS = 101;
+
+    // 3D keys hold the layer in bits 42..62, the row in bits 21..41 and the column in bits 0..20
+    private static final int BITS_3D = 21;
+    private static final long MASK_3D = (1L << BITS_3D) - 1;
+
+    private GridKey() {
+    }
+
+    public static long of(int row, int col) {
+        return ((long) row << 32) | (col & 0xFFFFFFFFL);
+    }
+
+    public static int row(long key) {
+        return (int) (key >> 32);
+    }
+
+    public static int col(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Returns the key of the locale in a row, column and layer of a regular 3D grid.
+     *
+     * @throws IllegalArgumentException if a component exceeds {@link #MAX_3D} in magnitude
+     */
+    public static long of(int row, int col, int layer) {
+        checkRange3D(row);
+        checkRange3D(col);
+        checkRange3D(layer);
+        return ((layer & MASK_3D) << (2 * BITS_3D)) | ((row & MASK_3D) << BITS_3D) | (col & MASK_3D);
+    }
+
+    public static int row3D(long key) {
+        return (int) (key << (64 - 2 * BITS_3D) >> (64 - BITS_3D));
+    }
+
+    public static int col3D(long key) {
+        return (int) (key << (64 - BITS_3D) >> (64 - BITS_3D));
+    }
+
+    public static int layer3D(long key) {
+        return (int) (key << (64 - 3 * BITS_3D) >> (64 - BITS_3D));
+    }
+
+    /**
+     * Returns the key of a neighbour of a 3D key, e.g., {@code offset(key, 1, 0, 0)} is the key of the next row.
+     *
+     * @throws IllegalArgumentException if a component of the neighbour exceeds {@link #MAX_3D} in magnitude
+     */
+    public static long offset(long key, int dRow, int dCol, int dLayer) {
+        return of(row3D(key) + dRow, col3D(key) + dCol, layer3D(key) + dLayer);
+    }
+
+    private static void checkRange3D(int value) {
+        if (value < -MAX_3D || value > MAX_3D) {
+            throw new IllegalArgumentException("Component " + value + " exceeds the range of 3D grid keys");
+        }
+    }
+
+    /**
+     * Returns the key of a coordinate on the lattice of the labels.
+     *
+     * @throws IllegalArgumentException if a component is NaN or exceeds {@link #MAX_COORDINATE} in magnitude
+     */
+    public static long ofCoordinate(Point2D.Float coordinate) {
+        return ofCoordinate(coordinate.x, coordinate.y);
+    }
+
+    public static long ofCoordinate(float x, float y) {
+        return of(toLattice(x), toLattice(y));
+    }
+
+    /**
+     * Returns the lattice value of a coordinate, which is equal for two coordinates if and only if
+     * {@link BiGridSupport#formatCoordinate(float)} is equal.
+     *
+     * @throws IllegalArgumentException if the value is NaN or exceeds {@link #MAX_COORDINATE} in magnitude
+     */
+    public static int toLattice(float value) {
+        if (!(Math.abs(value) <= MAX_COORDINATE)) {
+            throw new IllegalArgumentException("Coordinate " + value + " exceeds the range of grid keys");
+        }
+        // Same arithmetic as BiGridLabelFormatter.appendCoordinate()
+        boolean isNegative = value < 0;
+        value = Math.abs(value);
+        int integerPart = (int) value;
+        int fractionalPart = Math.round((value - integerPart) * 100);
+        int lattice = integerPart * FRACTIONS + fractionalPart;
+        return isNegative ? -lattice - 1 : lattice;
+    }
+
+    /**
+     * @return the coordinate label of a key, e.g., {@code C_1_50__N2_25}
+     */
+    public static String toLabel(long key) {
+        StringBuilder sb = new StringBuilder(24).append("C_");
+        appendLattice(sb, row(key)).append("__");
+        return appendLattice(sb, col(key)).toString();
+    }
+
+    private static StringBuilder appendLattice(StringBuilder sb, int lattice) {
+        if (lattice < 0) {
+            sb.append('N');
+            lattice = -lattice - 1;
+        }
+        int fractionalPart = lattice % FRACTIONS;
+        sb.append(lattice / FRACTIONS).append('_');
+        if (fractionalPart < 10) {
+            sb.append('0');
+        }
+        return sb.append(fractionalPart);
+    }
+
+    public static String toString(long key) {
+        return "(" + row(key) + ", " + col(key) + ")";
+    }
+
+    public static String toString3D(long key) {
+        return "(" + row3D(key) + ", " + col3D(key) + ", " + layer3D(key) + ")";
+    }
+}
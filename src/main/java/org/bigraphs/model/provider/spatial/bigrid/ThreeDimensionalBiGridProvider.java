@@ -9,7 +9,8 @@ import org.bigraphs.model.provider.base.BAbstractBigraphProvider;
 import org.bigraphs.model.provider.base.BLocationModelData;
 import org.bigraphs.model.provider.spatial.signature.ThreeDimensionalBiSpaceSignatureProvider;
 
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import static org.bigraphs.framework.core.factory.BigraphFactory.pureBuilder;
@@ -72,6 +73,18 @@ public class ThreeDimensionalBiGridProvider extends BAbstractBigraphProvider<Dyn
     private boolean makeWorldModelGround = false;
     protected BiMap<String, Integer> mLocale2Index = HashBiMap.create();
 
+    // Routes of a locale by the row, column and layer offsets of their target, in the order they are created
+    private static final int[][] ROUTE_OFFSETS = {
+            {1, 0, 0}, {-1, 0, 0}, {0, 1, 0}, {0, -1, 0},
+            {1, 1, 0}, {1, -1, 0}, {-1, 1, 0}, {-1, -1, 0},
+            {0, 0, 1}, {0, 0, -1}
+    };
+    private static final String[] ROUTE_TYPES = {
+            FORWARD_ROUTE_TYPE, BACK_ROUTE_TYPE, LEFT_ROUTE_TYPE, RIGHT_ROUTE_TYPE,
+            FORWARD_LEFT_ROUTE_TYPE, FORWARD_RIGHT_ROUTE_TYPE, BACK_LEFT_ROUTE_TYPE, BACK_RIGHT_ROUTE_TYPE,
+            UP_ROUTE_TYPE, DOWN_ROUTE_TYPE
+    };
+
     // Grid dimensions
     private int rows;
     private int cols;
@@ -124,16 +137,36 @@ public class ThreeDimensionalBiGridProvider extends BAbstractBigraphProvider<Dyn
         return lmpd;
     }
 
+    /**
+     * Returns the bigrid and updates the locale index map of the {@link BLocationModelData}, see {@link #build()}.
+     */
     @Override
     public PureBigraph getBigraph() throws Exception {
-        PureBigraphBuilder<DynamicSignature> builder = pureBuilder(getSignature());
+        BiGridBuildResult result = build();
+        lmpd.setLocaleNameToRootOrSiteIndex(HashBiMap.create(result.getLocaleNameToRootOrSiteIndex()));
+        mLocale2Index = lmpd.getLocaleNameToRootOrSiteIndex();
+        return result.getBigraph();
+    }
 
-        // Maps for all locales across all layers
-        Map<String, PureBigraphBuilder<DynamicSignature>.Hierarchy> localeNameToBigraphMap = new LinkedHashMap<>();
-        Map<String, String> localeNameToOuternameMap = new LinkedHashMap<>();
+    /**
+     * Builds the bigrid together with its locale index map without modifying the {@link BLocationModelData}.
+     * The locale names of the index map have the form {@code v<index2D>_L<layer>}. Locales and their neighbours are
+     * identified by 3D {@link GridKey}s; labels are only formatted for the outer names.
+     *
+     * @return the bigrid and its index maps
+     */
+    public BiGridBuildResult build() throws Exception {
+        // The key one past the last locale must be a key, so that the neighbours of all locales are keys
+        GridKey.of(rows, cols, layers);
+        PureBigraphBuilder<DynamicSignature> builder = pureBuilder(getSignature());
+        BiMap<String, Integer> locale2Index = HashBiMap.create();
 
-        // 3D index: [layer][2D_index] -> locale
-        Map<Integer, Map<Integer, String>> layer2DIndexToLocaleName = new LinkedHashMap<>();
+        // All locales across all layers, their keys and labels by global index: layer * rows * cols + row * cols + col
+        int layerSize = rows * cols;
+        int numOfLocales = layers * layerSize;
+        List<PureBigraphBuilder<DynamicSignature>.Hierarchy> hierarchies = new ArrayList<>(numOfLocales);
+        long[] keys = new long[numOfLocales];
+        String[] labels = new String[numOfLocales];
 
         if (LOG_DEBUG) {
             System.out.format("Creating 3D Bigrid: %d rows x %d cols x %d layers\n", rows, cols, layers);
@@ -144,147 +177,70 @@ public class ThreeDimensionalBiGridProvider extends BAbstractBigraphProvider<Dyn
 
         // Create locales for all layers
         for (int layer = 0; layer < layers; layer++) {
-            float zCoord = startZ + layer * layerHeight;
-            Map<Integer, String> currentLayerMap = new LinkedHashMap<>();
-            layer2DIndexToLocaleName.put(layer, currentLayerMap);
-
             for (int row = 0; row < rows; row++) {
                 for (int col = 0; col < cols; col++) {
-                    int index2D = row * cols + col;
-
-                    // Calculate 3D coordinates using start position and step sizes
-                    float xCoord = startX + row * stepSizeX;
-                    float yCoord = startY + col * stepSizeY;
-
                     // Generate unique locale name including layer
-                    String localeName = String.format("v%d_L%d", index2D, layer);
-                    currentLayerMap.put(index2D, localeName);
+                    String localeName = "v" + (row * cols + col) + "_L" + layer;
 
                     // Create locale hierarchy
-                    if (makeWorldModelGround) {
-                        localeNameToBigraphMap.put(localeName, builder.hierarchy(LOCALE_TYPE).top());
-                    } else {
-                        localeNameToBigraphMap.put(localeName, builder.hierarchy(LOCALE_TYPE).site().top());
-                    }
+                    PureBigraphBuilder<DynamicSignature>.Hierarchy locale = makeWorldModelGround
+                            ? builder.hierarchy(LOCALE_TYPE).top()
+                            : builder.hierarchy(LOCALE_TYPE).site().top();
+                    hierarchies.add(locale);
 
-                    // Create 3D coordinate label
-                    String coordLabel = BiGridSupport.formatParamControl3D(xCoord, yCoord, zCoord);
-                    localeNameToOuternameMap.put(localeName, coordLabel);
-                    localeNameToBigraphMap.get(localeName).top().linkOuter(coordLabel);
+                    // The label is only formatted for the outer name of the locale
+                    keys[globalLocaleIndex] = GridKey.of(row, col, layer);
+                    labels[globalLocaleIndex] = toLabel(keys[globalLocaleIndex]);
+                    locale.top().linkOuter(labels[globalLocaleIndex]);
 
-                    mLocale2Index.put(localeName, globalLocaleIndex);
+                    locale2Index.put(localeName, globalLocaleIndex);
                     globalLocaleIndex++;
                 }
             }
         }
 
-        // Create routes for each layer and between layers
-        for (int layer = 0; layer < layers; layer++) {
-            Map<Integer, String> currentLayerMap = layer2DIndexToLocaleName.get(layer);
-
-            for (int row = 0; row < rows; row++) {
-                for (int col = 0; col < cols; col++) {
-                    int index2D = row * cols + col;
-                    String currentLocaleName = currentLayerMap.get(index2D);
-
-                    // ========== Horizontal Routes (same as 2D diagonal directional bigrid) ==========
-
-                    // Cardinal directions
-                    if (row < rows - 1) {
-                        int forwardIndex = (row + 1) * cols + col;
-                        createRoute(currentLayerMap, localeNameToBigraphMap, localeNameToOuternameMap,
-                                currentLocaleName, forwardIndex, FORWARD_ROUTE_TYPE);
-                    }
-
-                    if (row > 0) {
-                        int backIndex = (row - 1) * cols + col;
-                        createRoute(currentLayerMap, localeNameToBigraphMap, localeNameToOuternameMap,
-                                currentLocaleName, backIndex, BACK_ROUTE_TYPE);
-                    }
-
-                    if (col < cols - 1) {
-                        int leftIndex = row * cols + (col + 1);
-                        createRoute(currentLayerMap, localeNameToBigraphMap, localeNameToOuternameMap,
-                                currentLocaleName, leftIndex, LEFT_ROUTE_TYPE);
-                    }
-
-                    if (col > 0) {
-                        int rightIndex = row * cols + (col - 1);
-                        createRoute(currentLayerMap, localeNameToBigraphMap, localeNameToOuternameMap,
-                                currentLocaleName, rightIndex, RIGHT_ROUTE_TYPE);
-                    }
-
-                    // Diagonal directions
-                    if (row < rows - 1 && col < cols - 1) {
-                        int forwardLeftIndex = (row + 1) * cols + (col + 1);
-                        createRoute(currentLayerMap, localeNameToBigraphMap, localeNameToOuternameMap,
-                                currentLocaleName, forwardLeftIndex, FORWARD_LEFT_ROUTE_TYPE);
-                    }
-
-                    if (row < rows - 1 && col > 0) {
-                        int forwardRightIndex = (row + 1) * cols + (col - 1);
-                        createRoute(currentLayerMap, localeNameToBigraphMap, localeNameToOuternameMap,
-                                currentLocaleName, forwardRightIndex, FORWARD_RIGHT_ROUTE_TYPE);
-                    }
-
-                    if (row > 0 && col < cols - 1) {
-                        int backLeftIndex = (row - 1) * cols + (col + 1);
-                        createRoute(currentLayerMap, localeNameToBigraphMap, localeNameToOuternameMap,
-                                currentLocaleName, backLeftIndex, BACK_LEFT_ROUTE_TYPE);
-                    }
-
-                    if (row > 0 && col > 0) {
-                        int backRightIndex = (row - 1) * cols + (col - 1);
-                        createRoute(currentLayerMap, localeNameToBigraphMap, localeNameToOuternameMap,
-                                currentLocaleName, backRightIndex, BACK_RIGHT_ROUTE_TYPE);
-                    }
-
-                    // ========== Vertical Routes ==========
-
-                    // UpRoute: connect to same position in layer above
-                    if (layer < layers - 1) {
-                        Map<Integer, String> upperLayerMap = layer2DIndexToLocaleName.get(layer + 1);
-                        String upperLocaleName = upperLayerMap.get(index2D);
-                        String upperOuterName = localeNameToOuternameMap.get(upperLocaleName);
-                        localeNameToBigraphMap.get(currentLocaleName).child(UP_ROUTE_TYPE).linkOuter(upperOuterName).top();
-                    }
-
-                    // DownRoute: connect to same position in layer below
-                    if (layer > 0) {
-                        Map<Integer, String> lowerLayerMap = layer2DIndexToLocaleName.get(layer - 1);
-                        String lowerLocaleName = lowerLayerMap.get(index2D);
-                        String lowerOuterName = localeNameToOuternameMap.get(lowerLocaleName);
-                        localeNameToBigraphMap.get(currentLocaleName).child(DOWN_ROUTE_TYPE).linkOuter(lowerOuterName).top();
-                    }
+        // Create routes within each layer (same as 2D diagonal directional bigrid) and between layers
+        for (int i = 0; i < numOfLocales; i++) {
+            PureBigraphBuilder<DynamicSignature>.Hierarchy current = hierarchies.get(i);
+            for (int d = 0; d < ROUTE_TYPES.length; d++) {
+                int[] offset = ROUTE_OFFSETS[d];
+                int target = indexOf(GridKey.offset(keys[i], offset[0], offset[1], offset[2]));
+                if (target >= 0) {
+                    current.child(ROUTE_TYPES[d]).linkOuter(labels[target]).top();
                 }
             }
         }
 
         // Finally, merge all locales under one root
         PureBigraphBuilder<DynamicSignature>.Hierarchy root = builder.root();
-        for (PureBigraphBuilder<DynamicSignature>.Hierarchy each : localeNameToBigraphMap.values()) {
+        for (PureBigraphBuilder<DynamicSignature>.Hierarchy each : hierarchies) {
             root.child(each);
         }
 
-        lmpd.setLocaleNameToRootOrSiteIndex(mLocale2Index);
-        return builder.create();
+        return new BiGridBuildResult(builder.create(), globalLocaleIndex, Map.of(), Map.of(), locale2Index);
     }
 
     /**
-     * Helper method to create a route from current locale to target locale within the same layer.
+     * @return the global index of the locale of a 3D key, or {@code -1} if the key is outside the grid
      */
-    private void createRoute(
-            Map<Integer, String> layerMap,
-            Map<String, PureBigraphBuilder<DynamicSignature>.Hierarchy> localeNameToBigraphMap,
-            Map<String, String> localeNameToOuternameMap,
-            String currentLocaleName,
-            int targetIndex2D,
-            String routeType) throws Exception {
-        String targetLocaleName = layerMap.get(targetIndex2D);
-        if (targetLocaleName != null) {
-            String targetOuterName = localeNameToOuternameMap.get(targetLocaleName);
-            localeNameToBigraphMap.get(currentLocaleName).child(routeType).linkOuter(targetOuterName).top();
+    private int indexOf(long key) {
+        int row = GridKey.row3D(key);
+        int col = GridKey.col3D(key);
+        int layer = GridKey.layer3D(key);
+        if (row < 0 || row >= rows || col < 0 || col >= cols || layer < 0 || layer >= layers) {
+            return -1;
         }
+        return (layer * rows + row) * cols + col;
+    }
+
+    /**
+     * @return the 3D coordinate label of the locale of a key, e.g., {@code C_1_00__2_00__0_50}
+     */
+    private String toLabel(long key) {
+        float xCoord = startX + GridKey.row3D(key) * stepSizeX;
+        float yCoord = startY + GridKey.col3D(key) * stepSizeY;
+        float zCoord = startZ + GridKey.layer3D(key) * layerHeight;
+        return BiGridSupport.formatParamControl3D(xCoord, yCoord, zCoord);
     }
 
     public <T extends ThreeDimensionalBiGridProvider> T makeGround(boolean makeGround) {
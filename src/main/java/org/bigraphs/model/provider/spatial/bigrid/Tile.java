@@ -3,121 +3,133 @@ package org.bigraphs.model.provider.spatial.bigrid;
 import lombok.Getter;
 
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 public class Tile {
 
-    private List<Integer> possibilities;
+    private final TileSet tileSet;
+    // bit t is set if tile type t is still possible
+    private long possibilities;
     @Getter
     private int entropy;
-    @Getter
-    private Map<BiGridConfig.Direction, Tile> neighbours;
+    // indexed by the ordinal of the direction
+    private final Tile[] neighbours = new Tile[BiGridConfig.Direction.values().length];
     @Getter
     private final int x;
     @Getter
     private final int y;
+    // layer of a three-dimensional world, see TileSet.Topology.GRID_3D
+    @Getter
+    private final int z;
 
     public Tile(int x, int y) {
+        this(x, y, TileSet.getDefault());
+    }
+
+    public Tile(int x, int y, TileSet tileSet) {
         // Initialize possibilities and entropy
-        this.possibilities = new ArrayList<>(BiGridConfig.tileRules.keySet());
-        this.entropy = possibilities.size();
+        this.tileSet = tileSet;
+        this.possibilities = tileSet.getAllTiles();
+        this.entropy = Long.bitCount(possibilities);
         this.x = x;
         this.y = y;
+        this.z = 0;
+    }
 
-        // Initialize neighbours map
-        this.neighbours = new HashMap<>();
+    // Snapshot of a tile of a world, see World.getTileSnapshotsLowestEntropy(); it has no neighbours
+    Tile(int x, int y, int z, TileSet tileSet, long possibilities, int entropy) {
+        this.tileSet = tileSet;
+        this.possibilities = possibilities;
+        this.entropy = entropy;
+        this.x = x;
+        this.y = y;
+        this.z = z;
     }
 
     // Add a neighbour tile
     public void addNeighbour(BiGridConfig.Direction direction, Tile tile) {
-        neighbours.put(direction, tile);
+        neighbours[direction.ordinal()] = tile;
     }
 
     // Get a neighbour in a specific direction
     public Tile getNeighbour(BiGridConfig.Direction direction) {
-        return neighbours.get(direction);
+        return neighbours[direction.ordinal()];
+    }
+
+    // Get all neighbours by direction
+    public Map<BiGridConfig.Direction, Tile> getNeighbours() {
+        Map<BiGridConfig.Direction, Tile> neighbourMap = new EnumMap<>(BiGridConfig.Direction.class);
+        for (BiGridConfig.Direction direction : BiGridConfig.Direction.values()) {
+            if (neighbours[direction.ordinal()] != null) {
+                neighbourMap.put(direction, neighbours[direction.ordinal()]);
+            }
+        }
+        return neighbourMap;
     }
 
     // Get all directions for existing neighbours
     public List<BiGridConfig.Direction> getDirections() {
-        return new ArrayList<>(neighbours.keySet());
+        return new ArrayList<>(getNeighbours().keySet());
     }
 
-    // Get the current possibilities for this tile
+    // Get the current possibilities for this tile (tile types in ascending order)
     public List<Integer> getPossibilities() {
+        List<Integer> types = new ArrayList<>(Long.bitCount(possibilities));
+        for (long rest = possibilities; rest != 0; rest &= rest - 1) {
+            types.add(Long.numberOfTrailingZeros(rest));
+        }
+        return types;
+    }
+
+    // Get the current possibilities as bitmask, see TileSet
+    public long getPossibilityMask() {
         return possibilities;
     }
 
+    // Check whether the tile has no possibility left, i.e., its constraints contradict each other
+    public boolean isContradiction() {
+        return possibilities == 0;
+    }
+
+    public TileSet getTileSet() {
+        return tileSet;
+    }
+
     // Collapse the tile's possibilities to one, based on weights
     public void collapse() {
-        List<Integer> weights = new ArrayList<>();
-        for (int possibility : possibilities) {
-            weights.add(BiGridConfig.tileWeights.get(possibility));
-        }
+        collapse(ThreadLocalRandom.current());
+    }
 
+    // Collapse the tile's possibilities to one, based on weights, using the given random generator
+    public void collapse(RandomGenerator random) {
         // Select one possibility based on weights
-        int chosenIndex = getWeightedRandomIndex(weights);
-        this.possibilities = Collections.singletonList(possibilities.get(chosenIndex));
+        int chosenType = tileSet.getWeightedRandomType(possibilities, random);
+        this.possibilities = 1L << chosenType;
         this.entropy = 0;
     }
 
     // Constrain possibilities based on a neighbour's possibilities and direction
     public boolean constrain(List<Integer> neighbourPossibilities, BiGridConfig.Direction direction) {
-        boolean reduced = false;
-
-        if (entropy > 0) {
-            Set<Integer> connectors = new HashSet<>();
-            for (int neighbourPossibility : neighbourPossibilities) {
-                connectors.add(BiGridConfig.tileRules.get(neighbourPossibility).get(direction.ordinal()));
-            }
-
-            // Determine the opposite direction
-            BiGridConfig.Direction opposite = getOppositeDirection(direction);
-
-            // Check and remove incompatible possibilities
-            Iterator<Integer> iterator = possibilities.iterator();
-            while (iterator.hasNext()) {
-                int possibility = iterator.next();
-                if (!connectors.contains(BiGridConfig.tileRules.get(possibility).get(opposite.ordinal()))) {
-                    iterator.remove();
-                    reduced = true;
-                }
-            }
-
-            // Update entropy
-            this.entropy = possibilities.size();
+        long mask = 0;
+        for (int neighbourPossibility : neighbourPossibilities) {
+            mask |= 1L << neighbourPossibility;
         }
-
-        return reduced;
+        return constrain(mask, direction);
     }
 
-    // Get the opposite direction
-    private BiGridConfig.Direction getOppositeDirection(BiGridConfig.Direction direction) {
-        switch (direction) {
-            case NORTH:
-                return BiGridConfig.Direction.SOUTH;
-            case EAST:
-                return BiGridConfig.Direction.WEST;
-            case SOUTH:
-                return BiGridConfig.Direction.NORTH;
-            case WEST:
-                return BiGridConfig.Direction.EAST;
-            default:
-                throw new IllegalArgumentException("Invalid direction: " + direction);
+    // Constrain possibilities based on a neighbour's possibilities (as bitmask) and the direction from the neighbour to this tile
+    public boolean constrain(long neighbourPossibilities, BiGridConfig.Direction direction) {
+        if (entropy == 0) {
+            return false;
         }
-    }
-
-    // Helper method to get a weighted random index
-    private int getWeightedRandomIndex(List<Integer> weights) {
-        int totalWeight = weights.stream().mapToInt(Integer::intValue).sum();
-        int randomValue = new Random().nextInt(totalWeight);
-
-        int cumulativeWeight = 0;
-        for (int i = 0; i < weights.size(); i++) {
-            cumulativeWeight += weights.get(i);
-            if (randomValue < cumulativeWeight) {
-                return i;
-            }
+        long remaining = possibilities & tileSet.allowedNeighbours(neighbourPossibilities, direction);
+        if (remaining == possibilities) {
+            return false;
         }
-        throw new IllegalStateException("No valid index found for weights.");
+        // Update entropy
+        this.possibilities = remaining;
+        this.entropy = Long.bitCount(remaining);
+        return true;
     }
 }
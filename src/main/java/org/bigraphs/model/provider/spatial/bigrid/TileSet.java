@@ -0,0 +1,418 @@
+package org.bigraphs.model.provider.spatial.bigrid;
+
+import java.util.*;
+import java.util.random.RandomGenerator;
+
+/**
+ * Tile rules compiled into bitmasks for the Wave Function Collapse of {@link World}.
+ * <p>
+ * The possibilities of a tile are a {@code long} whose bit {@code t} is set if tile type {@code t} is still
+ * possible, so tile types must be in {@code 0..63}.
+ * For each direction of the {@link Topology} and each tile type, the compatibility mask contains the tile types that
+ * may be placed next to it in that direction, i.e., the rows of an adjacency matrix per direction.
+ * Constraining a tile by its neighbour then reduces to OR-ing the masks of the neighbour's possibilities and AND-ing
+ * the result with the own possibilities.
+ * <p>
+ * Optionally, a tile set knows the routes of each tile type, i.e., the directions in which the locale of a tile has a
+ * route to its neighbour (see {@link BiGridElementFactory}). They are needed to require connected worlds, see
+ * {@link World#setConnectivityRequired(boolean)}.
+ * <p>
+ * Tile sets are immutable and can be shared by any number of worlds. They are created
+ * <ul>
+ *     <li>from faces by {@link #of(Topology, Map, Map)}: two tile types may be neighbours if their faces on the
+ *     touching sides are equal, as for the rules of {@link BiGridConfig};</li>
+ *     <li>from explicit adjacencies by {@link #builder(Topology)}.</li>
+ * </ul>
+ */
+public final class TileSet {
+    public static final int MAX_TILE_TYPES = Long.SIZE;
+
+    /**
+     * The directions in which tiles are neighbours.
+     */
+    public enum Topology {
+        /**
+         * Two-dimensional grid with 4 neighbours
+         */
+        GRID(BiGridConfig.Direction.NORTH, BiGridConfig.Direction.EAST, BiGridConfig.Direction.SOUTH,
+                BiGridConfig.Direction.WEST),
+        /**
+         * Two-dimensional grid with 8 neighbours, including the diagonal ones
+         */
+        DIAGONAL_GRID(BiGridConfig.Direction.NORTH, BiGridConfig.Direction.EAST, BiGridConfig.Direction.SOUTH,
+                BiGridConfig.Direction.WEST, BiGridConfig.Direction.NORTH_EAST, BiGridConfig.Direction.SOUTH_EAST,
+                BiGridConfig.Direction.SOUTH_WEST, BiGridConfig.Direction.NORTH_WEST),
+        /**
+         * Three-dimensional grid with 6 neighbours, i.e., layers of two-dimensional grids
+         */
+        GRID_3D(BiGridConfig.Direction.NORTH, BiGridConfig.Direction.EAST, BiGridConfig.Direction.SOUTH,
+                BiGridConfig.Direction.WEST, BiGridConfig.Direction.UP, BiGridConfig.Direction.DOWN);
+
+        private final BiGridConfig.Direction[] directions;
+        // ordinal of a direction -> index in this topology, or -1
+        private final int[] indices = new int[BiGridConfig.Direction.values().length];
+
+        Topology(BiGridConfig.Direction... directions) {
+            this.directions = directions;
+            Arrays.fill(indices, -1);
+            for (int i = 0; i < directions.length; i++) {
+                indices[directions[i].ordinal()] = i;
+            }
+        }
+
+        /**
+         * @return the directions in the order of the faces of the tile rules
+         */
+        public List<BiGridConfig.Direction> getDirections() {
+            return List.of(directions);
+        }
+
+        public int size() {
+            return directions.length;
+        }
+
+        /**
+         * @return the position of the direction in this topology, or -1 if it is not part of it
+         */
+        public int indexOf(BiGridConfig.Direction direction) {
+            return indices[direction.ordinal()];
+        }
+
+        BiGridConfig.Direction get(int index) {
+            return directions[index];
+        }
+    }
+
+    private static final TileSet DEFAULT = of(Topology.GRID, BiGridConfig.tileRules, BiGridConfig.tileWeights,
+            BiGridConfig.tileRoutes);
+    private static final TileSet DEFAULT_WITH_CORNERS = of(Topology.GRID, withCorners(), BiGridConfig.tileWeights,
+            BiGridConfig.tileRoutes);
+    private static final TileSet DIAGONAL = of(Topology.DIAGONAL_GRID, BiGridConfig.diagonalTileRules,
+            BiGridConfig.tileWeights, BiGridConfig.tileRoutes);
+    private static final TileSet THREE_DIMENSIONAL = of(Topology.GRID_3D, BiGridConfig.threeDimensionalTileRules,
+            BiGridConfig.tileWeights, BiGridConfig.tileRoutes);
+
+    private final Topology topology;
+    private final long allTiles;
+    // [direction index][tile type] -> tile types allowed next to the tile type in that direction
+    private final long[][] compatible;
+    private final int[] weights;
+    // [direction index] -> tile types with a route in that direction
+    private final long[] routes;
+
+    private TileSet(Topology topology, long allTiles, long[][] compatible, int[] weights, long[] routes) {
+        this.topology = topology;
+        this.allTiles = allTiles;
+        this.compatible = compatible;
+        this.weights = weights;
+        this.routes = routes;
+    }
+
+    /**
+     * The rules, weights and routes of {@link BiGridConfig}, compiled once.
+     */
+    public static TileSet getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * The rules of {@link BiGridConfig} including the L-tiles ({@link BiGridConfig#cornerTileRules}), so that
+     * single-route borders can turn.
+     */
+    public static TileSet getDefaultWithCorners() {
+        return DEFAULT_WITH_CORNERS;
+    }
+
+    /**
+     * The rules of {@link BiGridConfig#diagonalTileRules} for the {@link Topology#DIAGONAL_GRID}: crossings with
+     * orthogonal, diagonal or all eight routes, each of which has a route back.
+     */
+    public static TileSet getDiagonal() {
+        return DIAGONAL;
+    }
+
+    /**
+     * The rules of {@link BiGridConfig#threeDimensionalTileRules} for the {@link Topology#GRID_3D}: crossings
+     * within a layer, and shafts with routes to the layers above and below.
+     */
+    public static TileSet getThreeDimensional() {
+        return THREE_DIMENSIONAL;
+    }
+
+    private static Map<Integer, List<Integer>> withCorners() {
+        Map<Integer, List<Integer>> tileRules = new HashMap<>(BiGridConfig.tileRules);
+        tileRules.putAll(BiGridConfig.cornerTileRules);
+        return tileRules;
+    }
+
+    /**
+     * Compiles tile rules for the {@link Topology#GRID}.
+     *
+     * @param tileRules   the faces of each tile type in the order of the directions NORTH, EAST, SOUTH, WEST
+     * @param tileWeights the weight of each tile type used when a tile is collapsed
+     * @return the compiled tile set
+     * @throws IllegalArgumentException if a tile type is not in {@code 0..63}, or a rule or weight is missing
+     */
+    public static TileSet of(Map<Integer, List<Integer>> tileRules, Map<Integer, Integer> tileWeights) {
+        return of(Topology.GRID, tileRules, tileWeights);
+    }
+
+    /**
+     * Compiles tile rules. Two tile types may be neighbours in a direction if the face of the first one in that
+     * direction equals the face of the second one in the opposite direction.
+     *
+     * @param topology    the directions in which tiles are neighbours
+     * @param tileRules   the faces of each tile type in the order of {@link Topology#getDirections()}
+     * @param tileWeights the weight of each tile type used when a tile is collapsed
+     * @return the compiled tile set
+     * @throws IllegalArgumentException if a tile type is not in {@code 0..63}, or a rule or weight is missing
+     */
+    public static TileSet of(Topology topology, Map<Integer, List<Integer>> tileRules, Map<Integer, Integer> tileWeights) {
+        return of(topology, tileRules, tileWeights, Map.of());
+    }
+
+    /**
+     * Compiles tile rules with the routes of the tile types, see {@link #of(Topology, Map, Map)}.
+     *
+     * @param tileRoutes the directions of the routes of each tile type; tile types without rule are ignored
+     */
+    public static TileSet of(Topology topology, Map<Integer, List<Integer>> tileRules, Map<Integer, Integer> tileWeights,
+                             Map<Integer, List<BiGridConfig.Direction>> tileRoutes) {
+        Builder builder = builder(topology);
+        for (Map.Entry<Integer, List<Integer>> rule : tileRules.entrySet()) {
+            int type = rule.getKey();
+            Integer weight = tileWeights.get(type);
+            if (weight == null) {
+                throw new IllegalArgumentException("Tile type " + type + " needs a positive weight");
+            }
+            builder.weight(type, weight);
+            if (rule.getValue().size() != topology.size()) {
+                throw new IllegalArgumentException("Tile type " + type + " must have " + topology.size() + " faces");
+            }
+        }
+        for (int d = 0; d < topology.size(); d++) {
+            BiGridConfig.Direction direction = topology.get(d);
+            int opposite = topology.indexOf(direction.opposite());
+            for (Map.Entry<Integer, List<Integer>> rule : tileRules.entrySet()) {
+                int face = rule.getValue().get(d);
+                for (Map.Entry<Integer, List<Integer>> other : tileRules.entrySet()) {
+                    if (other.getValue().get(opposite) == face) {
+                        builder.allow(rule.getKey(), direction, other.getKey());
+                    }
+                }
+            }
+        }
+        for (Map.Entry<Integer, List<BiGridConfig.Direction>> route : tileRoutes.entrySet()) {
+            if (tileRules.containsKey(route.getKey())) {
+                for (BiGridConfig.Direction direction : route.getValue()) {
+                    builder.route(route.getKey(), direction);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    public static Builder builder(Topology topology) {
+        return new Builder(topology);
+    }
+
+    /**
+     * Collects the tile types and their adjacencies of a {@link TileSet}.
+     */
+    public static final class Builder {
+        private final Topology topology;
+        private final long[][] compatible;
+        private final int[] weights = new int[MAX_TILE_TYPES];
+        private final long[] routes;
+        private long allTiles = 0;
+        private long referencedTiles = 0;
+
+        private Builder(Topology topology) {
+            this.topology = Objects.requireNonNull(topology);
+            this.compatible = new long[topology.size()][MAX_TILE_TYPES];
+            this.routes = new long[topology.size()];
+        }
+
+        /**
+         * Adds a tile type.
+         *
+         * @param weight the weight of the tile type used when a tile is collapsed
+         */
+        public Builder weight(int type, int weight) {
+            checkType(type);
+            if (weight <= 0) {
+                throw new IllegalArgumentException("Tile type " + type + " needs a positive weight");
+            }
+            weights[type] = weight;
+            allTiles |= 1L << type;
+            return this;
+        }
+
+        /**
+         * Allows {@code neighbour} next to {@code type} in the given direction, and thereby {@code type} next to
+         * {@code neighbour} in the opposite direction.
+         */
+        public Builder allow(int type, BiGridConfig.Direction direction, int neighbour) {
+            checkType(type);
+            checkType(neighbour);
+            int d = checkDirection(direction);
+            compatible[d][type] |= 1L << neighbour;
+            compatible[topology.indexOf(direction.opposite())][neighbour] |= 1L << type;
+            referencedTiles |= 1L << type | 1L << neighbour;
+            return this;
+        }
+
+        /**
+         * Declares that the locale of {@code type} has a route to its neighbour in the given direction.
+         */
+        public Builder route(int type, BiGridConfig.Direction direction) {
+            checkType(type);
+            routes[checkDirection(direction)] |= 1L << type;
+            referencedTiles |= 1L << type;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException if there are no tile types, or an adjacency refers to a tile type without
+         *                                  weight
+         */
+        public TileSet build() {
+            if (allTiles == 0) {
+                throw new IllegalArgumentException("Tile set needs at least one tile type");
+            }
+            long missing = referencedTiles & ~allTiles;
+            if (missing != 0) {
+                throw new IllegalArgumentException("Tile type " + Long.numberOfTrailingZeros(missing) + " needs a positive weight");
+            }
+            long[][] masks = new long[compatible.length][];
+            for (int d = 0; d < compatible.length; d++) {
+                masks[d] = compatible[d].clone();
+            }
+            return new TileSet(topology, allTiles, masks, weights.clone(), routes.clone());
+        }
+
+        private int checkDirection(BiGridConfig.Direction direction) {
+            int d = topology.indexOf(direction);
+            if (d < 0) {
+                throw new IllegalArgumentException("Direction " + direction + " is not part of " + topology);
+            }
+            return d;
+        }
+
+        private static void checkType(int type) {
+            if (type < 0 || type >= MAX_TILE_TYPES) {
+                throw new IllegalArgumentException("Tile type must be in 0.." + (MAX_TILE_TYPES - 1) + ": " + type);
+            }
+        }
+    }
+
+    public Topology getTopology() {
+        return topology;
+    }
+
+    /**
+     * @return the mask of all tile types
+     */
+    public long getAllTiles() {
+        return allTiles;
+    }
+
+    /**
+     * @return the number of tile types
+     */
+    public int size() {
+        return Long.bitCount(allTiles);
+    }
+
+    public int getWeight(int type) {
+        return weights[type];
+    }
+
+    /**
+     * @return the tile types that may be placed next to the given tile type in the given direction
+     * @throws IllegalArgumentException if the direction is not part of the topology
+     */
+    public long getCompatible(BiGridConfig.Direction direction, int type) {
+        return compatible[directionIndex(direction)][type];
+    }
+
+    /**
+     * @return the tile types whose locale has a route to the neighbour in the given direction
+     * @throws IllegalArgumentException if the direction is not part of the topology
+     */
+    public long getRoutes(BiGridConfig.Direction direction) {
+        return routes[directionIndex(direction)];
+    }
+
+    // The direction is given by its index in the topology
+    long routes(int direction) {
+        return routes[direction];
+    }
+
+    /**
+     * @return {@code true} if any tile type has a route
+     */
+    public boolean hasRoutes() {
+        for (long route : routes) {
+            if (route != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param possibilities the possible tile types of a tile
+     * @param direction     the direction from that tile to its neighbour
+     * @return the tile types of the neighbour that are compatible with at least one of the possibilities
+     * @throws IllegalArgumentException if the direction is not part of the topology
+     */
+    public long allowedNeighbours(long possibilities, BiGridConfig.Direction direction) {
+        return allowedNeighbours(possibilities, directionIndex(direction));
+    }
+
+    // The direction is given by its index in the topology
+    long allowedNeighbours(long possibilities, int direction) {
+        long[] masks = compatible[direction];
+        long allowed = 0;
+        for (long rest = possibilities; rest != 0; rest &= rest - 1) {
+            allowed |= masks[Long.numberOfTrailingZeros(rest)];
+        }
+        return allowed;
+    }
+
+    /**
+     * Selects one of the possible tile types at random, in proportion to their weights.
+     *
+     * @param possibilities the possible tile types, must not be empty
+     */
+    public int getWeightedRandomType(long possibilities, RandomGenerator random) {
+        int totalWeight = 0;
+        for (long rest = possibilities; rest != 0; rest &= rest - 1) {
+            totalWeight += weights[Long.numberOfTrailingZeros(rest)];
+        }
+        int randomValue = random.nextInt(totalWeight);
+
+        int cumulativeWeight = 0;
+        for (long rest = possibilities; rest != 0; rest &= rest - 1) {
+            int type = Long.numberOfTrailingZeros(rest);
+            cumulativeWeight += weights[type];
+            if (randomValue < cumulativeWeight) {
+                return type;
+            }
+        }
+        throw new IllegalStateException("No valid index found for weights.");
+    }
+
+    public static BiGridConfig.Direction opposite(BiGridConfig.Direction direction) {
+        return direction.opposite();
+    }
+
+    private int directionIndex(BiGridConfig.Direction direction) {
+        int index = topology.indexOf(direction);
+        if (index < 0) {
+            throw new IllegalArgumentException("Direction " + direction + " is not part of " + topology);
+        }
+        return index;
+    }
+}
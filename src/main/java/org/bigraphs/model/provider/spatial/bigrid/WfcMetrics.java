@@ -0,0 +1,143 @@
+package org.bigraphs.model.provider.spatial.bigrid;
+
+import java.util.Arrays;
+
+/**
+ * Runtime counters of the Wave Function Collapse of {@link World}, to measure the generation throughput.
+ * <p>
+ * Metrics are optional: a world only updates them if they are set by {@link World#setMetrics(WfcMetrics)}, so
+ * worlds without metrics do not pay for the time measurement. One instance can collect the metrics of several worlds
+ * one after the other; it is not thread-safe, see {@link #add(WfcMetrics)} to combine the metrics of concurrent
+ * worlds.
+ * <p>
+ * The time of each collapse is split into the {@link Phase phases} of {@link World#waveFunctionCollapse()}.
+ */
+public final class WfcMetrics {
+
+    public enum Phase {
+        /**
+         * Choosing the tile to collapse and its tile type
+         */
+        SELECTION,
+        /**
+         * Propagating the collapse to the other tiles
+         */
+        PROPAGATION,
+        /**
+         * Checking the connectivity constraint, see {@link World#setConnectivityRequired(boolean)}
+         */
+        CONNECTIVITY,
+        /**
+         * Recovering from a contradiction, including the propagation of the recovery
+         */
+        RECOVERY
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    long collapses;
+    long propagationSteps;
+    long contradictions;
+    long backtracks;
+    long restarts;
+    private final long[] nanos = new long[PHASES.length];
+
+    /**
+     * @return the number of tiles collapsed (including collapses undone by recovery)
+     */
+    public long getCollapses() {
+        return collapses;
+    }
+
+    /**
+     * @return the number of times a tile constrained its neighbours during propagation
+     */
+    public long getPropagationSteps() {
+        return propagationSteps;
+    }
+
+    /**
+     * @return the number of tiles found without possibilities or cut off from the others
+     */
+    public long getContradictions() {
+        return contradictions;
+    }
+
+    /**
+     * @return the number of collapses undone by backtracking
+     */
+    public long getBacktracks() {
+        return backtracks;
+    }
+
+    /**
+     * @return the number of regions restarted
+     */
+    public long getRestarts() {
+        return restarts;
+    }
+
+    public long getNanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    public long getTotalNanos() {
+        long total = 0;
+        for (long phaseNanos : nanos) {
+            total += phaseNanos;
+        }
+        return total;
+    }
+
+    /**
+     * @return the number of collapses per second, or 0 if nothing was measured
+     */
+    public double getCollapsesPerSecond() {
+        long total = getTotalNanos();
+        return total == 0 ? 0 : collapses * 1e9 / total;
+    }
+
+    /**
+     * Adds the metrics of another instance to this one.
+     */
+    public void add(WfcMetrics other) {
+        collapses += other.collapses;
+        propagationSteps += other.propagationSteps;
+        contradictions += other.contradictions;
+        backtracks += other.backtracks;
+        restarts += other.restarts;
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i] += other.nanos[i];
+        }
+    }
+
+    public void reset() {
+        collapses = 0;
+        propagationSteps = 0;
+        contradictions = 0;
+        backtracks = 0;
+        restarts = 0;
+        Arrays.fill(nanos, 0);
+    }
+
+    // Adds the time since the given start to the phase; returns the current time, i.e., the start of the next phase
+    long record(Phase phase, long start) {
+        long now = System.nanoTime();
+        nanos[phase.ordinal()] += now - start;
+        return now;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("WfcMetrics{collapses=").append(collapses)
+                .append(", propagationSteps=").append(propagationSteps)
+                .append(", contradictions=").append(contradictions)
+                .append(", backtracks=").append(backtracks)
+                .append(", restarts=").append(restarts);
+        for (Phase phase : PHASES) {
+            builder.append(", ").append(phase.name().toLowerCase()).append('=')
+                    .append(String.format("%.3f ms", nanos[phase.ordinal()] / 1e6));
+        }
+        return builder.append(String.format(", collapses/s=%.0f}", getCollapsesPerSecond())).toString();
+    }
+}
@@ -1,127 +1,820 @@
 package org.bigraphs.model.provider.spatial.bigrid;
 
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
+/**
+ * A grid of tiles that is filled by Wave Function Collapse.
+ * <p>
+ * The tile rules are given by a {@link TileSet} (by default {@link TileSet#getDefault()}), whose
+ * {@link TileSet.Topology} determines the neighbours of a tile: 4 or 8 in a two-dimensional world, or 6 in a
+ * three-dimensional world of {@code sizeZ} layers. The methods without a z coordinate refer to the first layer.
+ * <p>
+ * The state of the tiles is stored in flat primitive arrays in row-major order (index
+ * {@code (x * sizeY + y) * sizeZ + z}): the possibilities of each tile as bitmask (see {@link TileSet}) and its
+ * entropy. Neighbours are not stored but computed from the index, so a tile needs a few bytes and propagation does
+ * not allocate.
+ * <p>
+ * All random choices (which tile to collapse and to which tile type) are drawn from one random generator.
+ * A world created with a seed is reproducible: the same size, tile rules and seed always result in the same tile
+ * types, so generated bigrids can be recreated or cached by their seed.
+ * Worlds created without a seed draw a seed themselves, which is available by {@link #getSeed()}.
+ * <p>
+ * A contradiction occurs when propagation removes all possibilities of a tile. It is detected immediately and
+ * handled according to the {@link RecoveryPolicy}:
+ * <ul>
+ *     <li>{@link RecoveryPolicy#BACKTRACK} (default): the changes of the latest collapse are undone using an undo log,
+ *     the chosen tile type is excluded, and the search continues. If this fails repeatedly (more than
+ *     {@link #setMaxBacktrackDepth(int) maxBacktrackDepth} collapses are undone, or more than
+ *     {@code maxBacktrackDepth} contradictions occur without progress) or the undo log was
+ *     truncated (once it holds {@link #setMaxUndoLogSize(int) maxUndoLogSize} changes, before the next collapse),
+ *     the region around the tile is restarted instead.</li>
+ *     <li>{@link RecoveryPolicy#RESTART_REGION}: the latest collapse is undone, and all tiles within
+ *     {@link #setRestartRadius(int) restartRadius} of the contradicting tile are reset and constrained again by their
+ *     surroundings; the radius is doubled while the region cannot be made consistent, and for restarts that follow
+ *     each other closely.</li>
+ *     <li>{@link RecoveryPolicy#NONE}: the tile keeps its empty possibilities, and {@link #getType(int, int)}
+ *     throws an exception for it.</li>
+ * </ul>
+ * Recovery cannot help if the tile rules admit no solution for the size of the world. The generation makes progress
+ * whenever fewer tiles than ever before are left to collapse; if the world is restarted more than
+ * {@link #setMaxRestarts(int) maxRestarts} times without progress, {@link #waveFunctionCollapse()} gives up and throws
+ * an exception.
+ * <p>
+ * Optionally, the world can be required to be connected by the routes of its tiles, see
+ * {@link #setConnectivityRequired(boolean)}. Tiles that cannot be connected to the others anymore are a contradiction
+ * then, which is handled by the recovery policy as well.
+ * <p>
+ * The generation can be measured by {@link #setMetrics(WfcMetrics)}.
+ * <p>
+ * Tiles can be restricted before the generation by {@link #constrain(int, int, long)}, e.g., to match the tiles
+ * around the world (see {@link ChunkedWorldGenerator}). These restrictions are kept by recovery. If they cannot be
+ * satisfied, contradicting tiles remain after recovery has reset the whole world, see {@link #isContradiction(int, int)}.
+ */
 public class World {
-    private int cols;
-    private int rows;
-    private Tile[][] tileRows;
 
-    // Constructor
+    public enum RecoveryPolicy {
+        NONE, BACKTRACK, RESTART_REGION
+    }
+
+    private final int cols;
+    private final int rows;
+    private final int layers;
+    // Offsets of the neighbours, in the order of the directions of the topology
+    private final int[] dx;
+    private final int[] dy;
+    private final int[] dz;
+    // Difference between the index of a tile and of its neighbour, per direction
+    private final int[] step;
+    // bit t of a tile is set if tile type t is still possible
+    private final long[] possibilities;
+    // number of possibilities, or 0 if the tile is collapsed or contradicting
+    private final byte[] entropies;
+    private final TileSet tileSet;
+    // Tiles that are not collapsed yet, by entropy
+    private final EntropyBuckets entropyBuckets;
+    private final RandomGenerator random;
+    private final OptionalLong seed;
+
+    private RecoveryPolicy recoveryPolicy = RecoveryPolicy.BACKTRACK;
+    private int maxUndoLogSize = 1 << 16;
+    private int maxBacktrackDepth = 64;
+    private int restartRadius = 4;
+    private int maxRestarts;
+    private int numOfContradictions = 0;
+    // Progress: the fewest tiles left to collapse so far, and the recoveries since then
+    private int fewestRemainingTiles;
+    private int numOfContradictionsWithoutProgress = 0;
+    private int numOfRestartsWithoutProgress = 0;
+    // Undo log: previous state of changed tiles
+    private int[] undoTiles = new int[64];
+    private long[] undoPossibilities = new long[64];
+    private int[] undoEntropies = new int[64];
+    private int undoLogSize = 0;
+    // Collapses that can be undone: size of the undo log before the collapse, tile and chosen tile type
+    private int[] decisionMarks = new int[64];
+    private int[] decisionTiles = new int[64];
+    private int[] decisionTypes = new int[64];
+    private int numOfDecisions = 0;
+    // Contradicting tiles found by a complete propagation
+    private int[] contradictions = new int[16];
+    private int numOfPendingContradictions = 0;
+    private int lastRestartRadius = 0;
+    private int numOfCollapsesSinceRestart = 0;
+    // Possibilities a tile is reset to by recovery; null if no tile is restricted
+    private long[] limits;
+    // Connectivity constraint; null if not required
+    private WorldConnectivity connectivity;
+    // Runtime counters; null if not measured
+    private WfcMetrics metrics;
+    // Propagation queue of tile indices (ring buffer)
+    private int[] queue = new int[64];
+    private int queueHead = 0;
+    private int queueSize = 0;
+
+    // Constructor with a random seed
     public World(int sizeX, int sizeY) {
+        this(sizeX, sizeY, ThreadLocalRandom.current().nextLong());
+    }
+
+    // Constructor for a reproducible world
+    public World(int sizeX, int sizeY, long seed) {
+        this(sizeX, sizeY, TileSet.getDefault(), seed);
+    }
+
+    // Constructor with a given random generator, e.g., to share one generator between worlds
+    public World(int sizeX, int sizeY, RandomGenerator random) {
+        this(sizeX, sizeY, 1, TileSet.getDefault(), random, OptionalLong.empty());
+    }
+
+    // Constructor for a reproducible world with the given tile rules
+    public World(int sizeX, int sizeY, TileSet tileSet, long seed) {
+        this(sizeX, sizeY, 1, tileSet, seed);
+    }
+
+    // Constructor with the given tile rules and random generator
+    public World(int sizeX, int sizeY, TileSet tileSet, RandomGenerator random) {
+        this(sizeX, sizeY, 1, tileSet, random, OptionalLong.empty());
+    }
+
+    // Constructor for a reproducible three-dimensional world, see TileSet.Topology.GRID_3D
+    public World(int sizeX, int sizeY, int sizeZ, TileSet tileSet, long seed) {
+        this(sizeX, sizeY, sizeZ, tileSet, new SplittableRandom(seed), OptionalLong.of(seed));
+    }
+
+    // Constructor for a three-dimensional world with the given random generator
+    public World(int sizeX, int sizeY, int sizeZ, TileSet tileSet, RandomGenerator random) {
+        this(sizeX, sizeY, sizeZ, tileSet, random, OptionalLong.empty());
+    }
+
+    private World(int sizeX, int sizeY, int sizeZ, TileSet tileSet, RandomGenerator random, OptionalLong seed) {
+        if (sizeX < 1 || sizeY < 1 || sizeZ < 1) {
+            throw new IllegalArgumentException("World size must be positive: " + sizeX + "x" + sizeY + "x" + sizeZ);
+        }
+        this.random = Objects.requireNonNull(random, "Random generator cannot be null");
+        this.seed = seed;
         this.rows = sizeX;
         this.cols = sizeY;
-        this.tileRows = new Tile[sizeX][sizeY];
+        this.layers = sizeZ;
+        // The tile rules are compiled once for all tiles
+        this.tileSet = Objects.requireNonNull(tileSet, "Tile set cannot be null");
+        TileSet.Topology topology = tileSet.getTopology();
+        this.dx = new int[topology.size()];
+        this.dy = new int[topology.size()];
+        this.dz = new int[topology.size()];
+        this.step = new int[topology.size()];
+        for (int d = 0; d < topology.size(); d++) {
+            BiGridConfig.Direction direction = topology.getDirections().get(d);
+            dx[d] = direction.getDx();
+            dy[d] = direction.getDy();
+            dz[d] = direction.getDz();
+            step[d] = (dx[d] * sizeY + dy[d]) * sizeZ + dz[d];
+        }
 
         // Initialize tiles
-        for (int x = 0; x < sizeX; x++) {
-            for (int y = 0; y < sizeY; y++) {
-                tileRows[x][y] = new Tile(x, y);
-            }
+        int numOfTiles = Math.multiplyExact(Math.multiplyExact(sizeX, sizeY), sizeZ);
+        this.possibilities = new long[numOfTiles];
+        this.entropies = new byte[numOfTiles];
+        Arrays.fill(possibilities, tileSet.getAllTiles());
+        Arrays.fill(entropies, (byte) tileSet.size());
+        this.entropyBuckets = new EntropyBuckets(numOfTiles, tileSet.size());
+        for (int tile = 0; tile < numOfTiles; tile++) {
+            entropyBuckets.update(tile, entropies[tile]);
         }
+        this.fewestRemainingTiles = numOfTiles;
+        // Large worlds of solvable but tight tile rules may need many restarts until they make progress again
+        this.maxRestarts = Math.max(256, numOfTiles / 8);
+    }
 
-        // Add neighbors
-        for (int x = 0; x < sizeX; x++) {
-            for (int y = 0; y < sizeY; y++) {
-                Tile tile = tileRows[x][y];
-                if (x > 0) {
-                    tile.addNeighbour(BiGridConfig.Direction.NORTH, tileRows[x - 1][y]);
-                }
-                if (y < sizeY - 1) {
-                    tile.addNeighbour(BiGridConfig.Direction.EAST, tileRows[x][y + 1]);
-                }
-                if (x < sizeX - 1) {
-                    tile.addNeighbour(BiGridConfig.Direction.SOUTH, tileRows[x + 1][y]);
-                }
-                if (y > 0) {
-                    tile.addNeighbour(BiGridConfig.Direction.WEST, tileRows[x][y - 1]);
-                }
-            }
-        }
+    // Get the seed of the world, if it was created with one
+    public OptionalLong getSeed() {
+        return seed;
+    }
+
+    public int getSizeX() {
+        return rows;
+    }
+
+    public int getSizeY() {
+        return cols;
+    }
+
+    public int getSizeZ() {
+        return layers;
+    }
+
+    public TileSet getTileSet() {
+        return tileSet;
     }
 
     // Get entropy of a tile
     public int getEntropy(int x, int y) {
-        return tileRows[x][y].getEntropy();
+        return getEntropy(x, y, 0);
+    }
+
+    public int getEntropy(int x, int y, int z) {
+        return entropies[indexOf(x, y, z)];
     }
 
     // Get type of a tile
     public int getType(int x, int y) {
-        if(tileRows[x][y].getPossibilities().isEmpty()) {
-            System.out.println("x,y = " + x + ", " + y);
-            assert !tileRows[x][y].getPossibilities().isEmpty();
+        return getType(x, y, 0);
+    }
+
+    public int getType(int x, int y, int z) {
+        long tilePossibilities = possibilities[indexOf(x, y, z)];
+        if (tilePossibilities == 0) {
+            throw new IllegalStateException("Contradiction at tile (" + x + ", " + y + ", " + z + "): no tile type possible");
         }
-        return tileRows[x][y].getPossibilities().get(0);
+        return Long.numberOfTrailingZeros(tilePossibilities);
+    }
+
+    // Get the possible tile types of a tile as bitmask, see TileSet
+    public long getPossibilityMask(int x, int y) {
+        return getPossibilityMask(x, y, 0);
+    }
+
+    public long getPossibilityMask(int x, int y, int z) {
+        return possibilities[indexOf(x, y, z)];
+    }
+
+    // Check whether a tile has no possibility left
+    public boolean isContradiction(int x, int y) {
+        return isContradiction(x, y, 0);
+    }
+
+    public boolean isContradiction(int x, int y, int z) {
+        return possibilities[indexOf(x, y, z)] == 0;
     }
 
-    // Find the lowest entropy in the world
+    /**
+     * Restricts the possible tile types of a tile permanently and propagates the restriction.
+     * Restrictions are boundary conditions of the generation: they are kept when the world recovers from a
+     * contradiction, and cannot be undone by backtracking.
+     *
+     * @param possibilities the allowed tile types as bitmask, see {@link TileSet}
+     * @return {@code false} if the restriction leads to a contradiction
+     */
+    public boolean constrain(int x, int y, long possibilities) {
+        return constrain(x, y, 0, possibilities);
+    }
+
+    public boolean constrain(int x, int y, int z, long possibilities) {
+        int tile = indexOf(x, y, z);
+        if (limits == null) {
+            limits = new long[this.possibilities.length];
+            Arrays.fill(limits, tileSet.getAllTiles());
+        }
+        limits[tile] &= possibilities;
+        long remaining = this.possibilities[tile] & possibilities;
+        if (remaining != this.possibilities[tile]) {
+            setTileState(tile, remaining, entropies[tile] == 0 ? 0 : Long.bitCount(remaining));
+            enqueue(tile);
+            propagate(false);
+        }
+        boolean consistent = this.possibilities[tile] != 0 && numOfPendingContradictions == 0 && checkConnectivity() < 0;
+        numOfPendingContradictions = 0;
+        clearUndoLog();
+        return consistent;
+    }
+
+    public RecoveryPolicy getRecoveryPolicy() {
+        return recoveryPolicy;
+    }
+
+    public void setRecoveryPolicy(RecoveryPolicy recoveryPolicy) {
+        this.recoveryPolicy = Objects.requireNonNull(recoveryPolicy);
+        clearUndoLog();
+        numOfPendingContradictions = 0;
+    }
+
+    public boolean isConnectivityRequired() {
+        return connectivity != null;
+    }
+
+    /**
+     * Requires the tiles to be connected by their routes, see {@link TileSet#getRoutes(BiGridConfig.Direction)}:
+     * two neighbouring tiles are connected if one of them has a route to the other.
+     * <p>
+     * Connectivity is tracked during the generation (see {@link WorldConnectivity}). A collapse that cuts tiles off
+     * from the others is a contradiction, so with a {@link RecoveryPolicy} other than {@code NONE} the generated world
+     * is connected if no contradiction remains. Routes are ignored in their direction, as by
+     * {@link BiGridConnectivityCheckerUF#isWeaklyConnected(org.bigraphs.framework.core.impl.pure.PureBigraph)}; for
+     * tile sets where each route between two tiles has a route back, such as the default ones, this is the same as
+     * {@link BiGridConnectivityChecker#isFullyConnected(org.bigraphs.framework.core.impl.pure.PureBigraph)}.
+     *
+     * @throws IllegalStateException if the tile set has no routes, or the tiles cannot be connected anymore
+     */
+    public void setConnectivityRequired(boolean connectivityRequired) {
+        if (!connectivityRequired) {
+            connectivity = null;
+            return;
+        }
+        if (connectivity != null) {
+            return;
+        }
+        if (!tileSet.hasRoutes()) {
+            throw new IllegalStateException("Connectivity requires a tile set with routes");
+        }
+        WorldConnectivity required = new WorldConnectivity(possibilities, rows, cols, layers, dx, dy, dz, step, tileSet);
+        int cutOff = required.checkAll();
+        if (cutOff >= 0) {
+            throw new IllegalStateException("Tile (" + xOf(cutOff) + ", " + yOf(cutOff) + ", " + zOf(cutOff) + ") cannot be connected to the other tiles");
+        }
+        // Earlier collapses cannot be undone, as the connectivity has no record of them
+        clearUndoLog();
+        connectivity = required;
+    }
+
+    /**
+     * Checks whether the routes of the tiles connect all tiles, see {@link #setConnectivityRequired(boolean)}.
+     * Tiles that are not collapsed yet only contribute the routes that all their possible tile types have.
+     */
+    public boolean isConnected() {
+        if (connectivity != null) {
+            return connectivity.isConnected();
+        }
+        return new WorldConnectivity(possibilities, rows, cols, layers, dx, dy, dz, step, tileSet).isConnected();
+    }
+
+    public WfcMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Set the metrics updated by the generation, or null to stop measuring
+    public void setMetrics(WfcMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // Set the number of tile changes after which the undo log is truncated (at the next collapse)
+    public void setMaxUndoLogSize(int maxUndoLogSize) {
+        if (maxUndoLogSize < 1) {
+            throw new IllegalArgumentException("Undo log size must be positive: " + maxUndoLogSize);
+        }
+        this.maxUndoLogSize = maxUndoLogSize;
+    }
+
+    // Set the maximum number of collapses undone for one contradiction before the region is restarted
+    public void setMaxBacktrackDepth(int maxBacktrackDepth) {
+        if (maxBacktrackDepth < 1) {
+            throw new IllegalArgumentException("Backtrack depth must be positive: " + maxBacktrackDepth);
+        }
+        this.maxBacktrackDepth = maxBacktrackDepth;
+    }
+
+    // Set the initial radius (in tiles) of the region that is reset after a contradiction
+    public void setRestartRadius(int restartRadius) {
+        if (restartRadius < 1) {
+            throw new IllegalArgumentException("Restart radius must be positive: " + restartRadius);
+        }
+        this.restartRadius = restartRadius;
+    }
+
+    // Set the number of restarts without progress after which the generation gives up, see waveFunctionCollapse().
+    // Default is an eighth of the number of tiles, at least 256.
+    public void setMaxRestarts(int maxRestarts) {
+        if (maxRestarts < 0) {
+            throw new IllegalArgumentException("Number of restarts must not be negative: " + maxRestarts);
+        }
+        this.maxRestarts = maxRestarts;
+    }
+
+    // Get the number of tiles found without possibilities or cut off from the others so far (including those resolved
+    // by recovery)
+    public int getNumOfContradictions() {
+        return numOfContradictions;
+    }
+
+    // Find the lowest entropy in the world (among the tiles that are not collapsed yet)
     public int getLowestEntropy() {
-        int lowestEntropy = BiGridConfig.tileRules.keySet().size();
-        for (int x = 0; x < rows; x++) {
-            for (int y = 0; y < cols; y++) {
-                int tileEntropy = tileRows[x][y].getEntropy();
-                if (tileEntropy > 0 && tileEntropy < lowestEntropy) {
-                    lowestEntropy = tileEntropy;
+        int lowestEntropy = entropyBuckets.lowestEntropy();
+        return lowestEntropy == 0 ? tileSet.size() : lowestEntropy;
+    }
+
+    /**
+     * Returns all tiles with the lowest entropy.
+     *
+     * @deprecated the world does not keep {@link Tile} objects anymore, so the returned tiles are not the tiles of the
+     * world but snapshots: changing them does not change the world, and they have no neighbours.
+     * Use {@link #getTileSnapshotsLowestEntropy()}, which has the same result, or {@link #getLowestEntropy()} and
+     * {@link #getEntropy(int, int, int)}.
+     */
+    @Deprecated
+    public List<Tile> getTilesLowestEntropy() {
+        return getTileSnapshotsLowestEntropy();
+    }
+
+    // Get snapshots of the current state of all tiles with the lowest entropy; changes of a snapshot do not affect the
+    // world
+    public List<Tile> getTileSnapshotsLowestEntropy() {
+        int lowestEntropy = entropyBuckets.lowestEntropy();
+        if (lowestEntropy == 0) {
+            return new ArrayList<>();
+        }
+        List<Tile> tileList = new ArrayList<>(entropyBuckets.size(lowestEntropy));
+        for (int i = 0; i < entropyBuckets.size(lowestEntropy); i++) {
+            int tile = entropyBuckets.get(lowestEntropy, i);
+            tileList.add(new Tile(xOf(tile), yOf(tile), zOf(tile), tileSet, possibilities[tile], entropies[tile]));
+        }
+        return tileList;
+    }
+
+    /**
+     * Collapses one tile and propagates the collapse, recovering from contradictions according to the
+     * {@link RecoveryPolicy}.
+     *
+     * @return 1 if a tile was collapsed, or 0 if all tiles are collapsed (or contradicting)
+     * @throws IllegalStateException if the world was restarted more than {@link #setMaxRestarts(int) maxRestarts}
+     *                               times without progress, i.e., the tile rules most likely admit no solution; the
+     *                               world keeps the contradicting tile then
+     */
+    public int waveFunctionCollapse() {
+        int lowestEntropy = entropyBuckets.lowestEntropy();
+
+        if (lowestEntropy == 0) {
+            return 0;
+        }
+        long time = metrics == null ? 0 : System.nanoTime();
+
+        // Choose a random tile to collapse among the tiles with the lowest entropy
+        int candidates = entropyBuckets.size(lowestEntropy);
+        int tileToCollapse = entropyBuckets.get(lowestEntropy, random.nextInt(candidates));
+        if (recoveryPolicy == RecoveryPolicy.RESTART_REGION || undoLogSize >= maxUndoLogSize) {
+            // Truncate the log between two collapses; earlier collapses cannot be undone anymore
+            clearUndoLog();
+        }
+        int mark = undoLogSize;
+        // Select one possibility based on weights
+        int chosenType = tileSet.getWeightedRandomType(possibilities[tileToCollapse], random);
+        setTileState(tileToCollapse, 1L << chosenType, 0);
+        numOfCollapsesSinceRestart++;
+        if (recoveryPolicy == RecoveryPolicy.BACKTRACK) {
+            pushDecision(mark, tileToCollapse, chosenType);
+        }
+        if (metrics != null) {
+            metrics.collapses++;
+            time = metrics.record(WfcMetrics.Phase.SELECTION, time);
+        }
+
+        enqueue(tileToCollapse);
+        int contradiction = propagate(recoveryPolicy != RecoveryPolicy.NONE);
+        if (metrics != null) {
+            time = metrics.record(WfcMetrics.Phase.PROPAGATION, time);
+        }
+        if (contradiction < 0 && connectivity != null) {
+            contradiction = checkConnectivity();
+            if (contradiction >= 0 && recoveryPolicy == RecoveryPolicy.RESTART_REGION
+                    && excludeCollapse(mark, tileToCollapse, chosenType)) {
+                // Cutting tiles off is often caused by the collapse alone, which is cheaper to exclude than to restart
+                contradiction = -1;
+            }
+            if (metrics != null) {
+                time = metrics.record(WfcMetrics.Phase.CONNECTIVITY, time);
+            }
+        }
+        if (contradiction >= 0) {
+            recover(contradiction);
+            if (metrics != null) {
+                metrics.record(WfcMetrics.Phase.RECOVERY, time);
+            }
+        } else if (entropyBuckets.size() < fewestRemainingTiles) {
+            fewestRemainingTiles = entropyBuckets.size();
+            numOfContradictionsWithoutProgress = 0;
+            numOfRestartsWithoutProgress = 0;
+        }
+
+        return 1;
+    }
+
+    // Propagation using the queue; returns the first tile without possibilities, or -1.
+    // Stopping at a contradiction leaves the propagation incomplete, which must be undone afterwards;
+    // otherwise all contradicting tiles are collected.
+    private int propagate(boolean stopAtContradiction) {
+        int contradiction = -1;
+        while (queueSize > 0) {
+            int tile = dequeue();
+            long tilePossibilities = possibilities[tile];
+            int x = xOf(tile), y = yOf(tile), z = zOf(tile);
+            if (metrics != null) {
+                metrics.propagationSteps++;
+            }
+
+            for (int direction = 0; direction < dx.length; direction++) {
+                int neighbour = neighbourOf(tile, x, y, z, direction);
+                if (neighbour < 0 || entropies[neighbour] == 0) {
+                    continue;
+                }
+                long previousPossibilities = possibilities[neighbour];
+                long remaining = previousPossibilities & tileSet.allowedNeighbours(tilePossibilities, direction);
+                if (remaining == previousPossibilities) {
+                    continue;
                 }
+                logChange(neighbour, previousPossibilities, entropies[neighbour]);
+                possibilities[neighbour] = remaining;
+                entropies[neighbour] = (byte) Long.bitCount(remaining);
+                entropyBuckets.update(neighbour, entropies[neighbour]);
+                if (connectivity != null) {
+                    connectivity.changed(neighbour, previousPossibilities, undoLogSize);
+                }
+                if (remaining == 0) {
+                    countContradiction();
+                    if (stopAtContradiction) {
+                        queueSize = 0;
+                        return neighbour;
+                    }
+                    if (contradiction < 0) contradiction = neighbour;
+                    addContradiction(neighbour);
+                    continue;
+                }
+                enqueue(neighbour); // Propagate further if reduced
             }
         }
-        return lowestEntropy;
+        return contradiction;
     }
 
-    // Get all tiles with the lowest entropy
-    public List<Tile> getTilesLowestEntropy() {
-        int lowestEntropy = BiGridConfig.tileRules.keySet().size();
-        List<Tile> tileList = new ArrayList<>();
-
-        for (int x = 0; x < rows; x++) {
-            for (int y = 0; y < cols; y++) {
-                int tileEntropy = tileRows[x][y].getEntropy();
-                if (tileEntropy > 0) {
-                    if (tileEntropy < lowestEntropy) {
-                        tileList.clear();
-                        lowestEntropy = tileEntropy;
+    private void recover(int contradiction) {
+        switch (recoveryPolicy) {
+            case NONE:
+                numOfPendingContradictions = 0;
+                clearUndoLog();
+                break;
+            case BACKTRACK:
+                if (++numOfContradictionsWithoutProgress > maxBacktrackDepth) {
+                    // Backtracking keeps running into contradictions, which a restart of the region may resolve
+                    undoTo(0);
+                    restartRegion(contradiction);
+                    break;
+                }
+                int unresolved = backtrack();
+                if (unresolved >= 0) {
+                    restartRegion(unresolved);
+                }
+                break;
+            case RESTART_REGION:
+                // Undo the incomplete propagation of the collapse first
+                undoTo(0);
+                restartRegion(contradiction);
+                break;
+        }
+    }
+
+    // Undoes the latest collapses and excludes their tile types; returns -1 on success, or the tile of the
+    // last undone collapse, in which case the world is in the (consistent) state before that collapse
+    private int backtrack() {
+        int last = -1;
+        int depth = 0;
+        while (numOfDecisions > 0 && depth++ < maxBacktrackDepth) {
+            numOfDecisions--;
+            if (metrics != null) {
+                metrics.backtracks++;
+            }
+            undoTo(decisionMarks[numOfDecisions]);
+            int tile = decisionTiles[numOfDecisions];
+            last = tile;
+            long remaining = possibilities[tile] & ~(1L << decisionTypes[numOfDecisions]);
+            if (remaining == 0) {
+                continue; // no alternative left, undo the collapse before
+            }
+            int mark = undoLogSize;
+            setTileState(tile, remaining, Long.bitCount(remaining));
+            enqueue(tile);
+            if (propagate(true) < 0 && checkConnectivity() < 0) {
+                return -1;
+            }
+            undoTo(mark);
+        }
+        return last;
+    }
+
+    // Undoes a collapse and excludes its tile type instead; returns false if this is not consistent either, in which
+    // case the propagation is incomplete
+    private boolean excludeCollapse(int mark, int tile, int type) {
+        undoTo(mark);
+        long remaining = possibilities[tile] & ~(1L << type);
+        if (remaining == 0) {
+            return false;
+        }
+        setTileState(tile, remaining, Long.bitCount(remaining));
+        enqueue(tile);
+        return propagate(true) < 0 && checkConnectivity() < 0;
+    }
+
+    // Resets the tiles around the given tile and constrains them again by their surroundings.
+    // The region grows until no contradiction remains, at most to the whole world.
+    private void restartRegion(int center) {
+        int centerX = xOf(center), centerY = yOf(center), centerZ = zOf(center);
+        if (++numOfRestartsWithoutProgress > maxRestarts) {
+            numOfPendingContradictions = 0;
+            clearUndoLog();
+            throw new IllegalStateException("No solution found after " + maxRestarts + " restarts without progress, "
+                    + "the tile rules may admit no solution for a world of " + rows + "x" + cols + "x" + layers + " tiles");
+        }
+        if (metrics != null) {
+            metrics.restarts++;
+        }
+        // Restarts shortly after another one start with a larger region
+        int radius = restartRadius;
+        if (numOfCollapsesSinceRestart < (2 * lastRestartRadius + 1) * (2 * lastRestartRadius + 1)) {
+            radius = Math.max(radius, lastRestartRadius * 2);
+        }
+        while (true) {
+            if (connectivity != null) {
+                // Routes that were certain may only be possible after the reset
+                connectivity.invalidate();
+            }
+            int minX = Math.max(0, centerX - radius), maxX = Math.min(rows - 1, centerX + radius);
+            int minY = Math.max(0, centerY - radius), maxY = Math.min(cols - 1, centerY + radius);
+            int minZ = Math.max(0, centerZ - radius), maxZ = Math.min(layers - 1, centerZ + radius);
+            // Restricted tiles of the region constrain it as well
+            for (int x = minX; x <= maxX; x++) {
+                for (int y = minY; y <= maxY; y++) {
+                    for (int z = minZ; z <= maxZ; z++) {
+                        int tile = indexOf(x, y, z);
+                        long limit = limits == null ? tileSet.getAllTiles() : limits[tile];
+                        setTileState(tile, limit, Long.bitCount(limit));
+                        if (limit != tileSet.getAllTiles()) {
+                            enqueue(tile);
+                        }
                     }
-                    if (tileEntropy == lowestEntropy) {
-                        tileList.add(tileRows[x][y]);
+                }
+            }
+            boolean wholeWorld = minX == 0 && minY == 0 && minZ == 0 && maxX == rows - 1 && maxY == cols - 1 && maxZ == layers - 1;
+            if (wholeWorld && limits == null) {
+                // Nothing constrains the region
+                break;
+            }
+            // Constrain the region by the tiles around it (contradicting tiles have no constraint to offer)
+            for (int x = Math.max(0, minX - 1); x <= Math.min(rows - 1, maxX + 1); x++) {
+                for (int y = Math.max(0, minY - 1); y <= Math.min(cols - 1, maxY + 1); y++) {
+                    for (int z = Math.max(0, minZ - 1); z <= Math.min(layers - 1, maxZ + 1); z++) {
+                        boolean outside = x < minX || x > maxX || y < minY || y > maxY || z < minZ || z > maxZ;
+                        if (outside && possibilities[indexOf(x, y, z)] != 0) {
+                            enqueue(indexOf(x, y, z));
+                        }
                     }
                 }
             }
+            propagate(false);
+            removeResolvedContradictions();
+            if (numOfPendingContradictions == 0 && checkConnectivity() >= 0) {
+                // Keep growing the region around the contradiction
+                addContradiction(center);
+            }
+            if (numOfPendingContradictions == 0 || wholeWorld) {
+                // The restrictions cannot be satisfied if contradictions remain for the whole world
+                break;
+            }
+            radius *= 2;
         }
-        return tileList;
+        lastRestartRadius = radius;
+        numOfCollapsesSinceRestart = 0;
+        numOfContradictionsWithoutProgress = 0;
+        numOfPendingContradictions = 0;
+        if (connectivity != null) {
+            connectivity.refresh();
+        }
+        clearUndoLog();
     }
 
-    // Perform Wave Function Collapse
-    public int waveFunctionCollapse() {
-        List<Tile> tilesLowestEntropy = getTilesLowestEntropy();
+    // Sets the state of a tile and records the previous state
+    private void setTileState(int tile, long tilePossibilities, int entropy) {
+        long previousPossibilities = possibilities[tile];
+        logChange(tile, previousPossibilities, entropies[tile]);
+        possibilities[tile] = tilePossibilities;
+        entropies[tile] = (byte) entropy;
+        entropyBuckets.update(tile, entropy);
+        if (connectivity != null) {
+            connectivity.changed(tile, previousPossibilities, undoLogSize);
+        }
+    }
 
-        if (tilesLowestEntropy.isEmpty()) {
-            return 0;
+    // Checks the connectivity constraint after a complete propagation; returns a tile cut off from the others, or -1
+    private int checkConnectivity() {
+        if (connectivity == null) {
+            return -1;
+        }
+        int cutOff = connectivity.check();
+        if (cutOff >= 0) {
+            countContradiction();
         }
+        return cutOff;
+    }
 
-        // Choose a random tile to collapse
-        Tile tileToCollapse = tilesLowestEntropy.get(new Random().nextInt(tilesLowestEntropy.size()));
-        tileToCollapse.collapse();
+    private void countContradiction() {
+        numOfContradictions++;
+        if (metrics != null) {
+            metrics.contradictions++;
+        }
+    }
 
-        // Propagation using stack
-        Queue<Tile> stack = new LinkedList<>();
-        stack.add(tileToCollapse);
+    private void logChange(int tile, long previousPossibilities, int previousEntropy) {
+        if (recoveryPolicy == RecoveryPolicy.NONE) {
+            return;
+        }
+        if (undoLogSize == undoTiles.length) {
+            int capacity = undoTiles.length * 2;
+            undoTiles = Arrays.copyOf(undoTiles, capacity);
+            undoPossibilities = Arrays.copyOf(undoPossibilities, capacity);
+            undoEntropies = Arrays.copyOf(undoEntropies, capacity);
+        }
+        undoTiles[undoLogSize] = tile;
+        undoPossibilities[undoLogSize] = previousPossibilities;
+        undoEntropies[undoLogSize++] = previousEntropy;
+    }
 
-        while (!stack.isEmpty()) {
-            Tile tile = stack.remove();
-            List<Integer> tilePossibilities = tile.getPossibilities();
-            List<BiGridConfig.Direction> directions = tile.getDirections();
+    private void undoTo(int mark) {
+        while (undoLogSize > mark) {
+            undoLogSize--;
+            int tile = undoTiles[undoLogSize];
+            possibilities[tile] = undoPossibilities[undoLogSize];
+            entropies[tile] = (byte) undoEntropies[undoLogSize];
+            entropyBuckets.update(tile, undoEntropies[undoLogSize]);
+        }
+        if (connectivity != null) {
+            connectivity.undoTo(mark);
+        }
+    }
 
-            for (BiGridConfig.Direction direction : directions) {
-                Tile neighbour = tile.getNeighbour(direction);
-                if (neighbour.getEntropy() != 0) {
-                    boolean reduced = neighbour.constrain(tilePossibilities, direction);
-                    if (reduced) {
-                        stack.add(neighbour); // Propagate further if reduced
-                    }
-                }
+    private void pushDecision(int mark, int tile, int type) {
+        if (numOfDecisions == decisionMarks.length) {
+            decisionMarks = Arrays.copyOf(decisionMarks, numOfDecisions * 2);
+            decisionTiles = Arrays.copyOf(decisionTiles, numOfDecisions * 2);
+            decisionTypes = Arrays.copyOf(decisionTypes, numOfDecisions * 2);
+        }
+        decisionMarks[numOfDecisions] = mark;
+        decisionTiles[numOfDecisions] = tile;
+        decisionTypes[numOfDecisions++] = type;
+    }
+
+    private void clearUndoLog() {
+        undoLogSize = 0;
+        numOfDecisions = 0;
+        if (connectivity != null) {
+            connectivity.clearHistory();
+        }
+    }
+
+    private void addContradiction(int tile) {
+        if (numOfPendingContradictions == contradictions.length) {
+            contradictions = Arrays.copyOf(contradictions, numOfPendingContradictions * 2);
+        }
+        contradictions[numOfPendingContradictions++] = tile;
+    }
+
+    private void removeResolvedContradictions() {
+        int remaining = 0;
+        for (int i = 0; i < numOfPendingContradictions; i++) {
+            if (possibilities[contradictions[i]] == 0) {
+                contradictions[remaining++] = contradictions[i];
             }
         }
+        numOfPendingContradictions = remaining;
+    }
 
-        return 1;
+    private void enqueue(int tile) {
+        if (queueSize == queue.length) {
+            // Unroll the ring buffer into a larger array
+            int[] grown = new int[queue.length * 2];
+            int first = queue.length - queueHead;
+            System.arraycopy(queue, queueHead, grown, 0, first);
+            System.arraycopy(queue, 0, grown, first, queueHead);
+            queue = grown;
+            queueHead = 0;
+        }
+        queue[(queueHead + queueSize++) % queue.length] = tile;
+    }
+
+    private int dequeue() {
+        int tile = queue[queueHead];
+        queueHead = (queueHead + 1) % queue.length;
+        queueSize--;
+        return tile;
+    }
+
+    // The index of the neighbour of the tile at (x, y, z) in the given direction of the topology, or -1 at the border of
+    // the world
+    private int neighbourOf(int tile, int x, int y, int z, int direction) {
+        int nx = x + dx[direction], ny = y + dy[direction], nz = z + dz[direction];
+        if (nx < 0 || nx >= rows || ny < 0 || ny >= cols || nz < 0 || nz >= layers) {
+            return -1;
+        }
+        return tile + step[direction];
+    }
+
+    private int indexOf(int x, int y, int z) {
+        return (x * cols + y) * layers + z;
+    }
+
+    private int xOf(int tile) {
+        return tile / layers / cols;
+    }
+
+    private int yOf(int tile) {
+        return tile / layers % cols;
+    }
+
+    private int zOf(int tile) {
+        return tile % layers;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,78 @@
+package org.bigraphs.model.provider.spatial.bigrid;
+
+/**
+ * A finished rectangular part of a world generated by {@link ChunkedWorldGenerator}.
+ * <p>
+ * The tile types are final: chunks generated later are constrained to fit to it.
+ */
+public final class WorldChunk {
+    private final int chunkX;
+    private final int chunkY;
+    private final int originX;
+    private final int originY;
+    private final int sizeX;
+    private final int sizeY;
+    // Row-major tile types
+    private final int[] types;
+
+    WorldChunk(int chunkX, int chunkY, int originX, int originY, int sizeX, int sizeY, int[] types) {
+        this.chunkX = chunkX;
+        this.chunkY = chunkY;
+        this.originX = originX;
+        this.originY = originY;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.types = types;
+    }
+
+    /**
+     * @return the row of the chunk in the grid of chunks
+     */
+    public int getChunkX() {
+        return chunkX;
+    }
+
+    /**
+     * @return the column of the chunk in the grid of chunks
+     */
+    public int getChunkY() {
+        return chunkY;
+    }
+
+    /**
+     * @return the x coordinate of the first tile of the chunk in the world
+     */
+    public int getOriginX() {
+        return originX;
+    }
+
+    /**
+     * @return the y coordinate of the first tile of the chunk in the world
+     */
+    public int getOriginY() {
+        return originY;
+    }
+
+    public int getSizeX() {
+        return sizeX;
+    }
+
+    public int getSizeY() {
+        return sizeY;
+    }
+
+    /**
+     * Returns the tile type at a position relative to the origin of the chunk.
+     */
+    public int getType(int x, int y) {
+        if (x < 0 || x >= sizeX || y < 0 || y >= sizeY) {
+            throw new IndexOutOfBoundsException("Tile (" + x + ", " + y + ") is outside the chunk of size " + sizeX + "x" + sizeY);
+        }
+        return types[x * sizeY + y];
+    }
+
+    @Override
+    public String toString() {
+        return "WorldChunk{chunk=(" + chunkX + ", " + chunkY + "), origin=(" + originX + ", " + originY + "), size=" + sizeX + "x" + sizeY + "}";
+    }
+}
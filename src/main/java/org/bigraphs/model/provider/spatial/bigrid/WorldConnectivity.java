@@ -0,0 +1,299 @@
+package org.bigraphs.model.provider.spatial.bigrid;
+
+import org.bigraphs.model.provider.util.IntRollbackUnionFind;
+
+import java.util.Arrays;
+
+/**
+ * Tracks whether the tiles of a {@link World} can still be connected by their routes, see
+ * {@link World#setConnectivityRequired(boolean)}.
+ * <p>
+ * Two neighbouring tiles are connected if one of them has a route to the other (see {@link TileSet#getRoutes}).
+ * While tiles are not collapsed, such a route is
+ * <ul>
+ *     <li><em>possible</em> if a possible tile type of either tile has it, and</li>
+ *     <li><em>certain</em> if all possible tile types of one of the tiles have it.</li>
+ * </ul>
+ * Possibilities only shrink during the generation, so possible routes are lost and routes become certain.
+ * The world can only be connected at the end if the possible routes connect all tiles. This is checked incrementally:
+ * when the last possible route between two neighbours is lost, two breadth-first searches over the possible routes
+ * are started from both tiles and advanced alternately, until they meet or one of them is exhausted, in which case
+ * its tiles are cut off from the others.
+ * <p>
+ * The certain routes are kept in a union-find whose unions are undone together with the undo log of the world.
+ * A search stops as soon as it reaches a tile certainly connected to the other side, and no search is needed once all
+ * tiles are certainly connected. After a region of the world has been reset, the union-find is rebuilt.
+ */
+final class WorldConnectivity {
+
+    private final long[] possibilities;
+    private final int rows;
+    private final int cols;
+    private final int layers;
+    private final int[] dx;
+    private final int[] dy;
+    private final int[] dz;
+    private final int[] step;
+    // [direction] -> tile types with a route to the neighbour in that direction, and from the neighbour back
+    private final long[] routesOut;
+    private final long[] routesIn;
+    // Tiles connected by certain routes
+    private IntRollbackUnionFind committed;
+    private boolean stale = false;
+    // Size of the undo log of the world after each recorded union
+    private int[] unionMarks = new int[16];
+    // Pairs of neighbours whose last possible route was lost since the last check
+    private int[] lostRoutes = new int[32];
+    private int numOfLostRoutes = 0;
+    // Search state, reused between checks
+    private final int[] visitedA;
+    private final int[] visitedB;
+    private final int[] queueA;
+    private final int[] queueB;
+    private int epoch = 0;
+
+    WorldConnectivity(long[] possibilities, int rows, int cols, int layers, int[] dx, int[] dy, int[] dz, int[] step,
+                      TileSet tileSet) {
+        this.possibilities = possibilities;
+        this.rows = rows;
+        this.cols = cols;
+        this.layers = layers;
+        this.dx = dx;
+        this.dy = dy;
+        this.dz = dz;
+        this.step = step;
+        TileSet.Topology topology = tileSet.getTopology();
+        this.routesOut = new long[topology.size()];
+        this.routesIn = new long[topology.size()];
+        for (int d = 0; d < topology.size(); d++) {
+            routesOut[d] = tileSet.routes(d);
+            routesIn[d] = tileSet.routes(topology.indexOf(topology.get(d).opposite()));
+        }
+        visitedA = new int[possibilities.length];
+        visitedB = new int[possibilities.length];
+        queueA = new int[possibilities.length];
+        queueB = new int[possibilities.length];
+        rebuild();
+    }
+
+    /**
+     * Records that the possibilities of a tile were changed.
+     *
+     * @param previous the possibilities before the change
+     * @param mark     the size of the undo log of the world after the change
+     */
+    void changed(int tile, long previous, int mark) {
+        long current = possibilities[tile];
+        int x = tile / layers / cols, y = tile / layers % cols, z = tile % layers;
+        for (int d = 0; d < step.length; d++) {
+            int neighbour = neighbourOf(x, y, z, d);
+            if (neighbour < 0) {
+                continue;
+            }
+            long incoming = possibilities[neighbour] & routesIn[d];
+            if (incoming == 0 && (previous & routesOut[d]) != 0 && (current & routesOut[d]) == 0) {
+                addLostRoute(tile, tile + step[d]);
+            }
+            if (!stale && certain(current, routesOut[d]) && !certain(previous, routesOut[d])
+                    && !certain(possibilities[tile + step[d]], routesIn[d]) && committed.union(tile, tile + step[d])) {
+                if (committed.getHistorySize() > unionMarks.length) {
+                    unionMarks = Arrays.copyOf(unionMarks, unionMarks.length * 2);
+                }
+                unionMarks[committed.getHistorySize() - 1] = mark;
+            }
+        }
+    }
+
+    /**
+     * Checks the routes lost since the last check.
+     *
+     * @return a tile that cannot be connected to the other tiles anymore, or -1
+     */
+    int check() {
+        refresh();
+        int cutOff = -1;
+        for (int i = 0; i < numOfLostRoutes && cutOff < 0 && committed.count() > 1; i++) {
+            int a = lostRoutes[2 * i], b = lostRoutes[2 * i + 1];
+            if (!committed.connected(a, b)) {
+                cutOff = separated(a, b);
+            }
+        }
+        numOfLostRoutes = 0;
+        return cutOff;
+    }
+
+    /**
+     * Checks all tiles, regardless of the routes lost before.
+     *
+     * @return a tile that cannot be connected to the first tile, or -1
+     */
+    int checkAll() {
+        refresh();
+        numOfLostRoutes = 0;
+        if (committed.count() <= 1) {
+            return -1;
+        }
+        nextEpoch();
+        int head = 0, tail = 0;
+        queueA[tail++] = 0;
+        visitedA[0] = epoch;
+        while (head < tail) {
+            int v = queueA[head++];
+            int x = v / layers / cols, y = v / layers % cols, z = v % layers;
+            for (int d = 0; d < step.length; d++) {
+                int w = neighbourOf(x, y, z, d);
+                if (w >= 0 && visitedA[w] != epoch && possible(v, w, d)) {
+                    visitedA[w] = epoch;
+                    queueA[tail++] = w;
+                }
+            }
+        }
+        for (int tile = 0; tile < possibilities.length; tile++) {
+            if (visitedA[tile] != epoch) {
+                return tile;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return {@code true} if the certain routes connect all tiles
+     */
+    boolean isConnected() {
+        refresh();
+        return committed.count() <= 1;
+    }
+
+    /**
+     * Undoes the unions recorded after the given size of the undo log of the world, and forgets the lost routes.
+     */
+    void undoTo(int mark) {
+        int historySize = committed.getHistorySize();
+        while (historySize > 0 && unionMarks[historySize - 1] > mark) {
+            historySize--;
+        }
+        committed.rollback(historySize);
+        numOfLostRoutes = 0;
+    }
+
+    /**
+     * Makes the unions so far permanent, after the undo log of the world was cleared, and forgets the lost routes.
+     */
+    void clearHistory() {
+        committed.clearHistory();
+        numOfLostRoutes = 0;
+    }
+
+    /**
+     * Marks the union-find as outdated, after possibilities were reset. It is rebuilt by the next check.
+     */
+    void invalidate() {
+        stale = true;
+    }
+
+    /**
+     * Rebuilds the union-find if it is outdated.
+     */
+    void refresh() {
+        if (stale) {
+            rebuild();
+        }
+    }
+
+    private void rebuild() {
+        committed = new IntRollbackUnionFind(possibilities.length);
+        for (int tile = 0; tile < possibilities.length; tile++) {
+            int x = tile / layers / cols, y = tile / layers % cols, z = tile % layers;
+            for (int d = 0; d < step.length; d++) {
+                int neighbour = neighbourOf(x, y, z, d);
+                if (neighbour > tile && (certain(possibilities[tile], routesOut[d]) || certain(possibilities[neighbour], routesIn[d]))) {
+                    committed.union(tile, neighbour);
+                }
+            }
+        }
+        committed.clearHistory();
+        stale = false;
+    }
+
+    // Alternating breadth-first searches over the possible routes from both tiles; returns the start of the search
+    // that was exhausted, or -1 if they met
+    private int separated(int a, int b) {
+        nextEpoch();
+        int rootA = committed.find(a), rootB = committed.find(b);
+        int headA = 0, tailA = 0, headB = 0, tailB = 0;
+        queueA[tailA++] = a;
+        visitedA[a] = epoch;
+        queueB[tailB++] = b;
+        visitedB[b] = epoch;
+        while (true) {
+            if (headA == tailA) {
+                return a;
+            }
+            int v = queueA[headA++];
+            int x = v / layers / cols, y = v / layers % cols, z = v % layers;
+            for (int d = 0; d < step.length; d++) {
+                int w = neighbourOf(x, y, z, d);
+                if (w < 0 || visitedA[w] == epoch || !possible(v, w, d)) {
+                    continue;
+                }
+                if (visitedB[w] == epoch || committed.find(w) == rootB) {
+                    return -1;
+                }
+                visitedA[w] = epoch;
+                queueA[tailA++] = w;
+            }
+            if (headB == tailB) {
+                return b;
+            }
+            v = queueB[headB++];
+            x = v / layers / cols;
+            y = v / layers % cols;
+            z = v % layers;
+            for (int d = 0; d < step.length; d++) {
+                int w = neighbourOf(x, y, z, d);
+                if (w < 0 || visitedB[w] == epoch || !possible(v, w, d)) {
+                    continue;
+                }
+                if (visitedA[w] == epoch || committed.find(w) == rootA) {
+                    return -1;
+                }
+                visitedB[w] = epoch;
+                queueB[tailB++] = w;
+            }
+        }
+    }
+
+    // Whether a route between the tile and its neighbour in the given direction is possible
+    private boolean possible(int tile, int neighbour, int direction) {
+        return (possibilities[tile] & routesOut[direction]) != 0 || (possibilities[neighbour] & routesIn[direction]) != 0;
+    }
+
+    // Whether all possible tile types have one of the routes
+    private static boolean certain(long tilePossibilities, long routes) {
+        return tilePossibilities != 0 && (tilePossibilities & ~routes) == 0;
+    }
+
+    private void addLostRoute(int a, int b) {
+        if (2 * numOfLostRoutes == lostRoutes.length) {
+            lostRoutes = Arrays.copyOf(lostRoutes, lostRoutes.length * 2);
+        }
+        lostRoutes[2 * numOfLostRoutes] = a;
+        lostRoutes[2 * numOfLostRoutes++ + 1] = b;
+    }
+
+    private void nextEpoch() {
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(visitedA, 0);
+            Arrays.fill(visitedB, 0);
+            epoch = 1;
+        }
+    }
+
+    private int neighbourOf(int x, int y, int z, int direction) {
+        int nx = x + dx[direction], ny = y + dy[direction], nz = z + dz[direction];
+        if (nx < 0 || nx >= rows || ny < 0 || ny >= cols || nz < 0 || nz >= layers) {
+            return -1;
+        }
+        return (nx * cols + ny) * layers + nz;
+    }
+}
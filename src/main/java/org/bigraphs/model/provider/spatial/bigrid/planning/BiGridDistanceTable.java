@@ -0,0 +1,256 @@
+package org.bigraphs.model.provider.spatial.bigrid.planning;
+
+import org.bigraphs.model.provider.spatial.bigrid.BiGridGraph;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Precomputed distances of a static bigrid for many distance queries.
+ * <p>
+ * There are two kinds of tables:
+ * <ul>
+ *     <li>{@link #allPairs(BiGridPathPlanner)}: the shortest path costs between all pairs of locales, i.e.,
+ *     {@code size()²} entries, so lookups are O(1). Only suitable for small grids.</li>
+ *     <li>{@link #landmarks(BiGridPathPlanner, int)}: the costs from and to a few landmark locales (ALT).
+ *     By the triangle inequality they give lower bounds of the cost between any two locales, which is a much
+ *     tighter A* heuristic than the Euclidean distance when routes are blocked or costs differ per route type.</li>
+ * </ul>
+ * Distances are computed with the graph and {@link RouteCosts} of the given planner, and are only valid for them:
+ * the table keeps a fingerprint of the edges and their costs, which is checked by {@link #matches(BiGridPathPlanner)}.
+ * A table can be used as heuristic of a planner by {@link BiGridPathPlanner#setDistanceTable(BiGridDistanceTable)},
+ * and be stored by {@link #write(Path)} to be loaded again by {@link #read(Path)}.
+ * Distances are stored as {@code double}s in primitive arrays, i.e., exactly as computed by the planner: rounding them
+ * to {@code float}s could exceed the costs of the planner and make the A* heuristic inadmissible. Unreachable locales
+ * have an infinite distance.
+ */
+public final class BiGridDistanceTable {
+    private static final int MAGIC = 0x42474454; // "BGDT"
+    private static final int VERSION = 3;
+    // Relative rounding error of summed costs: bounds are reduced by it, since the planner and the distances of the
+    // table sum the costs of different paths and thus round differently
+    private static final double TOLERANCE = 1e-9;
+
+    private final int size;
+    // see BiGridPathPlanner.fingerprint()
+    private final long fingerprint;
+    // empty for all-pairs tables
+    private final int[] landmarks;
+    // all-pairs: from * size + to; landmarks: landmark * size + locale
+    private final double[] fromLandmark;
+    private final double[] toLandmark;
+
+    private BiGridDistanceTable(int size, long fingerprint, int[] landmarks, double[] fromLandmark, double[] toLandmark) {
+        this.size = size;
+        this.fingerprint = fingerprint;
+        this.landmarks = landmarks;
+        this.fromLandmark = fromLandmark;
+        this.toLandmark = toLandmark;
+    }
+
+    /**
+     * Computes the shortest path costs between all pairs of locales by running Dijkstra's algorithm from each locale.
+     *
+     * @param planner the planner providing the graph and the route costs
+     * @return the all-pairs table
+     * @throws IllegalArgumentException if the graph is too large for a single table
+     */
+    public static BiGridDistanceTable allPairs(BiGridPathPlanner planner) {
+        BiGridGraph graph = planner.getGraph();
+        int n = graph.size();
+        if ((long) n * n > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many locales for an all-pairs table: " + n);
+        }
+        double[] distances = new double[n * n];
+        double[] row = new double[n];
+        for (int source = 0; source < n; source++) {
+            planner.distancesFrom(source, row);
+            System.arraycopy(row, 0, distances, source * n, n);
+        }
+        return new BiGridDistanceTable(n, planner.fingerprint(), new int[0], distances, null);
+    }
+
+    /**
+     * Computes the costs from and to the given number of landmarks.
+     * <p>
+     * Landmarks are selected by farthest-point selection: the first landmark is locale 0, and each further
+     * landmark is the locale with the largest distance (in either direction) to its nearest landmark chosen so far,
+     * preferring locales that are not connected to any landmark.
+     *
+     * @param planner        the planner providing the graph and the route costs
+     * @param numOfLandmarks the number of landmarks, e.g., 8 or 16
+     * @return the landmark table
+     */
+    public static BiGridDistanceTable landmarks(BiGridPathPlanner planner, int numOfLandmarks) {
+        BiGridGraph graph = planner.getGraph();
+        int n = graph.size();
+        int k = Math.min(numOfLandmarks, n);
+        if (k < 0) {
+            throw new IllegalArgumentException("Number of landmarks must be non-negative: " + numOfLandmarks);
+        }
+        BiGridPathPlanner reversePlanner = new BiGridPathPlanner(graph.reverse()).setRouteCosts(planner.getRouteCosts());
+        int[] landmarks = new int[k];
+        double[] fromLandmark = new double[k * n];
+        double[] toLandmark = new double[k * n];
+        double[] from = new double[n];
+        double[] to = new double[n];
+        double[] nearest = new double[n];
+        Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+        int next = 0;
+        for (int l = 0; l < k; l++) {
+            landmarks[l] = next;
+            planner.distancesFrom(next, from);
+            reversePlanner.distancesFrom(next, to);
+            System.arraycopy(from, 0, fromLandmark, l * n, n);
+            System.arraycopy(to, 0, toLandmark, l * n, n);
+            double farthest = -1;
+            for (int v = 0; v < n; v++) {
+                nearest[v] = Math.min(nearest[v], Math.min(from[v], to[v]));
+                if (nearest[v] > farthest) {
+                    farthest = nearest[v];
+                    next = v;
+                }
+            }
+        }
+        return new BiGridDistanceTable(n, planner.fingerprint(), landmarks, fromLandmark, toLandmark);
+    }
+
+    public boolean isAllPairs() {
+        return toLandmark == null;
+    }
+
+    /**
+     * @return the number of locales
+     */
+    public int size() {
+        return size;
+    }
+
+    public int[] getLandmarks() {
+        return landmarks.clone();
+    }
+
+    /**
+     * @return {@code true} if the table was computed for the graph and the current route costs of the planner, i.e.,
+     * for the same edges with the same costs
+     */
+    public boolean matches(BiGridPathPlanner planner) {
+        return planner.getGraph().size() == size && planner.fingerprint() == fingerprint;
+    }
+
+    /**
+     * Returns the cost of the shortest path between two locales.
+     *
+     * @return the cost, or {@link Double#POSITIVE_INFINITY} if {@code to} is not reachable
+     * @throws IllegalStateException if this is a landmark table
+     */
+    public double getDistance(int from, int to) {
+        if (!isAllPairs()) {
+            throw new IllegalStateException("Exact distances require an all-pairs table");
+        }
+        return fromLandmark[from * size + to];
+    }
+
+    /**
+     * Returns a lower bound of the cost of the shortest path between two locales.
+     * For all-pairs tables this is the exact cost, reduced by a relative tolerance of rounding errors.
+     */
+    public double lowerBound(int from, int to) {
+        if (isAllPairs()) {
+            return fromLandmark[from * size + to] * (1 - TOLERANCE);
+        }
+        double bound = 0;
+        for (int l = 0, offset = 0; l < landmarks.length; l++, offset += size) {
+            // d(L, to) <= d(L, from) + d(from, to) and d(from, L) <= d(from, to) + d(to, L)
+            double forward = fromLandmark[offset + to] * (1 - TOLERANCE) - fromLandmark[offset + from];
+            double backward = toLandmark[offset + from] * (1 - TOLERANCE) - toLandmark[offset + to];
+            // NaN (both infinite) is ignored by the comparisons
+            if (forward > bound) bound = forward;
+            if (backward > bound) bound = backward;
+        }
+        return bound;
+    }
+
+    /**
+     * Writes the table in a binary format.
+     */
+    public void write(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            write(out);
+        }
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeBoolean(isAllPairs());
+        out.writeInt(size);
+        out.writeLong(fingerprint);
+        out.writeInt(landmarks.length);
+        for (int landmark : landmarks) {
+            out.writeInt(landmark);
+        }
+        writeDoubles(out, fromLandmark);
+        if (!isAllPairs()) {
+            writeDoubles(out, toLandmark);
+        }
+    }
+
+    /**
+     * Reads a table written by {@link #write(Path)}.
+     */
+    public static BiGridDistanceTable read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return read(in);
+        }
+    }
+
+    public static BiGridDistanceTable read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a distance table");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported distance table version: " + version);
+        }
+        boolean allPairs = in.readBoolean();
+        int size = in.readInt();
+        long fingerprint = in.readLong();
+        int[] landmarks = new int[in.readInt()];
+        for (int l = 0; l < landmarks.length; l++) {
+            landmarks[l] = in.readInt();
+        }
+        if (allPairs) {
+            return new BiGridDistanceTable(size, fingerprint, landmarks, readDoubles(in, size * size), null);
+        }
+        int length = landmarks.length * size;
+        return new BiGridDistanceTable(size, fingerprint, landmarks, readDoubles(in, length), readDoubles(in, length));
+    }
+
+    // Chunks of doubles instead of one call per value
+    private static void writeDoubles(DataOutputStream out, double[] values) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        for (int i = 0; i < values.length; ) {
+            buffer.clear();
+            int end = Math.min(values.length, i + buffer.capacity() / Double.BYTES);
+            buffer.asDoubleBuffer().put(values, i, end - i);
+            out.write(buffer.array(), 0, (end - i) * Double.BYTES);
+            i = end;
+        }
+    }
+
+    private static double[] readDoubles(DataInputStream in, int length) throws IOException {
+        double[] values = new double[length];
+        byte[] bytes = new byte[8192];
+        for (int i = 0; i < length; ) {
+            int end = Math.min(length, i + bytes.length / Double.BYTES);
+            in.readFully(bytes, 0, (end - i) * Double.BYTES);
+            ByteBuffer.wrap(bytes, 0, (end - i) * Double.BYTES).asDoubleBuffer().get(values, i, end - i);
+            i = end;
+        }
+        return values;
+    }
+}
@@ -0,0 +1,114 @@
+package org.bigraphs.model.provider.spatial.bigrid.planning;
+
+import org.bigraphs.model.provider.spatial.bigrid.BiGridGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A path between two locales of a {@link BiGridGraph}, as returned by {@link BiGridPathPlanner}.
+ * <p>
+ * The path is given by the ids of its locales and the ids of the edges between them, i.e.,
+ * {@code getEdges()[i]} leads from {@code getLocales()[i]} to {@code getLocales()[i + 1]}.
+ */
+public final class BiGridPath {
+    private static final BiGridPath NONE = new BiGridPath(new int[0], new int[0], Double.POSITIVE_INFINITY, 0);
+
+    private final int[] locales;
+    private final int[] edges;
+    private final double cost;
+    private final int numOfExpandedLocales;
+
+    BiGridPath(int[] locales, int[] edges, double cost, int numOfExpandedLocales) {
+        this.locales = locales;
+        this.edges = edges;
+        this.cost = cost;
+        this.numOfExpandedLocales = numOfExpandedLocales;
+    }
+
+    static BiGridPath none(int numOfExpandedLocales) {
+        return numOfExpandedLocales == 0 ? NONE : new BiGridPath(new int[0], new int[0], Double.POSITIVE_INFINITY, numOfExpandedLocales);
+    }
+
+    /**
+     * @return {@code false} if the target is not reachable from the source
+     */
+    public boolean isFound() {
+        return locales.length > 0;
+    }
+
+    /**
+     * @return the locale ids from the source to the target (both included), or an empty array
+     */
+    public int[] getLocales() {
+        return locales.clone();
+    }
+
+    /**
+     * @return the edge ids of the path, one less than the number of locales
+     */
+    public int[] getEdges() {
+        return edges.clone();
+    }
+
+    public int getLocale(int index) {
+        return locales[index];
+    }
+
+    public int getEdge(int index) {
+        return edges[index];
+    }
+
+    /**
+     * @return the number of locales of the path
+     */
+    public int size() {
+        return locales.length;
+    }
+
+    /**
+     * @return the sum of the edge costs, or {@link Double#POSITIVE_INFINITY} if no path was found
+     */
+    public double getCost() {
+        return cost;
+    }
+
+    /**
+     * @return the number of locales that were settled by the search
+     */
+    public int getNumOfExpandedLocales() {
+        return numOfExpandedLocales;
+    }
+
+    /**
+     * @return the labels of the locales of the path
+     */
+    public List<String> getLabels(BiGridGraph graph) {
+        if (locales.length == 0) {
+            return Collections.emptyList();
+        }
+        List<String> labels = new ArrayList<>(locales.length);
+        for (int locale : locales) {
+            labels.add(graph.getLabel(locale));
+        }
+        return labels;
+    }
+
+    /**
+     * @return the route types of the edges of the path, e.g., {@code [ForwardRoute, ForwardRoute, UpRoute]}
+     */
+    public List<String> getDirections(BiGridGraph graph) {
+        List<String> directions = new ArrayList<>(edges.length);
+        for (int edge : edges) {
+            directions.add(graph.getRouteType(edge));
+        }
+        return directions;
+    }
+
+    @Override
+    public String toString() {
+        return "BiGridPath{locales=" + Arrays.toString(locales) + ", cost=" + cost + "}";
+    }
+}
@@ -0,0 +1,337 @@
+package org.bigraphs.model.provider.spatial.bigrid.planning;
+
+import org.bigraphs.framework.core.impl.pure.PureBigraph;
+import org.bigraphs.model.provider.base.BLocationModelData;
+import org.bigraphs.model.provider.spatial.bigrid.BiGridGraph;
+import org.bigraphs.model.provider.spatial.bigrid.BiGridProvider;
+
+import java.util.Arrays;
+
+/**
+ * Shortest-path queries on the locale graph of a bigrid.
+ * <p>
+ * The planner works on a {@link BiGridGraph}, i.e., a compact adjacency array whose edges are weighted by the
+ * Euclidean distance of the coordinates of their locales (edges whose locales have no coordinate cost 1).
+ * It offers Dijkstra's algorithm and A* with the Euclidean distance to the target as heuristic, which never
+ * overestimates the cost, so both return shortest paths.
+ * <p>
+ * The cost of routes can depend on their type, e.g., to make {@code UpRoute}s of a 3D bigrid expensive, see
+ * {@link #setRouteCosts(RouteCosts)}. The costs of all edges are precomputed when they are set, and the A*
+ * heuristic is scaled by the smallest factor so that it stays admissible.
+ * The route types along a path, i.e., its direction sequence, are given by {@link BiGridPath#getDirections(BiGridGraph)}.
+ * <p>
+ * For static bigrids, a precomputed {@link BiGridDistanceTable} improves the A* heuristic, see
+ * {@link #setDistanceTable(BiGridDistanceTable)}.
+ * <p>
+ * The search state (distances, predecessors and an indexed binary heap) is kept in primitive arrays that are
+ * allocated once and reused by all queries: entries are only valid if their stamp equals the stamp of the
+ * current query, so nothing has to be cleared between queries.
+ * Hence, a query does not allocate except for the returned path.
+ * Instances are not thread-safe; use one planner per thread (they can share the graph).
+ *
+ * <pre>{@code
+ * BiGridPathPlanner planner = BiGridPathPlanner.of(bigrid);
+ * BiGridPath path = planner.findPath("C_0_00__0_00", "C_4_00__2_00");
+ * }</pre>
+ */
+public class BiGridPathPlanner {
+
+    private final BiGridGraph graph;
+    private RouteCosts routeCosts = RouteCosts.uniform();
+    private final double[] edgeCost;
+    private double heuristicFactor;
+    private BiGridDistanceTable distanceTable;
+
+    // search state, valid for a locale if stamp[locale] == currentStamp
+    private final double[] distance;
+    private final int[] predecessorEdge;
+    private final int[] predecessor;
+    private final int[] stamp;
+    private final boolean[] settled;
+    private int currentStamp = 0;
+
+    // indexed binary min-heap of locales ordered by priority
+    private final int[] heap;
+    private final int[] heapPosition;
+    private final double[] priority;
+    private int heapSize;
+
+    public BiGridPathPlanner(BiGridGraph graph) {
+        this.graph = graph;
+        int n = graph.size();
+        distance = new double[n];
+        predecessorEdge = new int[n];
+        predecessor = new int[n];
+        stamp = new int[n];
+        settled = new boolean[n];
+        heap = new int[n];
+        heapPosition = new int[n];
+        priority = new double[n];
+        edgeCost = new double[graph.getNumOfEdges()];
+        setRouteCosts(routeCosts);
+    }
+
+    public static BiGridPathPlanner of(PureBigraph bigrid) {
+        return new BiGridPathPlanner(BiGridGraph.of(bigrid));
+    }
+
+    public static BiGridPathPlanner of(BLocationModelData lmpd, BiGridProvider.RouteDirection routeDirection) {
+        return new BiGridPathPlanner(BiGridGraph.of(lmpd, routeDirection));
+    }
+
+    public BiGridGraph getGraph() {
+        return graph;
+    }
+
+    public RouteCosts getRouteCosts() {
+        return routeCosts;
+    }
+
+    /**
+     * Sets the cost factors of the route types. The factors are read once, i.e., later changes of the given
+     * instance require to set it again. A distance table is removed, since it depends on the route costs.
+     *
+     * @param routeCosts the cost factors
+     * @return this planner
+     */
+    public BiGridPathPlanner setRouteCosts(RouteCosts routeCosts) {
+        this.routeCosts = routeCosts;
+        double[] factors = routeCosts.compile(graph);
+        double minFactor = Double.POSITIVE_INFINITY;
+        for (int e = 0; e < edgeCost.length; e++) {
+            float weight = graph.getWeight(e);
+            double factor = factors[graph.getRouteTypeId(e)];
+            edgeCost[e] = factor * (Float.isNaN(weight) ? 1 : weight);
+            minFactor = Math.min(minFactor, factor);
+        }
+        heuristicFactor = Double.isInfinite(minFactor) ? 0 : minFactor;
+        distanceTable = null;
+        return this;
+    }
+
+    /**
+     * Finds a shortest path between two locales by A*.
+     *
+     * @param sourceLabel the label of the start locale
+     * @param targetLabel the label of the target locale
+     * @return the path, which is not {@link BiGridPath#isFound() found} if the target is not reachable
+     * @throws IllegalArgumentException if a label does not belong to a locale of the graph
+     */
+    public BiGridPath findPath(String sourceLabel, String targetLabel) {
+        return findPath(requireLocale(sourceLabel), requireLocale(targetLabel));
+    }
+
+    /**
+     * Finds a shortest path between two locales by A*.
+     */
+    public BiGridPath findPath(int source, int target) {
+        return search(source, target, true);
+    }
+
+    /**
+     * Finds a shortest path between two locales by Dijkstra's algorithm.
+     */
+    public BiGridPath dijkstra(int source, int target) {
+        return search(source, target, false);
+    }
+
+    /**
+     * Computes the cost of the shortest paths from the source to all locales.
+     *
+     * @param result array of size {@link BiGridGraph#size()} that receives the costs;
+     *               unreachable locales get {@link Double#POSITIVE_INFINITY}
+     * @return the given array
+     */
+    public double[] distancesFrom(int source, double[] result) {
+        Arrays.fill(result, Double.POSITIVE_INFINITY);
+        search(source, -1, false);
+        for (int v = 0; v < result.length; v++) {
+            if (stamp[v] == currentStamp) {
+                result[v] = distance[v];
+            }
+        }
+        return result;
+    }
+
+    private BiGridPath search(int source, int target, boolean heuristic) {
+        checkLocale(source);
+        if (target >= 0) checkLocale(target);
+        nextStamp();
+        heapSize = 0;
+        visit(source, 0, -1, -1);
+        push(source, heuristic ? estimate(source, target) : 0);
+        int numOfExpanded = 0;
+        while (heapSize > 0) {
+            int v = pop();
+            settled[v] = true;
+            numOfExpanded++;
+            if (v == target) {
+                return buildPath(source, target, numOfExpanded);
+            }
+            double dv = distance[v];
+            for (int e = graph.getFirstEdge(v), end = graph.getFirstEdge(v + 1); e < end; e++) {
+                if (edgeCost[e] == Double.POSITIVE_INFINITY) continue;
+                int w = graph.getTarget(e);
+                double dw = dv + edgeCost[e];
+                if (stamp[w] != currentStamp) {
+                    visit(w, dw, v, e);
+                    push(w, heuristic ? dw + estimate(w, target) : dw);
+                } else if (!settled[w] && dw < distance[w]) {
+                    visit(w, dw, v, e);
+                    decreaseKey(w, heuristic ? dw + estimate(w, target) : dw);
+                }
+            }
+        }
+        return BiGridPath.none(numOfExpanded);
+    }
+
+    /**
+     * Sets a distance table whose lower bounds are used by A* in addition to the Euclidean distance.
+     * The table must have been computed for this graph and the current route costs, see
+     * {@link BiGridDistanceTable#matches(BiGridPathPlanner)}; otherwise its bounds may overestimate the costs.
+     *
+     * @param distanceTable the table, or {@code null} to only use the Euclidean distance
+     * @return this planner
+     * @throws IllegalArgumentException if the table was computed for another graph or other route costs
+     */
+    public BiGridPathPlanner setDistanceTable(BiGridDistanceTable distanceTable) {
+        if (distanceTable != null && !distanceTable.matches(this)) {
+            throw new IllegalArgumentException("Distance table was computed for another graph or other route costs");
+        }
+        this.distanceTable = distanceTable;
+        return this;
+    }
+
+    /**
+     * @return a hash of the edges and their costs, which identifies the graph and route costs of distance tables
+     */
+    long fingerprint() {
+        long hash = mix(0, graph.size());
+        for (int v = 0; v < graph.size(); v++) {
+            hash = mix(hash, graph.getFirstEdge(v + 1));
+        }
+        for (int e = 0; e < edgeCost.length; e++) {
+            hash = mix(hash, graph.getTarget(e));
+            hash = mix(hash, Double.doubleToLongBits(edgeCost[e]));
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, long value) {
+        hash = (hash ^ value) * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    // Euclidean distance times the smallest factor is a lower bound of the path cost; 0 if a coordinate is unknown
+    private double estimate(int locale, int target) {
+        float d = graph.distance(locale, target);
+        double estimate = Float.isNaN(d) ? 0 : d * heuristicFactor;
+        return distanceTable == null ? estimate : Math.max(estimate, distanceTable.lowerBound(locale, target));
+    }
+
+    private void visit(int locale, double cost, int from, int edge) {
+        if (stamp[locale] != currentStamp) {
+            stamp[locale] = currentStamp;
+            settled[locale] = false;
+        }
+        distance[locale] = cost;
+        predecessor[locale] = from;
+        predecessorEdge[locale] = edge;
+    }
+
+    private BiGridPath buildPath(int source, int target, int numOfExpanded) {
+        int length = 1;
+        for (int v = target; v != source; v = predecessor[v]) {
+            length++;
+        }
+        int[] locales = new int[length];
+        int[] edges = new int[length - 1];
+        for (int v = target, i = length - 1; i >= 0; v = predecessor[v], i--) {
+            locales[i] = v;
+            if (i > 0) edges[i - 1] = predecessorEdge[v];
+        }
+        return new BiGridPath(locales, edges, distance[target], numOfExpanded);
+    }
+
+    private void nextStamp() {
+        if (++currentStamp == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            currentStamp = 1;
+        }
+    }
+
+    private int requireLocale(String label) {
+        int id = graph.indexOf(label);
+        if (id < 0) {
+            throw new IllegalArgumentException("No locale with label " + label);
+        }
+        return id;
+    }
+
+    private void checkLocale(int locale) {
+        if (locale < 0 || locale >= graph.size()) {
+            throw new IndexOutOfBoundsException("Locale " + locale + " out of bounds for " + graph.size() + " locales");
+        }
+    }
+
+    // Heap operations
+
+    private void push(int locale, double key) {
+        priority[locale] = key;
+        heap[heapSize] = locale;
+        heapPosition[locale] = heapSize;
+        siftUp(heapSize++);
+    }
+
+    private void decreaseKey(int locale, double key) {
+        priority[locale] = key;
+        siftUp(heapPosition[locale]);
+    }
+
+    private int pop() {
+        int top = heap[0];
+        int last = heap[--heapSize];
+        if (heapSize > 0) {
+            heap[0] = last;
+            heapPosition[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int i) {
+        int locale = heap[i];
+        double key = priority[locale];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            int p = heap[parent];
+            if (priority[p] <= key) break;
+            heap[i] = p;
+            heapPosition[p] = i;
+            i = parent;
+        }
+        heap[i] = locale;
+        heapPosition[locale] = i;
+    }
+
+    private void siftDown(int i) {
+        int locale = heap[i];
+        double key = priority[locale];
+        int half = heapSize >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int c = heap[child];
+            int right = child + 1;
+            if (right < heapSize && priority[heap[right]] < priority[c]) {
+                child = right;
+                c = heap[child];
+            }
+            if (key <= priority[c]) break;
+            heap[i] = c;
+            heapPosition[c] = i;
+            i = child;
+        }
+        heap[i] = locale;
+        heapPosition[locale] = i;
+    }
+}
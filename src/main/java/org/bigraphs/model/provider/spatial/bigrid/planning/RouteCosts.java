@@ -0,0 +1,77 @@
+package org.bigraphs.model.provider.spatial.bigrid.planning;
+
+import org.bigraphs.model.provider.spatial.bigrid.BiGridGraph;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cost factors per route type for {@link BiGridPathPlanner}.
+ * <p>
+ * The cost of an edge is its length multiplied by the factor of its route type (the control of the route node,
+ * e.g., {@code ForwardRoute} or {@code UpRoute}). Route types without an explicit factor use the default factor.
+ * A factor of {@link Double#POSITIVE_INFINITY} forbids routes of that type.
+ *
+ * <pre>{@code
+ * RouteCosts costs = RouteCosts.uniform()
+ *         .set(ThreeDimensionalBiSpaceSignatureProvider.UP_ROUTE_TYPE, 5)
+ *         .set(ThreeDimensionalBiSpaceSignatureProvider.DOWN_ROUTE_TYPE, 2);
+ * }</pre>
+ */
+public class RouteCosts {
+
+    private final Map<String, Double> factors = new HashMap<>();
+    private double defaultFactor = 1;
+
+    /**
+     * @return cost factors of 1 for all route types, i.e., the cost of an edge is its length
+     */
+    public static RouteCosts uniform() {
+        return new RouteCosts();
+    }
+
+    /**
+     * Sets the cost factor of a route type.
+     *
+     * @param routeType the control of the route node
+     * @param factor    a non-negative factor
+     * @return this instance
+     */
+    public RouteCosts set(String routeType, double factor) {
+        factors.put(routeType, checkFactor(factor));
+        return this;
+    }
+
+    /**
+     * Sets the cost factor of all route types without an explicit factor.
+     *
+     * @param factor a non-negative factor
+     * @return this instance
+     */
+    public RouteCosts setDefault(double factor) {
+        defaultFactor = checkFactor(factor);
+        return this;
+    }
+
+    public double getFactor(String routeType) {
+        return factors.getOrDefault(routeType, defaultFactor);
+    }
+
+    /**
+     * @return the factors indexed by the route type ids of the graph (see {@link BiGridGraph#getRouteTypeId(int)})
+     */
+    double[] compile(BiGridGraph graph) {
+        double[] compiled = new double[graph.getRouteTypes().size()];
+        for (int type = 0; type < compiled.length; type++) {
+            compiled[type] = getFactor(graph.getRouteTypes().get(type));
+        }
+        return compiled;
+    }
+
+    private static double checkFactor(double factor) {
+        if (!(factor >= 0)) {
+            throw new IllegalArgumentException("Cost factor must be non-negative: " + factor);
+        }
+        return factor;
+    }
+}
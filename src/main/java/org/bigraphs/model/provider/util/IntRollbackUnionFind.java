@@ -0,0 +1,100 @@
+package org.bigraphs.model.provider.util;
+
+import java.util.Arrays;
+
+/**
+ * A disjoint-set forest over the integers {@code 0..n-1} whose unions can be undone in reverse order.
+ * <p>
+ * Unions are by size and paths are not compressed, so each union changes a single parent and {@link #find(int)}
+ * takes logarithmic time. The unions since the last {@link #clearHistory()} are recorded and can be undone by
+ * {@link #rollback(int)}, e.g., when a search backtracks.
+ *
+ * @see IntUnionFind
+ */
+public class IntRollbackUnionFind {
+    private final int[] parent;
+    private final int[] size;
+    private int count;
+    // roots that were attached to another root, in the order of the unions
+    private int[] history = new int[16];
+    private int historySize = 0;
+
+    public IntRollbackUnionFind(int n) {
+        parent = new int[n];
+        size = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+            size[i] = 1;
+        }
+        count = n;
+    }
+
+    public int find(int x) {
+        while (parent[x] != x) {
+            x = parent[x];
+        }
+        return x;
+    }
+
+    /**
+     * @return {@code true} if both elements were in different sets before
+     */
+    public boolean union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB) {
+            return false;
+        }
+        if (size[rootA] < size[rootB]) {
+            int tmp = rootA;
+            rootA = rootB;
+            rootB = tmp;
+        }
+        parent[rootB] = rootA;
+        size[rootA] += size[rootB];
+        count--;
+        if (historySize == history.length) {
+            history = Arrays.copyOf(history, historySize * 2);
+        }
+        history[historySize++] = rootB;
+        return true;
+    }
+
+    public boolean connected(int a, int b) {
+        return find(a) == find(b);
+    }
+
+    /**
+     * @return the number of disjoint sets
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * @return the number of recorded unions, to be passed to {@link #rollback(int)}
+     */
+    public int getHistorySize() {
+        return historySize;
+    }
+
+    /**
+     * Undoes the latest unions until only the given number of recorded unions is left.
+     */
+    public void rollback(int historySize) {
+        while (this.historySize > historySize) {
+            int child = history[--this.historySize];
+            int root = parent[child];
+            size[root] -= size[child];
+            parent[child] = child;
+            count++;
+        }
+    }
+
+    /**
+     * Makes the unions so far permanent, i.e., they cannot be undone anymore.
+     */
+    public void clearHistory() {
+        historySize = 0;
+    }
+}
@@ -0,0 +1,66 @@
+package org.bigraphs.model.provider.util;
+
+/**
+ * A disjoint-set forest over the integers {@code 0..n-1} with union by size and path halving.
+ */
+public class IntUnionFind {
+    private final int[] parent;
+    private final int[] size;
+    private int count;
+
+    public IntUnionFind(int n) {
+        parent = new int[n];
+        size = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+            size[i] = 1;
+        }
+        count = n;
+    }
+
+    public int find(int x) {
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    /**
+     * @return {@code true} if both elements were in different sets before
+     */
+    public boolean union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB) {
+            return false;
+        }
+        if (size[rootA] < size[rootB]) {
+            int tmp = rootA;
+            rootA = rootB;
+            rootB = tmp;
+        }
+        parent[rootB] = rootA;
+        size[rootA] += size[rootB];
+        count--;
+        return true;
+    }
+
+    public boolean connected(int a, int b) {
+        return find(a) == find(b);
+    }
+
+    /**
+     * @return the size of the set containing {@code x}
+     */
+    public int sizeOf(int x) {
+        return size[find(x)];
+    }
+
+    /**
+     * @return the number of disjoint sets
+     */
+    public int count() {
+        return count;
+    }
+}
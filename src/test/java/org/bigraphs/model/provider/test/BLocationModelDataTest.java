@@ -0,0 +1,57 @@
+package org.bigraphs.model.provider.test;
+
+import org.bigraphs.model.provider.base.BLocationModelData;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the index of locales and routes that is used to sort them.
+ */
+public class BLocationModelDataTest {
+
+    @Test
+    void sortByIndex_places_a_permutation_by_index() {
+        List<BLocationModelData.Locale> locales = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            locales.add(BLocationModelData.Locale.builder().name("v" + i).center(new Point2D.Float(i, 0)).build());
+        }
+        List<BLocationModelData.Locale> shuffled = new ArrayList<>(locales);
+        Collections.shuffle(shuffled, new Random(42));
+
+        assertEquals(locales, BLocationModelData.sortByIndex(shuffled));
+        List<BLocationModelData.Locale> sorted = new ArrayList<>(shuffled);
+        Collections.sort(sorted);
+        assertEquals(locales, sorted);
+    }
+
+    @Test
+    void sortByIndex_sorts_indices_with_gaps_and_duplicates() {
+        List<BLocationModelData.Route> routes = new ArrayList<>();
+        for (String name : new String[]{"l7", "l3", "l12", "l3", "l0"}) {
+            routes.add(BLocationModelData.Route.builder().name(name).build());
+        }
+
+        List<Integer> indices = new ArrayList<>();
+        for (BLocationModelData.Route each : BLocationModelData.sortByIndex(routes)) {
+            indices.add(each.getIndex());
+        }
+        assertEquals(List.of(0, 3, 3, 7, 12), indices);
+    }
+
+    @Test
+    void index_follows_renaming() {
+        BLocationModelData.Locale locale = BLocationModelData.Locale.builder().name("v4").build();
+        assertEquals(4, locale.getIndex());
+        locale.setName("v15");
+        assertEquals(15, locale.getIndex());
+        locale.setName("x");
+        assertThrows(NumberFormatException.class, locale::getIndex);
+    }
+}
@@ -0,0 +1,279 @@
+package org.bigraphs.model.provider.test;
+
+import org.bigraphs.model.provider.spatial.bigrid.BLocationModelDataFactory;
+import org.bigraphs.model.provider.spatial.bigrid.BiGridConnectivityCheckerUF;
+import org.bigraphs.model.provider.spatial.bigrid.BiGridConnectivityReport;
+import org.bigraphs.model.provider.spatial.bigrid.BiGridGraph;
+import org.bigraphs.model.provider.spatial.bigrid.DynamicBiGridConnectivity;
+import org.bigraphs.model.provider.util.IntUnionFind;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.bigraphs.model.provider.spatial.bigrid.BiGridProvider.RouteDirection.*;
+import static org.bigraphs.model.provider.test.BiGridGraphTest.model;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the connectivity analysis of locale graphs and its incremental maintenance on small graphs whose results
+ * are known.
+ */
+public class BiGridConnectivityTest {
+
+    // Centers of up to 12 locales; the coordinates only matter for the labels
+    private static final float[][] CENTERS = new float[12][];
+
+    static {
+        for (int i = 0; i < CENTERS.length; i++) {
+            CENTERS[i] = new float[]{i % 4, i / 4};
+        }
+    }
+
+    @Test
+    void every_route_of_a_chain_is_a_bridge() {
+        // 0 - 1 - 2 - 3, with a parallel route between 0 and 1
+        BiGridGraph graph = BiGridGraph.of(model(centers(4), new int[][]{{0, 1}, {1, 2}, {2, 3}, {1, 0}}), BIDIRECTIONAL);
+        BiGridConnectivityReport report = BiGridConnectivityReport.of(graph);
+        assertTrue(report.isConnected());
+        assertEquals(1, report.getNumOfComponents());
+        assertArrayEquals(new int[]{1, 2}, report.getArticulationPoints());
+        assertEquals(Set.of("0-1", "1-2", "2-3"), pairs(report.getBridges()));
+        assertTrue(report.isStronglyConnected());
+        assertTrue(report.isFullyConnected());
+        assertTrue(report.getUnreachableLocales().isEmpty());
+    }
+
+    @Test
+    void cycle_with_a_pendant_locale() {
+        // triangle 0 - 1 - 2 - 0, pendant 3 at 2, and the isolated locale 4
+        BiGridGraph graph = BiGridGraph.of(model(centers(5), new int[][]{{0, 1}, {1, 2}, {2, 0}, {2, 3}}), BIDIRECTIONAL);
+        BiGridConnectivityReport report = BiGridConnectivityReport.of(graph);
+        assertFalse(report.isConnected());
+        assertEquals(2, report.getNumOfComponents());
+        int triangle = report.getComponentOf(0);
+        assertEquals(triangle, report.getLargestComponent());
+        assertEquals(4, report.getComponentSize(triangle));
+        assertArrayEquals(new int[]{0, 1, 2, 3}, report.getComponentMembers(triangle));
+        assertEquals(List.of(graph.getLabel(0), graph.getLabel(1), graph.getLabel(2), graph.getLabel(3)),
+                report.getComponentLabels(triangle));
+        assertArrayEquals(new int[]{4}, report.getComponentMembers(report.getComponentOf(4)));
+        assertArrayEquals(new int[]{2}, report.getArticulationPoints());
+        assertEquals(Set.of("2-3"), pairs(report.getBridges()));
+        assertFalse(report.isFullyConnected());
+        assertEquals(1, report.getUnreachableLocales().size());
+        assertEquals(2, report.getNumOfStronglyConnectedComponents());
+        assertTrue(report.isReachable(3, 0));
+        assertFalse(report.isReachable(0, 4));
+    }
+
+    @Test
+    void unidirectional_ring_is_strongly_connected() {
+        // 0 -> 1 -> 2 -> 3 -> 0
+        BiGridGraph ring = BiGridGraph.of(model(centers(4), new int[][]{{0, 1}, {1, 2}, {2, 3}, {3, 0}}), UNIDIRECTIONAL_FORWARD);
+        BiGridConnectivityReport report = BiGridConnectivityReport.of(ring);
+        assertTrue(report.isStronglyConnected());
+        assertTrue(report.isFullyConnected());
+        assertEquals(0, report.getArticulationPoints().length);
+        assertTrue(report.getBridges().isEmpty());
+        for (int a = 0; a < 4; a++) {
+            for (int b = 0; b < 4; b++) {
+                assertTrue(report.isReachable(a, b));
+            }
+        }
+
+        // Without the closing route, every locale is a strongly connected component of its own
+        BiGridGraph path = BiGridGraph.of(model(centers(4), new int[][]{{0, 1}, {1, 2}, {2, 3}}), UNIDIRECTIONAL_FORWARD);
+        report = BiGridConnectivityReport.of(path);
+        assertEquals(4, report.getNumOfStronglyConnectedComponents());
+        assertFalse(report.isStronglyConnected());
+        assertTrue(report.isFullyConnected());
+        assertTrue(report.isConnected());
+        assertTrue(report.isReachable(0, 3));
+        assertFalse(report.isReachable(3, 0));
+        assertFalse(BiGridConnectivityReport.of(BiGridGraph.of(model(centers(4), new int[][]{{0, 1}, {1, 2}, {2, 3}}),
+                UNIDIRECTIONAL_BACKWARD)).isFullyConnected());
+    }
+
+    @Test
+    void grid_has_no_cut_locales() {
+        BiGridConnectivityReport report = BiGridConnectivityReport.of(
+                BiGridGraph.of(BLocationModelDataFactory.createGrid(4, 5, 0, 0, 1, 1), BIDIRECTIONAL));
+        assertTrue(report.isConnected());
+        assertEquals(0, report.getArticulationPoints().length);
+        assertTrue(report.getBridges().isEmpty());
+        assertEquals(1, report.getNumOfStronglyConnectedComponents());
+    }
+
+    @Test
+    void report_equals_removing_each_locale_and_route() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            int n = 2 + random.nextInt(11);
+            List<int[]> routes = new ArrayList<>();
+            for (int r = random.nextInt(2 * n); r > 0; r--) {
+                routes.add(new int[]{random.nextInt(n), random.nextInt(n)});
+            }
+            BiGridGraph graph = BiGridGraph.of(model(centers(n), routes.toArray(new int[0][])),
+                    round % 2 == 0 ? BIDIRECTIONAL : UNIDIRECTIONAL_FORWARD);
+            BiGridConnectivityReport report = BiGridConnectivityReport.of(graph);
+            int components = countComponents(n, routes, -1, null);
+            assertEquals(components, report.getNumOfComponents());
+
+            List<Integer> expectedArticulationPoints = new ArrayList<>();
+            for (int v = 0; v < n; v++) {
+                // Removing the locale removes one component (itself) if it has no neighbours
+                if (countComponents(n, routes, v, null) - 1 > components - (isolated(v, routes) ? 1 : 0)) {
+                    expectedArticulationPoints.add(v);
+                }
+            }
+            assertEquals(expectedArticulationPoints, toList(report.getArticulationPoints()), "round " + round);
+
+            Set<String> expectedBridges = new TreeSet<>();
+            for (int[] route : routes) {
+                if (route[0] != route[1] && countComponents(n, routes, -1, route) > components) {
+                    expectedBridges.add(Math.min(route[0], route[1]) + "-" + Math.max(route[0], route[1]));
+                }
+            }
+            assertEquals(expectedBridges, pairs(report.getBridges()), "round " + round);
+
+            for (int a = 0; a < n; a++) {
+                BitSet reachable = BiGridConnectivityCheckerUF.reachableFrom(graph, a);
+                for (int b = 0; b < n; b++) {
+                    assertEquals(reachable.get(b), report.isReachable(a, b));
+                    boolean mutual = reachable.get(b) && BiGridConnectivityCheckerUF.reachableFrom(graph, b).get(a);
+                    assertEquals(mutual, report.getStronglyConnectedComponentOf(a) == report.getStronglyConnectedComponentOf(b));
+                }
+            }
+        }
+    }
+
+    @Test
+    void removing_a_bridge_splits_a_component() {
+        // triangle 0 - 1 - 2 - 0, bridge 2 - 3, pendant 3 - 4
+        BiGridGraph graph = BiGridGraph.of(model(centers(5), new int[][]{{0, 1}, {1, 2}, {2, 0}, {2, 3}, {3, 4}}), BIDIRECTIONAL);
+        DynamicBiGridConnectivity connectivity = DynamicBiGridConnectivity.of(graph);
+        assertTrue(connectivity.isFullyConnected());
+        assertEquals(5, connectivity.size());
+        assertEquals(2, connectivity.getNumOfRoutes(2, 3));
+
+        // Removing a route of the triangle (in both directions) keeps it connected
+        assertFalse(connectivity.removeRoute(0, 1));
+        assertFalse(connectivity.removeRoute(1, 0));
+        assertTrue(connectivity.isFullyConnected());
+
+        // The parallel route of the bidirectional bridge still connects both sides
+        assertFalse(connectivity.removeRoute(2, 3));
+        assertTrue(connectivity.connected(0, 4));
+        assertTrue(connectivity.removeRoute(3, 2));
+        assertFalse(connectivity.isFullyConnected());
+        assertEquals(2, connectivity.getNumOfComponents());
+        assertTrue(connectivity.connected(0, 2));
+        assertTrue(connectivity.connected(3, 4));
+        assertFalse(connectivity.connected(2, 3));
+        assertEquals(3, connectivity.getComponentSize(1));
+        assertEquals(2, connectivity.getComponentSize(4));
+        assertNotEquals(connectivity.getComponentOf(0), connectivity.getComponentOf(4));
+
+        assertThrows(IllegalArgumentException.class, () -> connectivity.removeRoute(2, 3));
+        assertTrue(connectivity.addRoute(4, 0));
+        assertTrue(connectivity.isFullyConnected());
+        assertFalse(connectivity.addRoute(0, 4));
+        assertEquals(2, connectivity.getNumOfRoutes(4, 0));
+    }
+
+    @Test
+    void unidirectional_ring_stays_connected_after_removing_one_route() {
+        BiGridGraph ring = BiGridGraph.of(model(centers(4), new int[][]{{0, 1}, {1, 2}, {2, 3}, {3, 0}}), UNIDIRECTIONAL_FORWARD);
+        DynamicBiGridConnectivity connectivity = DynamicBiGridConnectivity.of(ring);
+        assertEquals(1, connectivity.getNumOfRoutes(0, 1));
+        assertEquals(1, connectivity.getNumOfRoutes(1, 0));
+        assertFalse(connectivity.removeRoute(1, 2));
+        assertTrue(connectivity.isFullyConnected());
+        assertTrue(connectivity.removeRoute(3, 0));
+        assertEquals(2, connectivity.getNumOfComponents());
+        assertTrue(connectivity.connected(0, 1));
+        assertTrue(connectivity.connected(2, 3));
+        assertFalse(connectivity.connected(1, 2));
+    }
+
+    @Test
+    void dynamic_connectivity_equals_recomputation() {
+        Random random = new Random(42);
+        int n = 30;
+        DynamicBiGridConnectivity connectivity = new DynamicBiGridConnectivity(n);
+        assertEquals(n, connectivity.getNumOfComponents());
+        List<int[]> routes = new ArrayList<>();
+        for (int step = 0; step < 3000; step++) {
+            if (routes.isEmpty() || random.nextInt(5) < 3) {
+                // Mostly routes between locales with close ids, so that components grow and split
+                int a = random.nextInt(n), b = Math.floorMod(a + random.nextInt(5) - 2, n);
+                routes.add(new int[]{a, b});
+                int before = countComponents(n, routes.subList(0, routes.size() - 1), -1, null);
+                assertEquals(countComponents(n, routes, -1, null) < before, connectivity.addRoute(a, b));
+            } else {
+                int[] route = routes.remove(random.nextInt(routes.size()));
+                int after = countComponents(n, routes, -1, null);
+                List<int[]> withRoute = new ArrayList<>(routes);
+                withRoute.add(route);
+                assertEquals(after > countComponents(n, withRoute, -1, null), connectivity.removeRoute(route[0], route[1]));
+            }
+            IntUnionFind expected = new IntUnionFind(n);
+            for (int[] route : routes) {
+                expected.union(route[0], route[1]);
+            }
+            assertEquals(expected.count(), connectivity.getNumOfComponents());
+            for (int i = 0; i < 5; i++) {
+                int a = random.nextInt(n), b = random.nextInt(n);
+                assertEquals(expected.connected(a, b), connectivity.connected(a, b));
+                assertEquals(expected.sizeOf(a), connectivity.getComponentSize(a));
+            }
+        }
+    }
+
+    private static float[][] centers(int n) {
+        return Arrays.copyOf(CENTERS, n);
+    }
+
+    // Components ignoring the direction of routes, without the given locale and without all routes between the
+    // locales of the given pair
+    private static int countComponents(int n, List<int[]> routes, int removedLocale, int[] removedPair) {
+        IntUnionFind unionFind = new IntUnionFind(n);
+        for (int[] route : routes) {
+            if (route[0] == removedLocale || route[1] == removedLocale) {
+                continue;
+            }
+            if (removedPair != null && Math.min(route[0], route[1]) == Math.min(removedPair[0], removedPair[1])
+                    && Math.max(route[0], route[1]) == Math.max(removedPair[0], removedPair[1])) {
+                continue;
+            }
+            unionFind.union(route[0], route[1]);
+        }
+        return unionFind.count();
+    }
+
+    private static boolean isolated(int v, List<int[]> routes) {
+        for (int[] route : routes) {
+            if (route[0] != route[1] && (route[0] == v || route[1] == v)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<Integer> toList(int[] values) {
+        List<Integer> list = new ArrayList<>();
+        for (int each : values) {
+            list.add(each);
+        }
+        return list;
+    }
+
+    private static Set<String> pairs(List<int[]> pairs) {
+        Set<String> set = new TreeSet<>();
+        for (int[] each : pairs) {
+            assertTrue(each[0] < each[1]);
+            set.add(each[0] + "-" + each[1]);
+        }
+        return set;
+    }
+}
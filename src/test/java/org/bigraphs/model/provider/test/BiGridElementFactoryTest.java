@@ -0,0 +1,111 @@
+package org.bigraphs.model.provider.test;
+
+import org.bigraphs.framework.core.impl.elementary.Placings;
+import org.bigraphs.framework.core.impl.pure.PureBigraph;
+import org.bigraphs.framework.core.impl.signature.DynamicSignature;
+import org.bigraphs.model.provider.spatial.bigrid.BiGridConfig;
+import org.bigraphs.model.provider.spatial.bigrid.BiGridElementFactory;
+import org.bigraphs.model.provider.spatial.bigrid.TileSet;
+import org.bigraphs.model.provider.spatial.bigrid.World;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.bigraphs.framework.core.factory.BigraphFactory.ops;
+import static org.bigraphs.framework.core.factory.BigraphFactory.purePlacings;
+import static org.bigraphs.model.provider.test.BiGridProviderTest.describe;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the bigrids of worlds generated by Wave Function Collapse, see {@link BiGridElementFactory}.
+ */
+public class BiGridElementFactoryTest {
+
+    @Test
+    void bigrid_of_a_world_equals_the_product_of_its_elements() throws Exception {
+        BiGridElementFactory factory = BiGridElementFactory.create();
+        factory.setWithSite(false);
+        for (long seed = 0; seed < 5; seed++) {
+            World world = new World(5, 4, TileSet.getDefaultWithCorners(), seed);
+            while (world.waveFunctionCollapse() != 0) {
+            }
+            int[][] types = new int[5][4];
+            for (int x = 0; x < 5; x++) {
+                for (int y = 0; y < 4; y++) {
+                    types[x][y] = world.getType(x, y);
+                }
+            }
+            List<String> expected = describe(productOfElements(factory, types, 1.5f));
+            assertEquals(expected, describe(factory.createBiGrid(world, 1.5f)));
+            assertEquals(expected, describe(factory.createBiGrid(types, 1.5f)));
+            assertEquals(20, expected.size());
+        }
+    }
+
+    @Test
+    void bigrid_of_all_tile_types_equals_the_product_of_its_elements() throws Exception {
+        int[][] types = {
+                {BiGridConfig.TILE_BLANK, BiGridConfig.TILE_LOCALE_NESW, BiGridConfig.TILE_LOCALE_N, BiGridConfig.TILE_LOCALE_E},
+                {BiGridConfig.TILE_LOCALE_S, BiGridConfig.TILE_LOCALE_W, BiGridConfig.TILE_LOCALE_NE, BiGridConfig.TILE_LOCALE_SE},
+                {BiGridConfig.TILE_LOCALE_SW, BiGridConfig.TILE_LOCALE_NW, BiGridConfig.TILE_LOCALE_1_ROUTE_UNDIRECTED, BiGridConfig.TILE_BLANK}};
+        BiGridElementFactory factory = BiGridElementFactory.create();
+        List<String> expected = describe(productOfElements(factory, types, 1f));
+        List<String> actual = describe(factory.createBiGrid(types, 1f));
+        // Blank elements have their site next to the locale, whereas the bigrid puts each site into its locale
+        assertEquals(withRoutes(expected), withRoutes(actual));
+        for (String locale : actual) {
+            assertTrue(locale.matches(".* sites=\\[\\d+] .*"), locale);
+        }
+
+        factory.setWithSite(false);
+        assertEquals(describe(productOfElements(factory, types, 1f)), describe(factory.createBiGrid(types, 1f)));
+        assertThrows(IllegalArgumentException.class, () -> factory.createBiGrid(new int[][]{{TileSet.MAX_TILE_TYPES - 1}}, 1f));
+        assertThrows(IllegalArgumentException.class, () -> factory.createElement(-1, 0, 0, 1f));
+    }
+
+    @Test
+    void bigrid_has_the_routes_of_the_tile_set() throws Exception {
+        BiGridElementFactory factory = BiGridElementFactory.create();
+        int[][] types = {{BiGridConfig.TILE_LOCALE_DIAGONAL, BiGridConfig.TILE_BLANK},
+                {BiGridConfig.TILE_LOCALE_NESW, BiGridConfig.TILE_LOCALE_OCTAGONAL}};
+        List<String> locales = describe(factory.createBiGrid(types, TileSet.getDiagonal(), 1f));
+        assertEquals(4, locales.size());
+        int numOfRoutes = 0;
+        for (String locale : locales) {
+            numOfRoutes += locale.split("Route:", -1).length - 1;
+        }
+        assertEquals(4 + 4 + 8, numOfRoutes);
+        // The routes of the default tile sets are those of the elements
+        int[][] defaultTypes = {{BiGridConfig.TILE_LOCALE_NE, BiGridConfig.TILE_LOCALE_S}, {BiGridConfig.TILE_BLANK, BiGridConfig.TILE_LOCALE_NESW}};
+        assertEquals(describe(factory.createBiGrid(defaultTypes, 1f)),
+                describe(factory.createBiGrid(defaultTypes, TileSet.getDefaultWithCorners(), 1f)));
+
+        assertThrows(IllegalArgumentException.class, () -> factory.createBiGrid(types, TileSet.getDefault(), 1f));
+        assertThrows(IllegalArgumentException.class, () -> factory.createBiGrid(types, TileSet.getThreeDimensional(), 1f));
+        assertThrows(IllegalArgumentException.class, () -> factory.createBiGrid(new int[][]{{0}},
+                TileSet.of(Map.of(0, List.of(0, 0, 0, 0)), Map.of(0, 1)), 1f));
+        World layers = new World(2, 2, 2, TileSet.getDefault(), 1);
+        while (layers.waveFunctionCollapse() != 0) {
+        }
+        assertThrows(IllegalArgumentException.class, () -> factory.createBiGrid(layers, 1f));
+    }
+
+    // Former construction: one bigraph per tile, combined by the parallel product and nested into a merge
+    static PureBigraph productOfElements(BiGridElementFactory factory, int[][] types, float stepSize) throws Exception {
+        PureBigraph bigrid = null;
+        for (int x = 0; x < types.length; x++) {
+            for (int y = 0; y < types[x].length; y++) {
+                PureBigraph element = factory.createElement(types[x][y], x * stepSize, y * stepSize, stepSize);
+                bigrid = bigrid == null ? element : ops(bigrid).parallelProduct(element).getOuterBigraph();
+            }
+        }
+        Placings<DynamicSignature>.Merge merge = purePlacings(bigrid.getSignature()).merge(bigrid.getRoots().size());
+        return ops(merge).nesting(bigrid).getOuterBigraph();
+    }
+
+    private static List<String> withRoutes(List<String> locales) {
+        return locales.stream().filter(locale -> !locale.endsWith("routes=[]")).collect(Collectors.toList());
+    }
+}
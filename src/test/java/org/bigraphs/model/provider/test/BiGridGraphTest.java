@@ -0,0 +1,208 @@
+package org.bigraphs.model.provider.test;
+
+import org.bigraphs.model.provider.base.BLocationModelData;
+import org.bigraphs.model.provider.spatial.bigrid.BLocationModelDataFactory;
+import org.bigraphs.model.provider.spatial.bigrid.BiGridConnectivityCheckerUF;
+import org.bigraphs.model.provider.spatial.bigrid.BiGridGraph;
+import org.bigraphs.model.provider.spatial.bigrid.BiGridProvider;
+import org.bigraphs.model.provider.spatial.bigrid.BiGridSupport;
+import org.bigraphs.model.provider.util.IntUnionFind;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.bigraphs.model.provider.spatial.bigrid.BiGridProvider.RouteDirection.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the locale graph of bigrids and the connectivity checks on it.
+ * <p>
+ * Most graphs are compiled from location models, see {@link BiGridGraph#of(BLocationModelData, BiGridProvider.RouteDirection)}.
+ */
+public class BiGridGraphTest {
+
+    @Test
+    void graph_of_a_grid_has_an_edge_per_route_and_direction() {
+        BLocationModelData lmpd = BLocationModelDataFactory.createGrid(3, 4, 0, 0, 1, 1);
+        BiGridGraph graph = BiGridGraph.of(lmpd, BIDIRECTIONAL);
+        assertEquals(12, graph.size());
+        assertEquals(2 * 17, graph.getNumOfEdges());
+        for (int v = 0; v < graph.size(); v++) {
+            BLocationModelData.Locale locale = lmpd.getLocales().get(v);
+            assertEquals(BiGridSupport.formatParamControl(locale.getCenter()), graph.getLabel(v));
+            assertEquals(v, graph.indexOf(graph.getLabel(v)));
+            assertEquals(locale.getCenter().x, graph.getX(v));
+            assertEquals(locale.getCenter().y, graph.getY(v));
+            int i = v / 4, j = v % 4;
+            int expectedDegree = (i > 0 ? 1 : 0) + (i < 2 ? 1 : 0) + (j > 0 ? 1 : 0) + (j < 3 ? 1 : 0);
+            assertEquals(expectedDegree, graph.getOutDegree(v));
+            for (int e = graph.getFirstEdge(v); e < graph.getFirstEdge(v + 1); e++) {
+                int w = graph.getTarget(e);
+                assertEquals(1, Math.abs(w / 4 - i) + Math.abs(w % 4 - j));
+                assertEquals(1f, graph.getWeight(e));
+                assertEquals(graph.distance(v, w), graph.getWeight(e));
+                assertEquals("Route", graph.getRouteType(e));
+            }
+        }
+        assertEquals(-1, graph.indexOf("C_9_00__9_00"));
+    }
+
+    @Test
+    void route_directions_select_the_edges() {
+        BLocationModelData lmpd = BLocationModelDataFactory.createGrid(3, 4, 0, 0, 1, 1);
+        BiGridGraph forward = BiGridGraph.of(lmpd, UNIDIRECTIONAL_FORWARD);
+        BiGridGraph backward = BiGridGraph.of(lmpd, UNIDIRECTIONAL_BACKWARD);
+        BiGridGraph both = BiGridGraph.of(lmpd, BIDIRECTIONAL);
+        assertEquals(17, forward.getNumOfEdges());
+        assertEquals(17, backward.getNumOfEdges());
+        assertEquals(edges(forward.reverse()), edges(backward));
+        assertEquals(edges(backward.reverse()), edges(forward));
+        Set<String> union = new TreeSet<>(edges(forward));
+        union.addAll(edges(backward));
+        assertEquals(union, edges(both));
+        assertEquals(edges(both), edges(both.reverse()));
+        for (int e = 0; e < forward.getNumOfEdges(); e++) {
+            assertEquals(1f, forward.getWeight(e));
+        }
+    }
+
+    @Test
+    void graph_of_a_bigrid_equals_graph_of_its_location_model() throws Exception {
+        for (BiGridProvider.RouteDirection routeDirection : BiGridProvider.RouteDirection.values()) {
+            BLocationModelData lmpd = BLocationModelDataFactory.createGrid(4, 3, -1f, 0.5f, 0.5f, 1f);
+            BiGridGraph expected = BiGridGraph.of(lmpd, routeDirection);
+            BiGridGraph actual = BiGridGraph.of(new BiGridProvider(lmpd).setRouteDirection(routeDirection).getBigraph());
+            assertEquals(expected.size(), actual.size());
+            assertEquals(labelledEdges(expected), labelledEdges(actual), routeDirection.name());
+            for (int v = 0; v < actual.size(); v++) {
+                assertSame(actual.getLocale(v), actual.getLocale(actual.indexOf(actual.getLocale(v))));
+                assertEquals(expected.getX(expected.indexOf(actual.getLabel(v))), actual.getX(v));
+            }
+        }
+    }
+
+    @Test
+    void routes_without_two_locales_are_dropped() {
+        BLocationModelData lmpd = model(new float[][]{{0, 0}, {1, 0}, {2, 0}}, new int[][]{{0, 1}, {1, 1}, {1, 2}});
+        lmpd.getRoutes().add(BLocationModelData.Route.builder().name("l3")
+                .startingPoint(new Point2D.Float(2, 0)).endingPoint(new Point2D.Float(5, 5)).build());
+        BiGridGraph graph = BiGridGraph.of(lmpd, BIDIRECTIONAL);
+        assertEquals(Set.of("0->1", "1->0", "1->2", "2->1"), edges(graph));
+    }
+
+    @Test
+    void connectivity_follows_the_direction_of_routes() {
+        BLocationModelData lmpd = BLocationModelDataFactory.createGrid(3, 4, 0, 0, 1, 1);
+        // Routes point right and down, so the first locale reaches all others, but not vice versa
+        BiGridGraph forward = BiGridGraph.of(lmpd, UNIDIRECTIONAL_FORWARD);
+        assertTrue(BiGridConnectivityCheckerUF.isFullyConnected(forward));
+        assertTrue(BiGridConnectivityCheckerUF.isWeaklyConnected(forward));
+        assertEquals(12, BiGridConnectivityCheckerUF.reachableFrom(forward, 0).cardinality());
+        assertEquals(1, BiGridConnectivityCheckerUF.reachableFrom(forward, 11).cardinality());
+        assertTrue(BiGridConnectivityCheckerUF.getUnreachableLocales(forward).isEmpty());
+
+        BiGridGraph backward = BiGridGraph.of(lmpd, UNIDIRECTIONAL_BACKWARD);
+        assertFalse(BiGridConnectivityCheckerUF.isFullyConnected(backward));
+        assertTrue(BiGridConnectivityCheckerUF.isWeaklyConnected(backward));
+        assertEquals(11, BiGridConnectivityCheckerUF.getUnreachableLocales(backward).size());
+        assertEquals(12, BiGridConnectivityCheckerUF.reachableFrom(backward, 11).cardinality());
+    }
+
+    @Test
+    void components_of_disjoint_paths() {
+        // 0 - 1 - 2   3 - 4   5
+        BLocationModelData lmpd = model(new float[][]{{0, 0}, {1, 0}, {2, 0}, {0, 2}, {1, 2}, {5, 5}},
+                new int[][]{{0, 1}, {1, 2}, {3, 4}});
+        BiGridGraph graph = BiGridGraph.of(lmpd, BIDIRECTIONAL);
+        assertEquals(3, BiGridConnectivityCheckerUF.countComponents(graph));
+        assertFalse(BiGridConnectivityCheckerUF.isWeaklyConnected(graph));
+        assertFalse(BiGridConnectivityCheckerUF.isFullyConnected(graph));
+        IntUnionFind components = BiGridConnectivityCheckerUF.unionFind(graph);
+        assertTrue(components.connected(0, 2));
+        assertTrue(components.connected(3, 4));
+        assertFalse(components.connected(2, 3));
+        assertEquals(3, components.sizeOf(1));
+        assertEquals(1, components.sizeOf(5));
+        assertTrue(BiGridConnectivityCheckerUF.isFullyConnected(BiGridGraph.of(new BLocationModelData(), BIDIRECTIONAL)));
+    }
+
+    @Test
+    void union_find_equals_naive_components() {
+        Random random = new Random(42);
+        int n = 500;
+        IntUnionFind unionFind = new IntUnionFind(n);
+        int[] component = new int[n];
+        for (int i = 0; i < n; i++) {
+            component[i] = i;
+        }
+        int count = n;
+        for (int step = 0; step < 2000; step++) {
+            int a = random.nextInt(n), b = random.nextInt(n);
+            boolean merged = component[a] != component[b];
+            assertEquals(merged, unionFind.union(a, b));
+            if (merged) {
+                int old = component[b];
+                for (int i = 0; i < n; i++) {
+                    if (component[i] == old) {
+                        component[i] = component[a];
+                    }
+                }
+                count--;
+            }
+            assertEquals(count, unionFind.count());
+            int c = random.nextInt(n), d = random.nextInt(n);
+            assertEquals(component[c] == component[d], unionFind.connected(c, d));
+            int size = 0;
+            for (int i = 0; i < n; i++) {
+                if (component[i] == component[c]) {
+                    size++;
+                }
+            }
+            assertEquals(size, unionFind.sizeOf(c));
+        }
+    }
+
+    /**
+     * Creates a location model with a locale {@code vi} at each of the given centers and a route {@code lj} from
+     * the center of {@code routes[j][0]} to the center of {@code routes[j][1]}.
+     */
+    static BLocationModelData model(float[][] centers, int[][] routes) {
+        BLocationModelData lmpd = new BLocationModelData();
+        for (int i = 0; i < centers.length; i++) {
+            lmpd.getLocales().add(BLocationModelData.Locale.builder().name("v" + i)
+                    .center(new Point2D.Float(centers[i][0], centers[i][1])).width(1).depth(1).build());
+        }
+        for (int j = 0; j < routes.length; j++) {
+            lmpd.getRoutes().add(BLocationModelData.Route.builder().name("l" + j)
+                    .startingPoint(lmpd.getLocales().get(routes[j][0]).getCenter())
+                    .endingPoint(lmpd.getLocales().get(routes[j][1]).getCenter()).build());
+        }
+        return lmpd;
+    }
+
+    /**
+     * @return the edges of the graph as {@code source->target}
+     */
+    static Set<String> edges(BiGridGraph graph) {
+        Set<String> edges = new TreeSet<>();
+        for (int v = 0; v < graph.size(); v++) {
+            for (int e = graph.getFirstEdge(v); e < graph.getFirstEdge(v + 1); e++) {
+                edges.add(v + "->" + graph.getTarget(e));
+            }
+        }
+        return edges;
+    }
+
+    private static Set<String> labelledEdges(BiGridGraph graph) {
+        Set<String> edges = new TreeSet<>();
+        for (int v = 0; v < graph.size(); v++) {
+            for (int e = graph.getFirstEdge(v); e < graph.getFirstEdge(v + 1); e++) {
+                edges.add(graph.getLabel(v) + "->" + graph.getLabel(graph.getTarget(e)) + " " + graph.getWeight(e));
+            }
+        }
+        return edges;
+    }
+}
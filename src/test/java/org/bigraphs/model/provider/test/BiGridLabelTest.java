@@ -0,0 +1,181 @@
+package org.bigraphs.model.provider.test;
+
+import org.bigraphs.model.provider.spatial.bigrid.BiGridLabelFormatter;
+import org.bigraphs.model.provider.spatial.bigrid.BiGridLabelParser;
+import org.bigraphs.model.provider.spatial.bigrid.BiGridSupport;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that coordinate labels are formatted and parsed like the former format string and split/replace
+ * implementations.
+ */
+public class BiGridLabelTest {
+
+    @Test
+    void formatter_equals_format_strings() {
+        Random random = new Random(42);
+        BiGridLabelFormatter formatter = new BiGridLabelFormatter();
+        for (int i = 0; i < 100_000; i++) {
+            float x = (random.nextFloat() - 0.5f) * 2000;
+            float y = i % 2 == 0 ? Math.round(x * 1000) / 1000f : random.nextInt(400) * 0.25f - 50;
+            String expected = formatParamControlLegacy(x, y);
+            assertEquals(expected, BiGridSupport.formatParamControl(new Point2D.Float(x, y)));
+            assertEquals(expected, formatter.label(x, y));
+            assertEquals(expected + "__" + formatCoordinateLegacy(y), formatter.label3D(x, y, y));
+            assertEquals(expected + "__" + formatCoordinateLegacy(y), BiGridSupport.formatParamControl3D(x, y, y));
+        }
+    }
+
+    @Test
+    void formatter_keeps_rounding_edge_cases() {
+        float[] values = {0f, -0.0f, 0.004f, 0.005f, 0.995f, 0.999f, 1.999f, -0.004f, -0.005f, -1.5f, 12345.67f,
+                Float.NaN, Float.MAX_VALUE, Float.NEGATIVE_INFINITY};
+        for (float each : values) {
+            assertEquals(formatCoordinateLegacy(each), BiGridSupport.formatCoordinate(each), String.valueOf(each));
+        }
+        assertEquals("0_100", BiGridSupport.formatCoordinate(0.999f));
+        assertEquals("N0_00", BiGridSupport.formatCoordinate(-0.004f));
+        assertEquals("0_00", BiGridSupport.formatCoordinate(-0.0f));
+        assertEquals("N1_50", BiGridSupport.formatCoordinate(-1.5f));
+        assertEquals("C_1_50__N2_25", BiGridSupport.formatParamControl(new Point2D.Float(1.5f, -2.25f)));
+        assertEquals("C_0_00__1_00__3_00", BiGridSupport.formatParamControl3D(0, 1, 3));
+    }
+
+    @Test
+    void formatter_interns_2D_labels() {
+        BiGridLabelFormatter formatter = new BiGridLabelFormatter();
+        for (int x = 0; x < 100; x++) {
+            for (int y = 0; y < 10; y++) {
+                formatter.label(x * 0.5f, y * 0.5f);
+            }
+        }
+        assertEquals(1000, formatter.size());
+        for (int x = 0; x < 100; x++) {
+            for (int y = 0; y < 10; y++) {
+                String label = formatter.label(new Point2D.Float(x * 0.5f, y * 0.5f));
+                assertSame(label, formatter.label(x * 0.5f, y * 0.5f));
+                assertEquals(formatParamControlLegacy(x * 0.5f, y * 0.5f), label);
+            }
+        }
+        assertEquals(1000, formatter.size());
+
+        // -0.0 and 0.0 share a label
+        assertSame(formatter.label(0f, 0f), formatter.label(-0.0f, 0f));
+        assertEquals(1000, formatter.size());
+        formatter.label3D(1, 2, 3);
+        assertEquals(1000, formatter.size());
+    }
+
+    @Test
+    void parser_equals_split_and_replace() {
+        Random random = new Random(42);
+        List<String> labels = new ArrayList<>();
+        List<String> labels3D = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            float x = (random.nextFloat() - 0.5f) * 2000;
+            float y = random.nextInt(500) * 0.25f;
+            labels.add(BiGridSupport.formatParamControl(new Point2D.Float(x, y)));
+            labels3D.add(BiGridSupport.formatParamControl3D(x, y, random.nextInt(10)));
+        }
+        List<String> unusual = List.of("C_N_5__5_", "C_1E5__2", "C_12345678_9__1", "C_0_123456789012__1_5", "C_-5__1",
+                "C_1__", "C_N__1", "C___1__2", "C_1_2_3__4", "C_N0_00__0_00", "C_1_100__N2_05", "C_1__2__3", "X_1__2",
+                "C_1__2__3__", "C_1__2__3____", "C__5__1__2", "C_1___2", "C_1___2__3", "C_1_5__2_", "C_00_50__007",
+                "C_NaN__1", "C_Infinity__1", "C_1__2__3__4", "C_1", "C_", "", "C_1__2___3");
+        labels.addAll(unusual);
+        labels3D.addAll(unusual);
+        for (String each : labels) {
+            assertArrayEquals(parseLegacy(each, false), parseOrNull(each, false), each);
+        }
+        for (String each : labels3D) {
+            assertArrayEquals(parseLegacy(each, true), parseOrNull(each, true), each);
+        }
+    }
+
+    @Test
+    void parser_accepts_what_the_former_parser_accepted() {
+        assertArrayEquals(new float[]{1, 2, 3}, BiGridLabelParser.parse3D("C_1_00__2_00__3_00__"));
+        assertArrayEquals(new float[]{1, 2, 3}, BiGridLabelParser.parse3D("C_1_00__2_00__3_00____"));
+        assertArrayEquals(new float[]{0.5f, 1, 2}, BiGridLabelParser.parse3D("C_0_50__1__2"));
+        assertEquals(new Point2D.Float(1.5f, -2.25f), BiGridLabelParser.parse("C_1_50__N2_25"));
+        assertEquals(new Point2D.Float(1, 2), BiGridLabelParser.parse("C_1_00__2_00__3_00"));
+        assertEquals(new Point2D.Float(1, 0.2f), BiGridLabelParser.parse("C_1___2"));
+        // a rounded-up fraction is read as a decimal fraction, like before
+        assertEquals(new Point2D.Float(0.1f, 1), BiGridLabelParser.parse("C_0_100__1_00"));
+
+        assertThrows(IllegalArgumentException.class, () -> BiGridLabelParser.parse3D("C_1_00__2_00"));
+        assertThrows(IllegalArgumentException.class, () -> BiGridLabelParser.parse3D("C_1__2__3__4"));
+        assertThrows(IllegalArgumentException.class, () -> BiGridLabelParser.parse3D("C__5__1__2"));
+        assertThrows(IllegalArgumentException.class, () -> BiGridLabelParser.parse("C_1_00"));
+        assertThrows(IllegalArgumentException.class, () -> BiGridLabelParser.parse("X_1__2"));
+        assertThrows(IllegalArgumentException.class, () -> BiGridLabelParser.parse(null));
+    }
+
+    @Test
+    void parser_reverses_the_formatter() {
+        BiGridLabelParser cache = new BiGridLabelParser();
+        for (int x = -20; x <= 20; x++) {
+            for (int y = -20; y <= 20; y++) {
+                Point2D.Float coordinate = new Point2D.Float(x * 0.25f, y * 0.5f);
+                String label = BiGridSupport.formatParamControl(coordinate);
+                assertEquals(coordinate, BiGridLabelParser.parse(label));
+                assertEquals(coordinate, cache.lookup(label));
+                assertSame(cache.lookup(label), cache.lookup(label));
+                float[] xyz = cache.lookup3D(BiGridSupport.formatParamControl3D(coordinate.x, coordinate.y, x));
+                assertArrayEquals(new float[]{coordinate.x + 0.0f, coordinate.y + 0.0f, x}, xyz);
+            }
+        }
+        assertEquals(2 * 41 * 41, cache.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    private static float[] parseOrNull(String label, boolean is3D) {
+        try {
+            if (is3D) {
+                return BiGridLabelParser.parse3D(label);
+            }
+            Point2D.Float point = BiGridLabelParser.parse(label);
+            return new float[]{point.x, point.y};
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // The implementation of BiGridSupport.parseParamControl()/parseParamControl3D() before BiGridLabelParser
+    private static float[] parseLegacy(String label, boolean is3D) {
+        if (!label.startsWith("C_") || (is3D ? label.split("__").length != 3 : !label.contains("__"))) {
+            return null;
+        }
+        try {
+            String[] parts = label.substring(2).split("__");
+            float[] result = new float[is3D ? 3 : 2];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = Float.parseFloat(parts[i].replace("N", "-").replace("_", "."));
+            }
+            return result;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // The implementation of BiGridSupport.formatParamControl() before BiGridLabelFormatter
+    static String formatParamControlLegacy(float x, float y) {
+        return String.format("C_%s__%s", formatCoordinateLegacy(x), formatCoordinateLegacy(y));
+    }
+
+    static String formatCoordinateLegacy(float value) {
+        boolean isNegative = value < 0;
+        value = Math.abs(value);
+        int integerPart = (int) value;
+        int fractionalPart = Math.round((value - integerPart) * 100);
+        String prefix = isNegative ? "N" : "";
+        return String.format("%s%d_%02d", prefix, integerPart, fractionalPart);
+    }
+}
@@ -0,0 +1,307 @@
+package org.bigraphs.model.provider.test;
+
+import org.bigraphs.model.provider.base.BLocationModelData;
+import org.bigraphs.model.provider.spatial.bigrid.BLocationModelDataFactory;
+import org.bigraphs.model.provider.spatial.bigrid.BiGridGraph;
+import org.bigraphs.model.provider.spatial.bigrid.DirectionalBiGridProvider;
+import org.bigraphs.model.provider.spatial.bigrid.planning.BiGridDistanceTable;
+import org.bigraphs.model.provider.spatial.bigrid.planning.BiGridPath;
+import org.bigraphs.model.provider.spatial.bigrid.planning.BiGridPathPlanner;
+import org.bigraphs.model.provider.spatial.bigrid.planning.RouteCosts;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.bigraphs.model.provider.spatial.bigrid.BiGridProvider.RouteDirection.*;
+import static org.bigraphs.model.provider.spatial.signature.BiSpaceSignatureProvider.ROUTE_TYPE;
+import static org.bigraphs.model.provider.spatial.signature.DirectionalBiSpaceSignatureProvider.FORWARD_ROUTE_TYPE;
+import static org.bigraphs.model.provider.spatial.signature.DirectionalBiSpaceSignatureProvider.LEFT_ROUTE_TYPE;
+import static org.bigraphs.model.provider.test.BiGridGraphTest.model;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the shortest paths of {@link BiGridPathPlanner} against an exhaustive computation.
+ */
+public class BiGridPathPlannerTest {
+
+    private static final double EPSILON = 1e-4;
+
+    @Test
+    void shortest_path_in_a_grid() {
+        BiGridPathPlanner planner = BiGridPathPlanner.of(BLocationModelDataFactory.createGrid(5, 3, 0, 0, 1, 1), BIDIRECTIONAL);
+        BiGridPath path = planner.findPath("C_0_00__0_00", "C_4_00__2_00");
+        assertTrue(path.isFound());
+        assertEquals(6, path.getCost(), EPSILON);
+        assertEquals(7, path.size());
+        List<String> labels = path.getLabels(planner.getGraph());
+        assertEquals("C_0_00__0_00", labels.get(0));
+        assertEquals("C_4_00__2_00", labels.get(labels.size() - 1));
+        assertPathIsConsistent(planner.getGraph(), path);
+
+        BiGridPath same = planner.findPath("C_2_00__1_00", "C_2_00__1_00");
+        assertTrue(same.isFound());
+        assertEquals(1, same.size());
+        assertEquals(0, same.getCost());
+        assertThrows(IllegalArgumentException.class, () -> planner.findPath("C_0__0", "C_4__2"));
+        assertThrows(IndexOutOfBoundsException.class, () -> planner.findPath(0, 15));
+    }
+
+    @Test
+    void unreachable_targets_are_not_found() {
+        // Forward routes point right and down, so the first locale cannot be reached
+        BiGridPathPlanner planner = BiGridPathPlanner.of(BLocationModelDataFactory.createGrid(3, 3, 0, 0, 1, 1), UNIDIRECTIONAL_FORWARD);
+        assertTrue(planner.findPath(0, 8).isFound());
+        BiGridPath path = planner.findPath(8, 0);
+        assertFalse(path.isFound());
+        assertEquals(Double.POSITIVE_INFINITY, path.getCost());
+        assertEquals(0, path.getLocales().length);
+        assertFalse(planner.dijkstra(8, 0).isFound());
+    }
+
+    @Test
+    void a_star_and_dijkstra_equal_exhaustive_shortest_paths() {
+        Random random = new Random(42);
+        for (int round = 0; round < 100; round++) {
+            int n = 2 + random.nextInt(25);
+            float[][] centers = new float[n][];
+            for (int i = 0; i < n; i++) {
+                centers[i] = new float[]{i % 6 + random.nextInt(3) * 0.25f, i / 6 * 2 + random.nextInt(3) * 0.5f};
+            }
+            int[][] routes = new int[random.nextInt(3 * n)][];
+            for (int r = 0; r < routes.length; r++) {
+                routes[r] = new int[]{random.nextInt(n), random.nextInt(n)};
+            }
+            BiGridGraph graph = BiGridGraph.of(model(centers, routes), round % 2 == 0 ? BIDIRECTIONAL : UNIDIRECTIONAL_FORWARD);
+            BiGridPathPlanner planner = new BiGridPathPlanner(graph);
+            double[][] expected = allPairs(graph);
+            double[] distances = new double[n];
+            for (int source = 0; source < n; source++) {
+                planner.distancesFrom(source, distances);
+                for (int target = 0; target < n; target++) {
+                    assertEquals(expected[source][target], distances[target], EPSILON);
+                    BiGridPath aStar = planner.findPath(source, target);
+                    BiGridPath dijkstra = planner.dijkstra(source, target);
+                    assertEquals(expected[source][target], aStar.getCost(), EPSILON);
+                    assertEquals(expected[source][target], dijkstra.getCost(), EPSILON);
+                    assertEquals(!Double.isInfinite(expected[source][target]), aStar.isFound());
+                    assertPathIsConsistent(graph, aStar);
+                    assertPathIsConsistent(graph, dijkstra);
+                    assertTrue(aStar.getNumOfExpandedLocales() <= dijkstra.getNumOfExpandedLocales());
+                }
+            }
+        }
+    }
+
+    @Test
+    void route_costs_scale_and_forbid_routes() {
+        BiGridPathPlanner planner = BiGridPathPlanner.of(BLocationModelDataFactory.createGrid(5, 3, 0, 0, 1, 1), BIDIRECTIONAL);
+        assertEquals(6, planner.findPath(0, 14).getCost(), EPSILON);
+        planner.setRouteCosts(RouteCosts.uniform().setDefault(2.5));
+        assertEquals(15, planner.findPath(0, 14).getCost(), EPSILON);
+        assertEquals(15, planner.dijkstra(0, 14).getCost(), EPSILON);
+        planner.setRouteCosts(RouteCosts.uniform().set(ROUTE_TYPE, 0));
+        assertEquals(0, planner.findPath(0, 14).getCost());
+        planner.setRouteCosts(RouteCosts.uniform().set(ROUTE_TYPE, Double.POSITIVE_INFINITY));
+        assertFalse(planner.findPath(0, 14).isFound());
+        assertTrue(planner.findPath(14, 14).isFound());
+
+        RouteCosts costs = RouteCosts.uniform().set(FORWARD_ROUTE_TYPE, 3).setDefault(2);
+        assertEquals(3, costs.getFactor(FORWARD_ROUTE_TYPE));
+        assertEquals(2, costs.getFactor(LEFT_ROUTE_TYPE));
+        assertThrows(IllegalArgumentException.class, () -> costs.set(LEFT_ROUTE_TYPE, -1));
+        assertThrows(IllegalArgumentException.class, () -> costs.setDefault(Double.NaN));
+    }
+
+    @Test
+    void directions_of_a_path_in_a_directional_grid() throws Exception {
+        // Forward routes increase x, left routes increase y
+        BLocationModelData lmpd = BLocationModelDataFactory.createGrid(4, 3, 0, 0, 1, 1);
+        BiGridPathPlanner planner = BiGridPathPlanner.of(new DirectionalBiGridProvider(lmpd, 4, 3).getBigraph());
+        BiGridPath path = planner.findPath("C_0_00__0_00", "C_3_00__2_00");
+        assertEquals(5, path.getCost(), EPSILON);
+        List<String> directions = path.getDirections(planner.getGraph());
+        assertEquals(5, directions.size());
+        assertEquals(3, directions.stream().filter(FORWARD_ROUTE_TYPE::equals).count());
+        assertEquals(2, directions.stream().filter(LEFT_ROUTE_TYPE::equals).count());
+        assertPathIsConsistent(planner.getGraph(), path);
+
+        planner.setRouteCosts(RouteCosts.uniform().set(LEFT_ROUTE_TYPE, 10));
+        assertEquals(23, planner.findPath("C_0_00__0_00", "C_3_00__2_00").getCost(), EPSILON);
+        assertEquals(List.of(FORWARD_ROUTE_TYPE, FORWARD_ROUTE_TYPE),
+                planner.findPath("C_0_00__0_00", "C_2_00__0_00").getDirections(planner.getGraph()));
+        planner.setRouteCosts(RouteCosts.uniform().set(LEFT_ROUTE_TYPE, Double.POSITIVE_INFINITY));
+        assertFalse(planner.findPath("C_0_00__0_00", "C_3_00__2_00").isFound());
+        assertTrue(planner.findPath("C_3_00__2_00", "C_0_00__0_00").isFound());
+    }
+
+    @Test
+    void distance_tables_bound_the_shortest_paths() throws Exception {
+        Random random = new Random(7);
+        for (int round = 0; round < 30; round++) {
+            int n = 2 + random.nextInt(30);
+            float[][] centers = new float[n][];
+            for (int i = 0; i < n; i++) {
+                centers[i] = new float[]{random.nextInt(8), random.nextInt(8) * 0.5f};
+            }
+            int[][] routes = new int[random.nextInt(3 * n)][];
+            for (int r = 0; r < routes.length; r++) {
+                routes[r] = new int[]{random.nextInt(n), random.nextInt(n)};
+            }
+            BiGridGraph graph = BiGridGraph.of(model(centers, routes), round % 2 == 0 ? BIDIRECTIONAL : UNIDIRECTIONAL_FORWARD);
+            BiGridPathPlanner planner = new BiGridPathPlanner(graph).setRouteCosts(RouteCosts.uniform().setDefault(1.5));
+            double[][] expected = allPairs(graph);
+            BiGridDistanceTable allPairs = BiGridDistanceTable.allPairs(planner);
+            BiGridDistanceTable landmarks = BiGridDistanceTable.landmarks(planner, 1 + random.nextInt(4));
+            assertTrue(allPairs.isAllPairs());
+            assertFalse(landmarks.isAllPairs());
+            for (int source = 0; source < n; source++) {
+                for (int target = 0; target < n; target++) {
+                    double cost = 1.5 * expected[source][target];
+                    assertEquals(cost, allPairs.getDistance(source, target), EPSILON);
+                    assertEquals(cost, allPairs.lowerBound(source, target), EPSILON);
+                    assertTrue(landmarks.lowerBound(source, target) <= cost + EPSILON);
+                }
+            }
+            for (BiGridDistanceTable table : List.of(allPairs, landmarks)) {
+                planner.setDistanceTable(table);
+                for (int source = 0; source < n; source++) {
+                    for (int target = 0; target < n; target++) {
+                        BiGridPath path = planner.findPath(source, target);
+                        assertEquals(1.5 * expected[source][target], path.getCost(), EPSILON);
+                        double length = 0;
+                        for (int i = 0; i < path.size() - 1; i++) {
+                            length += graph.getWeight(path.getEdge(i));
+                        }
+                        assertEquals(path.isFound() ? path.getCost() : 0, 1.5 * length, EPSILON);
+                    }
+                }
+            }
+
+            BiGridDistanceTable read = writeAndRead(landmarks);
+            assertArrayEquals(landmarks.getLandmarks(), read.getLandmarks());
+            assertTrue(read.matches(planner));
+            for (int source = 0; source < n; source++) {
+                for (int target = 0; target < n; target++) {
+                    assertEquals(landmarks.lowerBound(source, target), read.lowerBound(source, target));
+                }
+            }
+        }
+    }
+
+    @Test
+    void distance_tables_never_exceed_costs_that_are_not_floats() {
+        Random random = new Random(11);
+        for (int round = 0; round < 30; round++) {
+            int n = 2 + random.nextInt(30);
+            float[][] centers = new float[n][];
+            for (int i = 0; i < n; i++) {
+                centers[i] = new float[]{random.nextInt(8) * 0.1f, random.nextInt(8) * 0.3f};
+            }
+            int[][] routes = new int[random.nextInt(3 * n)][];
+            for (int r = 0; r < routes.length; r++) {
+                routes[r] = new int[]{random.nextInt(n), random.nextInt(n)};
+            }
+            BiGridGraph graph = BiGridGraph.of(model(centers, routes), round % 2 == 0 ? BIDIRECTIONAL : UNIDIRECTIONAL_FORWARD);
+            // Costs that are rounded when converted to floats, upwards for about half of them
+            BiGridPathPlanner planner = new BiGridPathPlanner(graph).setRouteCosts(RouteCosts.uniform().setDefault(1.0 / 3));
+            double[][] costs = new double[n][];
+            for (int source = 0; source < n; source++) {
+                costs[source] = planner.distancesFrom(source, new double[n]);
+            }
+            BiGridDistanceTable allPairs = BiGridDistanceTable.allPairs(planner);
+            BiGridDistanceTable landmarks = BiGridDistanceTable.landmarks(planner, 1 + random.nextInt(4));
+            for (int source = 0; source < n; source++) {
+                for (int target = 0; target < n; target++) {
+                    assertEquals(costs[source][target], allPairs.getDistance(source, target));
+                    assertTrue(landmarks.lowerBound(source, target) <= costs[source][target]);
+                }
+            }
+            for (BiGridDistanceTable table : List.of(allPairs, landmarks)) {
+                planner.setDistanceTable(table);
+                for (int source = 0; source < n; source++) {
+                    for (int target = 0; target < n; target++) {
+                        BiGridPath path = planner.findPath(source, target);
+                        assertEquals(costs[source][target], path.isFound() ? path.getCost() : Double.POSITIVE_INFINITY, 1e-12);
+                    }
+                }
+                planner.setDistanceTable(null);
+            }
+        }
+    }
+
+    @Test
+    void planner_refuses_distance_tables_of_other_graphs_or_costs() throws Exception {
+        BLocationModelData lmpd = BLocationModelDataFactory.createGrid(4, 4, 0, 0, 1, 1);
+        BiGridPathPlanner planner = BiGridPathPlanner.of(lmpd, BIDIRECTIONAL);
+        BiGridDistanceTable table = BiGridDistanceTable.landmarks(planner, 4);
+        assertTrue(table.matches(planner));
+        assertTrue(writeAndRead(table).matches(planner));
+        planner.setDistanceTable(table);
+
+        // Same number of locales and edges, but other edges
+        BiGridPathPlanner forward = BiGridPathPlanner.of(lmpd, UNIDIRECTIONAL_FORWARD);
+        BiGridPathPlanner backward = BiGridPathPlanner.of(lmpd, UNIDIRECTIONAL_BACKWARD);
+        assertEquals(forward.getGraph().getNumOfEdges(), backward.getGraph().getNumOfEdges());
+        assertFalse(BiGridDistanceTable.allPairs(forward).matches(backward));
+        assertThrows(IllegalArgumentException.class, () -> backward.setDistanceTable(BiGridDistanceTable.allPairs(forward)));
+
+        // Same graph, but other route costs: lower bounds of the former costs would overestimate the new costs
+        planner.setRouteCosts(RouteCosts.uniform().setDefault(0.5));
+        assertFalse(table.matches(planner));
+        assertThrows(IllegalArgumentException.class, () -> planner.setDistanceTable(table));
+        assertTrue(BiGridDistanceTable.landmarks(planner, 4).matches(planner));
+        planner.setRouteCosts(RouteCosts.uniform());
+        assertTrue(table.matches(planner));
+        assertSame(planner, planner.setDistanceTable(null));
+    }
+
+    private static BiGridDistanceTable writeAndRead(BiGridDistanceTable table) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            table.write(out);
+        }
+        return BiGridDistanceTable.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    // Each edge leads from one locale of the path to the next, and the cost is the sum of the weights
+    static void assertPathIsConsistent(BiGridGraph graph, BiGridPath path) {
+        if (!path.isFound()) {
+            return;
+        }
+        double cost = 0;
+        for (int i = 0; i < path.size() - 1; i++) {
+            int edge = path.getEdge(i);
+            assertTrue(edge >= graph.getFirstEdge(path.getLocale(i)) && edge < graph.getFirstEdge(path.getLocale(i) + 1));
+            assertEquals(path.getLocale(i + 1), graph.getTarget(edge));
+            cost += graph.getWeight(edge);
+        }
+        assertEquals(path.getCost(), cost, EPSILON);
+    }
+
+    // Floyd-Warshall over the weights of the edges
+    static double[][] allPairs(BiGridGraph graph) {
+        int n = graph.size();
+        double[][] distance = new double[n][n];
+        for (int v = 0; v < n; v++) {
+            Arrays.fill(distance[v], Double.POSITIVE_INFINITY);
+            distance[v][v] = 0;
+            for (int e = graph.getFirstEdge(v); e < graph.getFirstEdge(v + 1); e++) {
+                distance[v][graph.getTarget(e)] = Math.min(distance[v][graph.getTarget(e)], graph.getWeight(e));
+            }
+        }
+        for (int k = 0; k < n; k++) {
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    distance[i][j] = Math.min(distance[i][j], distance[i][k] + distance[k][j]);
+                }
+            }
+        }
+        return distance;
+    }
+}
@@ -0,0 +1,215 @@
+package org.bigraphs.model.provider.test;
+
+import org.bigraphs.framework.core.impl.BigraphEntity;
+import org.bigraphs.framework.core.impl.pure.PureBigraph;
+import org.bigraphs.framework.core.impl.signature.DynamicControl;
+import org.bigraphs.model.provider.base.BLocationModelData;
+import org.bigraphs.model.provider.spatial.bigrid.BLocationModelDataFactory;
+import org.bigraphs.model.provider.spatial.bigrid.BiGridBuildResult;
+import org.bigraphs.model.provider.spatial.bigrid.BiGridCache;
+import org.bigraphs.model.provider.spatial.bigrid.BiGridIndex;
+import org.bigraphs.model.provider.spatial.bigrid.BiGridProvider;
+import org.bigraphs.model.provider.spatial.bigrid.BiGridSupport;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.bigraphs.model.provider.spatial.signature.BiSpaceSignatureProvider.LOCALE_TYPE;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that the construction modes of {@link BiGridProvider} build the same bigrids as the sequential construction.
+ */
+public class BiGridProviderTest {
+
+    @Test
+    void streaming_construction_equals_sequential_construction() throws Exception {
+        for (BiGridProvider.RouteDirection routeDirection : BiGridProvider.RouteDirection.values()) {
+            for (boolean ground : new boolean[]{false, true}) {
+                BLocationModelData lmpd = BLocationModelDataFactory.createGrid(4, 5, -1f, 0.5f, 0.25f, 1.5f);
+                PureBigraph expected = new BiGridProvider(lmpd).setRouteDirection(routeDirection).makeGround(ground).getBigraph();
+                PureBigraph actual = new BiGridProvider(lmpd).setRouteDirection(routeDirection).makeGround(ground)
+                        .streaming(true).getBigraph();
+                assertEquals(describe(expected), describe(actual), routeDirection + ", ground=" + ground);
+            }
+        }
+    }
+
+    @Test
+    void streaming_construction_links_routes_to_the_labels_of_their_locales() throws Exception {
+        BLocationModelData lmpd = BLocationModelDataFactory.createGrid(3, 4, 0, 0, 1, 1);
+        // Route endpoints slightly off the centers still have the labels of the centers
+        for (BLocationModelData.Route each : lmpd.getRoutes()) {
+            each.setStartingPoint(new Point2D.Float(each.getStartingPoint().x + 0.001f, each.getStartingPoint().y + 0.004f));
+            each.setEndingPoint(new Point2D.Float(each.getEndingPoint().x + 0.004f, each.getEndingPoint().y + 0.001f));
+        }
+        PureBigraph expected = new BiGridProvider(BLocationModelDataFactory.createGrid(3, 4, 0, 0, 1, 1)).getBigraph();
+        assertEquals(describe(expected), describe(new BiGridProvider(lmpd).getBigraph()));
+        assertEquals(describe(expected), describe(new BiGridProvider(lmpd).streaming(true).getBigraph()));
+    }
+
+    @Test
+    void streaming_construction_rejects_ungrouped_routes() {
+        BLocationModelData lmpd = BLocationModelDataFactory.createGrid(3, 3, 0, 0, 1, 1);
+        Collections.reverse(lmpd.getRoutes());
+        assertThrows(IllegalStateException.class, () -> new BiGridProvider(lmpd).streaming(true).getBigraph());
+    }
+
+    @Test
+    void parallel_construction_equals_sequential_construction() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (BiGridProvider.RouteDirection routeDirection : BiGridProvider.RouteDirection.values()) {
+                for (int parallelism : new int[]{2, 3, 100}) {
+                    BLocationModelData lmpd = BLocationModelDataFactory.createGrid(5, 4, 0, 0, 1, 1);
+                    BiGridBuildResult expected = new BiGridProvider(lmpd).setRouteDirection(routeDirection).build();
+                    BiGridBuildResult actual = new BiGridProvider(lmpd).setRouteDirection(routeDirection)
+                            .setParallelism(parallelism).setExecutor(executor).build();
+                    String message = routeDirection + ", parallelism=" + parallelism;
+                    assertEquals(describe(expected.getBigraph()), describe(actual.getBigraph()), message);
+                    assertEquals(expected.getLocaleNameToRootOrSiteIndex(), actual.getLocaleNameToRootOrSiteIndex(), message);
+                    assertEquals(expected.getLocaleNameToCoordinates(), actual.getLocaleNameToCoordinates(), message);
+                    assertEquals(new TreeSet<>(expected.getBNodeIdToExternalLocaleName().values()),
+                            new TreeSet<>(actual.getBNodeIdToExternalLocaleName().values()), message);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void build_leaves_the_location_model_unchanged() throws Exception {
+        BLocationModelData lmpd = BLocationModelDataFactory.createGrid(2, 3, 0, 0, 1, 1);
+        BiGridBuildResult result = new BiGridProvider(lmpd).build();
+        assertEquals(0, lmpd.getNumOfLocModelSites());
+        assertTrue(lmpd.getLocaleNameToRootOrSiteIndex().isEmpty());
+        assertTrue(lmpd.getBNodeIdToExternalLocaleName().isEmpty());
+
+        assertEquals(6, result.getNumOfLocModelSites());
+        assertEquals(6, result.getLocaleNameToRootOrSiteIndex().size());
+        assertEquals(Integer.valueOf(0), result.getLocaleNameToRootOrSiteIndex().get("v0"));
+        assertThrows(UnsupportedOperationException.class, () -> result.getLocaleNameToRootOrSiteIndex().put("v6", 6));
+
+        result.applyTo(lmpd);
+        assertEquals(result.getLocaleNameToRootOrSiteIndex(), lmpd.getLocaleNameToRootOrSiteIndex());
+        assertEquals(result.getBNodeIdToExternalLocaleName(), lmpd.getBNodeIdToExternalLocaleName());
+
+        // Moving a locale afterwards changes neither the result nor later results of the same location model
+        BLocationModelData.Locale locale = lmpd.getLocales().get(0);
+        Point2D.Float center = new Point2D.Float(locale.getCenter().x, locale.getCenter().y);
+        locale.getCenter().setLocation(center.x + 10, center.y + 10);
+        assertEquals(List.of(center), result.getLocaleNameToCoordinates().get(locale.getName()));
+        assertEquals(List.of(locale.getCenter()), new BiGridProvider(lmpd).build().getLocaleNameToCoordinates().get(locale.getName()));
+    }
+
+    @Test
+    void build_results_copy_the_coordinates() {
+        Point2D.Float center = new Point2D.Float(1, 2);
+        BiGridBuildResult result = new BiGridBuildResult(null, 1, Map.of("v0", List.of(center)), Map.of(), Map.of("v0", 0));
+        center.setLocation(5, 6);
+        assertEquals(List.of(new Point2D.Float(1, 2)), result.getLocaleNameToCoordinates().get("v0"));
+
+        BLocationModelData lmpd = new BLocationModelData();
+        result.applyTo(lmpd);
+        assertEquals(List.of(new Point2D.Float(1, 2)), lmpd.getLocaleNameToCoordinates().get("v0"));
+        lmpd.getLocaleNameToCoordinates().get("v0").get(0).setLocation(7, 8);
+        assertEquals(List.of(new Point2D.Float(1, 2)), result.getLocaleNameToCoordinates().get("v0"));
+    }
+
+    @Test
+    void cache_hits_return_copies_of_the_cached_bigrid() throws Exception {
+        BiGridCache cache = BiGridCache.create(4);
+        BLocationModelData lmpd = BLocationModelDataFactory.createGrid(3, 4, 0, 0, 1, 1);
+        PureBigraph expected = new BiGridProvider(lmpd).getBigraph();
+
+        PureBigraph first = new BiGridProvider(lmpd).setCache(cache).getBigraph();
+        PureBigraph second = new BiGridProvider(lmpd).setCache(cache).getBigraph();
+        PureBigraph third = new BiGridProvider(lmpd).setCache(cache).getBigraph();
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.stats().hitCount());
+        assertNotSame(first, second);
+        assertNotSame(second, third);
+        assertEquals(describe(expected), describe(first));
+        assertEquals(describe(expected), describe(second));
+        assertEquals(describe(expected), describe(third));
+
+        new BiGridProvider(lmpd).setCache(cache).setRouteDirection(BiGridProvider.RouteDirection.UNIDIRECTIONAL_FORWARD).getBigraph();
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void index_finds_the_locales_of_a_bigrid() throws Exception {
+        BLocationModelData lmpd = BLocationModelDataFactory.createGrid(3, 4, -1f, 0.5f, 0.5f, 1f);
+        BiGridBuildResult result = new BiGridProvider(lmpd).build();
+        BiGridIndex index = BiGridIndex.create(result.getBigraph());
+        assertEquals(12, index.size());
+        assertEquals(12, index.getLabels().size());
+        for (BLocationModelData.Locale locale : lmpd.getLocales()) {
+            String label = BiGridSupport.formatParamControl(locale.getCenter());
+            int siteIndex = result.getLocaleNameToRootOrSiteIndex().get(locale.getName());
+            assertEquals(siteIndex, index.getSiteIndex(label));
+            assertEquals(siteIndex, index.getSiteIndex(locale.getCenter()));
+            assertEquals(label, index.getLabelOfSite(siteIndex));
+            assertSame(index.getLocale(label), index.getLocaleOfSite(siteIndex));
+            assertEquals(label, index.getLabel(index.getLocale(label)));
+            assertEquals(siteIndex, index.getSiteIndex(index.getLocale(label)));
+        }
+        assertEquals(-1, index.getSiteIndex("C_99_00__99_00"));
+        assertNull(index.getLocale("C_99_00__99_00"));
+        assertNull(index.getLocaleOfSite(-1));
+        assertNull(index.getLabelOfSite(12));
+    }
+
+    @Test
+    void index_is_owned_by_the_caller() throws Exception {
+        PureBigraph bigrid = new BiGridProvider(BLocationModelDataFactory.createGrid(2, 2, 0, 0, 1, 1)).getBigraph();
+        BiGridIndex first = BiGridIndex.create(bigrid);
+        BiGridIndex second = BiGridIndex.create(bigrid);
+        assertNotSame(first, second);
+        assertEquals(first.getLabels(), second.getLabels());
+        assertThrows(UnsupportedOperationException.class, () -> first.getLabels().add("C_5_00__5_00"));
+    }
+
+    /**
+     * Describes a bigrid independently of the identifiers of its nodes: one entry per locale with the outer name of
+     * the locale, the indices of its sites and the outer names of its routes, sorted by the outer name of the locale.
+     */
+    static List<String> describe(PureBigraph bigrid) {
+        List<String> locales = new ArrayList<>();
+        for (BigraphEntity.NodeEntity<DynamicControl> node : bigrid.getNodes()) {
+            if (!node.getControl().getNamedType().stringValue().equals(LOCALE_TYPE)) {
+                continue;
+            }
+            List<Integer> sites = new ArrayList<>();
+            List<String> routes = new ArrayList<>();
+            for (BigraphEntity<?> child : bigrid.getChildrenOf(node)) {
+                if (child instanceof BigraphEntity.SiteEntity site) {
+                    sites.add(site.getIndex());
+                } else if (child instanceof BigraphEntity.NodeEntity<?> route) {
+                    routes.add(route.getControl().getNamedType().stringValue() + ":" + linkNames(bigrid, route));
+                }
+            }
+            Collections.sort(routes);
+            locales.add(linkNames(bigrid, node) + " sites=" + sites + " routes=" + routes);
+        }
+        Collections.sort(locales);
+        assertEquals(1, bigrid.getRoots().size());
+        return locales;
+    }
+
+    private static String linkNames(PureBigraph bigrid, BigraphEntity.NodeEntity<?> node) {
+        List<String> names = new ArrayList<>();
+        for (BigraphEntity.Link link : bigrid.getIncidentLinksOf(node)) {
+            names.add(link instanceof BigraphEntity.OuterName outerName ? outerName.getName() : "edge");
+        }
+        return String.join(",", names);
+    }
+}
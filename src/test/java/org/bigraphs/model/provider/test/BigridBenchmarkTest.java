@@ -0,0 +1,297 @@
+package org.bigraphs.model.provider.test;
+
+import org.bigraphs.framework.core.impl.pure.PureBigraph;
+import org.bigraphs.model.provider.base.BLocationModelData;
+import org.bigraphs.model.provider.spatial.bigrid.BLocationModelDataFactory;
+import org.bigraphs.model.provider.spatial.bigrid.BiGridConnectivityChecker;
+import org.bigraphs.model.provider.spatial.bigrid.BiGridConnectivityCheckerDFS;
+import org.bigraphs.model.provider.spatial.bigrid.BiGridConnectivityCheckerUF;
+import org.bigraphs.model.provider.spatial.bigrid.BiGridElementFactory;
+import org.bigraphs.model.provider.spatial.bigrid.BiGridProvider;
+import org.bigraphs.model.provider.spatial.bigrid.BiGridGraph;
+import org.bigraphs.model.provider.spatial.bigrid.ChunkedWorldGenerator;
+import org.bigraphs.model.provider.spatial.bigrid.DynamicBiGridConnectivity;
+import org.bigraphs.model.provider.spatial.bigrid.ThreeDimensionalBiGridProvider;
+import org.bigraphs.model.provider.spatial.bigrid.World;
+import org.bigraphs.model.provider.spatial.bigrid.planning.BiGridDistanceTable;
+import org.bigraphs.model.provider.spatial.bigrid.planning.BiGridPath;
+import org.bigraphs.model.provider.spatial.bigrid.planning.BiGridPathPlanner;
+import org.bigraphs.model.provider.spatial.bigrid.planning.RouteCosts;
+import org.bigraphs.model.provider.spatial.signature.ThreeDimensionalBiSpaceSignatureProvider;
+import org.bigraphs.model.provider.util.IntUnionFind;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.bigraphs.framework.core.factory.BigraphFactory.ops;
+
+/**
+ * Runtime measurements for the construction and analysis of bigrids.
+ * <p>
+ * Each benchmark performs some warm-up rounds before the measured rounds are printed.
+ */
+@Disabled
+public class BigridBenchmarkTest {
+
+    static final int WARMUP_ROUNDS = 3;
+    static final int MEASURED_ROUNDS = 5;
+
+    @Test
+    void benchmark_sort_locales() {
+        int numOfLocales = 1_000_000;
+        List<BLocationModelData.Locale> locales = new ArrayList<>(numOfLocales);
+        for (int i = 0; i < numOfLocales; i++) {
+            locales.add(BLocationModelData.Locale.builder().name("v" + i).center(new Point2D.Float(i, 0)).build());
+        }
+        Collections.shuffle(locales, new Random(42));
+
+        // Previous behavior: parse the name on both sides of every comparison
+        Comparator<BLocationModelData.Locale> parsing = Comparator.comparingInt(l -> Integer.parseInt(l.getName().substring(1)));
+        measure("Parsing comparator", () -> {
+            List<BLocationModelData.Locale> copy = new ArrayList<>(locales);
+            copy.sort(parsing);
+        });
+        measure("Cached index (Collections.sort)", () -> {
+            List<BLocationModelData.Locale> copy = new ArrayList<>(locales);
+            Collections.sort(copy);
+        });
+        measure("Cached index (sortByIndex)", () -> BLocationModelData.sortByIndex(locales));
+
+        List<BLocationModelData.Locale> sorted = BLocationModelData.sortByIndex(locales);
+        for (int i = 0; i < numOfLocales; i++) {
+            assert sorted.get(i).getIndex() == i;
+        }
+    }
+
+    @Test
+    void benchmark_parallel_bigrid_construction() {
+        int m = 100;
+        int n = 100;
+        BLocationModelData lmpd = BLocationModelDataFactory.createGrid(m, n, 0, 0, 1, 1);
+        int maxParallelism = Runtime.getRuntime().availableProcessors();
+        for (int parallelism = 1; parallelism <= maxParallelism; parallelism *= 2) {
+            BiGridProvider provider = new BiGridProvider(lmpd).setParallelism(parallelism);
+            measure(String.format("Bigrid %dx%d with %d worker(s)", m, n, parallelism), () -> {
+                try {
+                    PureBigraph bigrid = provider.getBigraph();
+                    assert bigrid.getSites().size() == m * n;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+    }
+
+    @Test
+    void benchmark_connectivity_check() throws Exception {
+        int m = 30;
+        int n = 30;
+        PureBigraph bigrid = new BiGridProvider(BLocationModelDataFactory.createGrid(m, n, 0, 0, 1, 1)).getBigraph();
+        assert BiGridConnectivityChecker.isFullyConnected(bigrid) == BiGridConnectivityCheckerUF.isFullyConnected(bigrid);
+        measure(String.format("Connectivity %dx%d (BiGridConnectivityChecker)", m, n), () -> BiGridConnectivityChecker.isFullyConnected(bigrid));
+        measure(String.format("Connectivity %dx%d (BiGridConnectivityCheckerDFS)", m, n), () -> BiGridConnectivityCheckerDFS.isFullyConnected(bigrid));
+        measure(String.format("Connectivity %dx%d (BiGridConnectivityCheckerUF)", m, n), () -> BiGridConnectivityCheckerUF.isFullyConnected(bigrid));
+    }
+
+    @Test
+    void benchmark_route_toggling() {
+        int m = 200;
+        int n = 200;
+        List<int[]> corridors = new ArrayList<>();
+        for (int row = 0; row < m; row++) {
+            for (int col = 0; col < n; col++) {
+                int v = row * n + col;
+                if (col + 1 < n) corridors.add(new int[]{v, v + 1});
+                if (row + 1 < m) corridors.add(new int[]{v, v + n});
+            }
+        }
+        DynamicBiGridConnectivity connectivity = new DynamicBiGridConnectivity(m * n);
+        corridors.forEach(c -> connectivity.addRoute(c[0], c[1]));
+        Set<Integer> blocked = new HashSet<>();
+        Random random = new Random(42);
+        int numOfToggles = 10_000;
+        measure(String.format("Toggle %d routes in %dx%d (DynamicBiGridConnectivity)", numOfToggles, m, n), () -> {
+            for (int i = 0; i < numOfToggles; i++) {
+                int c = random.nextInt(corridors.size());
+                if (blocked.remove(c)) {
+                    connectivity.addRoute(corridors.get(c)[0], corridors.get(c)[1]);
+                } else {
+                    blocked.add(c);
+                    connectivity.removeRoute(corridors.get(c)[0], corridors.get(c)[1]);
+                }
+                connectivity.isFullyConnected();
+            }
+        });
+        // Full rescan after each toggle (only a fraction of the toggles)
+        int numOfRescans = 100;
+        measure(String.format("Toggle %d routes in %dx%d (full rescan)", numOfRescans, m, n), () -> {
+            for (int i = 0; i < numOfRescans; i++) {
+                IntUnionFind components = new IntUnionFind(m * n);
+                for (int c = 0; c < corridors.size(); c++) {
+                    if (!blocked.contains(c)) components.union(corridors.get(c)[0], corridors.get(c)[1]);
+                }
+                assert (components.count() == 1) == connectivity.isFullyConnected();
+            }
+        });
+    }
+
+    @Test
+    void benchmark_path_planning_2d() {
+        int m = 500;
+        int n = 500;
+        BLocationModelData lmpd = BLocationModelDataFactory.createGrid(m, n, 0, 0, 1, 1);
+        measure(String.format("Compile %dx%d locale graph", m, n), () -> BiGridGraph.of(lmpd, BiGridProvider.RouteDirection.BIDIRECTIONAL));
+        benchmarkQueries(String.format("%dx%d", m, n), BiGridGraph.of(lmpd, BiGridProvider.RouteDirection.BIDIRECTIONAL));
+    }
+
+    @Test
+    void benchmark_path_planning_3d() throws Exception {
+        int rows = 40;
+        int cols = 40;
+        int layers = 10;
+        PureBigraph bigrid = new ThreeDimensionalBiGridProvider(new BLocationModelData(), rows, cols, layers,
+                0, 0, 0, 1, 1, 1).getBigraph();
+        measure(String.format("Compile %dx%dx%d locale graph", rows, cols, layers), () -> BiGridGraph.of(bigrid));
+        BiGridGraph graph = BiGridGraph.of(bigrid);
+        benchmarkQueries(String.format("%dx%dx%d", rows, cols, layers), graph);
+
+        // Climbing is expensive
+        BiGridPathPlanner planner = new BiGridPathPlanner(graph)
+                .setRouteCosts(RouteCosts.uniform().set(ThreeDimensionalBiSpaceSignatureProvider.UP_ROUTE_TYPE, 5));
+        BiGridPath path = planner.findPath(0, graph.size() - 1);
+        System.out.printf("Path with expensive UpRoute: cost=%.2f, directions=%s%n", path.getCost(), path.getDirections(graph));
+        measure(String.format("Query in %dx%dx%d with route costs (A*)", rows, cols, layers), () -> planner.findPath(0, graph.size() - 1));
+    }
+
+    @Test
+    void benchmark_distance_tables() throws Exception {
+        int m = 300;
+        int n = 300;
+        BiGridGraph graph = BiGridGraph.of(BLocationModelDataFactory.createGrid(m, n, 0, 0, 1, 1), BiGridProvider.RouteDirection.BIDIRECTIONAL);
+        BiGridPathPlanner planner = new BiGridPathPlanner(graph);
+        measure(String.format("Landmark table (16) for %dx%d", m, n), () -> BiGridDistanceTable.landmarks(planner, 16));
+        BiGridDistanceTable landmarks = BiGridDistanceTable.landmarks(planner, 16);
+        Path file = Files.createTempFile("bigrid-landmarks", ".bin");
+        landmarks.write(file);
+        measure(String.format("Read landmark table (%d bytes)", Files.size(file)), () -> {
+            try {
+                BiGridDistanceTable.read(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        Files.delete(file);
+        benchmarkQueries(String.format("%dx%d", m, n), graph);
+        BiGridPathPlanner alt = new BiGridPathPlanner(graph).setDistanceTable(landmarks);
+        Random random = new Random(42);
+        int[][] queries = new int[100][];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = new int[]{random.nextInt(graph.size()), random.nextInt(graph.size())};
+        }
+        measure(String.format("%d queries in %dx%d (A* with landmarks)", queries.length, m, n), () -> {
+            for (int[] query : queries) alt.findPath(query[0], query[1]);
+        });
+
+        // All-pairs table for a small grid
+        BiGridGraph small = BiGridGraph.of(BLocationModelDataFactory.createGrid(40, 40, 0, 0, 1, 1), BiGridProvider.RouteDirection.BIDIRECTIONAL);
+        measure("All-pairs table for 40x40", () -> BiGridDistanceTable.allPairs(new BiGridPathPlanner(small)));
+        BiGridDistanceTable allPairs = BiGridDistanceTable.allPairs(new BiGridPathPlanner(small));
+        measure("1M lookups in 40x40 (all-pairs)", () -> {
+            float sum = 0;
+            for (int i = 0; i < 1_000_000; i++) sum += allPairs.getDistance(i % small.size(), (i * 31) % small.size());
+            assert sum > 0;
+        });
+    }
+
+    private static void benchmarkQueries(String name, BiGridGraph graph) {
+        int numOfQueries = 100;
+        Random random = new Random(42);
+        int[][] queries = new int[numOfQueries][];
+        for (int i = 0; i < numOfQueries; i++) {
+            queries[i] = new int[]{random.nextInt(graph.size()), random.nextInt(graph.size())};
+        }
+        BiGridPathPlanner planner = new BiGridPathPlanner(graph);
+        for (int[] query : queries) {
+            BiGridPath aStar = planner.findPath(query[0], query[1]);
+            BiGridPath dijkstra = planner.dijkstra(query[0], query[1]);
+            assert Math.abs(aStar.getCost() - dijkstra.getCost()) < 1e-3;
+        }
+        measure(String.format("%d queries in %s (Dijkstra)", numOfQueries, name), () -> {
+            for (int[] query : queries) planner.dijkstra(query[0], query[1]);
+        });
+        measure(String.format("%d queries in %s (A*)", numOfQueries, name), () -> {
+            for (int[] query : queries) planner.findPath(query[0], query[1]);
+        });
+    }
+
+    @Test
+    void benchmark_wfc_chunked_generation() {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        for (int size : new int[]{500, 1000}) {
+            measure(String.format("Chunked WFC %dx%d world (sequential)", size, size),
+                    () -> new ChunkedWorldGenerator(size, size, 42L).generate());
+            measure(String.format("Chunked WFC %dx%d world (%d workers)", size, size, parallelism),
+                    () -> new ChunkedWorldGenerator(size, size, 42L).setParallelism(parallelism).generate());
+        }
+        // Streaming: only the finished chunks of the last two anti-diagonals are kept
+        measure("Chunked WFC 2000x2000 world (streaming)", () -> {
+            long[] numOfTiles = {0};
+            new ChunkedWorldGenerator(2000, 2000, 42L)
+                    .setParallelism(parallelism)
+                    .generate(chunk -> numOfTiles[0] += (long) chunk.getSizeX() * chunk.getSizeY());
+            assert numOfTiles[0] == 2000L * 2000;
+        });
+    }
+
+    @Test
+    void benchmark_wfc_bigrid_construction() {
+        BiGridElementFactory factory = BiGridElementFactory.create();
+        // Former approach: one bigraph per tile, combined by the parallel product
+        World small = new World(20, 20, 42L);
+        while (small.waveFunctionCollapse() != 0) ;
+        measure("WFC 20x20 bigrid (parallel product of elements)", () -> {
+            try {
+                PureBigraph bigrid = null;
+                for (int x = 0; x < 20; x++) {
+                    for (int y = 0; y < 20; y++) {
+                        PureBigraph element = factory.createElement(small.getType(x, y), x, y, 1f);
+                        bigrid = bigrid == null ? element : ops(bigrid).parallelProduct(element).getOuterBigraph();
+                    }
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        for (int size : new int[]{20, 100, 300}) {
+            World world = new World(size, size, 42L);
+            while (world.waveFunctionCollapse() != 0) ;
+            measure(String.format("WFC %dx%d bigrid (single builder)", size, size), () -> {
+                try {
+                    PureBigraph bigrid = factory.createBiGrid(world, 1f);
+                    assert bigrid.getSites().size() == size * size;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+    }
+
+    static void measure(String label, Runnable task) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            task.run();
+        }
+        long total = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            task.run();
+            total += System.nanoTime() - start;
+        }
+        System.out.printf("%s: %.3f ms (avg. of %d)%n", label, total / 1_000_000.0 / MEASURED_ROUNDS, MEASURED_ROUNDS);
+    }
+}
@@ -3,7 +3,6 @@ package org.bigraphs.model.provider.test;
 import org.bigraphs.framework.core.EcoreBigraph;
 import org.bigraphs.framework.core.analysis.BigraphDecomposer;
 import org.bigraphs.framework.core.analysis.PureBigraphDecomposerImpl;
-import org.bigraphs.framework.core.impl.elementary.Placings;
 import org.bigraphs.framework.core.impl.pure.PureBigraph;
 import org.bigraphs.framework.core.impl.signature.DynamicSignature;
 import org.bigraphs.framework.core.utils.BigraphUtil;
@@ -15,12 +14,6 @@ import org.bigraphs.testing.BigraphUnitTestSupport;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import static org.bigraphs.framework.core.factory.BigraphFactory.ops;
-import static org.bigraphs.framework.core.factory.BigraphFactory.purePlacings;
-
 /**
  * This class provides a test for Wave Function Collapse for Bigrids.
  *
@@ -61,32 +54,12 @@ public class BigridCreationWFCTest implements BigraphUnitTestSupport {
 
         int lowestEntropy = world.getLowestEntropy();
 
-        List<PureBigraph> localesBigraphs = new ArrayList<>();
         BiGridElementFactory factory = BiGridElementFactory.create();
         float stepSize = 1f;
-        for (int x = 0; x < n; x++) {
-            for (int y = 0; y < m; y++) {
-//                int tileEntropy = world.getEntropy(x, y);
-                int tileType = world.getType(x, y);
-//                System.out.println("(" + x + "," + y + ")@ tileEntropy: " + tileEntropy + " tileType: " + tileType);
-                // Add logic to process tileEntropy and tileType if needed
-                PureBigraph element = factory.createElement(tileType, x, y, stepSize);
-                localesBigraphs.add(element);
-            }
-        }
-
-        if (localesBigraphs.size() > 1) {
-            PureBigraph bigrid = localesBigraphs.get(0);
-            for (int i = 1; i < localesBigraphs.size(); i++) {
-                PureBigraph currentLocale = localesBigraphs.get(i);
-                bigrid = ops(bigrid).parallelProduct(currentLocale).getOuterBigraph();
-            }
-
-
-            int widthOfBigrid = bigrid.getRoots().size();
-            Placings<DynamicSignature>.Merge merge = purePlacings(bigrid.getSignature()).merge(widthOfBigrid);
-            bigrid = ops(merge).nesting(bigrid).getOuterBigraph();
+        // All locales are built by a single builder under one root
+        PureBigraph bigrid = factory.createBiGrid(world, stepSize);
 
+        if (bigrid.getSites().size() > 1) {
             System.out.println("Connectedness");
             System.out.println("BFS: BigraphConnectivityChecker.isFullyConnected(bigrid) = " + BiGridConnectivityChecker.isFullyConnected(bigrid));
             System.out.println("DFS: BigraphConnectivityChecker.isFullyConnected(bigrid) = " + BiGridConnectivityCheckerDFS.isFullyConnected(bigrid));
@@ -0,0 +1,126 @@
+package org.bigraphs.model.provider.test;
+
+import org.bigraphs.model.provider.spatial.bigrid.BiGridConfig;
+import org.bigraphs.model.provider.spatial.bigrid.ChunkedWorldGenerator;
+import org.bigraphs.model.provider.spatial.bigrid.TileSet;
+import org.bigraphs.model.provider.spatial.bigrid.World;
+import org.bigraphs.model.provider.spatial.bigrid.WorldChunk;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the generation of worlds in chunks by {@link ChunkedWorldGenerator}.
+ */
+public class ChunkedWorldGeneratorTest {
+
+    @Test
+    void chunked_worlds_are_reproducible() {
+        for (long seed = 0; seed < 5; seed++) {
+            int[][] types = new ChunkedWorldGenerator(70, 50, seed).setChunkSize(16).generate();
+            assertArrayEquals(types, new ChunkedWorldGenerator(70, 50, seed).setChunkSize(16).generate());
+            // The chunks draw from their own generators, so the workers do not change the result
+            assertArrayEquals(types, new ChunkedWorldGenerator(70, 50, seed).setChunkSize(16).setParallelism(4).generate());
+            assertFalse(Arrays.deepEquals(types, new ChunkedWorldGenerator(70, 50, seed + 1000).setChunkSize(16).generate()));
+        }
+        assertEquals(42, new ChunkedWorldGenerator(1, 1, 42).getSeed());
+    }
+
+    @Test
+    void chunked_worlds_satisfy_the_adjacency_rules() {
+        for (long seed = 0; seed < 10; seed++) {
+            int[][] types = new ChunkedWorldGenerator(70, 50, seed).setChunkSize(16).setOverlap(3).setParallelism(2).generate();
+            assertAdjacencyHolds(TileSet.getDefault(), types);
+        }
+        // Rules that contradict often: a world is either consistent across all chunk boundaries, or not generated
+        TileSet tileSet = TileSet.of(Map.of(
+                0, List.of(1, 0, 2, 0), 1, List.of(1, 2, 1, 2), 2, List.of(0, 1, 1, 0), 3, List.of(0, 2, 1, 2),
+                4, List.of(1, 1, 1, 1), 5, List.of(0, 0, 1, 0), 6, List.of(2, 0, 2, 0), 7, List.of(2, 2, 2, 1),
+                8, List.of(0, 0, 2, 1), 9, List.of(2, 1, 1, 2)), Map.of(
+                0, 3, 1, 2, 2, 1, 3, 2, 4, 1, 5, 2, 6, 4, 7, 1, 8, 3, 9, 2));
+        int numOfWorlds = 0;
+        for (World.RecoveryPolicy recoveryPolicy : World.RecoveryPolicy.values()) {
+            for (long seed = 0; seed < 10; seed++) {
+                ChunkedWorldGenerator generator = new ChunkedWorldGenerator(40, 40, seed).setChunkSize(12)
+                        .setTileSet(tileSet).setRecoveryPolicy(recoveryPolicy);
+                int[][] types;
+                try {
+                    types = generator.generate();
+                } catch (IllegalStateException e) {
+                    continue;
+                }
+                assertAdjacencyHolds(tileSet, types);
+                numOfWorlds++;
+            }
+        }
+        assertTrue(numOfWorlds > 10);
+    }
+
+    @Test
+    void chunks_cover_the_world_by_anti_diagonals() {
+        int[][] types = new ChunkedWorldGenerator(45, 30, 7).setChunkSize(16).generate();
+        List<WorldChunk> chunks = new ArrayList<>();
+        new ChunkedWorldGenerator(45, 30, 7).setChunkSize(16).setParallelism(3).generate(chunks::add);
+        assertEquals(3 * 2, chunks.size());
+        int[][] covered = new int[45][30];
+        int diagonal = 0;
+        for (WorldChunk chunk : chunks) {
+            assertTrue(chunk.getChunkX() + chunk.getChunkY() >= diagonal);
+            diagonal = chunk.getChunkX() + chunk.getChunkY();
+            assertEquals(chunk.getChunkX() * 16, chunk.getOriginX());
+            assertEquals(chunk.getChunkY() * 16, chunk.getOriginY());
+            assertEquals(Math.min(16, 45 - chunk.getOriginX()), chunk.getSizeX());
+            assertEquals(Math.min(16, 30 - chunk.getOriginY()), chunk.getSizeY());
+            for (int x = 0; x < chunk.getSizeX(); x++) {
+                for (int y = 0; y < chunk.getSizeY(); y++) {
+                    covered[chunk.getOriginX() + x][chunk.getOriginY() + y]++;
+                    assertEquals(types[chunk.getOriginX() + x][chunk.getOriginY() + y], chunk.getType(x, y));
+                }
+            }
+            assertThrows(IndexOutOfBoundsException.class, () -> chunk.getType(chunk.getSizeX(), 0));
+        }
+        for (int[] row : covered) {
+            for (int count : row) {
+                assertEquals(1, count);
+            }
+        }
+    }
+
+    @Test
+    void generator_rejects_other_topologies() {
+        ChunkedWorldGenerator generator = new ChunkedWorldGenerator(10, 10, 1);
+        TileSet diagonal = TileSet.builder(TileSet.Topology.DIAGONAL_GRID).weight(0, 1)
+                .allow(0, BiGridConfig.Direction.NORTH_EAST, 0).build();
+        TileSet threeDimensional = TileSet.builder(TileSet.Topology.GRID_3D).weight(0, 1)
+                .allow(0, BiGridConfig.Direction.UP, 0).build();
+        assertThrows(IllegalArgumentException.class, () -> generator.setTileSet(diagonal));
+        assertThrows(IllegalArgumentException.class, () -> generator.setTileSet(threeDimensional));
+        assertSame(generator, generator.setTileSet(TileSet.getDefaultWithCorners()));
+        assertThrows(IllegalArgumentException.class, () -> generator.setChunkSize(0));
+        assertThrows(IllegalArgumentException.class, () -> generator.setChunkSize(8).setOverlap(9));
+        assertThrows(IllegalArgumentException.class, () -> generator.setParallelism(0));
+        assertThrows(IllegalArgumentException.class, () -> generator.setMaxAttempts(0));
+        assertThrows(IllegalArgumentException.class, () -> new ChunkedWorldGenerator(0, 10, 1));
+    }
+
+    // Each pair of neighbouring tiles is allowed by the tile set
+    private static void assertAdjacencyHolds(TileSet tileSet, int[][] types) {
+        for (int x = 0; x < types.length; x++) {
+            for (int y = 0; y < types[x].length; y++) {
+                for (BiGridConfig.Direction direction : tileSet.getTopology().getDirections()) {
+                    int nx = x + direction.getDx(), ny = y + direction.getDy();
+                    if (nx < 0 || nx >= types.length || ny < 0 || ny >= types[x].length) {
+                        continue;
+                    }
+                    assertTrue((tileSet.getCompatible(direction, types[x][y]) & 1L << types[nx][ny]) != 0,
+                            types[x][y] + " at " + x + ", " + y + " and " + types[nx][ny] + " to the " + direction);
+                }
+            }
+        }
+    }
+}
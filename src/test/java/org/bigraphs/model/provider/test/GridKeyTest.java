@@ -0,0 +1,149 @@
+package org.bigraphs.model.provider.test;
+
+import org.bigraphs.model.provider.spatial.bigrid.BiGridSupport;
+import org.bigraphs.model.provider.spatial.bigrid.GridKey;
+import org.bigraphs.model.provider.util.LongIntHashMap;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the integer keys of grid positions and the primitive hash map they are stored in.
+ */
+public class GridKeyTest {
+
+    @Test
+    void keys_are_equal_if_and_only_if_labels_are_equal() {
+        Random random = new Random(42);
+        Map<Long, String> keyToLabel = new HashMap<>();
+        Map<String, Long> labelToKey = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            // Few distinct values per coordinate, so that keys and labels collide often
+            float x = random.nextInt(2000) / 997f - 1;
+            float y = i % 2 == 0 ? random.nextInt(3) - 1.0005f + random.nextInt(3) * 0.0005f : -x;
+            long key = GridKey.ofCoordinate(x, y);
+            String label = BiGridSupport.formatParamControl(new Point2D.Float(x, y));
+            assertEquals(label, GridKey.toLabel(key));
+            assertEquals(label, keyToLabel.computeIfAbsent(key, k -> label));
+            assertEquals(Long.valueOf(key), labelToKey.computeIfAbsent(label, l -> key));
+        }
+    }
+
+    @Test
+    void keys_follow_the_rounding_of_labels() {
+        assertEquals(GridKey.ofCoordinate(1, 2), GridKey.ofCoordinate(1.001f, 2.004f));
+        assertEquals(GridKey.ofCoordinate(0, 0), GridKey.ofCoordinate(-0.0f, 0.004f));
+        // 0.999 is labelled 0_100, which is not the label of 1.0
+        assertNotEquals(GridKey.toLattice(1.0f), GridKey.toLattice(0.999f));
+        assertEquals(GridKey.toLattice(0.996f), GridKey.toLattice(0.999f));
+        assertEquals("C_0_100__1_00", GridKey.toLabel(GridKey.ofCoordinate(0.999f, 1f)));
+        // -0.001 is labelled N0_00, which is not the label of 0.0
+        assertNotEquals(GridKey.toLattice(0f), GridKey.toLattice(-0.001f));
+        assertEquals("C_N0_00__N1_50", GridKey.toLabel(GridKey.ofCoordinate(-0.001f, -1.5f)));
+        assertEquals("C_10000000_00__N10000000_00",
+                GridKey.toLabel(GridKey.ofCoordinate(GridKey.MAX_COORDINATE, -GridKey.MAX_COORDINATE)));
+    }
+
+    @Test
+    void keys_reject_coordinates_out_of_range() {
+        assertThrows(IllegalArgumentException.class, () -> GridKey.toLattice(Float.NaN));
+        assertThrows(IllegalArgumentException.class, () -> GridKey.toLattice(Float.POSITIVE_INFINITY));
+        assertThrows(IllegalArgumentException.class, () -> GridKey.toLattice(2e7f));
+        assertThrows(IllegalArgumentException.class, () -> GridKey.ofCoordinate(0, -3e9f));
+        assertDoesNotThrow(() -> GridKey.toLattice(-GridKey.MAX_COORDINATE));
+    }
+
+    @Test
+    void keys_pack_rows_and_columns() {
+        int[] values = {0, 1, -1, 12345, -12345, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        for (int row : values) {
+            for (int col : values) {
+                long key = GridKey.of(row, col);
+                assertEquals(row, GridKey.row(key));
+                assertEquals(col, GridKey.col(key));
+            }
+        }
+    }
+
+    @Test
+    void keys_pack_rows_columns_and_layers() {
+        int[] values = {0, 1, -1, 12345, -12345, GridKey.MAX_3D, -GridKey.MAX_3D};
+        for (int row : values) {
+            for (int col : values) {
+                for (int layer : values) {
+                    long key = GridKey.of(row, col, layer);
+                    assertEquals(row, GridKey.row3D(key));
+                    assertEquals(col, GridKey.col3D(key));
+                    assertEquals(layer, GridKey.layer3D(key));
+                }
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> GridKey.of(GridKey.MAX_3D + 1, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> GridKey.of(0, -GridKey.MAX_3D - 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> GridKey.of(0, 0, Integer.MIN_VALUE));
+    }
+
+    @Test
+    void neighbours_of_3D_keys_are_offsets() {
+        long key = GridKey.of(4, 0, 2);
+        assertEquals(GridKey.of(5, 0, 2), GridKey.offset(key, 1, 0, 0));
+        assertEquals(GridKey.of(3, -1, 2), GridKey.offset(key, -1, -1, 0));
+        assertEquals(GridKey.of(4, 0, 1), GridKey.offset(key, 0, 0, -1));
+        assertEquals(key, GridKey.offset(GridKey.offset(key, -5, 7, 1), 5, -7, -1));
+        assertEquals("(4, 0, 2)", GridKey.toString3D(key));
+        assertThrows(IllegalArgumentException.class,
+                () -> GridKey.offset(GridKey.of(0, 0, GridKey.MAX_3D), 0, 0, 1));
+    }
+
+    @Test
+    void map_stores_values_by_key() {
+        LongIntHashMap map = new LongIntHashMap(2);
+        assertEquals(LongIntHashMap.NO_VALUE, map.get(7));
+        assertEquals(LongIntHashMap.NO_VALUE, map.put(7, 1));
+        assertEquals(1, map.put(7, 2));
+        assertEquals(2, map.putIfAbsent(7, 3));
+        assertEquals(2, map.get(7));
+        assertEquals(LongIntHashMap.NO_VALUE, map.putIfAbsent(-7, 0));
+        assertEquals(0, map.get(-7));
+        assertTrue(map.containsKey(-7));
+        assertEquals(2, map.size());
+        assertThrows(IllegalArgumentException.class, () -> map.put(8, -1));
+    }
+
+    @Test
+    void map_equals_a_hash_map_under_random_operations() {
+        Random random = new Random(42);
+        LongIntHashMap map = new LongIntHashMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            // Packed keys of a small grid: many keys share the low bits
+            long key = GridKey.of(random.nextInt(64), random.nextInt(64));
+            int value = random.nextInt(1000);
+            int present = expected.getOrDefault(key, LongIntHashMap.NO_VALUE);
+            switch (random.nextInt(4)) {
+                case 0 -> {
+                    assertEquals(present, map.put(key, value));
+                    expected.put(key, value);
+                }
+                case 1 -> {
+                    assertEquals(present, map.putIfAbsent(key, value));
+                    expected.putIfAbsent(key, value);
+                }
+                case 2 -> {
+                    assertEquals(present, map.remove(key));
+                    expected.remove(key);
+                }
+                default -> assertEquals(present, map.get(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (Map.Entry<Long, Integer> each : expected.entrySet()) {
+            assertEquals(each.getValue().intValue(), map.get(each.getKey()));
+        }
+    }
+}
@@ -0,0 +1,446 @@
+package org.bigraphs.model.provider.test;
+
+import org.bigraphs.model.provider.spatial.bigrid.BiGridConfig;
+import org.bigraphs.model.provider.spatial.bigrid.Tile;
+import org.bigraphs.model.provider.spatial.bigrid.TileSet;
+import org.bigraphs.model.provider.spatial.bigrid.World;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.bigraphs.model.provider.spatial.bigrid.BiGridConfig.Direction.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the tile rules of {@link TileSet} and the Wave Function Collapse of {@link World}.
+ */
+public class WorldTest {
+
+    // Faces of tile types that often contradict each other during the generation, but admit solutions
+    private static final Map<Integer, List<Integer>> TIGHT_RULES = Map.of(
+            0, List.of(1, 0, 2, 0), 1, List.of(1, 2, 1, 2), 2, List.of(0, 1, 1, 0), 3, List.of(0, 2, 1, 2),
+            4, List.of(1, 1, 1, 1), 5, List.of(0, 0, 1, 0), 6, List.of(2, 0, 2, 0), 7, List.of(2, 2, 2, 1),
+            8, List.of(0, 0, 2, 1), 9, List.of(2, 1, 1, 2));
+    private static final Map<Integer, Integer> TIGHT_WEIGHTS = Map.of(
+            0, 3, 1, 2, 2, 1, 3, 2, 4, 1, 5, 2, 6, 4, 7, 1, 8, 3, 9, 2);
+
+    @Test
+    void tile_set_allows_neighbours_with_equal_faces() {
+        TileSet tileSet = TileSet.getDefaultWithCorners();
+        Map<Integer, List<Integer>> rules = new HashMap<>(BiGridConfig.tileRules);
+        rules.putAll(BiGridConfig.cornerTileRules);
+        assertEquals(rules.size(), tileSet.size());
+        List<BiGridConfig.Direction> directions = TileSet.Topology.GRID.getDirections();
+        for (int d = 0; d < directions.size(); d++) {
+            BiGridConfig.Direction direction = directions.get(d);
+            int opposite = directions.indexOf(direction.opposite());
+            for (int type : rules.keySet()) {
+                for (int neighbour : rules.keySet()) {
+                    boolean expected = rules.get(type).get(d).equals(rules.get(neighbour).get(opposite));
+                    assertEquals(expected, (tileSet.getCompatible(direction, type) & 1L << neighbour) != 0,
+                            type + " " + direction + " " + neighbour);
+                    assertEquals(expected, (tileSet.getCompatible(direction.opposite(), neighbour) & 1L << type) != 0);
+                }
+            }
+        }
+        assertEquals(BiGridConfig.tileWeights.get(BiGridConfig.TILE_BLANK).intValue(), tileSet.getWeight(BiGridConfig.TILE_BLANK));
+        assertEquals(1L << BiGridConfig.TILE_LOCALE_NESW | 1L << BiGridConfig.TILE_LOCALE_N
+                        | 1L << BiGridConfig.TILE_LOCALE_NE | 1L << BiGridConfig.TILE_LOCALE_NW,
+                tileSet.getRoutes(NORTH));
+    }
+
+    @Test
+    void tile_set_builder_allows_both_directions() {
+        TileSet tileSet = TileSet.builder(TileSet.Topology.GRID).weight(0, 1).weight(1, 2).weight(63, 1)
+                .allow(0, EAST, 1).allow(1, NORTH, 1).build();
+        assertEquals(3, tileSet.size());
+        assertEquals(0b10, tileSet.getCompatible(EAST, 0));
+        assertEquals(0b01, tileSet.getCompatible(WEST, 1));
+        assertEquals(0b10, tileSet.getCompatible(NORTH, 1));
+        assertEquals(0b10, tileSet.getCompatible(SOUTH, 1));
+        assertEquals(0, tileSet.getCompatible(EAST, 63));
+        // Neighbours of any of the possibilities are allowed
+        assertEquals(0b10, tileSet.allowedNeighbours(0b11, EAST));
+        assertEquals(0b11, tileSet.allowedNeighbours(0b11, WEST) | tileSet.allowedNeighbours(0b11, EAST));
+        assertThrows(IllegalArgumentException.class, () -> tileSet.getCompatible(UP, 0));
+
+        TileSet.Builder builder = TileSet.builder(TileSet.Topology.GRID);
+        assertThrows(IllegalArgumentException.class, () -> builder.weight(64, 1));
+        assertThrows(IllegalArgumentException.class, () -> builder.weight(0, 0));
+        assertThrows(IllegalArgumentException.class, () -> builder.allow(0, NORTH_EAST, 0));
+        assertThrows(IllegalArgumentException.class, builder::build);
+        builder.allow(0, NORTH, 1).weight(0, 1);
+        assertThrows(IllegalArgumentException.class, builder::build);
+        assertThrows(IllegalArgumentException.class, () -> TileSet.of(Map.of(0, List.of(0, 0, 0)), Map.of(0, 1)));
+        assertThrows(IllegalArgumentException.class, () -> TileSet.of(Map.of(0, List.of(0, 0, 0, 0)), Map.of()));
+    }
+
+    @Test
+    void tile_constrain_keeps_the_compatible_types() {
+        TileSet tileSet = TileSet.getDefault();
+        Tile tile = new Tile(0, 0, tileSet);
+        assertEquals(tileSet.size(), tile.getEntropy());
+        assertEquals(tileSet.getAllTiles(), tile.getPossibilityMask());
+        // A blank tile to the north only allows tiles without a route to the north
+        assertTrue(tile.constrain(List.of(BiGridConfig.TILE_BLANK), SOUTH));
+        for (int type : tile.getPossibilities()) {
+            assertEquals(BiGridConfig.ROUTE_BLANK, BiGridConfig.tileRules.get(type).get(0).intValue());
+        }
+        assertEquals(tile.getPossibilities().size(), tile.getEntropy());
+        assertFalse(tile.constrain(List.of(BiGridConfig.TILE_BLANK), SOUTH));
+        tile.collapse(new SplittableRandom(1));
+        assertEquals(0, tile.getEntropy());
+        assertEquals(1, tile.getPossibilities().size());
+        assertFalse(tile.constrain(0, SOUTH));
+        assertFalse(tile.isContradiction());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void snapshots_of_the_tiles_with_the_lowest_entropy() {
+        TileSet tileSet = TileSet.getDefaultWithCorners();
+        World world = new World(4, 5, tileSet, 3L);
+        assertEquals(20, world.getTileSnapshotsLowestEntropy().size());
+        assertEquals(tileSet.size(), world.getLowestEntropy());
+        world.waveFunctionCollapse();
+        List<Tile> snapshots = world.getTileSnapshotsLowestEntropy();
+        assertFalse(snapshots.isEmpty());
+        for (Tile snapshot : snapshots) {
+            assertEquals(world.getLowestEntropy(), snapshot.getEntropy());
+            assertEquals(world.getEntropy(snapshot.getX(), snapshot.getY(), snapshot.getZ()), snapshot.getEntropy());
+            assertEquals(world.getPossibilityMask(snapshot.getX(), snapshot.getY()), snapshot.getPossibilityMask());
+            assertTrue(snapshot.getNeighbours().isEmpty());
+        }
+        assertEquals(snapshots.size(), world.getTilesLowestEntropy().size());
+
+        // Changing a snapshot does not change the world
+        Tile snapshot = snapshots.get(0);
+        long possibilities = world.getPossibilityMask(snapshot.getX(), snapshot.getY());
+        snapshot.collapse(new SplittableRandom(1));
+        assertEquals(possibilities, world.getPossibilityMask(snapshot.getX(), snapshot.getY()));
+        assertEquals(snapshots.size(), world.getTileSnapshotsLowestEntropy().size());
+
+        collapse(world);
+        assertTrue(world.getTileSnapshotsLowestEntropy().isEmpty());
+    }
+
+    @Test
+    void collapsed_worlds_satisfy_the_adjacency_rules() {
+        for (TileSet tileSet : List.of(TileSet.getDefault(), TileSet.getDefaultWithCorners())) {
+            for (long seed = 0; seed < 20; seed++) {
+                World world = new World(3 + (int) seed % 5, 12 - (int) seed % 7, tileSet, seed);
+                collapse(world);
+                assertAdjacencyHolds(world);
+            }
+        }
+    }
+
+    @Test
+    void diagonal_and_three_dimensional_worlds_satisfy_the_adjacency_rules() {
+        long diagonalTypes = 0, verticalTypes = 0;
+        for (long seed = 0; seed < 10; seed++) {
+            World world = new World(6, 7, TileSet.getDiagonal(), seed);
+            collapse(world);
+            assertAdjacencyHolds(world);
+            assertRoutesLeadBack(world);
+            World layers = new World(5, 4, 3, TileSet.getThreeDimensional(), seed);
+            collapse(layers);
+            assertAdjacencyHolds(layers);
+            assertRoutesLeadBack(layers);
+            for (int type : types(world)) {
+                diagonalTypes |= 1L << type & TileSet.getDiagonal().getRoutes(NORTH_EAST);
+            }
+            for (int type : types(layers)) {
+                verticalTypes |= 1L << type & TileSet.getThreeDimensional().getRoutes(UP);
+            }
+        }
+        assertEquals(1L << BiGridConfig.TILE_LOCALE_DIAGONAL | 1L << BiGridConfig.TILE_LOCALE_OCTAGONAL, diagonalTypes);
+        assertEquals(1L << BiGridConfig.TILE_LOCALE_NESW_UP_DOWN | 1L << BiGridConfig.TILE_LOCALE_UP_DOWN, verticalTypes);
+    }
+
+    @Test
+    void shipped_tile_sets_are_compiled_once_from_unmodifiable_rules() {
+        assertSame(TileSet.getDefault(), TileSet.getDefault());
+        assertSame(TileSet.getDefaultWithCorners(), TileSet.getDefaultWithCorners());
+        assertEquals(TileSet.Topology.GRID, TileSet.getDefault().getTopology());
+        assertEquals(TileSet.Topology.DIAGONAL_GRID, TileSet.getDiagonal().getTopology());
+        assertEquals(TileSet.Topology.GRID_3D, TileSet.getThreeDimensional().getTopology());
+        assertEquals(BiGridConfig.diagonalTileRules.size(), TileSet.getDiagonal().size());
+        assertEquals(BiGridConfig.threeDimensionalTileRules.size(), TileSet.getThreeDimensional().size());
+        assertThrows(UnsupportedOperationException.class, () -> BiGridConfig.tileRules.put(BiGridConfig.TILE_BLANK, List.of()));
+        assertThrows(UnsupportedOperationException.class, () -> BiGridConfig.tileRules.get(BiGridConfig.TILE_BLANK).set(0, 1));
+        assertThrows(UnsupportedOperationException.class, () -> BiGridConfig.cornerTileRules.clear());
+        assertThrows(UnsupportedOperationException.class, () -> BiGridConfig.tileWeights.put(BiGridConfig.TILE_BLANK, 1));
+        assertThrows(UnsupportedOperationException.class, () -> BiGridConfig.tileRoutes.remove(BiGridConfig.TILE_BLANK));
+    }
+
+    @Test
+    void required_connectivity_yields_connected_worlds() {
+        int numOfUnconnectedWorlds = 0;
+        for (TileSet tileSet : List.of(TileSet.getDefault(), TileSet.getDefaultWithCorners(), TileSet.getDiagonal(),
+                TileSet.getThreeDimensional())) {
+            int sizeZ = tileSet.getTopology() == TileSet.Topology.GRID_3D ? 2 : 1;
+            for (World.RecoveryPolicy recoveryPolicy : World.RecoveryPolicy.values()) {
+                for (long seed = 0; seed < 5; seed++) {
+                    World world = new World(8, 6, sizeZ, tileSet, seed);
+                    world.setRecoveryPolicy(recoveryPolicy);
+                    world.setConnectivityRequired(true);
+                    assertTrue(world.isConnectivityRequired());
+                    collapse(world);
+                    assertAdjacencyHolds(world);
+                    assertEquals(isConnectedByRoutes(world), world.isConnected());
+                    // Without recovery, cutting tiles off is only counted as a contradiction
+                    assertTrue(recoveryPolicy == World.RecoveryPolicy.NONE || world.isConnected(),
+                            tileSet.getTopology() + " " + recoveryPolicy + " " + seed);
+                }
+            }
+            for (long seed = 0; seed < 10; seed++) {
+                World world = new World(8, 6, sizeZ, tileSet, seed);
+                collapse(world);
+                assertEquals(isConnectedByRoutes(world), world.isConnected());
+                numOfUnconnectedWorlds += world.isConnected() ? 0 : 1;
+            }
+        }
+        // Without the constraint, blank tiles cut worlds apart
+        assertTrue(numOfUnconnectedWorlds > 0);
+    }
+
+    @Test
+    void connectivity_requires_routes() {
+        World world = new World(4, 4, TileSet.of(TIGHT_RULES, TIGHT_WEIGHTS), 1);
+        assertThrows(IllegalStateException.class, () -> world.setConnectivityRequired(true));
+        assertFalse(world.isConnectivityRequired());
+        World withRoutes = new World(4, 4, 1);
+        withRoutes.setConnectivityRequired(true);
+        withRoutes.setConnectivityRequired(false);
+        assertFalse(withRoutes.isConnectivityRequired());
+    }
+
+    @Test
+    void worlds_with_the_same_seed_are_equal() {
+        for (TileSet tileSet : List.of(TileSet.getDefault(), TileSet.getDefaultWithCorners())) {
+            int numOfDifferentWorlds = 0;
+            for (long seed = 0; seed < 10; seed++) {
+                World world = new World(9, 7, tileSet, seed);
+                World same = new World(9, 7, tileSet, seed);
+                World other = new World(9, 7, tileSet, seed + 1000);
+                collapse(world);
+                collapse(same);
+                collapse(other);
+                assertArrayEquals(types(world), types(same));
+                assertEquals(seed, world.getSeed().getAsLong());
+                if (!Arrays.equals(types(world), types(other))) {
+                    numOfDifferentWorlds++;
+                }
+            }
+            assertTrue(numOfDifferentWorlds > 5);
+        }
+        // The default tile set and a generator seeded alike
+        World world = new World(6, 6, 42L);
+        World same = new World(6, 6, TileSet.getDefault(), new SplittableRandom(42));
+        collapse(world);
+        collapse(same);
+        assertArrayEquals(types(world), types(same));
+        assertTrue(same.getSeed().isEmpty());
+        assertTrue(new World(2, 2).getSeed().isPresent());
+    }
+
+    @Test
+    void recovery_resolves_contradictions() {
+        TileSet tileSet = TileSet.of(TIGHT_RULES, TIGHT_WEIGHTS);
+        for (World.RecoveryPolicy recoveryPolicy : List.of(World.RecoveryPolicy.BACKTRACK, World.RecoveryPolicy.RESTART_REGION)) {
+            int numOfRecoveredWorlds = 0;
+            for (long seed = 0; seed < 10; seed++) {
+                World world = new World(10, 10, tileSet, seed);
+                world.setRecoveryPolicy(recoveryPolicy);
+                collapse(world);
+                assertAdjacencyHolds(world);
+                if (world.getNumOfContradictions() > 0) {
+                    numOfRecoveredWorlds++;
+                }
+            }
+            assertTrue(numOfRecoveredWorlds > 5, recoveryPolicy.name());
+        }
+
+        // Without recovery, contradicting tiles remain
+        int numOfContradictingWorlds = 0;
+        for (long seed = 0; seed < 10; seed++) {
+            World world = new World(10, 10, tileSet, seed);
+            world.setRecoveryPolicy(World.RecoveryPolicy.NONE);
+            while (world.waveFunctionCollapse() != 0) {
+            }
+            for (int x = 0; x < 10; x++) {
+                for (int y = 0; y < 10; y++) {
+                    if (world.isContradiction(x, y)) {
+                        int cx = x, cy = y;
+                        assertThrows(IllegalStateException.class, () -> world.getType(cx, cy));
+                        assertEquals(0, world.getEntropy(x, y));
+                    }
+                }
+            }
+            if (world.getNumOfContradictions() > 0) {
+                numOfContradictingWorlds++;
+            }
+        }
+        assertTrue(numOfContradictingWorlds > 5);
+    }
+
+    @Test
+    void recovery_keeps_restrictions() {
+        TileSet tileSet = TileSet.of(TIGHT_RULES, TIGHT_WEIGHTS);
+        for (World.RecoveryPolicy recoveryPolicy : List.of(World.RecoveryPolicy.BACKTRACK, World.RecoveryPolicy.RESTART_REGION)) {
+            for (long seed = 0; seed < 10; seed++) {
+                World world = new World(10, 10, tileSet, seed);
+                world.setRecoveryPolicy(recoveryPolicy);
+                world.setMaxBacktrackDepth(2);
+                world.setRestartRadius(1);
+                assertTrue(world.constrain(0, 0, 1L << 4));
+                assertTrue(world.constrain(9, 9, 1L << 1 | 1L << 4));
+                assertEquals(0b10010, world.getPossibilityMask(9, 9));
+                collapse(world);
+                assertAdjacencyHolds(world);
+                assertEquals(4, world.getType(0, 0));
+                assertTrue(world.getType(9, 9) == 1 || world.getType(9, 9) == 4);
+            }
+        }
+    }
+
+    @Test
+    void unsatisfiable_rules_end_with_an_exception() {
+        // Each tile differs from all its 8 neighbours, which needs 4 tile types
+        TileSet.Builder builder = TileSet.builder(TileSet.Topology.DIAGONAL_GRID);
+        for (int type = 0; type < 3; type++) {
+            builder.weight(type, 1);
+            for (BiGridConfig.Direction direction : TileSet.Topology.DIAGONAL_GRID.getDirections()) {
+                builder.allow(type, direction, (type + 1) % 3);
+            }
+        }
+        TileSet tileSet = builder.build();
+        for (World.RecoveryPolicy recoveryPolicy : List.of(World.RecoveryPolicy.BACKTRACK, World.RecoveryPolicy.RESTART_REGION)) {
+            for (int maxRestarts : new int[]{0, 3, -1}) {
+                World world = new World(6, 6, tileSet, 42L);
+                world.setRecoveryPolicy(recoveryPolicy);
+                if (maxRestarts >= 0) {
+                    world.setMaxRestarts(maxRestarts);
+                }
+                assertThrows(IllegalStateException.class, () -> {
+                    for (int steps = 0; steps < 1_000_000; steps++) {
+                        world.waveFunctionCollapse();
+                    }
+                }, recoveryPolicy + " " + maxRestarts);
+                assertTrue(world.getNumOfContradictions() > maxRestarts);
+            }
+        }
+        World world = new World(2, 2, tileSet, 42L);
+        assertThrows(IllegalArgumentException.class, () -> world.setMaxRestarts(-1));
+        assertThrows(IllegalArgumentException.class, () -> world.setMaxBacktrackDepth(0));
+        assertThrows(IllegalArgumentException.class, () -> world.setRestartRadius(0));
+        assertThrows(IllegalArgumentException.class, () -> world.setMaxUndoLogSize(0));
+    }
+
+    // Collapses all tiles and checks that no contradiction remains
+    static void collapse(World world) {
+        int collapses = 0;
+        while (world.waveFunctionCollapse() != 0) {
+            collapses++;
+        }
+        assertTrue(collapses > 0);
+        for (int x = 0; x < world.getSizeX(); x++) {
+            for (int y = 0; y < world.getSizeY(); y++) {
+                for (int z = 0; z < world.getSizeZ(); z++) {
+                    assertFalse(world.isContradiction(x, y, z), "Contradiction at " + x + ", " + y + ", " + z);
+                    assertEquals(0, world.getEntropy(x, y, z));
+                    assertEquals(1, Long.bitCount(world.getPossibilityMask(x, y, z)));
+                }
+            }
+        }
+    }
+
+    static int[] types(World world) {
+        int[] types = new int[world.getSizeX() * world.getSizeY() * world.getSizeZ()];
+        int i = 0;
+        for (int x = 0; x < world.getSizeX(); x++) {
+            for (int y = 0; y < world.getSizeY(); y++) {
+                for (int z = 0; z < world.getSizeZ(); z++) {
+                    types[i++] = world.getType(x, y, z);
+                }
+            }
+        }
+        return types;
+    }
+
+    // Each pair of neighbouring tiles is allowed by the tile set
+    static void assertAdjacencyHolds(World world) {
+        TileSet tileSet = world.getTileSet();
+        for (int x = 0; x < world.getSizeX(); x++) {
+            for (int y = 0; y < world.getSizeY(); y++) {
+                for (int z = 0; z < world.getSizeZ(); z++) {
+                    int type = world.getType(x, y, z);
+                    for (BiGridConfig.Direction direction : tileSet.getTopology().getDirections()) {
+                        int nx = x + direction.getDx(), ny = y + direction.getDy(), nz = z + direction.getDz();
+                        if (nx < 0 || nx >= world.getSizeX() || ny < 0 || ny >= world.getSizeY() || nz < 0 || nz >= world.getSizeZ()) {
+                            continue;
+                        }
+                        int neighbour = world.getType(nx, ny, nz);
+                        assertTrue((tileSet.getCompatible(direction, type) & 1L << neighbour) != 0,
+                                type + " at " + x + ", " + y + ", " + z + " and " + neighbour + " to the " + direction);
+                    }
+                }
+            }
+        }
+    }
+
+    // Each route of a tile ends at a neighbour with a route back
+    private static void assertRoutesLeadBack(World world) {
+        TileSet tileSet = world.getTileSet();
+        for (int x = 0; x < world.getSizeX(); x++) {
+            for (int y = 0; y < world.getSizeY(); y++) {
+                for (int z = 0; z < world.getSizeZ(); z++) {
+                    for (BiGridConfig.Direction direction : tileSet.getTopology().getDirections()) {
+                        int nx = x + direction.getDx(), ny = y + direction.getDy(), nz = z + direction.getDz();
+                        if (nx < 0 || nx >= world.getSizeX() || ny < 0 || ny >= world.getSizeY() || nz < 0 || nz >= world.getSizeZ()
+                                || (tileSet.getRoutes(direction) & 1L << world.getType(x, y, z)) == 0) {
+                            continue;
+                        }
+                        assertTrue((tileSet.getRoutes(direction.opposite()) & 1L << world.getType(nx, ny, nz)) != 0,
+                                "No route back to " + x + ", " + y + ", " + z + " from the " + direction);
+                    }
+                }
+            }
+        }
+    }
+
+    // Breadth-first search over the routes of the collapsed tiles, in either direction
+    private static boolean isConnectedByRoutes(World world) {
+        TileSet tileSet = world.getTileSet();
+        int sizeX = world.getSizeX(), sizeY = world.getSizeY(), sizeZ = world.getSizeZ();
+        boolean[] visited = new boolean[sizeX * sizeY * sizeZ];
+        Deque<int[]> queue = new ArrayDeque<>();
+        queue.add(new int[]{0, 0, 0});
+        visited[0] = true;
+        int numOfVisited = 1;
+        while (!queue.isEmpty()) {
+            int[] tile = queue.poll();
+            for (BiGridConfig.Direction direction : tileSet.getTopology().getDirections()) {
+                int nx = tile[0] + direction.getDx(), ny = tile[1] + direction.getDy(), nz = tile[2] + direction.getDz();
+                int index = (nx * sizeY + ny) * sizeZ + nz;
+                if (nx < 0 || nx >= sizeX || ny < 0 || ny >= sizeY || nz < 0 || nz >= sizeZ || visited[index]) {
+                    continue;
+                }
+                if ((tileSet.getRoutes(direction) & 1L << world.getType(tile[0], tile[1], tile[2])) != 0
+                        || (tileSet.getRoutes(direction.opposite()) & 1L << world.getType(nx, ny, nz)) != 0) {
+                    visited[index] = true;
+                    numOfVisited++;
+                    queue.add(new int[]{nx, ny, nz});
+                }
+            }
+        }
+        return numOfVisited == visited.length;
+    }
+}